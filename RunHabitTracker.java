@@ -2,11 +2,22 @@
 /**
  * RunHabitTracker.java
  * Simple wrapper to run the Habit Tracker application.
+ * Pass --server [port] [data directory] to run the headless HTTP server instead,
+ * or --migrate <from> <to> to copy habits between storage backends.
  */
+import com.habittracker.HabitServer;
+import com.habittracker.HabitStoreMigration;
 import com.habittracker.HabitTrackerApp;
+import java.util.Arrays;
 
 public class RunHabitTracker {
-    public static void main(String[] args) {
-        HabitTrackerApp.main(args);
+    public static void main(String[] args) throws Exception {
+        if (args.length > 0 && args[0].equals("--server")) {
+            HabitServer.main(Arrays.copyOfRange(args, 1, args.length));
+        } else if (args.length > 0 && args[0].equals("--migrate")) {
+            HabitStoreMigration.main(Arrays.copyOfRange(args, 1, args.length));
+        } else {
+            HabitTrackerApp.main(args);
+        }
     }
 }
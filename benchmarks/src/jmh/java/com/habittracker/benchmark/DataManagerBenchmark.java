@@ -0,0 +1,62 @@
+package com.habittracker.benchmark;
+
+/**
+ * DataManagerBenchmark.java
+ * Measures loading and saving whole habit stores through DataManager.
+ *
+ * Each trial works on a DataManager in a fresh temporary directory.
+ */
+import com.habittracker.DataManager;
+import com.habittracker.Habit;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class DataManagerBenchmark {
+    @Param({"1000", "100000", "1000000"})
+    public int habitCount;
+
+    private List<Habit> habits;
+    private Path directory;
+    private DataManager dataManager;
+
+    @Setup
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("habit-bench");
+        dataManager = new DataManager(directory);
+        habits = Habits.generate(habitCount);
+        dataManager.saveHabits(habits);
+    }
+
+    @Benchmark
+    public List<Habit> loadHabits() {
+        return dataManager.loadHabits();
+    }
+
+    @Benchmark
+    public void saveHabits() {
+        dataManager.saveHabits(habits);
+    }
+
+    @Benchmark
+    public List<Habit> importText() throws IOException {
+        Path file = directory.resolve("export.txt");
+        if (!Files.exists(file)) {
+            DataManager.exportText(habits, file);
+        }
+        return DataManager.importText(file);
+    }
+}
@@ -0,0 +1,65 @@
+package com.habittracker.benchmark;
+
+/**
+ * HabitAnalyticsBenchmark.java
+ * Measures computing completion trends over habits with years of history.
+ *
+ * computeReport is what a change to the habits costs the next time analytics
+ * are shown; the target is well under 100 ms for 10,000 habits with three
+ * years of history each. cachedReport is every other request, and
+ * correlations compares one habit with all the others.
+ */
+import com.habittracker.Habit;
+import com.habittracker.HabitAnalytics;
+import com.habittracker.HabitRepository;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class HabitAnalyticsBenchmark {
+    @Param({"1000", "10000", "100000"})
+    public int habitCount;
+
+    @Param({"1095"})
+    public int historyDays;
+
+    private long today;
+    private List<Habit> habits;
+    private HabitAnalytics analytics;
+
+    @Setup
+    public void setUp() {
+        today = LocalDate.of(2025, 6, 1).toEpochDay();
+        habits = Habits.generateWithHistory(habitCount, today, historyDays);
+        HabitRepository repository = new HabitRepository();
+        repository.addAll(habits);
+        analytics = new HabitAnalytics(repository);
+        analytics.report(today);
+    }
+
+    @Benchmark
+    public HabitAnalytics.Report computeReport() {
+        return HabitAnalytics.compute(habits, today);
+    }
+
+    @Benchmark
+    public HabitAnalytics.Report cachedReport() {
+        return analytics.report(today);
+    }
+
+    @Benchmark
+    public List<HabitAnalytics.Correlation> correlations() {
+        return HabitAnalytics.correlations(habits.get(habitCount / 2), habits, today, 10);
+    }
+}
@@ -0,0 +1,39 @@
+package com.habittracker.benchmark;
+
+/**
+ * HabitParsingBenchmark.java
+ * Measures converting a habit to and from its pipe-delimited text line.
+ */
+import com.habittracker.Habit;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class HabitParsingBenchmark {
+    private Habit habit;
+    private String line;
+
+    @Setup
+    public void setUp() {
+        habit = new Habit("Drink eight glasses of water", "Health", true, 42);
+        line = habit.toString();
+    }
+
+    @Benchmark
+    public Habit fromString() {
+        return Habit.fromString(line);
+    }
+
+    @Benchmark
+    public String toLine() {
+        return habit.toString();
+    }
+}
@@ -0,0 +1,50 @@
+package com.habittracker.benchmark;
+
+/**
+ * Habits.java
+ * Generates deterministic habit data for the benchmarks.
+ */
+import com.habittracker.CompletionHistory;
+import com.habittracker.Habit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+final class Habits {
+    private static final String[] CATEGORIES = {"Health", "Mind", "Work", "Home", "Social", "Finance"};
+
+    private Habits() {
+    }
+
+    static List<Habit> generate(int count) {
+        List<Habit> habits = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Habit habit = new Habit("Habit number " + i, CATEGORIES[i % CATEGORIES.length], i % 3 == 0, i % 40);
+            habit.setId(i + 1);
+            habits.add(habit);
+        }
+        return habits;
+    }
+
+    /**
+     * Generates habits with a completion history, each done on a random
+     * share of days that differs from habit to habit and dips on weekends.
+     */
+    static List<Habit> generateWithHistory(int count, long today, int days) {
+        List<Habit> habits = generate(count);
+        SplittableRandom random = new SplittableRandom(42);
+        for (Habit habit : habits) {
+            CompletionHistory history = new CompletionHistory();
+            double rate = random.nextDouble();
+            for (long day = today - days + 1; day <= today; day++) {
+                // Epoch day 0 was a Thursday, so days 2 and 3 of the week are the weekend
+                boolean weekend = Math.floorMod(day, 7) == 2 || Math.floorMod(day, 7) == 3;
+                if (random.nextDouble() < (weekend ? rate / 2 : rate)) {
+                    history.set(day, true);
+                }
+            }
+            habit.setHistory(history);
+        }
+        return habits;
+    }
+}
@@ -0,0 +1,90 @@
+package com.habittracker.benchmark;
+
+/**
+ * ReminderSchedulerBenchmark.java
+ * Measures scheduling reminders for many habits.
+ *
+ * scheduleAll is what loading a store costs the reminder scheduler, with the
+ * habits spread over every quarter hour of the day and all three kinds of
+ * schedule. reschedule is one habit's schedule changing while the others stay
+ * queued, which must not depend on how many there are.
+ */
+import com.habittracker.Habit;
+import com.habittracker.HabitSchedule;
+import com.habittracker.ReminderScheduler;
+import java.time.Clock;
+import java.time.LocalTime;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ReminderSchedulerBenchmark {
+    private static final int QUARTER_HOURS = 24 * 4;
+
+    @Param({"10000", "100000"})
+    public int habitCount;
+
+    private List<Habit> habits;
+    private ScheduledExecutorService timer;
+    private ReminderScheduler scheduler;
+    private Habit rescheduled;
+    private HabitSchedule[] alternatives;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        habits = Habits.generate(habitCount);
+        for (int i = 0; i < habits.size(); i++) {
+            LocalTime reminder = LocalTime.MIDNIGHT.plusMinutes(15L * (i % QUARTER_HOURS));
+            habits.get(i).setSchedule(switch (i % 3) {
+                case 0 -> new HabitSchedule.Daily(reminder);
+                case 1 -> new HabitSchedule.Weekdays(0b0011111, reminder);
+                default -> new HabitSchedule.TimesPerWeek(3, reminder);
+            });
+        }
+        timer = ReminderScheduler.newTimer();
+        scheduler = newScheduler();
+        scheduler.updateAll(habits);
+        rescheduled = habits.get(habitCount / 2);
+        alternatives = new HabitSchedule[] {new HabitSchedule.Daily(LocalTime.of(7, 0)), new HabitSchedule.Daily(LocalTime.of(21, 30))};
+    }
+
+    @TearDown
+    public void tearDown() {
+        scheduler.stop();
+        timer.shutdownNow();
+    }
+
+    @Benchmark
+    public int scheduleAll() {
+        ReminderScheduler fresh = newScheduler();
+        fresh.updateAll(habits);
+        int size = fresh.size();
+        fresh.stop();
+        return size;
+    }
+
+    @Benchmark
+    public int reschedule() {
+        rescheduled.setSchedule(alternatives[next++ & 1]);
+        scheduler.update(rescheduled);
+        return scheduler.size();
+    }
+
+    private ReminderScheduler newScheduler() {
+        // Reminders never reach the habits here, so the executor and lookup go unused
+        return new ReminderScheduler(Runnable::run, id -> null, timer, Clock.systemUTC());
+    }
+}
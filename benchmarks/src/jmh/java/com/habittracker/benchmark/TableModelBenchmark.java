@@ -0,0 +1,82 @@
+package com.habittracker.benchmark;
+
+/**
+ * TableModelBenchmark.java
+ * Measures rebuilding the habit table model without a display.
+ *
+ * rebuildDefaultTableModel repeats what refreshTable() used to do on every
+ * change; the other benchmarks cover HabitTableModel, which reads rows on
+ * demand. Each rebuild also reads every cell, as a full repaint would.
+ */
+import com.habittracker.Habit;
+import com.habittracker.HabitTableModel;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import javax.swing.table.DefaultTableModel;
+import javax.swing.table.TableModel;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class TableModelBenchmark {
+    @Param({"1000", "100000", "1000000"})
+    public int habitCount;
+
+    private List<Habit> habits;
+    private DefaultTableModel defaultModel;
+    private HabitTableModel habitModel;
+
+    @Setup
+    public void setUp() {
+        System.setProperty("java.awt.headless", "true");
+        habits = Habits.generate(habitCount);
+        defaultModel = new DefaultTableModel(new String[] {"Name", "Category", "Completed Today", "Streak"}, 0);
+        habitModel = new HabitTableModel();
+        habitModel.setHabits(habits);
+    }
+
+    @Benchmark
+    public void rebuildDefaultTableModel(Blackhole blackhole) {
+        defaultModel.setRowCount(0);
+        for (Habit habit : habits) {
+            Object[] row = {
+                habit.getName(),
+                habit.getCategory(),
+                habit.isCompletedToday(),
+                habit.getStreak()
+            };
+            defaultModel.addRow(row);
+        }
+        readAllCells(defaultModel, blackhole);
+    }
+
+    @Benchmark
+    public void rebuildHabitTableModel(Blackhole blackhole) {
+        habitModel.setHabits(habits);
+        readAllCells(habitModel, blackhole);
+    }
+
+    @Benchmark
+    public void updateSingleRow() {
+        habitModel.habitUpdated(habitCount / 2);
+    }
+
+    private static void readAllCells(TableModel model, Blackhole blackhole) {
+        int rows = model.getRowCount();
+        int columns = model.getColumnCount();
+        for (int row = 0; row < rows; row++) {
+            for (int column = 0; column < columns; column++) {
+                blackhole.consume(model.getValueAt(row, column));
+            }
+        }
+    }
+}
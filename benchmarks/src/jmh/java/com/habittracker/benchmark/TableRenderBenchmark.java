@@ -0,0 +1,76 @@
+package com.habittracker.benchmark;
+
+/**
+ * TableRenderBenchmark.java
+ * Measures painting one screenful of the habit table while scrolling, without a display.
+ *
+ * Each invocation scrolls the viewport one page further and paints it into an
+ * offscreen image, as Swing does on every scroll step. Run with the gc profiler
+ * (enabled in the build) to see the allocation rate per paint.
+ */
+import com.habittracker.HabitTable;
+import com.habittracker.HabitTableModel;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+import javax.swing.JScrollPane;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class TableRenderBenchmark {
+    private static final int VIEW_WIDTH = 760;
+    private static final int VIEW_HEIGHT = 420;
+
+    @Param({"100000"})
+    public int habitCount;
+
+    private HabitTable table;
+    private BufferedImage screen;
+    private Graphics2D graphics;
+    private int scrollY;
+
+    @Setup
+    public void setUp() {
+        System.setProperty("java.awt.headless", "true");
+        HabitTableModel model = new HabitTableModel();
+        model.setHabits(Habits.generate(habitCount));
+        table = new HabitTable(model, null);
+        JScrollPane scrollPane = new JScrollPane(table);
+        scrollPane.setSize(VIEW_WIDTH, VIEW_HEIGHT);
+        scrollPane.doLayout();
+        table.setSize(VIEW_WIDTH, table.getPreferredSize().height);
+        table.doLayout();
+        screen = new BufferedImage(VIEW_WIDTH, VIEW_HEIGHT, BufferedImage.TYPE_INT_RGB);
+        graphics = screen.createGraphics();
+    }
+
+    @TearDown
+    public void tearDown() {
+        graphics.dispose();
+    }
+
+    @Benchmark
+    public BufferedImage paintScrolledPage() {
+        scrollY = (scrollY + VIEW_HEIGHT) % Math.max(1, table.getHeight() - VIEW_HEIGHT);
+        Graphics2D page = (Graphics2D) graphics.create();
+        try {
+            page.translate(0, -scrollY);
+            page.setClip(new Rectangle(0, scrollY, VIEW_WIDTH, VIEW_HEIGHT));
+            table.paint(page);
+        } finally {
+            page.dispose();
+        }
+        return screen;
+    }
+}
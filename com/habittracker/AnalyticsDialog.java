@@ -0,0 +1,163 @@
+package com.habittracker;
+
+/**
+ * AnalyticsDialog.java
+ * Shows a {@link HabitAnalytics.Report}: completion rates per category in a
+ * table, then streak distributions and weekday rates as text bar charts, and
+ * the habits most correlated with the selected one, if a habit was selected.
+ *
+ * The dialog only displays results; they are computed off the EDT before it opens.
+ */
+import java.awt.BorderLayout;
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.FlowLayout;
+import java.awt.Font;
+import java.awt.Frame;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.format.TextStyle;
+import java.util.List;
+import java.util.Locale;
+import javax.swing.BorderFactory;
+import javax.swing.JButton;
+import javax.swing.JDialog;
+import javax.swing.JLabel;
+import javax.swing.JPanel;
+import javax.swing.JScrollPane;
+import javax.swing.JTable;
+import javax.swing.JTextArea;
+import javax.swing.table.DefaultTableModel;
+
+public final class AnalyticsDialog extends JDialog {
+    private static final long serialVersionUID = 1L;
+    private static final Color BACKGROUND = new Color(240, 248, 255);
+    // Width of a full bar in the text charts
+    private static final int BAR_WIDTH = 40;
+
+    /**
+     * Constructor for AnalyticsDialog.
+     * @param owner Window the dialog belongs to
+     * @param report Report to show
+     * @param habit Habit the correlations are for, or null to leave them out
+     * @param correlations Habits most correlated with the habit
+     */
+    public AnalyticsDialog(Frame owner, HabitAnalytics.Report report, Habit habit, List<HabitAnalytics.Correlation> correlations) {
+        super(owner, "Analytics", true);
+        setLayout(new BorderLayout());
+
+        JLabel header = new JLabel(String.format("%,d habits, completion rates up to %s", report.habits(), LocalDate.ofEpochDay(report.today())));
+        header.setFont(new Font("Segoe UI", Font.BOLD, 14));
+        header.setBorder(BorderFactory.createEmptyBorder(10, 10, 5, 10));
+        add(header, BorderLayout.NORTH);
+
+        String[] columns = new String[HabitAnalytics.WINDOWS.length + 2];
+        columns[0] = "Category";
+        columns[1] = "Habits";
+        for (int i = 0; i < HabitAnalytics.WINDOWS.length; i++) {
+            columns[i + 2] = HabitAnalytics.WINDOWS[i] + " days";
+        }
+        DefaultTableModel categoryModel = new DefaultTableModel(columns, 0) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            public boolean isCellEditable(int row, int column) {
+                return false;
+            }
+        };
+        categoryModel.addRow(row("All", report.habits(), report.rates()));
+        for (HabitAnalytics.CategoryRates category : report.categories()) {
+            categoryModel.addRow(row(category.category(), category.habits(), category.rates()));
+        }
+        JTable categoryTable = new JTable(categoryModel);
+        categoryTable.setFont(new Font("Segoe UI", Font.PLAIN, 13));
+        categoryTable.setRowHeight(22);
+        JScrollPane categoryScroll = new JScrollPane(categoryTable);
+        categoryScroll.setPreferredSize(new Dimension(560, 160));
+
+        JTextArea details = new JTextArea(charts(report, habit, correlations));
+        details.setFont(new Font(Font.MONOSPACED, Font.PLAIN, 12));
+        details.setEditable(false);
+        details.setBackground(BACKGROUND);
+        details.setBorder(BorderFactory.createEmptyBorder(5, 10, 5, 10));
+        JScrollPane detailScroll = new JScrollPane(details);
+        detailScroll.setPreferredSize(new Dimension(560, 320));
+
+        JPanel content = new JPanel(new BorderLayout(0, 5));
+        content.setBackground(BACKGROUND);
+        content.setBorder(BorderFactory.createEmptyBorder(0, 10, 0, 10));
+        content.add(categoryScroll, BorderLayout.NORTH);
+        content.add(detailScroll, BorderLayout.CENTER);
+        add(content, BorderLayout.CENTER);
+
+        JButton closeButton = new JButton("Close");
+        closeButton.setBackground(new Color(70, 130, 180));
+        closeButton.setForeground(Color.WHITE);
+        closeButton.setFont(new Font("Segoe UI", Font.BOLD, 14));
+        closeButton.setFocusPainted(false);
+        closeButton.setBorder(BorderFactory.createEmptyBorder(8, 15, 8, 15));
+        closeButton.addActionListener(e -> dispose());
+        JPanel buttonPanel = new JPanel(new FlowLayout());
+        buttonPanel.setBackground(BACKGROUND);
+        buttonPanel.add(closeButton);
+        add(buttonPanel, BorderLayout.SOUTH);
+
+        getContentPane().setBackground(BACKGROUND);
+        pack();
+        setLocationRelativeTo(owner);
+    }
+
+    private static Object[] row(String name, int habits, double[] rates) {
+        Object[] row = new Object[rates.length + 2];
+        row[0] = name;
+        row[1] = String.format("%,d", habits);
+        for (int i = 0; i < rates.length; i++) {
+            row[i + 2] = String.format("%.1f%%", rates[i] * 100);
+        }
+        return row;
+    }
+
+    private static String charts(HabitAnalytics.Report report, Habit habit, List<HabitAnalytics.Correlation> correlations) {
+        StringBuilder text = new StringBuilder();
+        streakChart(text, "Current streaks", report.currentStreaks(), report.habits());
+        text.append('\n');
+        streakChart(text, "Longest streaks", report.longestStreaks(), report.habits());
+
+        text.append("\nCompletion by weekday, last 52 weeks\n");
+        for (int day = 0; day < 7; day++) {
+            double rate = report.weekdayRates()[day];
+            DayOfWeek dayOfWeek = DayOfWeek.of(day + 1);
+            text.append(String.format("  %-10s %6.1f%% %s", dayOfWeek.getDisplayName(TextStyle.FULL, Locale.getDefault()), rate * 100, bar(rate)));
+            if (report.habits() > 0 && dayOfWeek == report.bestWeekday()) {
+                text.append("  best");
+            } else if (report.habits() > 0 && dayOfWeek == report.worstWeekday()) {
+                text.append("  worst");
+            }
+            text.append('\n');
+        }
+
+        if (habit != null) {
+            text.append("\nDone on the same days as ").append(habit.getName()).append(", last 90 days\n");
+            if (correlations.isEmpty()) {
+                text.append("  No habits to compare with\n");
+            }
+            for (HabitAnalytics.Correlation correlation : correlations) {
+                text.append(String.format("  %+.2f  %s (%s)%n", correlation.coefficient(),
+                    correlation.habit().getName(), correlation.habit().getCategory()));
+            }
+        }
+        return text.toString();
+    }
+
+    private static void streakChart(StringBuilder text, String title, int[] counts, int habits) {
+        text.append(title).append('\n');
+        for (int i = 0; i < counts.length; i++) {
+            double share = habits == 0 ? 0 : (double) counts[i] / habits;
+            text.append(String.format("  %-8s %,8d %s%n", HabitAnalytics.streakBucketLabel(i) + " d", counts[i], bar(share)));
+        }
+    }
+
+    private static String bar(double fraction) {
+        return "#".repeat((int) Math.round(fraction * BAR_WIDTH));
+    }
+}
@@ -0,0 +1,137 @@
+package com.habittracker;
+
+/**
+ * AnimationScheduler.java
+ * Drives every UI animation from one shared Swing timer.
+ *
+ * The timer only runs while at least one animation is active and stops as soon
+ * as the last one finishes, so an idle window schedules no work at all. With
+ * reduced motion turned on (-Dhabittracker.reducedMotion=true or
+ * {@link #setReducedMotion}), animations jump straight to their final frame.
+ *
+ * All methods must be called on the Event Dispatch Thread.
+ */
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.DoubleConsumer;
+import javax.swing.Timer;
+
+public final class AnimationScheduler {
+    // About 60 frames per second
+    private static final int FRAME_MILLIS = 16;
+    private static final AnimationScheduler SHARED = new AnimationScheduler();
+
+    /**
+     * A running animation.
+     */
+    public final class Handle {
+        private final long startNanos;
+        private final long durationNanos;
+        private final DoubleConsumer frame;
+
+        private Handle(long durationMillis, DoubleConsumer frame) {
+            this.startNanos = System.nanoTime();
+            this.durationNanos = Math.max(1, durationMillis * 1_000_000);
+            this.frame = frame;
+        }
+
+        /**
+         * Stops the animation where it is, without a final frame.
+         */
+        public void cancel() {
+            active.remove(this);
+            stopIfIdle();
+        }
+
+        public boolean isRunning() {
+            return active.contains(this);
+        }
+
+        // Returns false once the final frame has been shown
+        private boolean step(long now) {
+            double progress = Math.min(1.0, (double) (now - startNanos) / durationNanos);
+            frame.accept(progress);
+            return progress < 1.0;
+        }
+    }
+
+    private final List<Handle> active = new ArrayList<>();
+    private final Timer timer = new Timer(FRAME_MILLIS, e -> tick());
+    private boolean reducedMotion = Boolean.getBoolean("habittracker.reducedMotion");
+
+    private AnimationScheduler() {
+        timer.setCoalesce(true);
+    }
+
+    /**
+     * Returns the scheduler shared by the whole application.
+     * @return Shared scheduler
+     */
+    public static AnimationScheduler shared() {
+        return SHARED;
+    }
+
+    /**
+     * Starts an animation.
+     * @param durationMillis Length of the animation
+     * @param frame Called once per frame with the progress from 0 to 1; the last call always passes 1
+     * @return Handle to cancel the animation, or null if it already finished because motion is reduced
+     */
+    public Handle animate(long durationMillis, DoubleConsumer frame) {
+        if (reducedMotion) {
+            frame.accept(1.0);
+            return null;
+        }
+        Handle handle = new Handle(durationMillis, frame);
+        active.add(handle);
+        if (!timer.isRunning()) {
+            timer.start();
+        }
+        return handle;
+    }
+
+    /**
+     * Turns reduced motion on or off. Turning it on finishes every running animation.
+     * @param reducedMotion Whether animations should jump to their final frame
+     */
+    public void setReducedMotion(boolean reducedMotion) {
+        this.reducedMotion = reducedMotion;
+        if (reducedMotion) {
+            List<Handle> running = new ArrayList<>(active);
+            active.clear();
+            stopIfIdle();
+            for (Handle handle : running) {
+                handle.frame.accept(1.0);
+            }
+        }
+    }
+
+    public boolean isReducedMotion() {
+        return reducedMotion;
+    }
+
+    /**
+     * Returns the number of animations currently running.
+     * @return Active animation count
+     */
+    public int activeCount() {
+        return active.size();
+    }
+
+    private void tick() {
+        long now = System.nanoTime();
+        // Iterate over a copy so frames may start or cancel animations
+        for (Handle handle : active.toArray(new Handle[0])) {
+            if (active.contains(handle) && !handle.step(now)) {
+                active.remove(handle);
+            }
+        }
+        stopIfIdle();
+    }
+
+    private void stopIfIdle() {
+        if (active.isEmpty()) {
+            timer.stop();
+        }
+    }
+}
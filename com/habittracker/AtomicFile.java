@@ -0,0 +1,80 @@
+package com.habittracker;
+
+/**
+ * AtomicFile.java
+ * Replaces files so that readers only ever see the old or the new contents.
+ *
+ * New contents are written to a temporary sibling file and forced to disk, then
+ * renamed over the target with an atomic move. The directory entry is forced
+ * as well where the platform supports it, so the rename survives a crash.
+ */
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+public class AtomicFile {
+    private AtomicFile() {
+    }
+
+    /**
+     * Returns the temporary file that new contents for a target are written to.
+     * @param target File being replaced
+     * @return Sibling file with a .tmp suffix
+     */
+    public static Path tempFile(Path target) {
+        return target.resolveSibling(target.getFileName() + ".tmp");
+    }
+
+    /**
+     * Opens the temporary file for a target, truncating any leftover from an interrupted write.
+     * @param target File being replaced
+     * @return Channel open for writing
+     */
+    public static FileChannel openTemp(Path target) throws IOException {
+        return FileChannel.open(tempFile(target), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+            StandardOpenOption.TRUNCATE_EXISTING);
+    }
+
+    /**
+     * Moves a fully written temporary file over its target.
+     * @param target File being replaced
+     */
+    public static void commit(Path target) throws IOException {
+        move(tempFile(target), target);
+        syncDirectory(target);
+    }
+
+    /**
+     * Moves a fully written temporary file over its target, keeping the old target as a backup.
+     * A crash between the two renames leaves both the backup and the temporary file intact.
+     * @param target File being replaced
+     * @param previous File that receives the old contents of the target
+     */
+    public static void commit(Path target, Path previous) throws IOException {
+        if (Files.exists(target)) {
+            move(target, previous);
+        }
+        commit(target);
+    }
+
+    private static void move(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private static void syncDirectory(Path file) {
+        Path directory = file.toAbsolutePath().getParent();
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // Not every platform can open or force a directory
+        }
+    }
+}
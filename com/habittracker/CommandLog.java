@@ -0,0 +1,189 @@
+package com.habittracker;
+
+/**
+ * CommandLog.java
+ * Undo and redo history of {@link HabitCommand}s.
+ *
+ * Both stacks are immutable linked lists: pushing or popping a command creates
+ * or drops one node and shares the rest, so keeping a long history costs one
+ * small node per change no matter how many habits there are, and a snapshot of
+ * the history for display is just a reference to the current head. Beyond the
+ * size limit the oldest commands are dropped, in batches so that trimming stays
+ * cheap.
+ *
+ * Every change made through the log, including undo and redo, is journaled by
+ * the commands themselves, so persistence only ever writes the affected
+ * habits. All methods must be called on the thread that owns the habits.
+ */
+import java.util.ArrayList;
+import java.util.List;
+
+public class CommandLog {
+    private static final int DEFAULT_LIMIT = 200;
+
+    /**
+     * Receives every command after it was applied, undone or redone.
+     */
+    public interface Listener {
+        void commandApplied(HabitCommand command, boolean undone);
+    }
+
+    /**
+     * One entry of a persistent stack; {@code depth} counts this entry and every one below it.
+     */
+    private record Node(HabitCommand command, Node next, int depth) {
+        static Node push(HabitCommand command, Node next) {
+            return new Node(command, next, next == null ? 1 : next.depth + 1);
+        }
+    }
+
+    private final HabitRepository repository;
+    private final PersistenceService persistence;
+    private final int limit;
+    private final List<Listener> listeners = new ArrayList<>();
+    private Node undoStack;
+    private Node redoStack;
+
+    /**
+     * Constructor for CommandLog.
+     * @param repository Repository the commands change
+     * @param persistence Service that journals the changes
+     */
+    public CommandLog(HabitRepository repository, PersistenceService persistence) {
+        this(repository, persistence, DEFAULT_LIMIT);
+    }
+
+    /**
+     * Constructor for CommandLog.
+     * @param repository Repository the commands change
+     * @param persistence Service that journals the changes
+     * @param limit Number of commands that can always be undone; up to twice as many may be kept
+     */
+    public CommandLog(HabitRepository repository, PersistenceService persistence, int limit) {
+        if (limit < 1) {
+            throw new IllegalArgumentException("Undo limit must be positive: " + limit);
+        }
+        this.repository = repository;
+        this.persistence = persistence;
+        this.limit = limit;
+    }
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Applies a command and makes it the next one to undo. Clears the redo history.
+     * @param command Command to apply
+     * @return false if the command had nothing to change and was not recorded
+     */
+    public boolean execute(HabitCommand command) {
+        if (!command.apply(repository, persistence)) {
+            return false;
+        }
+        undoStack = trim(Node.push(command, undoStack));
+        redoStack = null;
+        changed(command, false);
+        return true;
+    }
+
+    /**
+     * Reverts the most recent command.
+     * @return The command that was undone, or null if there was nothing to undo
+     */
+    public HabitCommand undo() {
+        if (undoStack == null) {
+            return null;
+        }
+        HabitCommand command = undoStack.command();
+        command.revert(repository, persistence);
+        undoStack = undoStack.next();
+        redoStack = Node.push(command, redoStack);
+        changed(command, true);
+        return command;
+    }
+
+    /**
+     * Applies the most recently undone command again.
+     * @return The command that was redone, or null if there was nothing to redo
+     */
+    public HabitCommand redo() {
+        if (redoStack == null) {
+            return null;
+        }
+        HabitCommand command = redoStack.command();
+        redoStack = redoStack.next();
+        if (!command.apply(repository, persistence)) {
+            // The habits moved on in a way the command no longer fits; drop it
+            return null;
+        }
+        undoStack = trim(Node.push(command, undoStack));
+        changed(command, false);
+        return command;
+    }
+
+    public boolean canUndo() {
+        return undoStack != null;
+    }
+
+    public boolean canRedo() {
+        return redoStack != null;
+    }
+
+    /**
+     * Returns the command {@link #undo()} would revert.
+     * @return Next command to undo, or null
+     */
+    public HabitCommand peekUndo() {
+        return undoStack == null ? null : undoStack.command();
+    }
+
+    /**
+     * Returns the command {@link #redo()} would apply.
+     * @return Next command to redo, or null
+     */
+    public HabitCommand peekRedo() {
+        return redoStack == null ? null : redoStack.command();
+    }
+
+    /**
+     * Returns the number of commands that can be undone.
+     * @return Undo depth
+     */
+    public int undoDepth() {
+        return undoStack == null ? 0 : undoStack.depth();
+    }
+
+    /**
+     * Forgets every command, for example after changes the commands do not know about.
+     */
+    public void clear() {
+        undoStack = null;
+        redoStack = null;
+    }
+
+    private void changed(HabitCommand command, boolean undone) {
+        persistence.compactIfNeeded(repository.all());
+        for (Listener listener : listeners) {
+            listener.commandApplied(command, undone);
+        }
+    }
+
+    // Keeps the newest commands once the stack holds twice the limit, so the copy happens once per limit pushes
+    private Node trim(Node stack) {
+        if (stack.depth() <= limit * 2) {
+            return stack;
+        }
+        HabitCommand[] kept = new HabitCommand[limit];
+        Node node = stack;
+        for (int i = 0; i < limit; i++) {
+            kept[i] = node.command();
+            node = node.next();
+        }
+        Node trimmed = null;
+        for (int i = limit - 1; i >= 0; i--) {
+            trimmed = Node.push(kept[i], trimmed);
+        }
+        return trimmed;
+    }
+}
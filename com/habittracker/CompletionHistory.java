@@ -0,0 +1,293 @@
+package com.habittracker;
+
+/**
+ * CompletionHistory.java
+ * Compact record of the days a habit was completed, one bit per day.
+ *
+ * Bit i of word w stands for epoch day baseDay + w * 64 + i, so older days sit
+ * in lower bits. The base is aligned to 64 days and the word array only spans
+ * the range between the first and last completion, which keeps a year of
+ * history to six longs. Streaks and counts are computed a word at a time.
+ */
+import java.util.Arrays;
+
+public class CompletionHistory {
+    private static final long[] EMPTY = new long[0];
+
+    private long baseDay;
+    private long[] words = EMPTY;
+
+    /**
+     * Marks a day as completed or not completed.
+     * @param epochDay Day as returned by LocalDate.toEpochDay()
+     * @param completed Whether the habit was completed that day
+     */
+    public void set(long epochDay, boolean completed) {
+        if (!completed) {
+            if (contains(epochDay)) {
+                int bit = (int) (epochDay - baseDay);
+                words[bit >>> 6] &= ~(1L << bit);
+            }
+            return;
+        }
+        ensureCovers(epochDay);
+        int bit = (int) (epochDay - baseDay);
+        words[bit >>> 6] |= 1L << bit;
+    }
+
+    /**
+     * Returns whether the habit was completed on a day.
+     * @param epochDay Day as returned by LocalDate.toEpochDay()
+     * @return true if completed
+     */
+    public boolean isCompleted(long epochDay) {
+        if (!contains(epochDay)) {
+            return false;
+        }
+        int bit = (int) (epochDay - baseDay);
+        return (words[bit >>> 6] & (1L << bit)) != 0;
+    }
+
+    /**
+     * Returns the number of consecutive completed days ending on a day.
+     * @param epochDay Last day of the streak
+     * @return Streak length, 0 if the day itself was not completed
+     */
+    public int streakEndingOn(long epochDay) {
+        if (!contains(epochDay)) {
+            return 0;
+        }
+        int bit = (int) (epochDay - baseDay);
+        int word = bit >>> 6;
+        // Drop the days after epochDay so the run starts at the top of the word
+        int shift = 63 - (bit & 63);
+        long current = words[word] << shift;
+        int run = Long.numberOfLeadingZeros(~current);
+        if (run < 64 - shift) {
+            return run;
+        }
+        for (word--; word >= 0; word--) {
+            int ones = Long.numberOfLeadingZeros(~words[word]);
+            run += ones;
+            if (ones < 64) {
+                break;
+            }
+        }
+        return run;
+    }
+
+    /**
+     * Returns the longest run of consecutive completed days in the whole history.
+     * @return Longest streak
+     */
+    public int longestStreak() {
+        int longest = 0;
+        int run = 0;
+        for (long word : words) {
+            if (word == -1L) {
+                run += 64;
+                continue;
+            }
+            // The low bits continue the run carried over from the previous word
+            run += Long.numberOfTrailingZeros(~word);
+            longest = Math.max(longest, run);
+            longest = Math.max(longest, longestRunWithin(word));
+            run = Long.numberOfLeadingZeros(~word);
+        }
+        return Math.max(longest, run);
+    }
+
+    /**
+     * Returns the number of completed days in a range.
+     * @param fromEpochDay First day, inclusive
+     * @param toEpochDay Last day, inclusive
+     * @return Number of completed days
+     */
+    public int countCompleted(long fromEpochDay, long toEpochDay) {
+        long from = Math.max(fromEpochDay, baseDay);
+        long to = Math.min(toEpochDay, baseDay + (long) words.length * 64 - 1);
+        if (from > to) {
+            return 0;
+        }
+        int firstBit = (int) (from - baseDay);
+        int lastBit = (int) (to - baseDay);
+        int firstWord = firstBit >>> 6;
+        int lastWord = lastBit >>> 6;
+        long firstMask = -1L << firstBit;
+        long lastMask = -1L >>> (63 - (lastBit & 63));
+        if (firstWord == lastWord) {
+            return Long.bitCount(words[firstWord] & firstMask & lastMask);
+        }
+        int count = Long.bitCount(words[firstWord] & firstMask) + Long.bitCount(words[lastWord] & lastMask);
+        for (int i = firstWord + 1; i < lastWord; i++) {
+            count += Long.bitCount(words[i]);
+        }
+        return count;
+    }
+
+    /**
+     * Returns the completions of a range of days as bit words aligned to its
+     * first day, for comparing histories a word at a time.
+     * @param fromEpochDay First day, which lands in bit 0 of the first word
+     * @param days Number of days in the range
+     * @return (days + 63) / 64 words; bits past the range are 0
+     */
+    public long[] wordsFrom(long fromEpochDay, int days) {
+        long[] result = new long[(days + 63) >>> 6];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = wordAt(fromEpochDay + i * 64L);
+        }
+        if ((days & 63) != 0) {
+            result[result.length - 1] &= (1L << days) - 1;
+        }
+        return result;
+    }
+
+    public boolean isEmpty() {
+        for (long word : words) {
+            if (word != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns an independent copy of this history.
+     * @return Copy of the history
+     */
+    public CompletionHistory copy() {
+        CompletionHistory copy = new CompletionHistory();
+        copy.baseDay = baseDay;
+        copy.words = words.length == 0 ? EMPTY : words.clone();
+        return copy;
+    }
+
+    public long getBaseDay() {
+        return baseDay;
+    }
+
+    /**
+     * Returns the raw bit words for storage.
+     * @return Copy of the words, trimmed of empty words at either end
+     */
+    public long[] toWords() {
+        int first = 0;
+        int last = words.length;
+        while (first < last && words[first] == 0) {
+            first++;
+        }
+        while (last > first && words[last - 1] == 0) {
+            last--;
+        }
+        return Arrays.copyOfRange(words, first, last);
+    }
+
+    /**
+     * Returns the base day matching {@link #toWords()}.
+     * @return Epoch day of bit 0 in the trimmed words
+     */
+    public long getTrimmedBaseDay() {
+        int first = 0;
+        while (first < words.length && words[first] == 0) {
+            first++;
+        }
+        return first == words.length ? 0 : baseDay + first * 64L;
+    }
+
+    /**
+     * Creates a history from stored words.
+     * @param baseDay Epoch day of bit 0, a multiple of 64
+     * @param words Bit words
+     * @return The history
+     */
+    public static CompletionHistory fromWords(long baseDay, long[] words) {
+        CompletionHistory history = new CompletionHistory();
+        history.baseDay = baseDay;
+        history.words = words.length == 0 ? EMPTY : words;
+        return history;
+    }
+
+    /**
+     * Encodes the history as text for journal records: base day, then hex words.
+     * Format: baseDay:word,word,... or an empty string for an empty history
+     */
+    @Override
+    public String toString() {
+        long[] trimmed = toWords();
+        if (trimmed.length == 0) {
+            return "";
+        }
+        StringBuilder text = new StringBuilder().append(getTrimmedBaseDay()).append(':');
+        for (int i = 0; i < trimmed.length; i++) {
+            if (i > 0) {
+                text.append(',');
+            }
+            text.append(Long.toHexString(trimmed[i]));
+        }
+        return text.toString();
+    }
+
+    /**
+     * Decodes a history written by {@link #toString()}.
+     * @param text Encoded history
+     * @return The history
+     */
+    public static CompletionHistory fromString(String text) {
+        if (text.isEmpty()) {
+            return new CompletionHistory();
+        }
+        int colon = text.indexOf(':');
+        String[] hexWords = text.substring(colon + 1).split(",");
+        long[] words = new long[hexWords.length];
+        for (int i = 0; i < hexWords.length; i++) {
+            words[i] = Long.parseUnsignedLong(hexWords[i], 16);
+        }
+        return fromWords(Long.parseLong(text.substring(0, colon)), words);
+    }
+
+    // The 64 days starting at a day, that day in bit 0
+    private long wordAt(long epochDay) {
+        long offset = epochDay - baseDay;
+        long word = Math.floorDiv(offset, 64);
+        int shift = Math.floorMod(offset, 64);
+        long low = wordOrZero(word) >>> shift;
+        return shift == 0 ? low : low | wordOrZero(word + 1) << (64 - shift);
+    }
+
+    private long wordOrZero(long word) {
+        return word >= 0 && word < words.length ? words[(int) word] : 0;
+    }
+
+    private boolean contains(long epochDay) {
+        return epochDay >= baseDay && epochDay < baseDay + (long) words.length * 64;
+    }
+
+    private void ensureCovers(long epochDay) {
+        long alignedDay = Math.floorDiv(epochDay, 64) * 64;
+        if (words.length == 0) {
+            baseDay = alignedDay;
+            words = new long[1];
+            return;
+        }
+        if (epochDay < baseDay) {
+            int extraWords = (int) ((baseDay - alignedDay) / 64);
+            long[] grown = new long[words.length + extraWords];
+            System.arraycopy(words, 0, grown, extraWords, words.length);
+            words = grown;
+            baseDay = alignedDay;
+        } else if (epochDay >= baseDay + (long) words.length * 64) {
+            words = Arrays.copyOf(words, (int) ((alignedDay - baseDay) / 64) + 1);
+        }
+    }
+
+    private static int longestRunWithin(long word) {
+        // Each step shortens every run of ones by one bit
+        int length = 0;
+        while (word != 0) {
+            word &= word >>> 1;
+            length++;
+        }
+        return length;
+    }
+}
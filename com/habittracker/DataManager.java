@@ -1,53 +1,1032 @@
-
 package com.habittracker;
 
 /**
  * DataManager.java
- * Handles loading and saving habits to a text file.
+ * Handles loading and saving habits.
+ *
+ * Habits are stored as a binary snapshot (habits.dat, see {@link HabitSnapshot})
+ * plus an append-only journal (habits.journal). Each add, update and delete is
+ * appended to the journal as a single record, so saving a change costs the same
+ * no matter how many habits exist. The journal is folded back into the snapshot
+ * by {@link #saveHabits}. Journal records address habits by their stable id.
+ * The pipe-delimited text format (habits.txt) is kept as
+ * an import/export path and is migrated automatically on first load.
+ *
+ * Each instance manages the store in one directory; the desktop app uses the
+ * working directory and the server one directory per user. This is the
+ * default {@link HabitStore}.
+ *
+ * Both files survive a crash at any point: snapshots are replaced atomically
+ * and checksummed per section, and every journal record carries a CRC32C. On
+ * load, a damaged snapshot falls back to its newest intact backup, replaying
+ * habits.journal.old before habits.journal, and the journal is cut back to its
+ * last intact record.
+ *
+ * Several processes may share one directory. Files are only written while
+ * holding an exclusive lock on habits.lock, which also counts snapshots
+ * ("generations") and hands out blocks of habit ids. On taking the lock, an
+ * instance reads just the journal records other instances appended since it
+ * last looked and collects them as {@link ExternalChanges}. A new snapshot
+ * keeps the journal it replaces as habits.journal.old, so an instance one
+ * snapshot behind still reads only the records it missed; one further behind
+ * compares against the whole store. Records are numbered above every sequence
+ * already in the files, so a snapshot's sequence still tells which records it
+ * contains. A batch of records holds the lock until {@link #flush()}.
+ * File locks belong to the whole JVM, so instances in the same process also
+ * take turns on a semaphore for the directory before locking the file.
  */
-import java.io.BufferedReader;
 import java.io.BufferedWriter;
-import java.io.FileReader;
-import java.io.FileWriter;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.zip.CRC32C;
+
+public class DataManager implements HabitStore {
+    // Text header line; older readers skip it because it is not a valid habit
+    private static final String SEQUENCE_HEADER = "#seq|";
+
+    // Number of journal records written before the journal is forced to disk
+    private static final int SYNC_GROUP_SIZE = 32;
+    // Number of journal records after which the journal is folded into the snapshot
+    private static final int COMPACTION_THRESHOLD = 1000;
+    // Journal records start with "@", eight hex digits of CRC32C and a pipe
+    private static final byte CHECKSUM_MARKER = '@';
+    private static final int CHECKSUM_PREFIX_LENGTH = 10;
+    private static final int JOURNAL_BUFFER_SIZE = 4096;
+    // habits.lock holds the generation, the next free habit id and the sequence of the last snapshot
+    private static final int LOCK_FILE_SIZE = 24;
+
+    /**
+     * Contents of habits.lock.
+     */
+    private record LockState(long generation, long nextHabitId, long snapshotSequence) {
+    }
+
+    // One permit per habits.lock for the instances in this process; a semaphore, as the
+    // lock held by a batch may be released on another thread than the one that took it
+    private static final Map<Path, Semaphore> PROCESS_LOCKS = new ConcurrentHashMap<>();
+
+    private final Path snapshotFile;
+    private final Path textFile;
+    private final Path journalFile;
+    private final Path previousJournalFile;
+    private final Path lockFile;
+    private final Semaphore processLock;
+    private final CRC32C journalChecksum = new CRC32C();
+    private final ByteBuffer lockBuffer = ByteBuffer.allocate(LOCK_FILE_SIZE);
+    private FileChannel journalChannel;
+    private ByteBuffer journalBuffer = ByteBuffer.allocateDirect(JOURNAL_BUFFER_SIZE);
+    private long sequence;
+    private long rolloverDay;
+    private int journalRecords;
+    private int unsyncedRecords;
+
+    // How far this instance has read the files other instances write to
+    private FileChannel lockChannel;
+    private FileLock fileLock;
+    private boolean lockingUnsupported;
+    private boolean following;
+    private long generation;
+    private long journalPosition;
+    private long writtenSequence;
+    private long maxHabitId;
+    private ExternalChanges undelivered;
+    // Batches that a snapshot saved by this instance may not contain yet, oldest first
+    private final List<ExternalChanges> unsnapshotted = new ArrayList<>();
+
+    /**
+     * Constructor for DataManager.
+     * @param directory Directory holding habits.dat, habits.journal and any habits.txt to migrate
+     */
+    public DataManager(Path directory) {
+        this.snapshotFile = directory.resolve("habits.dat");
+        this.textFile = directory.resolve("habits.txt");
+        this.journalFile = directory.resolve("habits.journal");
+        this.previousJournalFile = directory.resolve("habits.journal.old");
+        this.lockFile = directory.resolve("habits.lock");
+        this.processLock = PROCESS_LOCKS.computeIfAbsent(lockFile.toAbsolutePath().normalize(), path -> new Semaphore(1));
+    }
+
+    /**
+     * Creates a DataManager for the working directory, where the desktop app keeps its habits.
+     * @return DataManager for user.dir
+     */
+    public static DataManager forWorkingDirectory() {
+        return new DataManager(Paths.get(System.getProperty("user.dir")));
+    }
 
-public class DataManager {
-    private static final String FILE_NAME = System.getProperty("user.dir") + "/habits.txt";
+    /**
+     * Saves a list of habits to the habits.dat snapshot and clears the journal.
+     * @param habits List of habits to save
+     * @throws UncheckedIOException if the snapshot could not be written
+     */
+    public synchronized void saveHabits(List<Habit> habits) {
+        saveHabits(habits, sequence, rolloverDay);
+    }
 
     /**
-     * Saves a list of habits to the habits.txt file.
+     * Saves a list of habits captured at a known journal sequence and clears the journal.
+     * Journal records with a higher sequence that are written afterwards are still replayed.
+     * Changes other instances made that the habits do not contain yet are saved with them.
      * @param habits List of habits to save
+     * @param snapshotSequence Last journal sequence reflected in the habits
+     * @param snapshotRolloverDay Rollover day reflected in the habits
+     * @throws UncheckedIOException if the snapshot could not be written; the previous one is kept
      */
-    public static void saveHabits(List<Habit> habits) {
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter(FILE_NAME))) {
+    @Override
+    public synchronized void saveHabits(List<Habit> habits, long snapshotSequence, long snapshotRolloverDay) {
+        try (HabitMetrics.Operation operation = HabitMetrics.get().start("save").items(habits.size())) {
+            boolean locked = lockFiles(true);
+            try {
+                long day = snapshotRolloverDay;
+                Map<Long, Habit> byId = null;
+                for (ExternalChanges changes : unsnapshotted) {
+                    if (!changes.isAppliedBy(snapshotSequence)) {
+                        if (byId == null) {
+                            byId = new LinkedHashMap<>();
+                            for (Habit habit : habits) {
+                                byId.put(habit.getId(), habit);
+                            }
+                        }
+                        changes.patch(byId);
+                        day = Math.max(day, changes.rolloverDay());
+                    }
+                }
+                operation.bytes(writeSnapshot(byId == null ? habits : new ArrayList<>(byId.values()), snapshotSequence, day));
+                unsnapshotted.removeIf(changes -> changes.isAppliedBy(snapshotSequence));
+            } catch (IOException e) {
+                operation.failed();
+                throw new UncheckedIOException(e.getMessage(), e);
+            } finally {
+                if (locked) {
+                    unlockFiles();
+                }
+            }
+        }
+    }
+
+    /**
+     * Loads habits from the habits.dat snapshot and replays the journal on top of it.
+     * A habits.txt file or a snapshot left by an older version is migrated first.
+     * @return List of loaded habits, each with a stable id
+     */
+    @Override
+    public synchronized List<Habit> loadHabits() {
+        try (HabitMetrics.Operation operation = HabitMetrics.get().start("load")) {
+            boolean locked = lockFiles(false);
+            try {
+                List<Habit> habits = readHabits();
+                following = true;
+                operation.items(habits.size());
+                HabitMetrics.get().habitsLoaded(habits.size());
+                return habits;
+            } finally {
+                if (locked) {
+                    unlockFiles();
+                }
+            }
+        }
+    }
+
+    // Reads the whole store and marks it as seen; must hold the file lock if there is one
+    private List<Habit> readHabits() {
+        List<Habit> habits = readContents();
+        for (Habit habit : habits) {
+            maxHabitId = Math.max(maxHabitId, habit.getId());
+        }
+        try {
+            generation = readLockFile().generation();
+            journalPosition = Files.exists(journalFile) ? Files.size(journalFile) : 0;
+        } catch (IOException e) {
+            System.err.println("Error reading habits.lock: " + e.getMessage());
+        }
+        return habits;
+    }
+
+    private List<Habit> readContents() {
+        if (!Files.exists(snapshotFile) && Files.exists(textFile)) {
+            migrateTextFile();
+        }
+        HabitSnapshot.Contents contents = null;
+        boolean recovered = false;
+        try {
+            contents = HabitSnapshot.read(snapshotFile);
+        } catch (NoSuchFileException e) {
+            // No snapshot yet, unless a save was interrupted between its two renames
+            contents = readSnapshotBackup(false);
+            recovered = contents != null;
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Error loading habits: " + e.getMessage());
+            contents = readSnapshotBackup(true);
+            recovered = contents != null;
+        }
+        journalRecords = 0;
+        if (contents == null) {
+            sequence = 0;
+            rolloverDay = 0;
+            return replayJournal(new ArrayList<>(), 0, true, false);
+        }
+        sequence = contents.sequence();
+        rolloverDay = contents.rolloverDay();
+        List<Habit> habits = contents.hasIndexJournal()
+            ? replayIndexJournal(contents.habits(), contents.sequence())
+            : replayJournal(contents.habits(), contents.sequence(), contents.hasHistoryJournal(), recovered);
+        if (contents.isOutdated() || recovered) {
+            // Rewrite in the current format so the journal starts over in the current record format
+            assignMissingIds(habits);
+            try {
+                writeSnapshot(habits, sequence, rolloverDay);
+            } catch (IOException e) {
+                System.err.println("Error saving habits: " + e.getMessage());
+            }
+        }
+        return habits;
+    }
+
+    private HabitSnapshot.Contents readSnapshotBackup(boolean damaged) {
+        try {
+            HabitSnapshot.Contents contents = HabitSnapshot.readBackup(snapshotFile);
+            System.err.println("Recovered habits from a backup snapshot at journal sequence " + contents.sequence());
+            return contents;
+        } catch (NoSuchFileException e) {
+            if (damaged) {
+                System.err.println("Error loading habits: no backup snapshot to recover from");
+            }
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Error loading backup snapshot: " + e.getMessage());
+        }
+        return null;
+    }
+
+    /**
+     * Imports habits from a pipe-delimited text file.
+     * Format: one Name|Category|CompletedToday|Streak[|Schedule] line per habit.
+     * @param file Text file to read
+     * @return List of imported habits
+     */
+    public static List<Habit> importText(Path file) throws IOException {
+        return readText(file, true).habits();
+    }
+
+    /**
+     * Exports habits to a pipe-delimited text file, replacing any existing file atomically.
+     * @param habits List of habits to export
+     * @param file Text file to write
+     */
+    public static void exportText(List<Habit> habits, Path file) throws IOException {
+        try (FileChannel channel = AtomicFile.openTemp(file)) {
+            BufferedWriter writer = new BufferedWriter(Channels.newWriter(channel, StandardCharsets.UTF_8));
             for (Habit habit : habits) {
                 writer.write(habit.toString());
                 writer.newLine();
             }
+            writer.flush();
+            channel.force(true);
+            HabitMetrics.get().bytesWritten(channel.size());
+        }
+        AtomicFile.commit(file);
+    }
+
+    /**
+     * Reserves the sequence number for the next journal record.
+     * Sequences are handed out when a change is made, which may be before the
+     * record itself is written.
+     * @return Sequence number for the record
+     */
+    @Override
+    public synchronized long nextSequence() {
+        return ++sequence;
+    }
+
+    /**
+     * Returns the epoch day the habits were last rolled over to.
+     * @return Rollover day, or 0 if the store has never been rolled over
+     */
+    @Override
+    public synchronized long getRolloverDay() {
+        return rolloverDay;
+    }
+
+    /**
+     * Sets the rollover day that the next snapshot will record. Like sequence
+     * numbers, this is set when the rollover happens, before its journal records
+     * are written.
+     * @param epochDay Day the habits were rolled over to
+     */
+    @Override
+    public synchronized void setRolloverDay(long epochDay) {
+        rolloverDay = epochDay;
+    }
+
+    /**
+     * Returns the last sequence number handed out.
+     * @return Current journal sequence
+     */
+    @Override
+    public synchronized long currentSequence() {
+        return sequence;
+    }
+
+    /**
+     * Appends an "add" record to the journal.
+     * @param recordSequence Sequence reserved with {@link #nextSequence()}
+     * @param habit Habit that was added, with its id assigned
+     */
+    @Override
+    public synchronized void journalAdd(long recordSequence, Habit habit) {
+        maxHabitId = Math.max(maxHabitId, habit.getId());
+        appendRecord(recordSequence, habit.getId(), "A|" + habit.getId() + "|" + habit.getHistory() + "|" + habit);
+    }
+
+    /**
+     * Appends an "update" record to the journal.
+     * @param recordSequence Sequence reserved with {@link #nextSequence()}
+     * @param habit Habit with its new values
+     */
+    @Override
+    public synchronized void journalUpdate(long recordSequence, Habit habit) {
+        appendRecord(recordSequence, habit.getId(), "U|" + habit.getId() + "|" + habit.getHistory() + "|" + habit);
+    }
+
+    /**
+     * Appends a "rollover" record to the journal.
+     * @param recordSequence Sequence reserved with {@link #nextSequence()}
+     * @param epochDay Day the habits were rolled over to
+     */
+    @Override
+    public synchronized void journalRollover(long recordSequence, long epochDay) {
+        appendRecord(recordSequence, 0, "R|" + epochDay);
+    }
+
+    /**
+     * Appends a "delete" record to the journal.
+     * @param recordSequence Sequence reserved with {@link #nextSequence()}
+     * @param id Id of the removed habit
+     */
+    @Override
+    public synchronized void journalDelete(long recordSequence, long id) {
+        appendRecord(recordSequence, id, "D|" + id);
+    }
+
+    /**
+     * Forces any journal records that are not yet on disk to be written.
+     */
+    @Override
+    public synchronized void syncJournal() {
+        if (journalChannel == null || unsyncedRecords == 0) {
+            return;
+        }
+        try (HabitMetrics.Operation operation = HabitMetrics.get().start("journal.sync").items(unsyncedRecords)) {
+            try {
+                journalChannel.force(false);
+                unsyncedRecords = 0;
+            } catch (IOException e) {
+                operation.failed();
+                System.err.println("Error syncing journal: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Returns whether the journal has grown large enough to be folded into the snapshot.
+     * @return true if a new snapshot should be saved
+     */
+    @Override
+    public synchronized boolean needsCompaction() {
+        return journalRecords >= COMPACTION_THRESHOLD;
+    }
+
+    /**
+     * Journal records are handed to the operating system as they are appended,
+     * so flushing only releases the lock the batch of records held, letting
+     * other instances write again.
+     */
+    @Override
+    public synchronized void flush() {
+        unlockFiles();
+    }
+
+    /**
+     * Reserves a block of habit ids in habits.lock, so instances sharing the
+     * directory never hand out the same id.
+     * @param count Number of ids to reserve
+     * @return First of count consecutive new ids, or 0 if no block could be reserved
+     */
+    @Override
+    public synchronized long reserveHabitIds(int count) {
+        boolean locked = lockFiles(true);
+        try {
+            LockState state = readLockFile();
+            long first = Math.max(state.nextHabitId(), maxHabitId + 1);
+            writeLockFile(new LockState(state.generation(), first + count, state.snapshotSequence()));
+            maxHabitId = first + count - 1;
+            return first;
         } catch (IOException e) {
-            System.err.println("Error saving habits: " + e.getMessage());
+            System.err.println("Error reserving habit ids: " + e.getMessage());
+            return 0;
+        } finally {
+            if (locked) {
+                unlockFiles();
+            }
         }
     }
 
     /**
-     * Loads habits from the habits.txt file.
-     * @return List of loaded habits
+     * Every record another instance writes is appended to habits.journal, and
+     * every snapshot truncates it.
+     * @return habits.journal
      */
-    public static List<Habit> loadHabits() {
-        List<Habit> habits = new ArrayList<>();
-        try (BufferedReader reader = new BufferedReader(new FileReader(FILE_NAME))) {
+    @Override
+    public Path changeFile() {
+        return journalFile;
+    }
+
+    /**
+     * Reads the journal records other instances appended since this instance last looked.
+     * @return Changes not handed out before, or null if there are none
+     */
+    @Override
+    public synchronized ExternalChanges readExternalChanges() {
+        if (lockFiles(true)) {
+            unlockFiles();
+        }
+        ExternalChanges changes = undelivered;
+        undelivered = null;
+        if (changes == null || changes.isEmpty()) {
+            unsnapshotted.remove(changes);
+            return null;
+        }
+        return changes;
+    }
+
+    /**
+     * Finds habits by scanning the snapshot and journal; the files have no indexes.
+     * The sequence and rollover day of this session are kept as they are.
+     * @param category Category to match, or null for every category
+     * @param minStreak Smallest streak to include
+     * @return Matching habits in storage order
+     */
+    @Override
+    public synchronized List<Habit> findHabits(String category, int minStreak) {
+        boolean locked = lockFiles(true);
+        long sessionSequence = sequence;
+        long sessionRolloverDay = rolloverDay;
+        int sessionJournalRecords = journalRecords;
+        List<Habit> habits;
+        try {
+            habits = readHabits();
+        } finally {
+            if (locked) {
+                unlockFiles();
+            }
+        }
+        // Changes reserved but not yet written are newer than anything on disk
+        sequence = Math.max(sequence, sessionSequence);
+        rolloverDay = Math.max(rolloverDay, sessionRolloverDay);
+        journalRecords = Math.max(journalRecords, sessionJournalRecords);
+        List<Habit> matches = new ArrayList<>();
+        for (Habit habit : habits) {
+            if ((category == null || category.equals(habit.getCategory())) && habit.getStreak() >= minStreak) {
+                matches.add(habit);
+            }
+        }
+        return matches;
+    }
+
+    /**
+     * Forces outstanding journal records to disk and closes the journal file.
+     * A later record reopens it.
+     */
+    @Override
+    public synchronized void close() {
+        syncJournal();
+        closeJournal();
+        unlockFiles();
+        if (lockChannel != null) {
+            try {
+                lockChannel.close();
+            } catch (IOException e) {
+                System.err.println("Error closing habits.lock: " + e.getMessage());
+            }
+            lockChannel = null;
+        }
+    }
+
+    private void closeJournal() {
+        if (journalChannel != null) {
+            try {
+                journalChannel.close();
+            } catch (IOException e) {
+                System.err.println("Error closing journal: " + e.getMessage());
+            }
+            journalChannel = null;
+        }
+    }
+
+    // Drops a habit this instance is writing from changes read from other instances but not applied yet
+    private void supersede(long id) {
+        for (ExternalChanges changes : unsnapshotted) {
+            changes.supersede(id);
+        }
+    }
+
+    // Appends a record about a habit, or about no habit if the id is 0
+    private void appendRecord(long recordSequence, long id, String record) {
+        // Held for the whole batch of records, until flush
+        lockFiles(true);
+        if (id != 0) {
+            // Anything other instances wrote about the habit up to now is older than this record
+            supersede(id);
+        }
+        try {
+            if (journalChannel == null) {
+                journalChannel = FileChannel.open(journalFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.APPEND);
+            }
+            // Another instance may already have written records numbered above the reserved sequence
+            long fileSequence = Math.max(recordSequence, writtenSequence + 1);
+            byte[] body = (fileSequence + "|" + record).getBytes(StandardCharsets.UTF_8);
+            journalChecksum.reset();
+            journalChecksum.update(body);
+            if (body.length + CHECKSUM_PREFIX_LENGTH + 1 > journalBuffer.capacity()) {
+                journalBuffer = ByteBuffer.allocateDirect(Integer.highestOneBit(body.length + CHECKSUM_PREFIX_LENGTH) * 2);
+            }
+            journalBuffer.clear();
+            journalBuffer.put(CHECKSUM_MARKER);
+            putHex((int) journalChecksum.getValue(), journalBuffer);
+            journalBuffer.put((byte) '|').put(body).put((byte) '\n').flip();
+            // Hand each record to the OS right away but only fsync once per group
+            while (journalBuffer.hasRemaining()) {
+                journalChannel.write(journalBuffer);
+            }
+            HabitMetrics.get().bytesWritten(journalBuffer.limit());
+            writtenSequence = fileSequence;
+            journalPosition += journalBuffer.limit();
+            journalRecords++;
+            if (++unsyncedRecords >= SYNC_GROUP_SIZE) {
+                syncJournal();
+            }
+        } catch (IOException e) {
+            System.err.println("Error writing journal: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Takes the lock on habits.lock unless this instance already holds it.
+     * Where files cannot be locked, the store carries on as a single instance.
+     * @param catchUp Whether to read what other instances changed since this one last looked
+     * @return true if the lock was taken by this call and must be released by the caller
+     */
+    private boolean lockFiles(boolean catchUp) {
+        if (fileLock != null || lockingUnsupported) {
+            return false;
+        }
+        // Another instance in this process holding the file lock would make lock() throw instead of wait
+        processLock.acquireUninterruptibly();
+        try {
+            if (lockChannel == null) {
+                lockChannel = FileChannel.open(lockFile, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE);
+            }
+            fileLock = lockChannel.lock();
+        } catch (IOException | UnsupportedOperationException | OverlappingFileLockException e) {
+            processLock.release();
+            lockingUnsupported = true;
+            System.err.println("Error locking habits.lock, other instances will not see changes in time: " + e.getMessage());
+            return false;
+        }
+        if (catchUp) {
+            try {
+                catchUp();
+            } catch (IOException | RuntimeException e) {
+                System.err.println("Error reading changes of other instances: " + e.getMessage());
+            }
+        }
+        return true;
+    }
+
+    private void unlockFiles() {
+        if (fileLock == null) {
+            return;
+        }
+        try {
+            fileLock.release();
+        } catch (IOException e) {
+            System.err.println("Error unlocking habits.lock: " + e.getMessage());
+        }
+        fileLock = null;
+        processLock.release();
+    }
+
+    // Reads the records other instances wrote since this one last looked; must hold the file lock
+    private void catchUp() throws IOException {
+        LockState state = readLockFile();
+        writtenSequence = Math.max(writtenSequence, state.snapshotSequence());
+        if (state.generation() != generation) {
+            // The records the new snapshot folded in that this instance has not seen are in the previous journal
+            closeJournal();
+            boolean missedMore = state.generation() != generation + 1 || followJournal(previousJournalFile, journalPosition) < 0;
+            generation = state.generation();
+            journalPosition = 0;
+            if (missedMore && following) {
+                resync();
+                return;
+            }
+        }
+        long size = Files.exists(journalFile) ? Files.size(journalFile) : 0;
+        if (size < journalPosition) {
+            // Cut back by another instance
+            journalPosition = 0;
+            if (following) {
+                resync();
+                return;
+            }
+        }
+        if (size > journalPosition) {
+            journalPosition = Math.max(journalPosition, followJournal(journalFile, journalPosition));
+        }
+    }
+
+    // Collects the records of a journal after a position as changes of other instances
+    private long followJournal(Path file, long from) {
+        HabitParser parser = new HabitParser(DataManager::reportMalformedJournalLine);
+        return readJournal(file, from, 0, (lineNumber, type, payload) -> {
+            if (!following) {
+                // Nothing loaded to merge into; the sequences are all that matter
+                return;
+            }
+            switch (type) {
+                case "A", "U" -> {
+                    String[] parts = payload.split("\\|", 3);
+                    Habit habit = parser.parse(parts[2], lineNumber);
+                    if (habit != null) {
+                        habit.setId(Long.parseLong(parts[0]));
+                        habit.setHistory(CompletionHistory.fromString(parts[1]));
+                        maxHabitId = Math.max(maxHabitId, habit.getId());
+                        undeliveredChanges().put(habit);
+                    }
+                }
+                case "D" -> undeliveredChanges().delete(Long.parseLong(payload));
+                case "R" -> {
+                    long epochDay = Long.parseLong(payload);
+                    rolloverDay = Math.max(rolloverDay, epochDay);
+                    undeliveredChanges().rollover(epochDay);
+                }
+                default -> System.err.println("Unknown journal record: " + type);
+            }
+        });
+    }
+
+    // Lost track of the journal, so hand out the whole store for the app to compare against
+    private void resync() {
+        long sessionSequence = sequence;
+        long sessionRolloverDay = rolloverDay;
+        List<Habit> habits = readHabits();
+        sequence = Math.max(sequence, sessionSequence);
+        ExternalChanges changes = new ExternalChanges(true);
+        for (Habit habit : habits) {
+            changes.put(habit);
+        }
+        if (rolloverDay > sessionRolloverDay) {
+            changes.rollover(rolloverDay);
+        }
+        rolloverDay = Math.max(rolloverDay, sessionRolloverDay);
+        // The complete batch includes whatever was still waiting to be handed out
+        unsnapshotted.remove(undelivered);
+        undelivered = changes;
+        unsnapshotted.add(changes);
+    }
+
+    private ExternalChanges undeliveredChanges() {
+        if (undelivered == null) {
+            undelivered = new ExternalChanges(false);
+            unsnapshotted.add(undelivered);
+        }
+        return undelivered;
+    }
+
+    /**
+     * Writes a snapshot and starts the next generation, keeping the journal it
+     * replaces for instances that have not read all of it. Must hold the file lock.
+     * @return Size of the snapshot in bytes
+     */
+    private long writeSnapshot(List<Habit> habits, long snapshotSequence, long snapshotRolloverDay) throws IOException {
+        long fileSequence = Math.max(snapshotSequence, writtenSequence);
+        long bytes = HabitSnapshot.write(snapshotFile, habits, fileSequence, snapshotRolloverDay);
+        closeJournal();
+        if (Files.exists(journalFile)) {
+            Files.copy(journalFile, previousJournalFile, StandardCopyOption.REPLACE_EXISTING);
+        }
+        truncateJournal();
+        LockState state = readLockFile();
+        generation = state.generation() + 1;
+        writeLockFile(new LockState(generation, state.nextHabitId(), fileSequence));
+        journalPosition = 0;
+        writtenSequence = fileSequence;
+        return bytes;
+    }
+
+    private LockState readLockFile() throws IOException {
+        if (lockChannel == null) {
+            return new LockState(generation, 0, 0);
+        }
+        lockBuffer.clear();
+        while (lockBuffer.hasRemaining() && lockChannel.read(lockBuffer, lockBuffer.position()) > 0) {
+            // Read until the buffer is full or the file ends
+        }
+        if (lockBuffer.position() < LOCK_FILE_SIZE) {
+            // Created just now
+            return new LockState(0, 0, 0);
+        }
+        lockBuffer.flip();
+        return new LockState(lockBuffer.getLong(), lockBuffer.getLong(), lockBuffer.getLong());
+    }
+
+    private void writeLockFile(LockState state) throws IOException {
+        if (lockChannel == null) {
+            return;
+        }
+        lockBuffer.clear();
+        lockBuffer.putLong(state.generation()).putLong(state.nextHabitId()).putLong(state.snapshotSequence()).flip();
+        while (lockBuffer.hasRemaining()) {
+            lockChannel.write(lockBuffer, lockBuffer.position());
+        }
+    }
+
+    /**
+     * Replays the journal on top of a snapshot. A backup snapshot is older than
+     * habits.journal, so the records between it and the snapshot that replaced it
+     * are replayed from habits.journal.old first; records either snapshot already
+     * contains are skipped by their sequence.
+     */
+    private List<Habit> replayJournal(List<Habit> habits, long snapshotSequence, boolean withHistory, boolean fromBackup) {
+        Map<Long, Habit> byId = new LinkedHashMap<>();
+        for (Habit habit : habits) {
+            byId.put(habit.getId(), habit);
+        }
+        HabitParser parser = new HabitParser(DataManager::reportMalformedJournalLine);
+        RecordConsumer replay = (lineNumber, type, payload) -> {
+            // Add and update records carry the completion history ahead of the habit line
+            String[] parts = payload.split("\\|", withHistory ? 3 : 2);
+            long id = Long.parseLong(parts[0]);
+            switch (type) {
+                case "A", "U" -> {
+                    Habit habit = parser.parse(parts[parts.length - 1], lineNumber);
+                    if (habit != null) {
+                        habit.setId(id);
+                        if (withHistory) {
+                            habit.setHistory(CompletionHistory.fromString(parts[1]));
+                        }
+                        // Updating an existing key keeps its position in the map
+                        byId.put(id, habit);
+                    }
+                }
+                case "D" -> byId.remove(id);
+                case "R" -> rolloverDay = id;
+                default -> System.err.println("Unknown journal record: " + type);
+            }
+        };
+        if (fromBackup) {
+            readJournal(previousJournalFile, 0, snapshotSequence, replay);
+        }
+        readJournal(journalFile, 0, snapshotSequence, replay);
+        return new ArrayList<>(byId.values());
+    }
+
+    // Replays a journal written before habits had ids, where records hold list positions
+    // and names were not escaped yet
+    private List<Habit> replayIndexJournal(List<Habit> habits, long snapshotSequence) {
+        HabitParser parser = new HabitParser(DataManager::reportMalformedJournalLine, false);
+        readJournal(journalFile, 0, snapshotSequence, (lineNumber, type, payload) -> {
+            switch (type) {
+                case "A" -> {
+                    Habit habit = parser.parse(payload, lineNumber);
+                    if (habit != null) {
+                        habits.add(habit);
+                    }
+                }
+                case "U" -> {
+                    String[] parts = payload.split("\\|", 2);
+                    Habit habit = parser.parse(parts[1], lineNumber);
+                    if (habit != null) {
+                        habit.setId(habits.get(Integer.parseInt(parts[0])).getId());
+                        habits.set(Integer.parseInt(parts[0]), habit);
+                    }
+                }
+                case "D" -> habits.remove(Integer.parseInt(payload));
+                default -> System.err.println("Unknown journal record: " + type);
+            }
+        });
+        return habits;
+    }
+
+    /**
+     * Receives one journal record during replay.
+     */
+    private interface RecordConsumer {
+        void accept(int lineNumber, String type, String payload);
+    }
+
+    /**
+     * Reads the records of a journal from a position on. Records of habits.journal are
+     * counted towards compaction, and a damaged one is cut off there.
+     * @return Position after the last intact record, or -1 if the journal is missing or shorter than the position
+     */
+    private long readJournal(Path file, long from, long snapshotSequence, RecordConsumer recordConsumer) {
+        byte[] bytes;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < from) {
+                return -1;
+            }
+            bytes = new byte[Math.toIntExact(size - from)];
+            ByteBuffer buffer = ByteBuffer.wrap(bytes);
+            while (buffer.hasRemaining()) {
+                channel.read(buffer, from + buffer.position());
+            }
+        } catch (NoSuchFileException e) {
+            // No journal yet
+            return -1;
+        } catch (IOException e) {
+            System.err.println("Error replaying journal: " + e.getMessage());
+            return -1;
+        }
+        boolean counted = file.equals(journalFile);
+        CRC32C checksum = new CRC32C();
+        int lineNumber = 0;
+        for (int start = 0, end; start < bytes.length; start = end + 1) {
+            end = start;
+            while (end < bytes.length && bytes[end] != '\n') {
+                end++;
+            }
+            lineNumber++;
             String line;
-            while ((line = reader.readLine()) != null) {
-                Habit habit = Habit.fromString(line);
-                if (habit != null) {
-                    habits.add(habit);
+            if (bytes[start] == CHECKSUM_MARKER) {
+                // A checksummed record that was cut off or does not verify ends the intact part of the journal
+                if (end == bytes.length || !verifyRecord(bytes, start, end, checksum)) {
+                    if (counted) {
+                        recoverJournal(bytes, from, start, end, lineNumber);
+                    }
+                    return from + start;
+                }
+                line = new String(bytes, start + CHECKSUM_PREFIX_LENGTH, end - start - CHECKSUM_PREFIX_LENGTH, StandardCharsets.UTF_8);
+            } else {
+                // Written before records were checksummed
+                line = new String(bytes, start, end - start, StandardCharsets.UTF_8);
+            }
+            String[] parts = line.split("\\|", 3);
+            if (parts.length < 3) {
+                reportMalformedJournalLine(lineNumber, line, "incomplete record");
+                continue;
+            }
+            // A bad record is reported and skipped so the rest of the journal still applies
+            try {
+                long recordSequence = Long.parseLong(parts[0]);
+                if (counted) {
+                    journalRecords++;
                 }
+                sequence = Math.max(sequence, recordSequence);
+                writtenSequence = Math.max(writtenSequence, recordSequence);
+                // Records already folded into the snapshot are skipped
+                if (recordSequence <= snapshotSequence) {
+                    continue;
+                }
+                recordConsumer.accept(lineNumber, parts[1], parts[2]);
+            } catch (RuntimeException e) {
+                reportMalformedJournalLine(lineNumber, line, e.toString());
+            }
+        }
+        return from + bytes.length;
+    }
+
+    private static boolean verifyRecord(byte[] bytes, int start, int end, CRC32C checksum) {
+        if (end - start < CHECKSUM_PREFIX_LENGTH || bytes[start + CHECKSUM_PREFIX_LENGTH - 1] != '|') {
+            return false;
+        }
+        int expected = 0;
+        for (int i = start + 1; i < start + CHECKSUM_PREFIX_LENGTH - 1; i++) {
+            int digit = Character.digit(bytes[i], 16);
+            if (digit < 0) {
+                return false;
+            }
+            expected = expected << 4 | digit;
+        }
+        checksum.reset();
+        checksum.update(bytes, start + CHECKSUM_PREFIX_LENGTH, end - start - CHECKSUM_PREFIX_LENGTH);
+        return (int) checksum.getValue() == expected;
+    }
+
+    /**
+     * Cuts the journal back to the records before a damaged one so new records are
+     * appended after the last intact record. A journal damaged anywhere but in its
+     * final record is copied to habits.journal.corrupt first.
+     */
+    private void recoverJournal(byte[] bytes, long from, int validLength, int damagedEnd, int lineNumber) {
+        boolean tornTail = damagedEnd >= bytes.length - 1;
+        System.err.println("habits.journal:" + lineNumber + ": " + (tornTail ? "last record was cut off" : "damaged record")
+            + "; recovering the journal up to the previous record");
+        try {
+            if (!tornTail) {
+                Files.write(journalFile.resolveSibling("habits.journal.corrupt"), bytes);
+            }
+            try (FileChannel channel = FileChannel.open(journalFile, StandardOpenOption.WRITE)) {
+                channel.truncate(from + validLength);
+                channel.force(false);
             }
         } catch (IOException e) {
-            System.err.println("Error loading habits: " + e.getMessage());
+            System.err.println("Error recovering journal: " + e.getMessage());
+        }
+    }
+
+    private static void putHex(int value, ByteBuffer buffer) {
+        for (int shift = 28; shift >= 0; shift -= 4) {
+            buffer.put((byte) Character.forDigit((value >>> shift) & 0xF, 16));
+        }
+    }
+
+    private static void reportMalformedJournalLine(int lineNumber, String line, String reason) {
+        System.err.println("habits.journal:" + lineNumber + ": skipping malformed record (" + reason + "): " + line);
+    }
+
+    private static void assignMissingIds(List<Habit> habits) {
+        long maxId = 0;
+        for (Habit habit : habits) {
+            maxId = Math.max(maxId, habit.getId());
+        }
+        for (Habit habit : habits) {
+            if (habit.getId() == 0) {
+                habit.setId(++maxId);
+            }
+        }
+    }
+
+    // Exports are written with escapes; habits.txt of the text store predates them
+    private static HabitSnapshot.Contents readText(Path file, boolean escaped) throws IOException {
+        CharBuffer text = StandardCharsets.UTF_8.decode(ByteBuffer.wrap(Files.readAllBytes(file)));
+        long textSequence = 0;
+        int firstLineNumber = 1;
+        // Files written by the journal-era text store start with a sequence header line
+        if (text.length() > SEQUENCE_HEADER.length() && text.subSequence(0, SEQUENCE_HEADER.length()).toString().equals(SEQUENCE_HEADER)) {
+            int headerEnd = 0;
+            while (headerEnd < text.length() && text.charAt(headerEnd) != '\n') {
+                headerEnd++;
+            }
+            textSequence = Long.parseLong(text.subSequence(SEQUENCE_HEADER.length(), headerEnd).toString().trim());
+            text.position(Math.min(headerEnd + 1, text.limit()));
+            firstLineNumber = 2;
+        }
+        List<Habit> habits = new ArrayList<>();
+        HabitParser parser = new HabitParser((lineNumber, line, reason) ->
+            System.err.println(file.getFileName() + ":" + lineNumber + ": skipping malformed habit (" + reason + "): " + line), escaped);
+        parser.parseAll(text, firstLineNumber, habits::add);
+        return new HabitSnapshot.Contents(habits, textSequence, 0, 0);
+    }
+
+    private void migrateTextFile() {
+        try {
+            HabitSnapshot.Contents contents = readText(textFile, false);
+            sequence = contents.sequence();
+            List<Habit> habits = replayIndexJournal(contents.habits(), contents.sequence());
+            assignMissingIds(habits);
+            writeSnapshot(habits, sequence, 0);
+            Files.move(textFile, textFile.resolveSibling("habits.txt.bak"), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Error migrating habits.txt: " + e.getMessage());
+        }
+    }
+
+    private void truncateJournal() {
+        try {
+            if (journalChannel != null) {
+                journalChannel.close();
+                journalChannel = null;
+            }
+            try (FileChannel channel = FileChannel.open(journalFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                channel.force(false);
+            }
+            journalRecords = 0;
+            unsyncedRecords = 0;
+        } catch (IOException e) {
+            System.err.println("Error truncating journal: " + e.getMessage());
         }
-        return habits;
     }
 }
@@ -0,0 +1,71 @@
+package com.habittracker;
+
+/**
+ * EdtMonitor.java
+ * Times every event the Swing event dispatch thread handles and reports stalls.
+ *
+ * Installs an event queue that measures each dispatch into the "edt.dispatch"
+ * histogram of {@link HabitMetrics}. A dispatch that runs longer than the stall
+ * threshold (100 ms, or -Dhabittracker.edtStallMillis=<ms>) is counted as an
+ * EDT stall and recorded as a com.habittracker.EdtStall flight recorder event
+ * carrying its duration and the task or event type that froze the window.
+ */
+import java.awt.AWTEvent;
+import java.awt.EventQueue;
+import java.awt.Toolkit;
+import java.awt.event.InvocationEvent;
+import java.util.concurrent.TimeUnit;
+
+public final class EdtMonitor extends EventQueue {
+    private static final long STALL_NANOS = TimeUnit.MILLISECONDS.toNanos(Long.getLong("habittracker.edtStallMillis", 100));
+    private static boolean installed;
+
+    private final LatencyHistogram dispatchLatency = HabitMetrics.get().histogram("edt.dispatch");
+
+    private EdtMonitor() {
+    }
+
+    /**
+     * Starts monitoring the event dispatch thread. Calling it again has no effect.
+     */
+    public static synchronized void install() {
+        if (!installed) {
+            Toolkit.getDefaultToolkit().getSystemEventQueue().push(new EdtMonitor());
+            installed = true;
+        }
+    }
+
+    @Override
+    protected void dispatchEvent(AWTEvent event) {
+        HabitMetrics.EdtStallEvent stall = HabitMetrics.recording() ? new HabitMetrics.EdtStallEvent() : null;
+        if (stall != null) {
+            stall.begin();
+        }
+        long start = System.nanoTime();
+        try {
+            super.dispatchEvent(event);
+        } finally {
+            long elapsed = System.nanoTime() - start;
+            dispatchLatency.record(elapsed);
+            if (elapsed >= STALL_NANOS) {
+                if (stall != null) {
+                    stall.end();
+                }
+                HabitMetrics.get().edtStall(elapsed, describe(event), stall);
+            }
+        }
+    }
+
+    private static String describe(AWTEvent event) {
+        // invokeLater tasks are all InvocationEvents; the runnable's class says which one it was
+        if (event instanceof InvocationEvent invocation) {
+            String text = invocation.paramString();
+            int runnable = text.indexOf("runnable=");
+            if (runnable >= 0) {
+                int end = text.indexOf(',', runnable);
+                return text.substring(runnable + "runnable=".length(), end < 0 ? text.length() : end);
+            }
+        }
+        return event.getClass().getName();
+    }
+}
@@ -0,0 +1,173 @@
+package com.habittracker;
+
+/**
+ * ExternalChanges.java
+ * Changes another process made to a shared {@link HabitStore}, collected by the
+ * store and applied to this process's habits.
+ *
+ * Each habit is kept once, with the last state the other process wrote. A
+ * change this process overwrites on disk before the batch is applied is
+ * dropped from the batch, and a change to a habit this process has changed
+ * but not yet written is skipped when the batch is applied, so in both cases
+ * this process's own, later change wins in memory just as it does on disk.
+ *
+ * The store keeps every batch until a snapshot this process saved contains
+ * it. A snapshot taken before the batch was applied is patched with it, so
+ * saving never drops another process's change.
+ */
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.LongPredicate;
+
+public final class ExternalChanges {
+    /**
+     * What applying a batch changed in the repository.
+     * @param added Habits that were added
+     * @param updated Existing habits whose values were replaced
+     * @param removed Habits that were removed
+     * @param rolloverDay Day the other process rolled over to, or 0 if it did not
+     */
+    public record Applied(List<Habit> added, List<Habit> updated, List<Habit> removed, long rolloverDay) {
+        public boolean isEmpty() {
+            return added.isEmpty() && updated.isEmpty() && removed.isEmpty() && rolloverDay == 0;
+        }
+
+        public int size() {
+            return added.size() + updated.size() + removed.size();
+        }
+    }
+
+    private final boolean complete;
+    private final Map<Long, Habit> changed = new LinkedHashMap<>();
+    private final Set<Long> deleted = new HashSet<>();
+    // Habits this process wrote after a complete batch was read, which the batch must not remove
+    private final Set<Long> superseded = new HashSet<>();
+    private long rolloverDay;
+    private long appliedSequence = Long.MAX_VALUE;
+
+    /**
+     * Constructor for ExternalChanges.
+     * @param complete true if the batch will hold every habit in the store, so
+     *                 that habits missing from it were deleted
+     */
+    ExternalChanges(boolean complete) {
+        this.complete = complete;
+    }
+
+    public synchronized boolean isEmpty() {
+        return !complete && changed.isEmpty() && deleted.isEmpty() && rolloverDay == 0;
+    }
+
+    synchronized long rolloverDay() {
+        return rolloverDay;
+    }
+
+    synchronized void put(Habit habit) {
+        deleted.remove(habit.getId());
+        changed.put(habit.getId(), habit);
+    }
+
+    synchronized void delete(long id) {
+        changed.remove(id);
+        deleted.add(id);
+    }
+
+    synchronized void rollover(long epochDay) {
+        rolloverDay = Math.max(rolloverDay, epochDay);
+    }
+
+    /**
+     * Drops a habit from the batch because this process wrote it afterwards.
+     * Does nothing once the batch has been applied, since the write then
+     * came after the batch in memory as well.
+     * @param id Id of the habit this process wrote
+     */
+    synchronized void supersede(long id) {
+        if (appliedSequence != Long.MAX_VALUE) {
+            return;
+        }
+        changed.remove(id);
+        deleted.remove(id);
+        if (complete) {
+            superseded.add(id);
+        }
+    }
+
+    /**
+     * Returns whether the batch was applied before a snapshot was taken.
+     * @param snapshotSequence Sequence the snapshot was taken at
+     * @return true if the snapshot already contains the batch
+     */
+    synchronized boolean isAppliedBy(long snapshotSequence) {
+        return appliedSequence <= snapshotSequence;
+    }
+
+    /**
+     * Applies the batch to a snapshot that was taken without it.
+     * @param byId Habits of the snapshot by id, updated in place
+     */
+    synchronized void patch(Map<Long, Habit> byId) {
+        if (complete) {
+            byId.keySet().removeIf(id -> !changed.containsKey(id) && !superseded.contains(id));
+        }
+        byId.putAll(changed);
+        byId.keySet().removeAll(deleted);
+    }
+
+    /**
+     * Applies the batch to the habits of this process.
+     * Must be called on the thread that owns the habits.
+     * @param repository Habits to update
+     * @param changedLocally Tells whether this process has a change to a habit that is not written yet
+     * @param sequence Sequence reserved when applying, so later snapshots know they contain the batch
+     * @return What changed in the repository
+     */
+    synchronized Applied applyTo(HabitRepository repository, LongPredicate changedLocally, long sequence) {
+        List<Habit> added = new ArrayList<>();
+        List<Habit> updated = new ArrayList<>();
+        List<Habit> removed = new ArrayList<>();
+        for (Habit habit : changed.values()) {
+            if (changedLocally.test(habit.getId())) {
+                continue;
+            }
+            Habit existing = repository.get(habit.getId());
+            if (existing == null) {
+                Habit copy = habit.copy();
+                repository.add(copy);
+                added.add(copy);
+            } else {
+                existing.setName(habit.getName());
+                existing.setCategory(habit.getCategory());
+                existing.setCompletedToday(habit.isCompletedToday());
+                existing.setStreak(habit.getStreak());
+                existing.setHistory(habit.getHistory().copy());
+                existing.setSchedule(habit.getSchedule());
+                updated.add(existing);
+            }
+        }
+        Collection<Long> removedIds = deleted;
+        if (complete) {
+            removedIds = new ArrayList<>();
+            for (Habit habit : repository.all()) {
+                if (!changed.containsKey(habit.getId()) && !superseded.contains(habit.getId())) {
+                    removedIds.add(habit.getId());
+                }
+            }
+        }
+        for (long id : removedIds) {
+            if (!changedLocally.test(id)) {
+                Habit habit = repository.remove(id);
+                if (habit != null) {
+                    removed.add(habit);
+                }
+            }
+        }
+        appliedSequence = sequence;
+        return new Applied(added, updated, removed, rolloverDay);
+    }
+}
@@ -0,0 +1,60 @@
+package com.habittracker;
+
+/**
+ * FadingLabel.java
+ * Label that briefly dims and fades back in whenever its text changes.
+ *
+ * The fade runs on the shared {@link AnimationScheduler}, so it costs nothing
+ * once it has finished and is skipped when motion is reduced.
+ */
+import java.awt.AlphaComposite;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import javax.swing.JLabel;
+
+public class FadingLabel extends JLabel {
+    private static final long serialVersionUID = 1L;
+    private static final float DIMMED_ALPHA = 0.7f;
+    private static final long FADE_MILLIS = 180;
+
+    private float alpha = 1.0f;
+    private transient AnimationScheduler.Handle fade;
+
+    @Override
+    public void setText(String text) {
+        String oldText = getText();
+        super.setText(text);
+        if (text == null || text.equals(oldText) || !isDisplayable()) {
+            return;
+        }
+        if (fade != null) {
+            fade.cancel();
+        }
+        fade = AnimationScheduler.shared().animate(FADE_MILLIS, progress -> {
+            alpha = DIMMED_ALPHA + (float) progress * (1.0f - DIMMED_ALPHA);
+            repaint();
+        });
+    }
+
+    @Override
+    public void removeNotify() {
+        if (fade != null) {
+            fade.cancel();
+            fade = null;
+            alpha = 1.0f;
+        }
+        super.removeNotify();
+    }
+
+    @Override
+    protected void paintComponent(Graphics g) {
+        if (alpha >= 1.0f) {
+            super.paintComponent(g);
+            return;
+        }
+        Graphics2D g2d = (Graphics2D) g.create();
+        g2d.setComposite(AlphaComposite.getInstance(AlphaComposite.SRC_OVER, alpha));
+        super.paintComponent(g2d);
+        g2d.dispose();
+    }
+}
@@ -0,0 +1,55 @@
+package com.habittracker;
+
+/**
+ * GradientPanel.java
+ * Panel with a vertical gradient background.
+ *
+ * The gradient only varies from top to bottom, so it is rendered once into an
+ * image one pixel wide and stretched across the panel. The image is rebuilt
+ * only when the panel height changes. The image covers every pixel, so the
+ * panel stays opaque and Swing never paints what lies behind it.
+ */
+import java.awt.Color;
+import java.awt.GradientPaint;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.LayoutManager;
+import java.awt.image.BufferedImage;
+import javax.swing.JPanel;
+
+public class GradientPanel extends JPanel {
+    private static final long serialVersionUID = 1L;
+
+    private final Color top;
+    private final Color bottom;
+    private transient BufferedImage gradient;
+
+    /**
+     * Constructor for GradientPanel.
+     * @param layout Layout of the panel
+     * @param top Color at the top edge
+     * @param bottom Color at the bottom edge
+     */
+    public GradientPanel(LayoutManager layout, Color top, Color bottom) {
+        super(layout);
+        this.top = top;
+        this.bottom = bottom;
+    }
+
+    @Override
+    protected void paintComponent(Graphics g) {
+        super.paintComponent(g);
+        int h = getHeight();
+        if (h <= 0) {
+            return;
+        }
+        if (gradient == null || gradient.getHeight() != h) {
+            gradient = new BufferedImage(1, h, BufferedImage.TYPE_INT_RGB);
+            Graphics2D g2d = gradient.createGraphics();
+            g2d.setPaint(new GradientPaint(0, 0, top, 0, h, bottom));
+            g2d.fillRect(0, 0, 1, h);
+            g2d.dispose();
+        }
+        g.drawImage(gradient, 0, 0, getWidth(), h, null);
+    }
+}
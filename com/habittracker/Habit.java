@@ -5,11 +5,40 @@ package com.habittracker;
  * Habit.java
  * Represents a single habit with its properties.
  */
+import java.util.Objects;
+
 public class Habit {
+    private long id;
     private String name;
     private String category;
     private boolean completedToday;
     private int streak;
+    private CompletionHistory history = new CompletionHistory();
+    private HabitSchedule schedule;
+    private Listener listener;
+
+    /**
+     * Receives changes to the fields that aggregates such as {@link HabitStats} depend on.
+     */
+    public interface Listener {
+        void nameChanged(Habit habit, String oldName);
+
+        void categoryChanged(Habit habit, String oldCategory);
+
+        void completedTodayChanged(Habit habit, boolean oldCompletedToday);
+
+        void streakChanged(Habit habit, int oldStreak);
+
+        /**
+         * Called when the whole history is replaced; single days set through
+         * {@link #complete} come with a completedToday change instead.
+         */
+        default void historyChanged(Habit habit) {
+        }
+
+        default void scheduleChanged(Habit habit, HabitSchedule oldSchedule) {
+        }
+    }
 
     /**
      * Constructor for Habit class.
@@ -25,13 +54,67 @@ public class Habit {
         this.streak = streak;
     }
 
+    /**
+     * Returns an independent copy of this habit, safe to hand to another thread.
+     * @return Copy of the habit
+     */
+    public Habit copy() {
+        Habit copy = new Habit(name, category, completedToday, streak);
+        copy.id = id;
+        copy.history = history.copy();
+        copy.schedule = schedule;
+        return copy;
+    }
+
+    /**
+     * Marks the habit as completed on a day and extends its streak.
+     * @param epochDay Day as returned by LocalDate.toEpochDay()
+     * @return false if the habit was already completed today
+     */
+    public boolean complete(long epochDay) {
+        if (completedToday) {
+            return false;
+        }
+        setCompletedToday(true);
+        setStreak(streak + 1);
+        history.set(epochDay, true);
+        return true;
+    }
+
+    /**
+     * Sets the listener notified of changes to this habit; copies do not inherit it.
+     * @param listener Listener to notify, or null to stop notifying
+     */
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    public Listener getListener() {
+        return listener;
+    }
+
     // Getters and setters
+    /**
+     * Returns the stable id of the habit, or 0 if it has not been stored yet.
+     */
+    public long getId() {
+        return id;
+    }
+
+    public void setId(long id) {
+        this.id = id;
+    }
+
     public String getName() {
         return name;
     }
 
     public void setName(String name) {
+        String oldName = this.name;
         this.name = name;
+        if (listener != null && !oldName.equals(name)) {
+            listener.nameChanged(this, oldName);
+        }
     }
 
     public String getCategory() {
@@ -39,7 +122,11 @@ public class Habit {
     }
 
     public void setCategory(String category) {
+        String oldCategory = this.category;
         this.category = category;
+        if (listener != null && !oldCategory.equals(category)) {
+            listener.categoryChanged(this, oldCategory);
+        }
     }
 
     public boolean isCompletedToday() {
@@ -47,7 +134,11 @@ public class Habit {
     }
 
     public void setCompletedToday(boolean completedToday) {
+        boolean oldCompletedToday = this.completedToday;
         this.completedToday = completedToday;
+        if (listener != null && oldCompletedToday != completedToday) {
+            listener.completedTodayChanged(this, oldCompletedToday);
+        }
     }
 
     public int getStreak() {
@@ -55,32 +146,61 @@ public class Habit {
     }
 
     public void setStreak(int streak) {
+        int oldStreak = this.streak;
         this.streak = streak;
+        if (listener != null && oldStreak != streak) {
+            listener.streakChanged(this, oldStreak);
+        }
+    }
+
+    /**
+     * Returns the days on which the habit was completed.
+     */
+    public CompletionHistory getHistory() {
+        return history;
+    }
+
+    public void setHistory(CompletionHistory history) {
+        this.history = history;
+        if (listener != null) {
+            listener.historyChanged(this);
+        }
+    }
+
+    /**
+     * Returns the days the habit is meant to be done on and when to remind of it.
+     * @return Schedule, or null if the habit has none
+     */
+    public HabitSchedule getSchedule() {
+        return schedule;
+    }
+
+    public void setSchedule(HabitSchedule schedule) {
+        HabitSchedule oldSchedule = this.schedule;
+        this.schedule = schedule;
+        if (listener != null && !Objects.equals(oldSchedule, schedule)) {
+            listener.scheduleChanged(this, oldSchedule);
+        }
     }
 
     /**
      * Returns a string representation of the habit for saving to file.
-     * Format: Name|Category|CompletedToday|Streak
+     * Format: Name|Category|CompletedToday|Streak, with pipes, line breaks and
+     * backslashes in the name and category escaped by {@link HabitParser#escape},
+     * followed by |Schedule if the habit has a schedule.
      */
     @Override
     public String toString() {
-        return name + "|" + category + "|" + completedToday + "|" + streak;
+        String line = HabitParser.escape(name) + "|" + HabitParser.escape(category) + "|" + completedToday + "|" + streak;
+        return schedule == null ? line : line + "|" + schedule;
     }
 
     /**
      * Creates a Habit object from a string representation.
-     * @param data String in format: Name|Category|CompletedToday|Streak
-     * @return Habit object
+     * @param data String in format: Name|Category|CompletedToday|Streak[|Schedule]
+     * @return Habit object, or null if the string is malformed
      */
     public static Habit fromString(String data) {
-        String[] parts = data.split("\\|");
-        if (parts.length == 4) {
-            String name = parts[0];
-            String category = parts[1];
-            boolean completedToday = Boolean.parseBoolean(parts[2]);
-            int streak = Integer.parseInt(parts[3]);
-            return new Habit(name, category, completedToday, streak);
-        }
-        return null;
+        return new HabitParser(null).parse(data, 1);
     }
 }
@@ -0,0 +1,327 @@
+package com.habittracker;
+
+/**
+ * HabitAnalytics.java
+ * Completion trends computed from the habits' histories: completion rates per
+ * category over the last week, month and year, how current and longest streaks
+ * are distributed, which weekdays habits get done on, and which habits tend to
+ * be done on the same days.
+ *
+ * A report only reads the habits, so it is computed in parallel chunks for
+ * large stores, each chunk counting into its own tally before the tallies are
+ * merged. Counts come from the history bit words: a window of a habit's
+ * history is fetched as words aligned to the window's first day and counted
+ * with bit masks, a word (64 days) at a time.
+ *
+ * An instance caches the last report of a {@link HabitRepository} and hands it
+ * out again until the repository's version or the day changes.
+ */
+import java.time.DayOfWeek;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+public final class HabitAnalytics {
+    /** Lengths of the windows completion rates are computed over, in days, ending today. */
+    public static final int[] WINDOWS = {7, 30, 365};
+    /** Inclusive upper bounds of the streak distribution buckets. */
+    public static final int[] STREAK_BUCKETS = {0, 2, 6, 13, 29, 89, 364, Integer.MAX_VALUE};
+    // Weekday rates cover whole weeks so every weekday is counted equally often
+    private static final int WEEKDAY_DAYS = 52 * 7;
+    // Habits are compared over the recent past only, as routines drift
+    private static final int CORRELATION_DAYS = 90;
+    // Stores at least this large compute their reports in parallel
+    private static final int PARALLEL_THRESHOLD = 1_000;
+    private static final int CHUNK_SIZE = 512;
+
+    /**
+     * Completion rates of one category.
+     * @param category Category name
+     * @param habits Number of habits in the category
+     * @param rates Fraction of habit-days completed in each of the {@link #WINDOWS}
+     */
+    public record CategoryRates(String category, int habits, double[] rates) {
+    }
+
+    /**
+     * Completion trends of a set of habits.
+     * @param today Day the report was computed for
+     * @param habits Number of habits
+     * @param rates Fraction of habit-days completed in each of the {@link #WINDOWS}
+     * @param categories Rates per category, by category name
+     * @param currentStreaks Number of habits whose current streak falls in each of the {@link #STREAK_BUCKETS}
+     * @param longestStreaks Number of habits whose longest streak falls in each of the {@link #STREAK_BUCKETS}
+     * @param weekdayRates Fraction of habit-days completed on each weekday over the last 52 weeks, Monday first
+     */
+    public record Report(long today, int habits, double[] rates, List<CategoryRates> categories,
+            int[] currentStreaks, int[] longestStreaks, double[] weekdayRates) {
+        public DayOfWeek bestWeekday() {
+            int best = 0;
+            for (int day = 1; day < 7; day++) {
+                if (weekdayRates[day] > weekdayRates[best]) {
+                    best = day;
+                }
+            }
+            return DayOfWeek.of(best + 1);
+        }
+
+        public DayOfWeek worstWeekday() {
+            int worst = 0;
+            for (int day = 1; day < 7; day++) {
+                if (weekdayRates[day] < weekdayRates[worst]) {
+                    worst = day;
+                }
+            }
+            return DayOfWeek.of(worst + 1);
+        }
+    }
+
+    /**
+     * How closely another habit follows a habit from day to day.
+     * @param habit The other habit
+     * @param coefficient Phi coefficient between -1 (never on the same days) and 1 (always on the same days)
+     */
+    public record Correlation(Habit habit, double coefficient) {
+    }
+
+    /**
+     * Counts gathered from one chunk of habits, merged into the report.
+     */
+    private static final class Tally {
+        // Per category and overall: habit count, then completions in each window
+        private final Map<String, long[]> categories = new HashMap<>();
+        private final long[] overall = new long[WINDOWS.length + 1];
+        private final int[] currentStreaks = new int[STREAK_BUCKETS.length];
+        private final int[] longestStreaks = new int[STREAK_BUCKETS.length];
+        private final long[] weekdays = new long[7];
+
+        Tally merge(Tally other) {
+            other.categories.forEach((category, counts) -> add(categories.computeIfAbsent(category, key -> new long[counts.length]), counts));
+            add(overall, other.overall);
+            for (int i = 0; i < STREAK_BUCKETS.length; i++) {
+                currentStreaks[i] += other.currentStreaks[i];
+                longestStreaks[i] += other.longestStreaks[i];
+            }
+            add(weekdays, other.weekdays);
+            return this;
+        }
+
+        private static void add(long[] into, long[] counts) {
+            for (int i = 0; i < counts.length; i++) {
+                into[i] += counts[i];
+            }
+        }
+    }
+
+    private final HabitRepository repository;
+    private Report report;
+    private long reportVersion;
+
+    /**
+     * Constructor for HabitAnalytics.
+     * @param repository Habits to report on
+     */
+    public HabitAnalytics(HabitRepository repository) {
+        this.repository = repository;
+    }
+
+    /**
+     * Describes a streak bucket for display.
+     * @param bucket Index into {@link #STREAK_BUCKETS}
+     * @return Range of streak lengths, such as "3-6" or "365+"
+     */
+    public static String streakBucketLabel(int bucket) {
+        int from = bucket == 0 ? 0 : STREAK_BUCKETS[bucket - 1] + 1;
+        int to = STREAK_BUCKETS[bucket];
+        if (to == Integer.MAX_VALUE) {
+            return from + "+";
+        }
+        return from == to ? String.valueOf(from) : from + "-" + to;
+    }
+
+    /**
+     * Returns the report for a day, computing it unless the cached one is still current.
+     * Must be called on the thread that owns the habits, or with them locked.
+     * @param today Day to report on
+     * @return The report
+     */
+    public synchronized Report report(long today) {
+        Report cached = cachedReport(today);
+        if (cached != null) {
+            return cached;
+        }
+        long version = repository.version();
+        Report computed = compute(repository.all(), today);
+        cache(computed, version);
+        return computed;
+    }
+
+    /**
+     * Returns the cached report if the habits have not changed since it was computed.
+     * @param today Day the report must be for
+     * @return The report, or null if it has to be computed
+     */
+    public synchronized Report cachedReport(long today) {
+        return report != null && report.today() == today && reportVersion == repository.version() ? report : null;
+    }
+
+    /**
+     * Caches a report computed elsewhere, for example from copies of the habits.
+     * @param report The report
+     * @param version {@link HabitRepository#version()} of the habits it was computed from
+     */
+    public synchronized void cache(Report report, long version) {
+        this.report = report;
+        this.reportVersion = version;
+    }
+
+    /**
+     * Computes the report of a set of habits.
+     * The habits must not change meanwhile.
+     * @param habits Habits to report on
+     * @param today Day to report on
+     * @return The report
+     */
+    public static Report compute(Collection<Habit> habits, long today) {
+        Habit[] array = habits.toArray(new Habit[0]);
+        long[][] weekdayMasks = weekdayMasks(today - WEEKDAY_DAYS + 1, WEEKDAY_DAYS);
+        int chunks = (array.length + CHUNK_SIZE - 1) / CHUNK_SIZE;
+        IntStream chunkIndexes = IntStream.range(0, chunks);
+        if (array.length >= PARALLEL_THRESHOLD) {
+            chunkIndexes = chunkIndexes.parallel();
+        }
+        Tally tally = chunkIndexes.mapToObj(chunk -> {
+            Tally chunkTally = new Tally();
+            int end = Math.min(array.length, (chunk + 1) * CHUNK_SIZE);
+            for (int i = chunk * CHUNK_SIZE; i < end; i++) {
+                count(array[i], today, weekdayMasks, chunkTally);
+            }
+            return chunkTally;
+        }).reduce(Tally::merge).orElseGet(Tally::new);
+
+        List<CategoryRates> categories = new ArrayList<>();
+        for (Map.Entry<String, long[]> entry : new TreeMap<>(tally.categories).entrySet()) {
+            long[] counts = entry.getValue();
+            categories.add(new CategoryRates(entry.getKey(), (int) counts[0], rates(counts)));
+        }
+        double[] weekdayRates = new double[7];
+        for (int day = 0; day < 7; day++) {
+            weekdayRates[day] = array.length == 0 ? 0 : (double) tally.weekdays[day] / ((long) array.length * (WEEKDAY_DAYS / 7));
+        }
+        return new Report(today, array.length, rates(tally.overall), categories,
+            tally.currentStreaks, tally.longestStreaks, weekdayRates);
+    }
+
+    /**
+     * Finds the habits whose completions follow a habit's most closely over the last 90 days.
+     * The habits must not change meanwhile.
+     * @param habit Habit to compare the others with
+     * @param habits Habits to search, which may include the habit itself
+     * @param today Last day to compare
+     * @param limit Largest number of habits to return
+     * @return The most strongly correlated habits, positively or negatively, strongest first
+     */
+    public static List<Correlation> correlations(Habit habit, Collection<Habit> habits, long today, int limit) {
+        long from = today - CORRELATION_DAYS + 1;
+        long[] words = habit.getHistory().wordsFrom(from, CORRELATION_DAYS);
+        int completed = bitCount(words);
+        // A habit done every day or never has nothing to correlate
+        if (completed == 0 || completed == CORRELATION_DAYS) {
+            return List.of();
+        }
+        Stream<Habit> others = habits.size() >= PARALLEL_THRESHOLD ? habits.parallelStream() : habits.stream();
+        return others
+            .filter(other -> other.getId() != habit.getId())
+            .map(other -> correlate(words, completed, other, from))
+            .filter(correlation -> correlation != null && correlation.coefficient() != 0)
+            .sorted(Comparator.comparingDouble((Correlation correlation) -> Math.abs(correlation.coefficient())).reversed())
+            .limit(limit)
+            .toList();
+    }
+
+    private static void count(Habit habit, long today, long[][] weekdayMasks, Tally tally) {
+        CompletionHistory history = habit.getHistory();
+        long[] counts = tally.categories.computeIfAbsent(habit.getCategory(), category -> new long[WINDOWS.length + 1]);
+        counts[0]++;
+        tally.overall[0]++;
+        for (int i = 0; i < WINDOWS.length; i++) {
+            int completed = history.countCompleted(today - WINDOWS[i] + 1, today);
+            counts[i + 1] += completed;
+            tally.overall[i + 1] += completed;
+        }
+        // A run in the history is current until the day after it ends, when today may still extend it
+        int historyStreak = Math.max(history.streakEndingOn(today), history.streakEndingOn(today - 1));
+        tally.currentStreaks[bucket(Math.max(habit.getStreak(), historyStreak))]++;
+        // Streaks from before histories were kept may be longer than the history shows
+        tally.longestStreaks[bucket(Math.max(habit.getStreak(), history.longestStreak()))]++;
+        long[] words = history.wordsFrom(today - WEEKDAY_DAYS + 1, WEEKDAY_DAYS);
+        for (int day = 0; day < 7; day++) {
+            long[] mask = weekdayMasks[day];
+            int completed = 0;
+            for (int i = 0; i < words.length; i++) {
+                completed += Long.bitCount(words[i] & mask[i]);
+            }
+            tally.weekdays[day] += completed;
+        }
+    }
+
+    private static Correlation correlate(long[] words, int completed, Habit other, long from) {
+        long[] otherWords = other.getHistory().wordsFrom(from, CORRELATION_DAYS);
+        int otherCompleted = bitCount(otherWords);
+        if (otherCompleted == 0 || otherCompleted == CORRELATION_DAYS) {
+            return null;
+        }
+        int both = 0;
+        for (int i = 0; i < words.length; i++) {
+            both += Long.bitCount(words[i] & otherWords[i]);
+        }
+        double n = CORRELATION_DAYS;
+        double coefficient = (both * n - (double) completed * otherCompleted)
+            / Math.sqrt((double) completed * (n - completed) * otherCompleted * (n - otherCompleted));
+        return new Correlation(other, coefficient);
+    }
+
+    /**
+     * Builds a mask per weekday, Monday first, selecting that weekday's bits
+     * in words returned by {@link CompletionHistory#wordsFrom} for the range.
+     */
+    private static long[][] weekdayMasks(long fromEpochDay, int days) {
+        // Epoch day 0 was a Thursday
+        long[][] masks = new long[7][(days + 63) >>> 6];
+        for (int bit = 0; bit < days; bit++) {
+            int day = Math.floorMod(fromEpochDay + bit + 3, 7);
+            masks[day][bit >>> 6] |= 1L << bit;
+        }
+        return masks;
+    }
+
+    private static double[] rates(long[] counts) {
+        double[] rates = new double[WINDOWS.length];
+        for (int i = 0; i < WINDOWS.length; i++) {
+            rates[i] = counts[0] == 0 ? 0 : (double) counts[i + 1] / (counts[0] * WINDOWS[i]);
+        }
+        return rates;
+    }
+
+    private static int bucket(int streak) {
+        int bucket = 0;
+        while (streak > STREAK_BUCKETS[bucket]) {
+            bucket++;
+        }
+        return bucket;
+    }
+
+    private static int bitCount(long[] words) {
+        int count = 0;
+        for (long word : words) {
+            count += Long.bitCount(word);
+        }
+        return count;
+    }
+}
@@ -0,0 +1,195 @@
+package com.habittracker;
+
+/**
+ * HabitCommand.java
+ * A reversible change to the habits, as kept by the {@link CommandLog}.
+ *
+ * A command holds only what it changes: the habit it acts on and the few
+ * field values needed to go back, never a copy of the habit list. Applying or
+ * reverting a command updates the repository and writes the matching journal
+ * record, so undo and redo are persisted like any other change.
+ */
+import java.util.Objects;
+
+public sealed interface HabitCommand {
+    /**
+     * Returns the habit the command changes.
+     * @return Affected habit
+     */
+    Habit habit();
+
+    /**
+     * Performs the change.
+     * @param repository Repository holding the habits
+     * @param persistence Service that journals the change
+     * @return false if there was nothing to change, in which case nothing was written
+     */
+    boolean apply(HabitRepository repository, PersistenceService persistence);
+
+    /**
+     * Undoes a change made by {@link #apply}.
+     * @param repository Repository holding the habits
+     * @param persistence Service that journals the change
+     */
+    void revert(HabitRepository repository, PersistenceService persistence);
+
+    /**
+     * Returns a short description for menus and tooltips, such as "Delete Read".
+     * @return Description of the change
+     */
+    String describe();
+
+    /**
+     * Adds a new habit.
+     * @param habit Habit to add
+     */
+    record Add(Habit habit) implements HabitCommand {
+        @Override
+        public boolean apply(HabitRepository repository, PersistenceService persistence) {
+            repository.add(habit);
+            persistence.habitAdded(habit);
+            return true;
+        }
+
+        @Override
+        public void revert(HabitRepository repository, PersistenceService persistence) {
+            repository.remove(habit.getId());
+            persistence.habitRemoved(habit.getId());
+        }
+
+        @Override
+        public String describe() {
+            return "Add " + habit.getName();
+        }
+    }
+
+    /**
+     * Deletes a habit. Undoing it brings back the same habit with its id and history.
+     * @param habit Habit to delete
+     */
+    record Delete(Habit habit) implements HabitCommand {
+        @Override
+        public boolean apply(HabitRepository repository, PersistenceService persistence) {
+            if (repository.remove(habit.getId()) == null) {
+                return false;
+            }
+            persistence.habitRemoved(habit.getId());
+            return true;
+        }
+
+        @Override
+        public void revert(HabitRepository repository, PersistenceService persistence) {
+            repository.add(habit);
+            persistence.habitAdded(habit);
+        }
+
+        @Override
+        public String describe() {
+            return "Delete " + habit.getName();
+        }
+    }
+
+    /**
+     * Marks a habit complete on a day.
+     * @param habit Habit to complete
+     * @param epochDay Day of the completion
+     * @param previousStreak Streak before the completion
+     */
+    record Complete(Habit habit, long epochDay, int previousStreak) implements HabitCommand {
+        public Complete(Habit habit, long epochDay) {
+            this(habit, epochDay, habit.getStreak());
+        }
+
+        @Override
+        public boolean apply(HabitRepository repository, PersistenceService persistence) {
+            if (!habit.complete(epochDay)) {
+                return false;
+            }
+            persistence.habitUpdated(habit);
+            return true;
+        }
+
+        @Override
+        public void revert(HabitRepository repository, PersistenceService persistence) {
+            habit.setCompletedToday(false);
+            habit.setStreak(previousStreak);
+            habit.getHistory().set(epochDay, false);
+            persistence.habitUpdated(habit);
+        }
+
+        @Override
+        public String describe() {
+            return "Complete " + habit.getName();
+        }
+    }
+
+    /**
+     * Renames a habit or moves it to another category.
+     * @param habit Habit to edit
+     * @param oldName Name before the edit
+     * @param oldCategory Category before the edit
+     * @param newName Name after the edit
+     * @param newCategory Category after the edit
+     */
+    record Edit(Habit habit, String oldName, String oldCategory, String newName, String newCategory) implements HabitCommand {
+        public Edit(Habit habit, String newName, String newCategory) {
+            this(habit, habit.getName(), habit.getCategory(), newName, newCategory);
+        }
+
+        @Override
+        public boolean apply(HabitRepository repository, PersistenceService persistence) {
+            if (oldName.equals(newName) && oldCategory.equals(newCategory)) {
+                return false;
+            }
+            habit.setName(newName);
+            habit.setCategory(newCategory);
+            persistence.habitUpdated(habit);
+            return true;
+        }
+
+        @Override
+        public void revert(HabitRepository repository, PersistenceService persistence) {
+            habit.setName(oldName);
+            habit.setCategory(oldCategory);
+            persistence.habitUpdated(habit);
+        }
+
+        @Override
+        public String describe() {
+            return "Edit " + oldName;
+        }
+    }
+
+    /**
+     * Changes when a habit is meant to be done and reminded of.
+     * @param habit Habit to reschedule
+     * @param oldSchedule Schedule before the change, or null
+     * @param newSchedule Schedule after the change, or null to remove it
+     */
+    record Reschedule(Habit habit, HabitSchedule oldSchedule, HabitSchedule newSchedule) implements HabitCommand {
+        public Reschedule(Habit habit, HabitSchedule newSchedule) {
+            this(habit, habit.getSchedule(), newSchedule);
+        }
+
+        @Override
+        public boolean apply(HabitRepository repository, PersistenceService persistence) {
+            if (Objects.equals(oldSchedule, newSchedule)) {
+                return false;
+            }
+            habit.setSchedule(newSchedule);
+            persistence.habitUpdated(habit);
+            return true;
+        }
+
+        @Override
+        public void revert(HabitRepository repository, PersistenceService persistence) {
+            habit.setSchedule(oldSchedule);
+            persistence.habitUpdated(habit);
+        }
+
+        @Override
+        public String describe() {
+            return "Schedule " + habit.getName();
+        }
+    }
+}
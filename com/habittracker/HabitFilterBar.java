@@ -0,0 +1,313 @@
+package com.habittracker;
+
+/**
+ * HabitFilterBar.java
+ * Search field, category and completion filters and column sorting for the habit table.
+ *
+ * Queries run against the repository's {@link HabitSearchIndex} on a background
+ * thread. Each change cancels the query still running for the previous one, and
+ * a result that arrives after a newer query was started is dropped, so typing
+ * quickly never shows stale rows. Results are handed over on the EDT as the new
+ * row order of the table; the table model keeps mapping rows to habits, so
+ * actions on the selected row work the same whether filtered or not.
+ *
+ * A few changed habits do not run the query again: each is tested against the
+ * query on the EDT and only its row is updated, removed or moved to where the
+ * sort order puts it.
+ */
+import java.awt.Color;
+import java.awt.FlowLayout;
+import java.awt.Font;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import javax.swing.BorderFactory;
+import javax.swing.DefaultComboBoxModel;
+import javax.swing.JComboBox;
+import javax.swing.JLabel;
+import javax.swing.JPanel;
+import javax.swing.JTable;
+import javax.swing.JTextField;
+import javax.swing.SwingUtilities;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import javax.swing.event.PopupMenuEvent;
+import javax.swing.event.PopupMenuListener;
+import javax.swing.table.TableColumn;
+
+public final class HabitFilterBar extends JPanel {
+    private static final long serialVersionUID = 1L;
+    private static final String ALL_CATEGORIES = "All categories";
+    private static final String[] STATUSES = {"Any status", "Completed today", "Not completed"};
+    private static final Font FIELD_FONT = new Font("Segoe UI", Font.PLAIN, 14);
+    // More changed habits than this run the query again instead of moving single rows
+    private static final int ROW_UPDATES = 100;
+
+    private final transient HabitRepository repository;
+    private final HabitTableModel tableModel;
+    private final transient Runnable rowsReplaced;
+    private final JTextField searchField = new JTextField(18);
+    private final JComboBox<String> categoryBox = new JComboBox<>(new String[] {ALL_CATEGORIES});
+    private final JComboBox<String> statusBox = new JComboBox<>(STATUSES);
+    private final transient ExecutorService searcher = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "habit-search");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private transient Future<?> runningSearch;
+    private transient HabitSearchIndex.Query query = HabitSearchIndex.Query.ALL;
+    private int generation;
+    // Generation of the result the table shows
+    private int shownGeneration;
+
+    /**
+     * Constructor for HabitFilterBar.
+     * @param repository Repository with a search index attached
+     * @param tableModel Table model that shows the results
+     * @param rowsReplaced Called on the EDT after a result replaced the rows of the table
+     */
+    public HabitFilterBar(HabitRepository repository, HabitTableModel tableModel, Runnable rowsReplaced) {
+        super(new FlowLayout(FlowLayout.LEFT));
+        this.repository = repository;
+        this.tableModel = tableModel;
+        this.rowsReplaced = rowsReplaced;
+        setOpaque(false);
+        setBorder(BorderFactory.createEmptyBorder(0, 10, 0, 10));
+
+        JLabel searchLabel = new JLabel("🔍 Search:");
+        searchLabel.setFont(FIELD_FONT);
+        searchField.setFont(FIELD_FONT);
+        searchField.setBorder(BorderFactory.createCompoundBorder(
+            BorderFactory.createLineBorder(new Color(70, 130, 180)),
+            BorderFactory.createEmptyBorder(3, 5, 3, 5)));
+        categoryBox.setFont(FIELD_FONT);
+        statusBox.setFont(FIELD_FONT);
+        add(searchLabel);
+        add(searchField);
+        add(categoryBox);
+        add(statusBox);
+
+        searchField.getDocument().addDocumentListener(new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent e) {
+                filtersChanged();
+            }
+
+            @Override
+            public void removeUpdate(DocumentEvent e) {
+                filtersChanged();
+            }
+
+            @Override
+            public void changedUpdate(DocumentEvent e) {
+                filtersChanged();
+            }
+        });
+        categoryBox.addActionListener(e -> filtersChanged());
+        statusBox.addActionListener(e -> filtersChanged());
+        // Categories come and go with habits; list the current ones whenever the box opens
+        categoryBox.addPopupMenuListener(new PopupMenuListener() {
+            @Override
+            public void popupMenuWillBecomeVisible(PopupMenuEvent e) {
+                refreshCategories();
+            }
+
+            @Override
+            public void popupMenuWillBecomeInvisible(PopupMenuEvent e) {
+            }
+
+            @Override
+            public void popupMenuCanceled(PopupMenuEvent e) {
+            }
+        });
+    }
+
+    /**
+     * Sorts the table when a column header is clicked: ascending, then descending, then unsorted.
+     * @param table Table whose header to listen to
+     */
+    public void attachSortHeader(JTable table) {
+        table.getTableHeader().addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                int viewColumn = table.columnAtPoint(e.getPoint());
+                if (viewColumn >= 0) {
+                    toggleSort(HabitSearchIndex.SortKey.values()[table.convertColumnIndexToModel(viewColumn)]);
+                    updateSortIndicators(table);
+                }
+            }
+        });
+    }
+
+    /**
+     * Returns whether the table shows anything other than every habit in storage order.
+     * @return true if a filter or sort order is active
+     */
+    public boolean isFiltering() {
+        return !query.isAll();
+    }
+
+    /**
+     * Runs the current query again, after many habits were added, changed or removed.
+     */
+    public void refresh() {
+        if (runningSearch != null) {
+            runningSearch.cancel(true);
+        }
+        int searchGeneration = ++generation;
+        HabitSearchIndex.Query current = query;
+        if (current.isAll()) {
+            showResult(searchGeneration, new ArrayList<>(repository.all()));
+            return;
+        }
+        HabitSearchIndex index = repository.getSearchIndex();
+        runningSearch = searcher.submit(() -> {
+            try {
+                List<Habit> result;
+                try (HabitMetrics.Operation operation = HabitMetrics.get().start("search")) {
+                    result = index.search(current);
+                    operation.items(result.size());
+                }
+                SwingUtilities.invokeLater(() -> {
+                    // A newer query has started since this one; its result will follow
+                    if (searchGeneration == generation) {
+                        showResult(searchGeneration, result);
+                    }
+                });
+            } catch (InterruptedException e) {
+                // Superseded by a newer query
+            }
+        });
+    }
+
+    /**
+     * Shows habits that changed, were removed or were just added to the repository.
+     * @param changed Habits that changed or were removed
+     * @param added Habits added, in storage order
+     */
+    public void habitsChanged(Collection<Habit> changed, Collection<Habit> added) {
+        if (changed.size() + added.size() > ROW_UPDATES || shownGeneration != generation) {
+            refresh();
+        } else if (showChanges(changed, false)) {
+            showChanges(added, true);
+        }
+    }
+
+    /**
+     * Stops the background search thread.
+     */
+    public void close() {
+        searcher.shutdownNow();
+    }
+
+    private void showResult(int resultGeneration, List<Habit> result) {
+        shownGeneration = resultGeneration;
+        tableModel.setHabits(result);
+        rowsReplaced.run();
+    }
+
+    // Re-filters each habit on its own; returns false if it had to run the query again instead
+    private boolean showChanges(Collection<Habit> habits, boolean added) {
+        Comparator<Habit> order = query.order();
+        for (Habit habit : habits) {
+            int row = tableModel.rowOf(habit);
+            boolean shown = repository.get(habit.getId()) == habit && query.matches(habit);
+            if (row >= 0) {
+                if (!shown) {
+                    tableModel.habitRemoved(row);
+                    continue;
+                }
+                if (order == null || inOrder(row, order)) {
+                    tableModel.habitUpdated(row);
+                    continue;
+                }
+                tableModel.habitRemoved(row);
+            } else if (!shown) {
+                continue;
+            } else if (order == null && !added) {
+                // Where an older habit that now matches falls in storage order only the index knows
+                refresh();
+                return false;
+            }
+            tableModel.habitInserted(order == null ? tableModel.getRowCount() : insertionRow(habit, order), habit);
+        }
+        return true;
+    }
+
+    private boolean inOrder(int row, Comparator<Habit> order) {
+        Habit habit = tableModel.getHabitAt(row);
+        return (row == 0 || order.compare(tableModel.getHabitAt(row - 1), habit) <= 0)
+            && (row == tableModel.getRowCount() - 1 || order.compare(habit, tableModel.getHabitAt(row + 1)) <= 0);
+    }
+
+    // First row whose habit sorts after the habit, so it follows habits that sort equal
+    private int insertionRow(Habit habit, Comparator<Habit> order) {
+        int low = 0;
+        int high = tableModel.getRowCount();
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (order.compare(tableModel.getHabitAt(middle), habit) <= 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private void filtersChanged() {
+        String category = categoryBox.getSelectedIndex() <= 0 ? null : (String) categoryBox.getSelectedItem();
+        Boolean completedToday = switch (statusBox.getSelectedIndex()) {
+            case 1 -> Boolean.TRUE;
+            case 2 -> Boolean.FALSE;
+            default -> null;
+        };
+        query = new HabitSearchIndex.Query(searchField.getText().trim(), category, completedToday, query.sortKey(), query.ascending());
+        refresh();
+    }
+
+    private void toggleSort(HabitSearchIndex.SortKey sortKey) {
+        HabitSearchIndex.SortKey newKey = sortKey;
+        boolean ascending = true;
+        if (query.sortKey() == sortKey) {
+            if (query.ascending()) {
+                ascending = false;
+            } else {
+                newKey = null;
+            }
+        }
+        query = new HabitSearchIndex.Query(query.text(), query.category(), query.completedToday(), newKey, ascending);
+        refresh();
+    }
+
+    private void updateSortIndicators(JTable table) {
+        for (int i = 0; i < table.getColumnCount(); i++) {
+            TableColumn column = table.getColumnModel().getColumn(i);
+            int modelColumn = column.getModelIndex();
+            String name = table.getModel().getColumnName(modelColumn);
+            if (query.sortKey() != null && query.sortKey().ordinal() == modelColumn) {
+                name += query.ascending() ? " ▲" : " ▼";
+            }
+            column.setHeaderValue(name);
+        }
+        table.getTableHeader().repaint();
+    }
+
+    private void refreshCategories() {
+        Object selected = categoryBox.getSelectedItem();
+        DefaultComboBoxModel<String> model = new DefaultComboBoxModel<>();
+        model.addElement(ALL_CATEGORIES);
+        for (String category : new TreeSet<>(repository.categories())) {
+            model.addElement(category);
+        }
+        model.setSelectedItem(selected != null && model.getIndexOf(selected) >= 0 ? selected : ALL_CATEGORIES);
+        categoryBox.setModel(model);
+    }
+}
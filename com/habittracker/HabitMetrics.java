@@ -0,0 +1,353 @@
+package com.habittracker;
+
+/**
+ * HabitMetrics.java
+ * Latency histograms, counters and flight recorder events for the whole application.
+ *
+ * Timed operations ("load", "save", "journal.sync", "table.refresh", ...) each get
+ * a {@link LatencyHistogram}, created on first use. Everything is published on
+ * the platform MBean server, so jconsole or any JMX client can read it from a
+ * running instance:
+ *   com.habittracker:type=Metrics                  counters and the operation list
+ *   com.habittracker:type=Latency,name=<operation> count, mean, max and percentiles
+ * Each timed operation is also a JFR event (com.habittracker.Operation), and EDT
+ * stalls found by {@link EdtMonitor} are com.habittracker.EdtStall events, so a
+ * recording started with jcmd shows them next to GC and I/O activity.
+ *
+ * Neither is allowed to slow down startup: the MBeans are registered from a
+ * background thread, as starting the platform MBean server takes a good part
+ * of a second, and events are only created once the flight recorder has been
+ * initialized by a recording, as loading the first event class starts it up.
+ */
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+public final class HabitMetrics implements HabitMetricsMXBean {
+    private static final String DOMAIN = "com.habittracker";
+    // Declared before SHARED, whose constructor registers its MBean
+    private static final Executor REGISTRAR = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "habit-metrics-jmx");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private static final HabitMetrics SHARED = new HabitMetrics();
+
+    /**
+     * Latency of one operation, published as com.habittracker:type=Latency,name=<operation>.
+     */
+    public interface LatencyMXBean {
+        long getCount();
+
+        double getMeanMillis();
+
+        double getMaxMillis();
+
+        double getP50Millis();
+
+        double getP90Millis();
+
+        double getP99Millis();
+
+        double getP999Millis();
+
+        void reset();
+    }
+
+    @Name("com.habittracker.Operation")
+    @Label("Habit Tracker Operation")
+    @Category("Habit Tracker")
+    @Description("A timed load, save, journal, import, export or UI operation")
+    @StackTrace(false)
+    static final class OperationEvent extends Event {
+        @Label("Operation")
+        String operation;
+
+        @Label("Items")
+        long items;
+
+        @Label("Bytes")
+        @DataAmount
+        long bytes;
+
+        @Label("Failed")
+        boolean failed;
+    }
+
+    @Name("com.habittracker.EdtStall")
+    @Label("EDT Stall")
+    @Category("Habit Tracker")
+    @Description("An event that kept the Swing event dispatch thread busy past the stall threshold")
+    @StackTrace(false)
+    static final class EdtStallEvent extends Event {
+        @Label("Event Type")
+        String eventType;
+    }
+
+    /**
+     * One timed run of an operation. Close it, typically with try-with-resources,
+     * when the operation is done.
+     */
+    public final class Operation implements AutoCloseable {
+        private final String name;
+        private final LatencyHistogram histogram;
+        private final OperationEvent event = recording() ? new OperationEvent() : null;
+        private final long startNanos;
+        private long items;
+        private long bytes;
+        private boolean failed;
+
+        private Operation(String name) {
+            this.name = name;
+            this.histogram = histogram(name);
+            if (event != null) {
+                event.begin();
+            }
+            this.startNanos = System.nanoTime();
+        }
+
+        /**
+         * Records how many habits or records the operation handled.
+         */
+        public Operation items(long count) {
+            items = count;
+            return this;
+        }
+
+        /**
+         * Records how many bytes the operation wrote or read.
+         */
+        public Operation bytes(long count) {
+            bytes = count;
+            return this;
+        }
+
+        /**
+         * Marks the operation as failed; it still counts towards its latency.
+         */
+        public Operation failed() {
+            if (!failed) {
+                failed = true;
+                failures.increment();
+            }
+            return this;
+        }
+
+        @Override
+        public void close() {
+            histogram.record(System.nanoTime() - startNanos);
+            if (event == null) {
+                return;
+            }
+            event.end();
+            if (event.shouldCommit()) {
+                event.operation = name;
+                event.items = items;
+                event.bytes = bytes;
+                event.failed = failed;
+                event.commit();
+            }
+        }
+    }
+
+    private final Map<String, LatencyHistogram> histograms = new ConcurrentHashMap<>();
+    private final LongAdder habitsLoaded = new LongAdder();
+    private final LongAdder malformedLines = new LongAdder();
+    private final LongAdder bytesWritten = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder edtStalls = new LongAdder();
+    private final AtomicLong longestEdtStallNanos = new AtomicLong();
+
+    private HabitMetrics() {
+        register("type=Metrics", this, HabitMetricsMXBean.class);
+    }
+
+    /**
+     * Returns the metrics shared by the whole application.
+     * @return Shared metrics
+     */
+    public static HabitMetrics get() {
+        return SHARED;
+    }
+
+    /**
+     * Returns whether flight recorder events should be created. False until a
+     * recording initializes the flight recorder, at startup or later with jcmd.
+     * @return true if the flight recorder is running
+     */
+    static boolean recording() {
+        return FlightRecorder.isInitialized();
+    }
+
+    /**
+     * Starts timing an operation.
+     * @param operation Name of the operation, such as "save"
+     * @return Running operation to close when done
+     */
+    public Operation start(String operation) {
+        return new Operation(operation);
+    }
+
+    /**
+     * Returns the histogram of an operation, creating and publishing it on first use.
+     * @param operation Name of the operation
+     * @return Latency histogram
+     */
+    public LatencyHistogram histogram(String operation) {
+        LatencyHistogram existing = histograms.get(operation);
+        return existing != null ? existing : histograms.computeIfAbsent(operation, name -> {
+            LatencyHistogram histogram = new LatencyHistogram();
+            register("type=Latency,name=" + ObjectName.quote(name), new LatencyView(histogram), LatencyMXBean.class);
+            return histogram;
+        });
+    }
+
+    public void habitsLoaded(long count) {
+        habitsLoaded.add(count);
+    }
+
+    public void malformedLines(long count) {
+        malformedLines.add(count);
+    }
+
+    public void bytesWritten(long count) {
+        bytesWritten.add(count);
+    }
+
+    /**
+     * Records a stall of the event dispatch thread.
+     * @param nanos How long the event ran
+     * @param eventType Class of the AWT event
+     * @param event Flight recorder event the caller began and ended around the dispatch, or null
+     */
+    void edtStall(long nanos, String eventType, EdtStallEvent event) {
+        edtStalls.increment();
+        longestEdtStallNanos.accumulateAndGet(nanos, Math::max);
+        if (event != null && event.shouldCommit()) {
+            event.eventType = eventType;
+            event.commit();
+        }
+    }
+
+    @Override
+    public long getHabitsLoaded() {
+        return habitsLoaded.sum();
+    }
+
+    @Override
+    public long getMalformedLines() {
+        return malformedLines.sum();
+    }
+
+    @Override
+    public long getBytesWritten() {
+        return bytesWritten.sum();
+    }
+
+    @Override
+    public long getFailures() {
+        return failures.sum();
+    }
+
+    @Override
+    public long getEdtStalls() {
+        return edtStalls.sum();
+    }
+
+    @Override
+    public double getLongestEdtStallMillis() {
+        return longestEdtStallNanos.get() / 1e6;
+    }
+
+    @Override
+    public String[] getOperations() {
+        return new TreeSet<>(histograms.keySet()).toArray(new String[0]);
+    }
+
+    @Override
+    public void reset() {
+        habitsLoaded.reset();
+        malformedLines.reset();
+        bytesWritten.reset();
+        failures.reset();
+        edtStalls.reset();
+        longestEdtStallNanos.set(0);
+        for (LatencyHistogram histogram : histograms.values()) {
+            histogram.reset();
+        }
+    }
+
+    private static <T> void register(String properties, T bean, Class<T> type) {
+        REGISTRAR.execute(() -> {
+            try {
+                ObjectName name = new ObjectName(DOMAIN + ":" + properties);
+                if (!ManagementFactory.getPlatformMBeanServer().isRegistered(name)) {
+                    ManagementFactory.getPlatformMBeanServer().registerMBean(new StandardMBean(bean, type, true), name);
+                }
+            } catch (JMException | RuntimeException e) {
+                System.err.println("Error registering metrics MBean: " + e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Presents a histogram in milliseconds for JMX clients.
+     */
+    private record LatencyView(LatencyHistogram histogram) implements LatencyMXBean {
+        @Override
+        public long getCount() {
+            return histogram.getCount();
+        }
+
+        @Override
+        public double getMeanMillis() {
+            return histogram.getMeanNanos() / 1e6;
+        }
+
+        @Override
+        public double getMaxMillis() {
+            return histogram.getMaxNanos() / 1e6;
+        }
+
+        @Override
+        public double getP50Millis() {
+            return histogram.getPercentileNanos(50) / 1e6;
+        }
+
+        @Override
+        public double getP90Millis() {
+            return histogram.getPercentileNanos(90) / 1e6;
+        }
+
+        @Override
+        public double getP99Millis() {
+            return histogram.getPercentileNanos(99) / 1e6;
+        }
+
+        @Override
+        public double getP999Millis() {
+            return histogram.getPercentileNanos(99.9) / 1e6;
+        }
+
+        @Override
+        public void reset() {
+            histogram.reset();
+        }
+    }
+}
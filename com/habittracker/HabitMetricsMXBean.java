@@ -0,0 +1,33 @@
+package com.habittracker;
+
+/**
+ * HabitMetricsMXBean.java
+ * Application-wide counters published as com.habittracker:type=Metrics.
+ */
+public interface HabitMetricsMXBean {
+    long getHabitsLoaded();
+
+    long getMalformedLines();
+
+    long getBytesWritten();
+
+    /**
+     * Returns how many timed operations failed, such as saves that hit an I/O error.
+     */
+    long getFailures();
+
+    long getEdtStalls();
+
+    double getLongestEdtStallMillis();
+
+    /**
+     * Returns the names of the timed operations, each published as
+     * com.habittracker:type=Latency,name=<operation>.
+     */
+    String[] getOperations();
+
+    /**
+     * Clears every counter and latency histogram.
+     */
+    void reset();
+}
@@ -0,0 +1,312 @@
+package com.habittracker;
+
+/**
+ * HabitParser.java
+ * Single-pass parser for the pipe-delimited habit line format.
+ *
+ * Format: Name|Category|CompletedToday|Streak[|Schedule], where a backslash
+ * escapes a pipe (\|), a newline (\n) or itself (\\) inside the name or
+ * category, and the optional schedule is written as {@link HabitSchedule} text.
+ *
+ * Lines written before escaping was added hold backslashes as plain text. A
+ * backslash before any other character is therefore kept as it is, and a line
+ * that only has the right number of fields when its backslashes are plain text
+ * (a name ending in a backslash) is read that way. Sources known to predate
+ * escaping, such as habits.txt, use an unescaped parser, which never treats a
+ * backslash as an escape.
+ * The parser scans each line once without regular expressions or split arrays,
+ * reuses one scratch buffer for field text and interns categories, so a file
+ * with a few categories keeps only one String per category; schedules are
+ * shared the same way. Malformed lines are reported to an {@link ErrorHandler}
+ * with their line number and skipped.
+ *
+ * A parser is not thread-safe; use one per thread.
+ */
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+
+public class HabitParser {
+    private static final int FIELD_COUNT = 4;
+    private static final int MAX_FIELD_COUNT = 5;
+
+    /**
+     * Receives lines that could not be parsed.
+     */
+    public interface ErrorHandler {
+        void malformedLine(int lineNumber, String line, String reason);
+    }
+
+    private final ErrorHandler errorHandler;
+    private final boolean escaped;
+    private final StringBuilder scratch = new StringBuilder(64);
+    // Open-addressing table of interned categories
+    private String[] categories = new String[64];
+    private int categoryCount;
+    private final Map<String, HabitSchedule> schedules = new HashMap<>();
+
+    /**
+     * Constructor for HabitParser.
+     * @param errorHandler Receives malformed lines
+     */
+    public HabitParser(ErrorHandler errorHandler) {
+        this(errorHandler, true);
+    }
+
+    /**
+     * Constructor for HabitParser.
+     * @param errorHandler Receives malformed lines
+     * @param escaped Whether lines were written with escapes; false for lines
+     *                written before escaping, where a backslash is plain text
+     */
+    public HabitParser(ErrorHandler errorHandler, boolean escaped) {
+        this.errorHandler = errorHandler;
+        this.escaped = escaped;
+    }
+
+    /**
+     * Parses every line of a text, skipping blank and malformed lines.
+     * @param text Text to parse
+     * @param firstLineNumber Line number of the first line, for error reports
+     * @param habitConsumer Receives each parsed habit in order
+     * @return Number of lines scanned
+     */
+    public int parseAll(CharSequence text, int firstLineNumber, Consumer<Habit> habitConsumer) {
+        int lineNumber = firstLineNumber;
+        int start = 0;
+        int length = text.length();
+        while (start < length) {
+            int end = start;
+            while (end < length && text.charAt(end) != '\n') {
+                end++;
+            }
+            int lineEnd = end > start && text.charAt(end - 1) == '\r' ? end - 1 : end;
+            if (lineEnd > start) {
+                Habit habit = parse(text, start, lineEnd, lineNumber);
+                if (habit != null) {
+                    habitConsumer.accept(habit);
+                }
+            }
+            lineNumber++;
+            start = end + 1;
+        }
+        return lineNumber - firstLineNumber;
+    }
+
+    /**
+     * Parses a whole line.
+     * @param line Line without its line terminator
+     * @param lineNumber Line number for error reports
+     * @return The habit, or null if the line is malformed
+     */
+    public Habit parse(CharSequence line, int lineNumber) {
+        return parse(line, 0, line.length(), lineNumber);
+    }
+
+    /**
+     * Parses one line out of a larger text.
+     * @param text Text containing the line
+     * @param start Index of the first character of the line
+     * @param end Index after the last character of the line
+     * @param lineNumber Line number for error reports
+     * @return The habit, or null if the line is malformed
+     */
+    public Habit parse(CharSequence text, int start, int end, int lineNumber) {
+        return parse(text, start, end, lineNumber, escaped);
+    }
+
+    private Habit parse(CharSequence text, int start, int end, int lineNumber, boolean escaped) {
+        // Find the pipe that ends each of the first four fields
+        int nameEnd = nextSeparator(text, start, end, escaped);
+        int categoryEnd = nameEnd < end ? nextSeparator(text, nameEnd + 1, end, escaped) : end;
+        int completedEnd = categoryEnd < end ? nextSeparator(text, categoryEnd + 1, end, escaped) : end;
+        int streakEnd = completedEnd < end ? nextSeparator(text, completedEnd + 1, end, escaped) : end;
+        if (completedEnd >= end || streakEnd < end && nextSeparator(text, streakEnd + 1, end, escaped) < end) {
+            if (escaped && contains(text, start, end, '\\')) {
+                // A legacy field ending in a backslash seemed to escape the pipe after it
+                return parse(text, start, end, lineNumber, false);
+            }
+            return malformed(text, start, end, lineNumber, "expected " + FIELD_COUNT + " or " + MAX_FIELD_COUNT + " fields");
+        }
+
+        int streakStart = completedEnd + 1;
+        if (streakStart == streakEnd) {
+            return malformed(text, start, end, lineNumber, "missing streak");
+        }
+        if (text.charAt(streakStart) == '-') {
+            return malformed(text, start, end, lineNumber, "streak is negative");
+        }
+        long streak = 0;
+        for (int digit = streakStart; digit < streakEnd; digit++) {
+            char c = text.charAt(digit);
+            if (c < '0' || c > '9') {
+                return malformed(text, start, end, lineNumber, "streak is not a number");
+            }
+            streak = streak * 10 + (c - '0');
+            if (streak > Integer.MAX_VALUE) {
+                return malformed(text, start, end, lineNumber, "streak is out of range");
+            }
+        }
+
+        HabitSchedule schedule = null;
+        if (streakEnd < end) {
+            try {
+                schedule = schedule(text.subSequence(streakEnd + 1, end).toString());
+            } catch (IllegalArgumentException e) {
+                return malformed(text, start, end, lineNumber, e.getMessage());
+            }
+        }
+
+        String name = unescape(text, start, nameEnd, escaped).toString();
+        String category = intern(unescape(text, nameEnd + 1, categoryEnd, escaped));
+        boolean completedToday = isTrue(text, categoryEnd + 1, completedEnd);
+        Habit habit = new Habit(name, category, completedToday, (int) streak);
+        habit.setSchedule(schedule);
+        return habit;
+    }
+
+    // Schedules are immutable, so habits with the same schedule text share one instance
+    private HabitSchedule schedule(String text) {
+        HabitSchedule schedule = schedules.get(text);
+        if (schedule == null) {
+            schedule = HabitSchedule.parse(text);
+            if (schedule == null) {
+                throw new IllegalArgumentException("empty schedule");
+            }
+            schedules.put(text, schedule);
+        }
+        return schedule;
+    }
+
+    /**
+     * Escapes a name or category so it can be written into a habit line.
+     * @param value Field value
+     * @return The value with backslashes, pipes and line breaks escaped
+     */
+    public static String escape(String value) {
+        int i = 0;
+        while (i < value.length() && !needsEscape(value.charAt(i))) {
+            i++;
+        }
+        if (i == value.length()) {
+            return value;
+        }
+        StringBuilder escaped = new StringBuilder(value.length() + 8).append(value, 0, i);
+        for (; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '\\' -> escaped.append("\\\\");
+                case '|' -> escaped.append("\\|");
+                case '\n' -> escaped.append("\\n");
+                case '\r' -> escaped.append("\\r");
+                default -> escaped.append(c);
+            }
+        }
+        return escaped.toString();
+    }
+
+    private static boolean needsEscape(char c) {
+        return c == '\\' || c == '|' || c == '\n' || c == '\r';
+    }
+
+    private static int nextSeparator(CharSequence text, int from, int end, boolean escaped) {
+        for (int i = from; i < end; i++) {
+            char c = text.charAt(i);
+            if (c == '|') {
+                return i;
+            }
+            if (escaped && c == '\\' && i + 1 < end && (text.charAt(i + 1) == '\\' || text.charAt(i + 1) == '|')) {
+                i++;
+            }
+        }
+        return end;
+    }
+
+    private StringBuilder unescape(CharSequence text, int start, int end, boolean escaped) {
+        scratch.setLength(0);
+        for (int i = start; i < end; i++) {
+            char c = text.charAt(i);
+            char next = escaped && c == '\\' && i + 1 < end ? text.charAt(i + 1) : 0;
+            switch (next) {
+                case '\\', '|' -> scratch.append(next);
+                case 'n' -> scratch.append('\n');
+                case 'r' -> scratch.append('\r');
+                default -> {
+                    // Not an escape: a backslash written before escaping existed
+                    scratch.append(c);
+                    continue;
+                }
+            }
+            i++;
+        }
+        return scratch;
+    }
+
+    private static boolean contains(CharSequence text, int start, int end, char c) {
+        for (int i = start; i < end; i++) {
+            if (text.charAt(i) == c) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Boolean.parseBoolean semantics: "true" in any case, anything else is false
+    private static boolean isTrue(CharSequence text, int start, int end) {
+        if (end - start != 4) {
+            return false;
+        }
+        return Character.toLowerCase(text.charAt(start)) == 't'
+            && Character.toLowerCase(text.charAt(start + 1)) == 'r'
+            && Character.toLowerCase(text.charAt(start + 2)) == 'u'
+            && Character.toLowerCase(text.charAt(start + 3)) == 'e';
+    }
+
+    private String intern(CharSequence value) {
+        int mask = categories.length - 1;
+        int slot = hash(value) & mask;
+        while (categories[slot] != null) {
+            if (categories[slot].contentEquals(value)) {
+                return categories[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        String category = value.toString();
+        categories[slot] = category;
+        if (++categoryCount * 2 > categories.length) {
+            rehash();
+        }
+        return category;
+    }
+
+    private void rehash() {
+        String[] old = categories;
+        categories = new String[old.length * 2];
+        int mask = categories.length - 1;
+        for (String category : old) {
+            if (category != null) {
+                int slot = hash(category) & mask;
+                while (categories[slot] != null) {
+                    slot = (slot + 1) & mask;
+                }
+                categories[slot] = category;
+            }
+        }
+    }
+
+    private static int hash(CharSequence value) {
+        int hash = 0;
+        for (int i = 0; i < value.length(); i++) {
+            hash = 31 * hash + value.charAt(i);
+        }
+        return hash ^ (hash >>> 16);
+    }
+
+    private Habit malformed(CharSequence text, int start, int end, int lineNumber, String reason) {
+        HabitMetrics.get().malformedLines(1);
+        if (errorHandler != null) {
+            errorHandler.malformedLine(lineNumber, text.subSequence(start, end).toString(), reason);
+        }
+        return null;
+    }
+}
@@ -0,0 +1,284 @@
+package com.habittracker;
+
+/**
+ * HabitRepository.java
+ * In-memory store of habits addressed by stable id, with lookup indexes.
+ *
+ * Habits keep their storage (insertion) order; views such as the habit table
+ * keep their own row order and refer to habits by id. Hash indexes on name and
+ * category and a sorted index on streak are kept up to date through the
+ * {@link Habit.Listener} callbacks, so setters on a stored habit never leave an
+ * index stale. The {@link HabitStats} aggregate is maintained the same way, as
+ * are an optional {@link HabitSearchIndex} and an optional
+ * {@link ReminderScheduler}, which learns of every schedule. Every change also bumps
+ * {@link #version()}, which lets derived data such as {@link HabitAnalytics}
+ * tell whether it is still current.
+ */
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.LongSupplier;
+
+public class HabitRepository implements Habit.Listener {
+    private final Map<Long, Habit> byId = new LinkedHashMap<>();
+    private final Map<String, Set<Habit>> byName = new HashMap<>();
+    private final Map<String, Set<Habit>> byCategory = new HashMap<>();
+    private final NavigableMap<Integer, Set<Habit>> byStreak = new TreeMap<>();
+    private final HabitStats stats = new HabitStats();
+    private HabitSearchIndex searchIndex;
+    private ReminderScheduler reminderScheduler;
+    private LongSupplier idSource;
+    private long nextId = 1;
+    private long version;
+
+    /**
+     * Adds a habit, assigning it a new id if it does not have one yet.
+     * @param habit Habit to add
+     * @return Id of the habit
+     */
+    public long add(Habit habit) {
+        long id = addUnscheduled(habit);
+        if (reminderScheduler != null) {
+            reminderScheduler.update(habit);
+        }
+        return id;
+    }
+
+    private long addUnscheduled(Habit habit) {
+        if (habit.getId() == 0) {
+            long id = idSource == null ? 0 : idSource.getAsLong();
+            habit.setId(id == 0 ? nextId : id);
+        }
+        nextId = Math.max(nextId, habit.getId() + 1);
+        byId.put(habit.getId(), habit);
+        index(byName, habit.getName(), habit);
+        index(byCategory, habit.getCategory(), habit);
+        index(byStreak, habit.getStreak(), habit);
+        stats.add(habit);
+        if (searchIndex != null) {
+            searchIndex.add(habit);
+        }
+        // Registered after the stats so the repository forwards every change
+        habit.setListener(this);
+        version++;
+        return habit.getId();
+    }
+
+    /**
+     * Adds a batch of habits.
+     * @param habits Habits to add
+     */
+    public void addAll(Collection<Habit> habits) {
+        for (Habit habit : habits) {
+            addUnscheduled(habit);
+        }
+        // One batch, so loading many habits takes the scheduler's lock once
+        if (reminderScheduler != null) {
+            reminderScheduler.updateAll(habits);
+        }
+    }
+
+    /**
+     * Removes a habit by id.
+     * @param id Id of the habit
+     * @return The removed habit, or null if there was none
+     */
+    public Habit remove(long id) {
+        Habit habit = byId.remove(id);
+        if (habit != null) {
+            unindex(byName, habit.getName(), habit);
+            unindex(byCategory, habit.getCategory(), habit);
+            unindex(byStreak, habit.getStreak(), habit);
+            stats.remove(habit);
+            if (searchIndex != null) {
+                searchIndex.remove(habit);
+            }
+            if (reminderScheduler != null) {
+                reminderScheduler.remove(id);
+            }
+            version++;
+        }
+        return habit;
+    }
+
+    /**
+     * Returns a habit by id.
+     * @param id Id of the habit
+     * @return The habit, or null if there is none
+     */
+    public Habit get(long id) {
+        return byId.get(id);
+    }
+
+    /**
+     * Sets where new habits get their ids, such as a store shared with other processes.
+     * @param idSource Supplies new ids; 0 means the repository numbers the habit itself
+     */
+    public void setIdSource(LongSupplier idSource) {
+        this.idSource = idSource;
+    }
+
+    public int size() {
+        return byId.size();
+    }
+
+    /**
+     * Returns a number that changes whenever a habit is added, removed or changed.
+     * @return Modification count of the habits
+     */
+    public long version() {
+        return version;
+    }
+
+    /**
+     * Returns every habit in storage order.
+     * @return Unmodifiable view of the habits
+     */
+    public Collection<Habit> all() {
+        return Collections.unmodifiableCollection(byId.values());
+    }
+
+    /**
+     * Returns the habits with exactly the given name.
+     * @param name Habit name
+     * @return Unmodifiable view, empty if none match
+     */
+    public Set<Habit> findByName(String name) {
+        return view(byName.get(name));
+    }
+
+    /**
+     * Returns the habits in a category.
+     * @param category Category name
+     * @return Unmodifiable view, empty if none match
+     */
+    public Set<Habit> findByCategory(String category) {
+        return view(byCategory.get(category));
+    }
+
+    /**
+     * Returns the habits whose streak is at least the given length, longest first.
+     * @param minStreak Minimum streak
+     * @return List of matching habits
+     */
+    public List<Habit> findByStreakAtLeast(int minStreak) {
+        List<Habit> result = new ArrayList<>();
+        for (Set<Habit> habits : byStreak.tailMap(minStreak, true).descendingMap().values()) {
+            result.addAll(habits);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the names of every category that has at least one habit.
+     * @return Unmodifiable view of the category names
+     */
+    public Set<String> categories() {
+        return Collections.unmodifiableSet(byCategory.keySet());
+    }
+
+    public HabitStats getStats() {
+        return stats;
+    }
+
+    /**
+     * Attaches a search index, adding every stored habit to it and keeping it up to date from now on.
+     * @param searchIndex Index to maintain
+     */
+    public void setSearchIndex(HabitSearchIndex searchIndex) {
+        this.searchIndex = searchIndex;
+        for (Habit habit : byId.values()) {
+            searchIndex.add(habit);
+        }
+    }
+
+    public HabitSearchIndex getSearchIndex() {
+        return searchIndex;
+    }
+
+    /**
+     * Attaches a reminder scheduler, scheduling every stored habit and keeping
+     * it up to date as habits are added, removed and rescheduled.
+     * @param reminderScheduler Scheduler to maintain
+     */
+    public void setReminderScheduler(ReminderScheduler reminderScheduler) {
+        this.reminderScheduler = reminderScheduler;
+        reminderScheduler.updateAll(byId.values());
+    }
+
+    @Override
+    public void nameChanged(Habit habit, String oldName) {
+        unindex(byName, oldName, habit);
+        index(byName, habit.getName(), habit);
+        stats.nameChanged(habit, oldName);
+        habitChanged(habit);
+    }
+
+    @Override
+    public void categoryChanged(Habit habit, String oldCategory) {
+        unindex(byCategory, oldCategory, habit);
+        index(byCategory, habit.getCategory(), habit);
+        stats.categoryChanged(habit, oldCategory);
+        habitChanged(habit);
+    }
+
+    @Override
+    public void completedTodayChanged(Habit habit, boolean oldCompletedToday) {
+        stats.completedTodayChanged(habit, oldCompletedToday);
+        habitChanged(habit);
+    }
+
+    @Override
+    public void streakChanged(Habit habit, int oldStreak) {
+        unindex(byStreak, oldStreak, habit);
+        index(byStreak, habit.getStreak(), habit);
+        stats.streakChanged(habit, oldStreak);
+        habitChanged(habit);
+    }
+
+    @Override
+    public void historyChanged(Habit habit) {
+        version++;
+    }
+
+    @Override
+    public void scheduleChanged(Habit habit, HabitSchedule oldSchedule) {
+        version++;
+        if (reminderScheduler != null) {
+            reminderScheduler.update(habit);
+        }
+    }
+
+    private void habitChanged(Habit habit) {
+        version++;
+        if (searchIndex != null) {
+            searchIndex.update(habit);
+        }
+    }
+
+    private static <K> void index(Map<K, Set<Habit>> index, K key, Habit habit) {
+        index.computeIfAbsent(key, k -> new LinkedHashSet<>()).add(habit);
+    }
+
+    private static <K> void unindex(Map<K, Set<Habit>> index, K key, Habit habit) {
+        Set<Habit> habits = index.get(key);
+        if (habits != null) {
+            habits.remove(habit);
+            if (habits.isEmpty()) {
+                index.remove(key);
+            }
+        }
+    }
+
+    private static Set<Habit> view(Set<Habit> habits) {
+        return habits == null ? Collections.emptySet() : Collections.unmodifiableSet(habits);
+    }
+}
@@ -0,0 +1,278 @@
+package com.habittracker;
+
+/**
+ * HabitSchedule.java
+ * The days a habit is meant to be done on, and optionally the time of day it
+ * should be reminded of.
+ *
+ * A schedule is one of:
+ *   daily           every day
+ *   weekdays        on fixed days of the week, such as Monday, Wednesday and Friday
+ *   times per week  any N days of the week (Monday to Sunday)
+ * Schedules are immutable and written as short text, which is how they are
+ * stored in habit lines, snapshots and the database and how the server takes them:
+ *   daily 08:30
+ *   weekdays MON,WED,FRI 07:00
+ *   3/week 19:00
+ * The time is left out for a schedule without a reminder. Parsing ignores case.
+ */
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
+import java.util.Locale;
+
+public sealed interface HabitSchedule {
+    /**
+     * Returns the time of day to remind of the habit.
+     * @return Reminder time, or null if the habit is not reminded of
+     */
+    LocalTime reminder();
+
+    /**
+     * Returns whether the habit is meant to be done on a day.
+     * @param day Day to check
+     * @return true if the schedule includes the day
+     */
+    boolean includes(LocalDate day);
+
+    /**
+     * Returns the same schedule with another reminder time.
+     * @param reminder Reminder time, or null for none
+     * @return Schedule with the reminder
+     */
+    HabitSchedule withReminder(LocalTime reminder);
+
+    /**
+     * Returns whether the habit still needs doing on a day, so a reminder is due.
+     * A times-per-week habit no longer needs doing once it was done often enough that week.
+     * @param habit Habit with this schedule
+     * @param epochDay Day to check, normally today
+     * @return true if the habit is scheduled that day and not done yet
+     */
+    default boolean isDue(Habit habit, long epochDay) {
+        LocalDate day = LocalDate.ofEpochDay(epochDay);
+        return includes(day) && !habit.isCompletedToday() && !habit.getHistory().isCompleted(epochDay);
+    }
+
+    /**
+     * Returns whether a day that ended without the habit done breaks its streak.
+     * Days the schedule leaves out never do.
+     * @param habit Habit with this schedule, its history complete up to the day
+     * @param epochDay Day that ended
+     * @return true if the streak starts over
+     */
+    default boolean breaksStreak(Habit habit, long epochDay) {
+        return includes(LocalDate.ofEpochDay(epochDay));
+    }
+
+    /**
+     * Returns the first reminder strictly after an instant.
+     * @param after Instant to start from, in the zone to compute the reminder time in
+     * @return Time of the next reminder, or null if the schedule has no reminder
+     */
+    default ZonedDateTime nextReminder(ZonedDateTime after) {
+        if (reminder() == null) {
+            return null;
+        }
+        LocalDate day = after.toLocalDate();
+        // A week always contains a scheduled day; the eighth covers today's time having passed
+        for (int i = 0; i <= 7; i++, day = day.plusDays(1)) {
+            if (includes(day)) {
+                // atZone moves a time that falls into a DST gap forward by the gap
+                ZonedDateTime reminderTime = day.atTime(reminder()).atZone(after.getZone());
+                if (reminderTime.isAfter(after)) {
+                    return reminderTime;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Every day.
+     * @param reminder Reminder time, or null for none
+     */
+    record Daily(LocalTime reminder) implements HabitSchedule {
+        public Daily {
+            reminder = minutes(reminder);
+        }
+
+        @Override
+        public boolean includes(LocalDate day) {
+            return true;
+        }
+
+        @Override
+        public Daily withReminder(LocalTime reminder) {
+            return new Daily(reminder);
+        }
+
+        @Override
+        public String toString() {
+            return withTime("daily", reminder);
+        }
+    }
+
+    /**
+     * Fixed days of the week.
+     * @param days Bit mask of the days, bit 0 for Monday to bit 6 for Sunday
+     * @param reminder Reminder time, or null for none
+     */
+    record Weekdays(int days, LocalTime reminder) implements HabitSchedule {
+        public Weekdays {
+            if (days <= 0 || days >= 1 << 7) {
+                throw new IllegalArgumentException("No days of the week in schedule");
+            }
+            reminder = minutes(reminder);
+        }
+
+        /**
+         * Returns the bit of a day in the mask.
+         * @param day Day of the week
+         * @return Mask with only that day set
+         */
+        public static int bit(DayOfWeek day) {
+            return 1 << (day.getValue() - 1);
+        }
+
+        public boolean includes(DayOfWeek day) {
+            return (days & bit(day)) != 0;
+        }
+
+        @Override
+        public boolean includes(LocalDate day) {
+            return includes(day.getDayOfWeek());
+        }
+
+        @Override
+        public Weekdays withReminder(LocalTime reminder) {
+            return new Weekdays(days, reminder);
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder text = new StringBuilder("weekdays ");
+            for (DayOfWeek day : DayOfWeek.values()) {
+                if (includes(day)) {
+                    if (text.length() > "weekdays ".length()) {
+                        text.append(',');
+                    }
+                    text.append(day.name(), 0, 3);
+                }
+            }
+            return withTime(text.toString(), reminder);
+        }
+    }
+
+    /**
+     * Any number of days in each week, which starts on Monday.
+     * @param times Days per week, 1 to 7
+     * @param reminder Reminder time, or null for none
+     */
+    record TimesPerWeek(int times, LocalTime reminder) implements HabitSchedule {
+        public TimesPerWeek {
+            if (times < 1 || times > 7) {
+                throw new IllegalArgumentException("Times per week must be 1 to 7: " + times);
+            }
+            reminder = minutes(reminder);
+        }
+
+        @Override
+        public boolean includes(LocalDate day) {
+            return true;
+        }
+
+        @Override
+        public boolean isDue(Habit habit, long epochDay) {
+            if (!HabitSchedule.super.isDue(habit, epochDay)) {
+                return false;
+            }
+            long monday = LocalDate.ofEpochDay(epochDay).with(DayOfWeek.MONDAY).toEpochDay();
+            return habit.getHistory().countCompleted(monday, epochDay) < times;
+        }
+
+        // A missed day counts only once the days left in the week cannot make up the times
+        @Override
+        public boolean breaksStreak(Habit habit, long epochDay) {
+            long monday = LocalDate.ofEpochDay(epochDay).with(DayOfWeek.MONDAY).toEpochDay();
+            long daysLeft = monday + 6 - epochDay;
+            return habit.getHistory().countCompleted(monday, epochDay) + daysLeft < times;
+        }
+
+        @Override
+        public TimesPerWeek withReminder(LocalTime reminder) {
+            return new TimesPerWeek(times, reminder);
+        }
+
+        @Override
+        public String toString() {
+            return withTime(times + "/week", reminder);
+        }
+    }
+
+    /**
+     * Parses a schedule written by toString or typed by a user.
+     * @param text Schedule text, such as "weekdays mon,fri 08:00"
+     * @return The schedule, or null if the text is blank
+     * @throws IllegalArgumentException if the text is not a schedule
+     */
+    static HabitSchedule parse(String text) {
+        String[] words = text.trim().toLowerCase(Locale.ROOT).split("\\s+");
+        if (words[0].isEmpty()) {
+            return null;
+        }
+        int timeIndex = words[0].equals("weekdays") ? 2 : 1;
+        if (words.length > timeIndex + 1 || words.length < timeIndex) {
+            throw new IllegalArgumentException("Not a schedule: " + text);
+        }
+        LocalTime reminder = null;
+        if (words.length > timeIndex) {
+            try {
+                reminder = LocalTime.parse(words[timeIndex]);
+            } catch (DateTimeParseException e) {
+                throw new IllegalArgumentException("Not a reminder time: " + words[timeIndex]);
+            }
+        }
+        if (words[0].equals("daily")) {
+            return new Daily(reminder);
+        }
+        if (words[0].equals("weekdays")) {
+            int days = 0;
+            for (String day : words[1].split(",")) {
+                days |= Weekdays.bit(dayOfWeek(day));
+            }
+            return new Weekdays(days, reminder);
+        }
+        if (words[0].endsWith("/week")) {
+            try {
+                return new TimesPerWeek(Integer.parseInt(words[0].substring(0, words[0].length() - "/week".length())), reminder);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Not a number of times per week: " + words[0]);
+            }
+        }
+        throw new IllegalArgumentException("Not a schedule: " + text);
+    }
+
+    private static DayOfWeek dayOfWeek(String prefix) {
+        if (prefix.length() >= 2) {
+            for (DayOfWeek day : DayOfWeek.values()) {
+                if (day.name().toLowerCase(Locale.ROOT).startsWith(prefix)) {
+                    return day;
+                }
+            }
+        }
+        throw new IllegalArgumentException("Not a day of the week: " + prefix);
+    }
+
+    // Reminders are kept to the minute, the precision the text form has
+    private static LocalTime minutes(LocalTime reminder) {
+        return reminder == null ? null : reminder.truncatedTo(ChronoUnit.MINUTES);
+    }
+
+    private static String withTime(String text, LocalTime reminder) {
+        return reminder == null ? text : text + " " + reminder;
+    }
+}
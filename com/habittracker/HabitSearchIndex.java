@@ -0,0 +1,400 @@
+package com.habittracker;
+
+/**
+ * HabitSearchIndex.java
+ * Trigram index over habit names for fast substring search, filtering and sorting.
+ *
+ * Every habit occupies a slot holding an immutable snapshot of the fields a
+ * query looks at. For each three-character sequence of a lower-cased name the
+ * index keeps a sorted list of the slots whose name contains it. A query of
+ * three or more characters intersects the lists of its trigrams, starting with
+ * the shortest, and only checks the few slots that survive; shorter queries
+ * scan the slots directly.
+ *
+ * Slots are never reused. Removing or renaming a habit leaves its old slot
+ * numbers in the lists, and candidates are always checked against the current
+ * snapshot, so stale entries cost a little time but never produce wrong
+ * results. The lists are rebuilt once stale entries outnumber live ones.
+ *
+ * Changes come from the thread that owns the habits (see {@link HabitRepository}),
+ * which takes a snapshot of the habit and queues it. The queued changes are
+ * applied by the writer executor, so the owning thread never waits for the
+ * lock a running query holds, and every query first applies whatever is still
+ * queued. Queries may run on any thread and see a consistent state.
+ */
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+public class HabitSearchIndex {
+    private static final int GRAM = 3;
+    // How often a long query checks whether it was cancelled
+    private static final int CANCEL_CHECK_INTERVAL = 4096;
+    private static final int PARALLEL_SORT_THRESHOLD = 10_000;
+
+    /**
+     * Sort orders for query results, matching the habit table columns.
+     */
+    public enum SortKey {
+        NAME(Comparator.comparing(Entry::name, String.CASE_INSENSITIVE_ORDER)),
+        CATEGORY(Comparator.comparing(Entry::category, String.CASE_INSENSITIVE_ORDER)),
+        COMPLETED_TODAY(Comparator.comparing(Entry::completedToday)),
+        STREAK(Comparator.comparingInt(Entry::streak));
+
+        private final Comparator<Entry> comparator;
+
+        SortKey(Comparator<Entry> comparator) {
+            this.comparator = comparator;
+        }
+    }
+
+    /**
+     * A search.
+     * @param text Case-insensitive substring of the name, empty to match every name
+     * @param category Exact category, or null for any
+     * @param completedToday Required completion state, or null for any
+     * @param sortKey Order of the results, or null for storage order
+     * @param ascending Whether the sort order is ascending
+     */
+    public record Query(String text, String category, Boolean completedToday, SortKey sortKey, boolean ascending) {
+        public static final Query ALL = new Query("", null, null, null, true);
+
+        /**
+         * Returns whether the query matches every habit in storage order.
+         */
+        public boolean isAll() {
+            return text.isEmpty() && category == null && completedToday == null && sortKey == null;
+        }
+
+        /**
+         * Returns whether a habit, as it is now, matches the query.
+         * @param habit Habit to test
+         * @return true if a search would return the habit
+         */
+        public boolean matches(Habit habit) {
+            return HabitSearchIndex.matches(Entry.of(habit), text.toLowerCase(Locale.ROOT), this);
+        }
+
+        /**
+         * Returns the order of the results, applied to habits as they are now.
+         * @return Comparator of the sort order, or null for storage order
+         */
+        public Comparator<Habit> order() {
+            if (sortKey == null) {
+                return null;
+            }
+            Comparator<Habit> order = Comparator.comparing(Entry::of, sortKey.comparator);
+            return ascending ? order : order.reversed();
+        }
+    }
+
+    /**
+     * Snapshot of the searchable fields of a habit.
+     */
+    private record Entry(Habit habit, String name, String lowerName, String category, boolean completedToday, int streak) {
+        static Entry of(Habit habit) {
+            return new Entry(habit, habit.getName(), habit.getName().toLowerCase(Locale.ROOT), habit.getCategory(),
+                habit.isCompletedToday(), habit.getStreak());
+        }
+    }
+
+    /**
+     * Sorted list of slots, grown by doubling.
+     */
+    private static final class Postings {
+        int[] slots = new int[4];
+        int size;
+
+        void add(int slot) {
+            // New slots are the highest so far and append in order; re-added slots need a sorted insert
+            if (size > 0 && slots[size - 1] >= slot) {
+                int at = Arrays.binarySearch(slots, 0, size, slot);
+                if (at >= 0) {
+                    return;
+                }
+                insertAt(-at - 1, slot);
+                return;
+            }
+            insertAt(size, slot);
+        }
+
+        private void insertAt(int at, int slot) {
+            if (size == slots.length) {
+                slots = Arrays.copyOf(slots, size * 2);
+            }
+            System.arraycopy(slots, at, slots, at + 1, size - at);
+            slots[at] = slot;
+            size++;
+        }
+    }
+
+    /**
+     * A queued change: the habit with a snapshot taken when it changed, or no snapshot once removed.
+     */
+    private record Change(Habit habit, Entry entry, boolean added) {
+    }
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Queue<Change> pending = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean applyQueued = new AtomicBoolean();
+    private final Executor writer;
+    private final Map<Long, Postings> postings = new HashMap<>();
+    private final Map<Habit, Integer> slotOf = new HashMap<>();
+    private Entry[] entries = new Entry[1024];
+    private int slotCount;
+    private int liveCount;
+
+    /**
+     * Creates an index that applies changes on the thread that makes them.
+     */
+    public HabitSearchIndex() {
+        this(Runnable::run);
+    }
+
+    /**
+     * Creates an index that applies changes on a writer executor.
+     * @param writer Runs the task that applies queued changes
+     */
+    public HabitSearchIndex(Executor writer) {
+        this.writer = writer;
+    }
+
+    /**
+     * Adds a habit to the index.
+     * @param habit Habit to add
+     */
+    public void add(Habit habit) {
+        queue(new Change(habit, Entry.of(habit), true));
+    }
+
+    /**
+     * Removes a habit from the index.
+     * @param habit Habit to remove
+     */
+    public void remove(Habit habit) {
+        queue(new Change(habit, null, false));
+    }
+
+    /**
+     * Refreshes the indexed fields of a habit after it changed.
+     * @param habit Habit that changed
+     */
+    public void update(Habit habit) {
+        queue(new Change(habit, Entry.of(habit), false));
+    }
+
+    /**
+     * Returns the number of habits in the index.
+     * @return Habit count
+     */
+    public int size() {
+        lockForReading();
+        try {
+            return liveCount;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Runs a query. Long queries stop early if the calling thread is interrupted.
+     * @param query Query to run
+     * @return Matching habits in the requested order
+     * @throws InterruptedException if the thread was interrupted while searching
+     */
+    public List<Habit> search(Query query) throws InterruptedException {
+        String text = query.text().toLowerCase(Locale.ROOT);
+        List<Entry> matches = new ArrayList<>();
+        lockForReading();
+        try {
+            if (text.length() >= GRAM) {
+                int[] candidates = candidates(text);
+                for (int i = 0; i < candidates.length; i++) {
+                    checkCancelled(i);
+                    Entry entry = entries[candidates[i]];
+                    if (entry != null && matches(entry, text, query)) {
+                        matches.add(entry);
+                    }
+                }
+            } else {
+                for (int slot = 0; slot < slotCount; slot++) {
+                    checkCancelled(slot);
+                    Entry entry = entries[slot];
+                    if (entry != null && matches(entry, text, query)) {
+                        matches.add(entry);
+                    }
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return sort(matches, query);
+    }
+
+    private void queue(Change change) {
+        pending.add(change);
+        // One apply task at a time; it takes every change queued before it runs
+        if (applyQueued.compareAndSet(false, true)) {
+            writer.execute(this::applyQueuedChanges);
+        }
+    }
+
+    private void applyQueuedChanges() {
+        applyQueued.set(false);
+        lock.writeLock().lock();
+        try {
+            applyPending();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Takes the read lock with every queued change applied
+    private void lockForReading() {
+        if (!pending.isEmpty()) {
+            lock.writeLock().lock();
+            try {
+                applyPending();
+                lock.readLock().lock();
+            } finally {
+                lock.writeLock().unlock();
+            }
+        } else {
+            lock.readLock().lock();
+        }
+    }
+
+    // Called with the write lock held
+    private void applyPending() {
+        Change change;
+        while ((change = pending.poll()) != null) {
+            Habit habit = change.habit();
+            Integer slot = slotOf.get(habit);
+            if (change.entry() == null) {
+                if (slot != null) {
+                    slotOf.remove(habit);
+                    entries[slot] = null;
+                    liveCount--;
+                    compactIfStale();
+                }
+            } else if (slot != null) {
+                Entry old = entries[slot];
+                entries[slot] = change.entry();
+                if (!old.lowerName().equals(change.entry().lowerName())) {
+                    indexName(change.entry().lowerName(), slot);
+                }
+            } else if (change.added()) {
+                if (slotCount == entries.length) {
+                    entries = Arrays.copyOf(entries, slotCount * 2);
+                }
+                int newSlot = slotCount++;
+                entries[newSlot] = change.entry();
+                slotOf.put(habit, newSlot);
+                liveCount++;
+                indexName(change.entry().lowerName(), newSlot);
+            }
+        }
+    }
+
+    private static List<Habit> sort(List<Entry> matches, Query query) throws InterruptedException {
+        Entry[] sorted = matches.toArray(new Entry[0]);
+        if (query.sortKey() != null) {
+            checkCancelled(0);
+            Comparator<Entry> comparator = query.ascending() ? query.sortKey().comparator : query.sortKey().comparator.reversed();
+            if (sorted.length >= PARALLEL_SORT_THRESHOLD) {
+                Arrays.parallelSort(sorted, comparator);
+            } else {
+                Arrays.sort(sorted, comparator);
+            }
+        }
+        List<Habit> habits = new ArrayList<>(sorted.length);
+        for (Entry entry : sorted) {
+            habits.add(entry.habit());
+        }
+        return habits;
+    }
+
+    private static boolean matches(Entry entry, String text, Query query) {
+        return (query.category() == null || query.category().equals(entry.category()))
+            && (query.completedToday() == null || query.completedToday() == entry.completedToday())
+            && entry.lowerName().contains(text);
+    }
+
+    // Intersects the slot lists of every trigram in the text, shortest first
+    private int[] candidates(String text) {
+        List<Postings> lists = new ArrayList<>();
+        for (int i = 0; i + GRAM <= text.length(); i++) {
+            Postings list = postings.get(gram(text, i));
+            if (list == null) {
+                return new int[0];
+            }
+            lists.add(list);
+        }
+        lists.sort(Comparator.comparingInt(list -> list.size));
+        Postings shortest = lists.get(0);
+        int[] result = Arrays.copyOf(shortest.slots, shortest.size);
+        int size = result.length;
+        for (int l = 1; l < lists.size() && size > 0; l++) {
+            Postings list = lists.get(l);
+            int kept = 0;
+            int from = 0;
+            for (int i = 0; i < size; i++) {
+                int at = Arrays.binarySearch(list.slots, from, list.size, result[i]);
+                if (at >= 0) {
+                    result[kept++] = result[i];
+                    from = at + 1;
+                } else {
+                    from = -at - 1;
+                }
+            }
+            size = kept;
+        }
+        return Arrays.copyOf(result, size);
+    }
+
+    private void indexName(String lowerName, int slot) {
+        for (int i = 0; i + GRAM <= lowerName.length(); i++) {
+            postings.computeIfAbsent(gram(lowerName, i), key -> new Postings()).add(slot);
+        }
+    }
+
+    private static long gram(String text, int start) {
+        return (long) text.charAt(start) << 32 | (long) text.charAt(start + 1) << 16 | text.charAt(start + 2);
+    }
+
+    // Rebuilds slots and lists once removed habits outnumber live ones
+    private void compactIfStale() {
+        if (slotCount < 1024 || liveCount * 2 > slotCount) {
+            return;
+        }
+        Entry[] old = entries;
+        int oldCount = slotCount;
+        entries = new Entry[Math.max(1024, liveCount * 2)];
+        slotCount = 0;
+        postings.clear();
+        slotOf.clear();
+        for (int i = 0; i < oldCount; i++) {
+            if (old[i] != null) {
+                int slot = slotCount++;
+                entries[slot] = old[i];
+                slotOf.put(old[i].habit(), slot);
+                indexName(old[i].lowerName(), slot);
+            }
+        }
+    }
+
+    private static void checkCancelled(int step) throws InterruptedException {
+        if (step % CANCEL_CHECK_INTERVAL == 0 && Thread.currentThread().isInterrupted()) {
+            throw new InterruptedException("Search cancelled");
+        }
+    }
+}
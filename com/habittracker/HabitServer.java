@@ -0,0 +1,728 @@
+package com.habittracker;
+
+/**
+ * HabitServer.java
+ * Headless server that serves many users' habit stores over an HTTP/JSON API.
+ *
+ * Every user has their own store directory, sharded under the data root by a
+ * hash of the user id so no directory grows too large. A store is loaded on a
+ * user's first request and kept open while the user is active, each with its
+ * own journal and PersistenceService, exactly as the desktop app keeps its
+ * single store. A store no request has used for the idle timeout (30 minutes
+ * unless set otherwise) is saved and closed, so memory and open files follow
+ * the active users rather than every user ever seen; it is loaded again on the
+ * user's next request.
+ *
+ * While a user's store is loaded, their habits' reminders are scheduled by a
+ * {@link ReminderScheduler} per store, all waiting on one shared timer thread.
+ * A closed store's reminders wait until the user's next request.
+ * Reminders that came due today and are still open can be fetched, and code
+ * embedding the server can subscribe to them with {@link #addReminderListener}.
+ *
+ * Requests run on virtual threads. Users share a fixed set of read/write lock
+ * stripes, so lock memory does not grow with the number of users. Reads of one
+ * user's habits run concurrently; changes to a user's habits are exclusive.
+ *
+ * API:
+ *   GET    /users/{user}/habits[?category=c]   list habits
+ *   POST   /users/{user}/habits                add a habit: {"name": ..., "category": ...}
+ *   GET    /users/{user}/habits/{id}           one habit
+ *   POST   /users/{user}/habits/{id}/complete  mark a habit complete for today
+ *   DELETE /users/{user}/habits/{id}           delete a habit
+ *   PUT    /users/{user}/habits/{id}/schedule  set the schedule: {"schedule": "weekdays MON,WED 08:00"}, null for none
+ *   GET    /users/{user}/habits/{id}/correlations  habits most often done on the same days
+ *   GET    /users/{user}/stats                 total and completed-today counts
+ *   GET    /users/{user}/analytics             completion rates, streak distributions and weekday rates
+ *   GET    /users/{user}/reminders             reminders that came due today for habits still not done
+ *   POST   /users/{user}/save                  fold the journal into a new snapshot
+ */
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+
+public class HabitServer {
+    private static final int DEFAULT_PORT = 8080;
+    private static final int LOCK_STRIPES = 64;
+    private static final long CLOSE_TIMEOUT_SECONDS = 5;
+    private static final Duration DEFAULT_IDLE_TIMEOUT = Duration.ofMinutes(30);
+    // Idle stores are looked for this often, or more often for shorter idle timeouts
+    private static final long EVICTION_INTERVAL_MILLIS = TimeUnit.MINUTES.toMillis(1);
+    // Most correlated habits listed for a habit
+    private static final int CORRELATION_LIMIT = 10;
+    private static final Pattern USER_ID = Pattern.compile("[A-Za-z0-9_-]{1,64}");
+
+    /**
+     * Receives the reminders of every loaded user's habits as they come due.
+     */
+    public interface ReminderListener {
+        /**
+         * Called while the user's habits are locked for writing, so the habits may be read or changed.
+         * @param user Id of the user the habits belong to
+         * @param reminders Reminders that came due together
+         */
+        void remindersDue(String user, List<ReminderScheduler.Reminder> reminders);
+    }
+
+    /**
+     * Error reported to the client with an HTTP status.
+     */
+    private static final class HttpError extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+        private final int status;
+
+        HttpError(int status, String message) {
+            super(message);
+            this.status = status;
+        }
+    }
+
+    /**
+     * One user's habits and the services that persist and roll them over.
+     * Guarded by the user's lock stripe; whether it is in use or closing is guarded by the store itself.
+     */
+    private final class UserStore {
+        private final ReadWriteLock lock;
+        private final HabitRepository repository = new HabitRepository();
+        private final HabitAnalytics analytics = new HabitAnalytics(repository);
+        private final PersistenceService persistence;
+        private final RolloverEngine rolloverEngine;
+        private final ReminderScheduler reminders;
+        // Latest reminder of each habit; written and read under the lock
+        private final Map<Long, ReminderScheduler.Reminder> dueReminders = new LinkedHashMap<>();
+        private volatile boolean loaded;
+        // Completed once the store is saved and closed, after which the user gets a new one
+        private final CompletableFuture<Void> closed = new CompletableFuture<>();
+        private int requests;
+        private long lastUsedNanos = System.nanoTime();
+        private boolean closing;
+
+        UserStore(String user) {
+            lock = locks[Math.floorMod(user.hashCode(), LOCK_STRIPES)];
+            persistence = new PersistenceService(HabitStore.open(userDirectory(user)));
+            Executor habitExecutor = runnable -> requestExecutor.execute(() -> execute(runnable));
+            rolloverEngine = new RolloverEngine(habitExecutor, repository::all, this::rolledOver, rolloverTimer);
+            reminders = new ReminderScheduler(habitExecutor, repository::get, reminderTimer, Clock.systemUTC());
+            reminders.addListener(due -> remindersDue(user, due));
+            repository.setIdSource(persistence::reserveHabitId);
+            repository.setReminderScheduler(reminders);
+        }
+
+        <T> T read(Supplier<T> action) {
+            ensureLoaded();
+            Lock readLock = lock.readLock();
+            readLock.lock();
+            try {
+                return action.get();
+            } finally {
+                readLock.unlock();
+            }
+        }
+
+        <T> T write(Supplier<T> action) {
+            ensureLoaded();
+            Lock writeLock = lock.writeLock();
+            writeLock.lock();
+            try {
+                return action.get();
+            } finally {
+                writeLock.unlock();
+            }
+        }
+
+        // Requests that reach the store once it is closing are refused, as their change would not be saved
+        <T> T change(Supplier<T> action) {
+            return write(() -> {
+                if (isClosing()) {
+                    throw new HttpError(503, "Server is stopping");
+                }
+                return action.get();
+            });
+        }
+
+        // Rollovers, reminders and other processes' changes that arrive once the store is closing are dropped
+        void execute(Runnable action) {
+            write(() -> {
+                if (!isClosing()) {
+                    action.run();
+                }
+                return null;
+            });
+        }
+
+        /**
+         * Marks the store as used by a request until {@link #release()}.
+         * @return false if the store is closing and the request must wait for a new one
+         */
+        synchronized boolean acquire() {
+            if (closing) {
+                return false;
+            }
+            requests++;
+            return true;
+        }
+
+        synchronized void release() {
+            requests--;
+            lastUsedNanos = System.nanoTime();
+        }
+
+        /**
+         * Marks the store as closing if no request has used it since a time.
+         * @return true if the caller must now close the store
+         */
+        synchronized boolean retireIfIdleSince(long nanos) {
+            if (closing || requests > 0 || lastUsedNanos - nanos > 0) {
+                return false;
+            }
+            closing = true;
+            return true;
+        }
+
+        /**
+         * Marks the store as closing whether or not it is in use.
+         * @return true if the caller must now close the store
+         */
+        synchronized boolean retire() {
+            if (closing) {
+                return false;
+            }
+            closing = true;
+            return true;
+        }
+
+        synchronized boolean isClosing() {
+            return closing;
+        }
+
+        private void ensureLoaded() {
+            if (loaded) {
+                return;
+            }
+            Lock writeLock = lock.writeLock();
+            writeLock.lock();
+            try {
+                if (!loaded) {
+                    persistence.loadHabits(repository::addAll).join();
+                    loaded = true;
+                    rolloverEngine.start(persistence.getStore().getRolloverDay());
+                    persistence.watchExternalChanges(changes -> requestExecutor.execute(() -> execute(() -> {
+                        long rolloverDay = persistence.applyExternalChanges(changes, repository).rolloverDay();
+                        if (rolloverDay > 0) {
+                            rolloverEngine.rolledOverElsewhere(rolloverDay);
+                        }
+                    })));
+                }
+            } finally {
+                writeLock.unlock();
+            }
+        }
+
+        private void remindersDue(String user, List<ReminderScheduler.Reminder> due) {
+            // Reminders of earlier days and of deleted habits are never open again
+            long today = LocalDate.now().toEpochDay();
+            dueReminders.values().removeIf(reminder -> reminder.time().toLocalDate().toEpochDay() < today
+                || repository.get(reminder.habit().getId()) != reminder.habit());
+            for (ReminderScheduler.Reminder reminder : due) {
+                // Removed first so the map stays in the order reminders came due
+                dueReminders.remove(reminder.habit().getId());
+                dueReminders.put(reminder.habit().getId(), reminder);
+            }
+            for (ReminderListener listener : reminderListeners) {
+                listener.remindersDue(user, due);
+            }
+        }
+
+        /**
+         * Returns the reminders that came due today for habits that still need doing. Must hold the lock.
+         */
+        List<ReminderScheduler.Reminder> openReminders() {
+            long today = LocalDate.now().toEpochDay();
+            List<ReminderScheduler.Reminder> open = new ArrayList<>();
+            for (ReminderScheduler.Reminder reminder : dueReminders.values()) {
+                Habit habit = reminder.habit();
+                HabitSchedule schedule = habit.getSchedule();
+                if (repository.get(habit.getId()) == habit && schedule != null
+                        && reminder.time().toLocalDate().toEpochDay() == today && schedule.isDue(habit, today)) {
+                    open.add(reminder);
+                }
+            }
+            return open;
+        }
+
+        private void rolledOver(long epochDay, List<Habit> changed) {
+            persistence.rolledOver(epochDay, changed);
+            persistence.compactIfNeeded(repository.all());
+        }
+
+        void close() {
+            rolloverEngine.stop();
+            reminders.stop();
+            Lock writeLock = lock.writeLock();
+            writeLock.lock();
+            try {
+                if (loaded) {
+                    persistence.saveHabits(repository.all());
+                }
+            } finally {
+                writeLock.unlock();
+            }
+            if (!persistence.close(CLOSE_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                System.err.println("Timed out saving habits on close");
+            }
+        }
+    }
+
+    private final Path root;
+    private final HttpServer server;
+    private final ExecutorService requestExecutor = Executors.newVirtualThreadPerTaskExecutor();
+    private final ScheduledExecutorService rolloverTimer = RolloverEngine.newTimer();
+    private final ScheduledExecutorService reminderTimer = ReminderScheduler.newTimer();
+    private final List<ReminderListener> reminderListeners = new CopyOnWriteArrayList<>();
+    private final ReadWriteLock[] locks = new ReadWriteLock[LOCK_STRIPES];
+    private final Map<String, UserStore> stores = new ConcurrentHashMap<>();
+    private final long idleTimeoutNanos;
+    private final ScheduledFuture<?> eviction;
+    private volatile boolean stopped;
+
+    /**
+     * Constructor for HabitServer.
+     * @param port Port to listen on, or 0 for any free port
+     * @param root Directory holding every user's store
+     */
+    public HabitServer(int port, Path root) throws IOException {
+        this(port, root, DEFAULT_IDLE_TIMEOUT);
+    }
+
+    /**
+     * Constructor for a HabitServer with its own idle timeout.
+     * @param port Port to listen on, or 0 for any free port
+     * @param root Directory holding every user's store
+     * @param idleTimeout Time after a user's last request when their store is saved and closed
+     */
+    public HabitServer(int port, Path root, Duration idleTimeout) throws IOException {
+        this.root = root;
+        this.idleTimeoutNanos = idleTimeout.toNanos();
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            locks[i] = new ReentrantReadWriteLock();
+        }
+        server = HttpServer.create(new InetSocketAddress(port), 0);
+        server.setExecutor(requestExecutor);
+        server.createContext("/users/", this::handle);
+        // The scan is cheap and runs on the rollover timer; closing the stores it finds runs on request threads
+        long interval = Math.max(1, Math.min(idleTimeout.toMillis(), EVICTION_INTERVAL_MILLIS));
+        eviction = rolloverTimer.scheduleWithFixedDelay(this::evictIdleStores, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Starts accepting requests.
+     */
+    public void start() {
+        server.start();
+    }
+
+    /**
+     * Returns the port the server listens on.
+     * @return Bound port
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Subscribes to the reminders of every user whose store is loaded.
+     * @param listener Receives reminders on request threads as they come due
+     */
+    public void addReminderListener(ReminderListener listener) {
+        reminderListeners.add(listener);
+    }
+
+    public void removeReminderListener(ReminderListener listener) {
+        reminderListeners.remove(listener);
+    }
+
+    /**
+     * Returns how many users' stores are open.
+     * @return Number of loaded or loading stores
+     */
+    public int openStores() {
+        return stores.size();
+    }
+
+    /**
+     * Stops accepting requests, saves and closes every open store, including
+     * those an idle eviction is closing, and stops the server's threads.
+     */
+    public void stop() {
+        stopped = true;
+        server.stop(1);
+        eviction.cancel(false);
+        List<UserStore> closing = new ArrayList<>(stores.values());
+        stores.forEach((user, store) -> {
+            if (store.retire()) {
+                closeStore(user, store);
+            }
+        });
+        for (UserStore store : closing) {
+            store.closed.join();
+        }
+        rolloverTimer.shutdownNow();
+        reminderTimer.shutdownNow();
+        requestExecutor.shutdown();
+        try {
+            if (!requestExecutor.awaitTermination(CLOSE_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                System.err.println("Timed out waiting for requests to finish");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Saves and closes the stores no request has used for the idle timeout.
+     */
+    private void evictIdleStores() {
+        long idleSince = System.nanoTime() - idleTimeoutNanos;
+        stores.forEach((user, store) -> {
+            if (store.retireIfIdleSince(idleSince)) {
+                requestExecutor.execute(() -> closeStore(user, store));
+            }
+        });
+    }
+
+    private void closeStore(String user, UserStore store) {
+        try {
+            store.close();
+        } catch (RuntimeException e) {
+            System.err.println("Error closing store for " + user + ": " + e.getMessage());
+        } finally {
+            stores.remove(user, store);
+            store.closed.complete(null);
+        }
+    }
+
+    private Path userDirectory(String user) {
+        String shard = String.format("%02x", user.hashCode() & 0xff);
+        Path directory = root.resolve(shard).resolve(user);
+        try {
+            Files.createDirectories(directory);
+        } catch (IOException e) {
+            throw new HttpError(500, "Cannot create store for " + user + ": " + e.getMessage());
+        }
+        return directory;
+    }
+
+    /**
+     * Returns a user's store, loading it if needed, marked as used until the caller releases it.
+     */
+    private UserStore acquireStore(String user) {
+        if (!USER_ID.matcher(user).matches()) {
+            throw new HttpError(400, "Invalid user id");
+        }
+        while (true) {
+            if (stopped) {
+                throw new HttpError(503, "Server is stopping");
+            }
+            UserStore store = stores.computeIfAbsent(user, UserStore::new);
+            if (store.acquire()) {
+                return store;
+            }
+            // Opening the directory again must wait until the closing store has saved
+            store.closed.join();
+            stores.remove(user, store);
+        }
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            try {
+                route(exchange);
+            } catch (HttpError e) {
+                sendError(exchange, e.status, e.getMessage());
+            } catch (IllegalArgumentException e) {
+                sendError(exchange, 400, e.getMessage());
+            } catch (RuntimeException e) {
+                System.err.println("Error handling " + exchange.getRequestURI() + ": " + e.getMessage());
+                sendError(exchange, 500, "Internal error");
+            }
+        }
+    }
+
+    private void route(HttpExchange exchange) throws IOException {
+        // Path: /users/{user}/{resource}[/{id}[/{action}]]
+        String[] segments = exchange.getRequestURI().getPath().substring("/users/".length()).split("/");
+        if (segments.length < 2) {
+            throw new HttpError(404, "Not found");
+        }
+        UserStore store = acquireStore(segments[0]);
+        try {
+            route(exchange, segments, store);
+        } finally {
+            store.release();
+        }
+    }
+
+    private void route(HttpExchange exchange, String[] segments, UserStore store) throws IOException {
+        String method = exchange.getRequestMethod();
+        String resource = segments[1];
+        switch (resource) {
+            case "habits" -> {
+                if (segments.length == 2) {
+                    switch (method) {
+                        case "GET" -> sendJson(exchange, 200, listHabits(store, queryParameter(exchange, "category")));
+                        case "POST" -> sendJson(exchange, 201, addHabit(store, Json.parseObject(readBody(exchange))));
+                        default -> throw new HttpError(405, "Method not allowed");
+                    }
+                    return;
+                }
+                long id = parseId(segments[2]);
+                if (segments.length == 3) {
+                    switch (method) {
+                        case "GET" -> sendJson(exchange, 200, store.read(() -> habitJson(findHabit(store, id))));
+                        case "DELETE" -> {
+                            deleteHabit(store, id);
+                            exchange.sendResponseHeaders(204, -1);
+                        }
+                        default -> throw new HttpError(405, "Method not allowed");
+                    }
+                } else if (segments.length == 4 && segments[3].equals("complete") && method.equals("POST")) {
+                    sendJson(exchange, 200, completeHabit(store, id));
+                } else if (segments.length == 4 && segments[3].equals("correlations") && method.equals("GET")) {
+                    sendJson(exchange, 200, correlations(store, id));
+                } else if (segments.length == 4 && segments[3].equals("schedule") && method.equals("PUT")) {
+                    sendJson(exchange, 200, scheduleHabit(store, id, Json.parseObject(readBody(exchange))));
+                } else {
+                    throw new HttpError(404, "Not found");
+                }
+            }
+            case "stats" -> {
+                requireMethod(method, "GET", segments.length == 2);
+                sendJson(exchange, 200, store.read(() -> {
+                    HabitStats stats = store.repository.getStats();
+                    return "{\"total\":" + stats.getTotal() + ",\"completedToday\":" + stats.getCompletedToday() + "}";
+                }));
+            }
+            case "analytics" -> {
+                requireMethod(method, "GET", segments.length == 2);
+                sendJson(exchange, 200, store.read(() -> {
+                    StringBuilder json = new StringBuilder(1024);
+                    Json.appendReport(json, store.analytics.report(LocalDate.now().toEpochDay()));
+                    return json.toString();
+                }));
+            }
+            case "reminders" -> {
+                requireMethod(method, "GET", segments.length == 2);
+                sendJson(exchange, 200, store.read(() -> {
+                    List<ReminderScheduler.Reminder> open = store.openReminders();
+                    StringBuilder json = new StringBuilder(open.size() * 120 + 2);
+                    Json.appendReminders(json, open);
+                    return json.toString();
+                }));
+            }
+            case "save" -> {
+                requireMethod(method, "POST", segments.length == 2);
+                try {
+                    store.change(() -> store.persistence.saveHabits(store.repository.all())).join();
+                } catch (CompletionException e) {
+                    System.err.println("Error saving habits: " + e.getCause().getMessage());
+                    throw new HttpError(500, "Habits could not be saved");
+                }
+                exchange.sendResponseHeaders(204, -1);
+            }
+            default -> throw new HttpError(404, "Not found");
+        }
+    }
+
+    private static String listHabits(UserStore store, String category) {
+        return store.read(() -> {
+            Collection<Habit> habits = category == null ? store.repository.all() : store.repository.findByCategory(category);
+            StringBuilder json = new StringBuilder(habits.size() * 80 + 2).append('[');
+            for (Habit habit : habits) {
+                if (json.length() > 1) {
+                    json.append(',');
+                }
+                Json.appendHabit(json, habit);
+            }
+            return json.append(']').toString();
+        });
+    }
+
+    private static String addHabit(UserStore store, Map<String, Object> body) {
+        String name = requireText(body, "name");
+        String category = requireText(body, "category");
+        return store.change(() -> {
+            Habit habit = new Habit(name, category, false, 0);
+            store.repository.add(habit);
+            store.persistence.habitAdded(habit);
+            store.persistence.compactIfNeeded(store.repository.all());
+            return habitJson(habit);
+        });
+    }
+
+    private static String completeHabit(UserStore store, long id) {
+        return store.change(() -> {
+            Habit habit = findHabit(store, id);
+            if (!habit.complete(LocalDate.now().toEpochDay())) {
+                throw new HttpError(409, "Habit is already marked as complete today");
+            }
+            store.persistence.habitUpdated(habit);
+            store.persistence.compactIfNeeded(store.repository.all());
+            return habitJson(habit);
+        });
+    }
+
+    private static String scheduleHabit(UserStore store, long id, Map<String, Object> body) {
+        if (!body.containsKey("schedule")) {
+            throw new HttpError(400, "Missing schedule");
+        }
+        HabitSchedule schedule = switch (body.get("schedule")) {
+            case null -> null;
+            case String text -> HabitSchedule.parse(text);
+            default -> throw new HttpError(400, "Schedule must be a string or null");
+        };
+        return store.change(() -> {
+            Habit habit = findHabit(store, id);
+            if (!Objects.equals(habit.getSchedule(), schedule)) {
+                habit.setSchedule(schedule);
+                store.persistence.habitUpdated(habit);
+                store.persistence.compactIfNeeded(store.repository.all());
+            }
+            return habitJson(habit);
+        });
+    }
+
+    private static String correlations(UserStore store, long id) {
+        return store.read(() -> {
+            List<HabitAnalytics.Correlation> correlations = HabitAnalytics.correlations(
+                findHabit(store, id), store.repository.all(), LocalDate.now().toEpochDay(), CORRELATION_LIMIT);
+            StringBuilder json = new StringBuilder(correlations.size() * 120 + 2);
+            Json.appendCorrelations(json, correlations);
+            return json.toString();
+        });
+    }
+
+    private static void deleteHabit(UserStore store, long id) {
+        store.change(() -> {
+            findHabit(store, id);
+            store.repository.remove(id);
+            store.persistence.habitRemoved(id);
+            store.persistence.compactIfNeeded(store.repository.all());
+            return null;
+        });
+    }
+
+    private static Habit findHabit(UserStore store, long id) {
+        Habit habit = store.repository.get(id);
+        if (habit == null) {
+            throw new HttpError(404, "No habit with id " + id);
+        }
+        return habit;
+    }
+
+    private static String habitJson(Habit habit) {
+        StringBuilder json = new StringBuilder(96);
+        Json.appendHabit(json, habit);
+        return json.toString();
+    }
+
+    private static String requireText(Map<String, Object> body, String key) {
+        if (!(body.get(key) instanceof String value) || value.isBlank()) {
+            throw new HttpError(400, "Missing " + key);
+        }
+        return value.trim();
+    }
+
+    private static void requireMethod(String method, String expected, boolean pathMatches) {
+        if (!pathMatches) {
+            throw new HttpError(404, "Not found");
+        }
+        if (!method.equals(expected)) {
+            throw new HttpError(405, "Method not allowed");
+        }
+    }
+
+    private static long parseId(String segment) {
+        try {
+            return Long.parseLong(segment);
+        } catch (NumberFormatException e) {
+            throw new HttpError(404, "No habit with id " + segment);
+        }
+    }
+
+    private static String queryParameter(HttpExchange exchange, String name) {
+        String query = exchange.getRequestURI().getRawQuery();
+        if (query == null) {
+            return null;
+        }
+        for (String pair : query.split("&")) {
+            int equals = pair.indexOf('=');
+            String key = URLDecoder.decode(equals < 0 ? pair : pair.substring(0, equals), StandardCharsets.UTF_8);
+            if (key.equals(name)) {
+                return equals < 0 ? "" : URLDecoder.decode(pair.substring(equals + 1), StandardCharsets.UTF_8);
+            }
+        }
+        return null;
+    }
+
+    private static String readBody(HttpExchange exchange) throws IOException {
+        return new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+    }
+
+    private static void sendJson(HttpExchange exchange, int status, String json) throws IOException {
+        byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static void sendError(HttpExchange exchange, int status, String message) throws IOException {
+        StringBuilder json = new StringBuilder("{\"error\":");
+        Json.appendString(json, message == null ? "" : message);
+        sendJson(exchange, status, json.append('}').toString());
+    }
+
+    /**
+     * Runs the server until the process is stopped.
+     * Arguments: [port] [data directory], defaulting to 8080 and ./users.
+     */
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+        Path root = args.length > 1 ? Paths.get(args[1]) : Paths.get(System.getProperty("user.dir"), "users");
+        HabitServer habitServer = new HabitServer(port, root);
+        Runtime.getRuntime().addShutdownHook(new Thread(habitServer::stop, "habit-server-shutdown"));
+        habitServer.start();
+        System.out.println("Habit server listening on port " + habitServer.getPort() + ", storing habits in " + root);
+    }
+}
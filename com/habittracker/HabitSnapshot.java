@@ -0,0 +1,309 @@
+package com.habittracker;
+
+/**
+ * HabitSnapshot.java
+ * Reads and writes the versioned binary snapshot format (habits.dat).
+ *
+ * Layout (big-endian):
+ *   header   magic "HABT", version, journal sequence, habit count, string count, rollover day
+ *   records  one fixed-size record per habit: id, name index, category index, streak, flags,
+ *            schedule index (-1 for none)
+ *   strings  interned string table: UTF-8 length followed by the bytes
+ *   history  per habit, in record order: base epoch day, word count, completion bit words
+ * Each of the four sections is followed by the CRC32C of its bytes.
+ *
+ * Names, categories and schedules share one string table, so a category used
+ * by thousands of habits is stored and decoded only once. Version 1 snapshots
+ * had no habit ids, version 2 had no completion history, versions before 4 had
+ * no rollover day, versions before 5 had no checksums and versions before 6 had
+ * no schedules; all of them are still readable.
+ *
+ * Snapshots are replaced atomically (see {@link AtomicFile}) and the previous
+ * snapshot is kept as a .prev backup. If the current snapshot is missing or
+ * damaged, {@link #readBackup} finds the newest backup that still verifies.
+ */
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32C;
+
+public class HabitSnapshot {
+    private static final int MAGIC = 0x48414254; // "HABT"
+    private static final int VERSION = 6;
+    private static final int HEADER_SIZE = 32;
+    private static final int V3_HEADER_SIZE = 24;
+    private static final int RECORD_SIZE = 25;
+    private static final int V5_RECORD_SIZE = 21;
+    private static final int V1_RECORD_SIZE = 13;
+    private static final byte FLAG_COMPLETED_TODAY = 1;
+    private static final int CHECKSUM_SIZE = Integer.BYTES;
+
+    /**
+     * Habits read from a snapshot together with the last journal sequence folded into it
+     * and the last day the habits were rolled over to (0 if unknown).
+     * The version tells which journal record format belongs to the snapshot; text
+     * snapshots are reported as version 0.
+     */
+    public record Contents(List<Habit> habits, long sequence, long rolloverDay, int version) {
+        /**
+         * Returns whether journal records address habits by list position instead of id.
+         */
+        public boolean hasIndexJournal() {
+            return version < 2;
+        }
+
+        /**
+         * Returns whether journal records carry the completion history.
+         */
+        public boolean hasHistoryJournal() {
+            return version >= 3;
+        }
+
+        /**
+         * Returns whether the snapshot was written in an older format.
+         */
+        public boolean isOutdated() {
+            return version < VERSION;
+        }
+    }
+
+    private HabitSnapshot() {
+    }
+
+    /**
+     * Writes habits to a snapshot file, replacing the old snapshot atomically.
+     * The whole snapshot is laid out in one direct buffer sized up front and
+     * written through a file channel.
+     * @param file Snapshot file to write
+     * @param habits Habits to store
+     * @param sequence Last journal sequence included in the snapshot
+     * @param rolloverDay Epoch day the habits were last rolled over to
+     * @return Size of the snapshot in bytes
+     */
+    public static long write(Path file, List<Habit> habits, long sequence, long rolloverDay) throws IOException {
+        Map<String, Integer> indexes = new HashMap<>();
+        List<byte[]> strings = new ArrayList<>();
+        int[] nameIndexes = new int[habits.size()];
+        int[] categoryIndexes = new int[habits.size()];
+        int[] scheduleIndexes = new int[habits.size()];
+        long[][] historyWords = new long[habits.size()][];
+        long size = HEADER_SIZE + (long) habits.size() * (RECORD_SIZE + 12) + 4 * CHECKSUM_SIZE;
+        for (int i = 0; i < habits.size(); i++) {
+            Habit habit = habits.get(i);
+            nameIndexes[i] = intern(habit.getName(), indexes, strings);
+            categoryIndexes[i] = intern(habit.getCategory(), indexes, strings);
+            scheduleIndexes[i] = habit.getSchedule() == null ? -1 : intern(habit.getSchedule().toString(), indexes, strings);
+            historyWords[i] = habit.getHistory().toWords();
+            size += (long) historyWords[i].length * Long.BYTES;
+        }
+        for (byte[] bytes : strings) {
+            size += Integer.BYTES + bytes.length;
+        }
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("Snapshot too large: " + size + " bytes");
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocateDirect((int) size);
+        CRC32C crc = new CRC32C();
+        int sectionStart = 0;
+        buffer.putInt(MAGIC);
+        buffer.putInt(VERSION);
+        buffer.putLong(sequence);
+        buffer.putInt(habits.size());
+        buffer.putInt(strings.size());
+        buffer.putLong(rolloverDay);
+        sectionStart = putChecksum(buffer, sectionStart, crc);
+        for (int i = 0; i < habits.size(); i++) {
+            Habit habit = habits.get(i);
+            buffer.putLong(habit.getId());
+            buffer.putInt(nameIndexes[i]);
+            buffer.putInt(categoryIndexes[i]);
+            buffer.putInt(habit.getStreak());
+            buffer.put(habit.isCompletedToday() ? FLAG_COMPLETED_TODAY : 0);
+            buffer.putInt(scheduleIndexes[i]);
+        }
+        sectionStart = putChecksum(buffer, sectionStart, crc);
+        for (byte[] bytes : strings) {
+            buffer.putInt(bytes.length);
+            buffer.put(bytes);
+        }
+        sectionStart = putChecksum(buffer, sectionStart, crc);
+        for (int i = 0; i < habits.size(); i++) {
+            buffer.putLong(habits.get(i).getHistory().getTrimmedBaseDay());
+            buffer.putInt(historyWords[i].length);
+            for (long word : historyWords[i]) {
+                buffer.putLong(word);
+            }
+        }
+        putChecksum(buffer, sectionStart, crc);
+        buffer.flip();
+
+        try (FileChannel channel = AtomicFile.openTemp(file)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(true);
+        }
+        AtomicFile.commit(file, backupFile(file));
+        HabitMetrics.get().bytesWritten(size);
+        return size;
+    }
+
+    /**
+     * Reads a snapshot file through a memory-mapped buffer.
+     * @param file Snapshot file to read
+     * @return Habits and journal sequence stored in the file
+     */
+    public static Contents read(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return read(file, channel);
+        } catch (BufferUnderflowException | IndexOutOfBoundsException | IllegalArgumentException e) {
+            throw new IOException("Truncated habit snapshot: " + file, e);
+        }
+    }
+
+    /**
+     * Reads the newest backup of a snapshot that is still intact: the .prev copy
+     * of the last snapshot that was replaced, or a fully written .tmp file left
+     * by a save that was interrupted before its rename.
+     * @param file Snapshot file whose backups to read
+     * @return Habits and journal sequence stored in the newest valid backup
+     */
+    public static Contents readBackup(Path file) throws IOException {
+        Contents newest = null;
+        IOException failure = null;
+        for (Path backup : List.of(AtomicFile.tempFile(file), backupFile(file))) {
+            try {
+                Contents contents = read(backup);
+                if (newest == null || contents.sequence() > newest.sequence()) {
+                    newest = contents;
+                }
+            } catch (NoSuchFileException e) {
+                // No backup of this kind
+            } catch (IOException e) {
+                failure = e;
+            }
+        }
+        if (newest != null) {
+            return newest;
+        }
+        throw failure != null ? failure : new NoSuchFileException(backupFile(file).toString());
+    }
+
+    private static Contents read(Path file, FileChannel channel) throws IOException {
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        if (buffer.remaining() < V3_HEADER_SIZE || buffer.getInt() != MAGIC) {
+            throw new IOException("Not a habit snapshot: " + file);
+        }
+        int version = buffer.getInt();
+        if (version < 1 || version > VERSION) {
+            throw new IOException("Unsupported snapshot version " + version);
+        }
+        int recordSize = version == 1 ? V1_RECORD_SIZE : version < 6 ? V5_RECORD_SIZE : RECORD_SIZE;
+        long sequence = buffer.getLong();
+        int habitCount = buffer.getInt();
+        int stringCount = buffer.getInt();
+        long rolloverDay = version >= 4 ? buffer.getLong() : 0;
+        int headerSize = version >= 4 ? HEADER_SIZE : V3_HEADER_SIZE;
+        int checksumSize = version >= 5 ? CHECKSUM_SIZE : 0;
+        CRC32C crc = new CRC32C();
+        verifyChecksum(buffer, 0, headerSize, version, crc, "header");
+        int recordsStart = headerSize + checksumSize;
+        int stringsStart = recordsStart + habitCount * recordSize + checksumSize;
+        verifyChecksum(buffer, recordsStart, stringsStart - checksumSize, version, crc, "habit records");
+
+        // Decode the string table first so records can share its instances
+        String[] strings = new String[stringCount];
+        buffer.position(stringsStart);
+        byte[] scratch = new byte[64];
+        for (int i = 0; i < stringCount; i++) {
+            int length = buffer.getInt();
+            if (length > scratch.length) {
+                scratch = new byte[Math.max(length, scratch.length * 2)];
+            }
+            buffer.get(scratch, 0, length);
+            strings[i] = new String(scratch, 0, length, StandardCharsets.UTF_8);
+        }
+        verifyChecksum(buffer, stringsStart, buffer.position(), version, crc, "string table");
+        buffer.position(buffer.position() + checksumSize);
+
+        List<Habit> habits = new ArrayList<>(habitCount);
+        Map<Integer, HabitSchedule> schedules = new HashMap<>();
+        ByteBuffer records = buffer.duplicate().position(recordsStart);
+        for (int i = 0; i < habitCount; i++) {
+            long id = version == 1 ? i + 1 : records.getLong();
+            String name = strings[records.getInt()];
+            String category = strings[records.getInt()];
+            int streak = records.getInt();
+            boolean completedToday = (records.get() & FLAG_COMPLETED_TODAY) != 0;
+            Habit habit = new Habit(name, category, completedToday, streak);
+            habit.setId(id);
+            int scheduleIndex = version >= 6 ? records.getInt() : -1;
+            if (scheduleIndex >= 0) {
+                habit.setSchedule(schedules.computeIfAbsent(scheduleIndex, index -> HabitSchedule.parse(strings[index])));
+            }
+            habits.add(habit);
+        }
+
+        // The history section follows the string table
+        if (version >= 3) {
+            int historyStart = buffer.position();
+            for (Habit habit : habits) {
+                long baseDay = buffer.getLong();
+                int wordCount = buffer.getInt();
+                if (wordCount < 0 || wordCount > buffer.remaining() / Long.BYTES) {
+                    throw new IOException("Truncated habit snapshot: " + file);
+                }
+                long[] words = new long[wordCount];
+                buffer.asLongBuffer().get(words);
+                buffer.position(buffer.position() + words.length * Long.BYTES);
+                habit.setHistory(CompletionHistory.fromWords(baseDay, words));
+            }
+            verifyChecksum(buffer, historyStart, buffer.position(), version, crc, "completion history");
+        }
+        return new Contents(habits, sequence, rolloverDay, version);
+    }
+
+    private static Path backupFile(Path file) {
+        return file.resolveSibling(file.getFileName() + ".prev");
+    }
+
+    // Appends the checksum of the section that started at sectionStart and returns where the next one starts
+    private static int putChecksum(ByteBuffer buffer, int sectionStart, CRC32C crc) {
+        crc.reset();
+        crc.update(buffer.duplicate().position(sectionStart).limit(buffer.position()));
+        buffer.putInt((int) crc.getValue());
+        return buffer.position();
+    }
+
+    private static void verifyChecksum(ByteBuffer buffer, int start, int end, int version, CRC32C crc, String section) throws IOException {
+        if (version < 5) {
+            return;
+        }
+        crc.reset();
+        crc.update(buffer.duplicate().position(start).limit(end));
+        if (buffer.getInt(end) != (int) crc.getValue()) {
+            throw new IOException("Checksum mismatch in snapshot " + section);
+        }
+    }
+
+    private static int intern(String value, Map<String, Integer> indexes, List<byte[]> strings) {
+        Integer index = indexes.get(value);
+        if (index == null) {
+            index = strings.size();
+            indexes.put(value, index);
+            strings.add(value.getBytes(StandardCharsets.UTF_8));
+        }
+        return index;
+    }
+}
@@ -0,0 +1,154 @@
+package com.habittracker;
+
+/**
+ * HabitStats.java
+ * Incrementally maintained statistics over a set of habits.
+ *
+ * Habits are registered with {@link #add} and {@link #remove}; afterwards every
+ * change made through the Habit setters is applied to the aggregate directly,
+ * so readers never need to rescan the habits.
+ */
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+public class HabitStats implements Habit.Listener {
+    private int total;
+    private int completedToday;
+    private final Map<String, CategoryCount> categories = new HashMap<>();
+    // Number of habits per streak length, holding only lengths some habit has
+    private final NavigableMap<Integer, Integer> streakHistogram = new TreeMap<>();
+
+    /**
+     * Habit counts for a single category.
+     */
+    public static class CategoryCount {
+        private int total;
+        private int completedToday;
+
+        public int getTotal() {
+            return total;
+        }
+
+        public int getCompletedToday() {
+            return completedToday;
+        }
+    }
+
+    /**
+     * Adds a habit to the aggregate and starts listening to its changes.
+     * @param habit Habit to add
+     */
+    public void add(Habit habit) {
+        total++;
+        CategoryCount category = categories.computeIfAbsent(habit.getCategory(), name -> new CategoryCount());
+        category.total++;
+        if (habit.isCompletedToday()) {
+            completedToday++;
+            category.completedToday++;
+        }
+        addStreak(habit.getStreak());
+        habit.setListener(this);
+    }
+
+    /**
+     * Removes a habit from the aggregate and stops listening to its changes.
+     * @param habit Habit to remove
+     */
+    public void remove(Habit habit) {
+        habit.setListener(null);
+        total--;
+        CategoryCount category = categories.get(habit.getCategory());
+        category.total--;
+        if (habit.isCompletedToday()) {
+            completedToday--;
+            category.completedToday--;
+        }
+        if (category.total == 0) {
+            categories.remove(habit.getCategory());
+        }
+        removeStreak(habit.getStreak());
+    }
+
+    public int getTotal() {
+        return total;
+    }
+
+    public int getCompletedToday() {
+        return completedToday;
+    }
+
+    public int getLongestStreak() {
+        return streakHistogram.isEmpty() ? 0 : streakHistogram.lastKey();
+    }
+
+    /**
+     * Returns the counts per category.
+     * @return Unmodifiable view keyed by category name
+     */
+    public Map<String, CategoryCount> getCategories() {
+        return Collections.unmodifiableMap(categories);
+    }
+
+    /**
+     * Returns the number of habits with a given streak.
+     * @param streak Streak length
+     * @return Number of habits with exactly that streak
+     */
+    public int getHabitsWithStreak(int streak) {
+        return streakHistogram.getOrDefault(streak, 0);
+    }
+
+    /**
+     * Returns a copy of the streak histogram, leaving out lengths no habit has.
+     * @return Number of habits per streak length, ordered by length
+     */
+    public SortedMap<Integer, Integer> getStreakHistogram() {
+        return new TreeMap<>(streakHistogram);
+    }
+
+    @Override
+    public void nameChanged(Habit habit, String oldName) {
+        // Names are not aggregated
+    }
+
+    @Override
+    public void categoryChanged(Habit habit, String oldCategory) {
+        CategoryCount oldCount = categories.get(oldCategory);
+        CategoryCount newCount = categories.computeIfAbsent(habit.getCategory(), category -> new CategoryCount());
+        oldCount.total--;
+        newCount.total++;
+        if (habit.isCompletedToday()) {
+            oldCount.completedToday--;
+            newCount.completedToday++;
+        }
+        if (oldCount.total == 0) {
+            categories.remove(oldCategory);
+        }
+    }
+
+    @Override
+    public void completedTodayChanged(Habit habit, boolean oldCompletedToday) {
+        int delta = habit.isCompletedToday() ? 1 : -1;
+        completedToday += delta;
+        categories.get(habit.getCategory()).completedToday += delta;
+    }
+
+    @Override
+    public void streakChanged(Habit habit, int oldStreak) {
+        removeStreak(oldStreak);
+        addStreak(habit.getStreak());
+    }
+
+    private void addStreak(int streak) {
+        streakHistogram.merge(Math.max(streak, 0), 1, Integer::sum);
+    }
+
+    private void removeStreak(int streak) {
+        // A length no habit has any more is dropped, so the last key stays the longest streak
+        streakHistogram.computeIfPresent(Math.max(streak, 0), (length, count) -> count == 1 ? null : count - 1);
+    }
+}
@@ -0,0 +1,159 @@
+package com.habittracker;
+
+/**
+ * HabitStore.java
+ * Storage backend for one set of habits, driven by {@link PersistenceService}.
+ *
+ * A store holds a snapshot of the habits plus the stream of changes made since
+ * ("the journal"). Every change carries a sequence number reserved when it was
+ * made; a snapshot records the last sequence it contains, and changes at or
+ * below that sequence are already part of it. How the journal is kept is up to
+ * the store: {@link DataManager} appends it to a file and folds it into the
+ * snapshot now and then, {@link JdbcHabitStore} applies each change to its
+ * table in place.
+ *
+ * The backend is chosen with -Dhabittracker.store:
+ *   file (default)              habits.dat and habits.journal in the directory
+ *   jdbc:h2:file:{dir}/habits   any JDBC URL; {dir} becomes the directory
+ * Stores are used from one thread at a time.
+ *
+ * A store may be shared with other processes, such as a second instance of
+ * the app or a sync tool. Such a store hands out habit ids no other process
+ * uses, names a file to watch for their changes and collects those changes as
+ * {@link ExternalChanges}. Stores that are not shared keep the defaults.
+ */
+import java.nio.file.Path;
+import java.util.List;
+
+public interface HabitStore {
+    String STORE_PROPERTY = "habittracker.store";
+
+    /**
+     * Opens the store configured with -Dhabittracker.store for a directory.
+     * @param directory Directory of the habits, as for the file store
+     * @return The configured store
+     */
+    static HabitStore open(Path directory) {
+        return open(System.getProperty(STORE_PROPERTY, "file"), directory);
+    }
+
+    /**
+     * Opens a store from a configuration value.
+     * @param spec "file" or a JDBC URL, in which {dir} stands for the directory
+     * @param directory Directory of the habits
+     * @return The store
+     * @throws IllegalArgumentException if the value names no known backend
+     */
+    static HabitStore open(String spec, Path directory) {
+        if (spec.equals("file")) {
+            return new DataManager(directory);
+        }
+        if (spec.startsWith("jdbc:")) {
+            return new JdbcHabitStore(spec.replace("{dir}", directory.toAbsolutePath().toString()));
+        }
+        throw new IllegalArgumentException("Unknown habit store: " + spec);
+    }
+
+    /**
+     * Loads every habit, replaying changes made since the last snapshot.
+     * @return Loaded habits, each with a stable id
+     */
+    List<Habit> loadHabits();
+
+    /**
+     * Replaces the stored habits with a snapshot.
+     * @param habits Habits to store
+     * @param snapshotSequence Last change sequence reflected in the habits
+     * @param snapshotRolloverDay Rollover day reflected in the habits
+     * @throws RuntimeException if the snapshot could not be written, such as
+     *         {@link java.io.UncheckedIOException}; the stored habits are unchanged then
+     */
+    void saveHabits(List<Habit> habits, long snapshotSequence, long snapshotRolloverDay);
+
+    /**
+     * Finds the habits of a category with at least a given streak.
+     * @param category Category to match, or null for every category
+     * @param minStreak Smallest streak to include
+     * @return Matching habits, in no particular order
+     */
+    List<Habit> findHabits(String category, int minStreak);
+
+    /**
+     * Reserves the sequence number for the next change.
+     * @return Sequence number for the change
+     */
+    long nextSequence();
+
+    /**
+     * Returns the last sequence number handed out.
+     * @return Current sequence
+     */
+    long currentSequence();
+
+    /**
+     * Returns the epoch day the habits were last rolled over to.
+     * @return Rollover day, or 0 if never rolled over
+     */
+    long getRolloverDay();
+
+    /**
+     * Sets the rollover day the next snapshot will record.
+     * @param epochDay Day the habits were rolled over to
+     */
+    void setRolloverDay(long epochDay);
+
+    void journalAdd(long recordSequence, Habit habit);
+
+    void journalUpdate(long recordSequence, Habit habit);
+
+    void journalRollover(long recordSequence, long epochDay);
+
+    void journalDelete(long recordSequence, long id);
+
+    /**
+     * Hands every change recorded so far to the storage, so it survives the
+     * process exiting. Called after each batch of changes.
+     */
+    void flush();
+
+    /**
+     * Forces recorded changes all the way to disk.
+     */
+    void syncJournal();
+
+    /**
+     * Returns whether a snapshot should be saved to keep loading fast.
+     * @return true if the journal has grown large
+     */
+    boolean needsCompaction();
+
+    /**
+     * Writes outstanding changes and releases the storage.
+     */
+    void close();
+
+    /**
+     * Reserves ids for new habits, unique among every process sharing the store.
+     * @param count Number of ids to reserve
+     * @return First of count consecutive new ids, or 0 if the caller may number habits itself
+     */
+    default long reserveHabitIds(int count) {
+        return 0;
+    }
+
+    /**
+     * Returns the file that changes whenever another process writes to the store.
+     * @return File to watch, or null if the store is not shared this way
+     */
+    default Path changeFile() {
+        return null;
+    }
+
+    /**
+     * Collects the changes other processes made since the last call.
+     * @return Changes not handed out before, or null if there are none
+     */
+    default ExternalChanges readExternalChanges() {
+        return null;
+    }
+}
@@ -0,0 +1,80 @@
+package com.habittracker;
+
+/**
+ * HabitStoreMigration.java
+ * Copies every habit from one {@link HabitStore} to another and checks the copy.
+ *
+ * Usage: RunHabitTracker --migrate <from> <to>
+ * where each store is a directory (the file store) or a JDBC URL, for example
+ *   RunHabitTracker --migrate . jdbc:h2:file:./habits
+ * The target's existing habits are replaced. Run it while the app is closed.
+ */
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public final class HabitStoreMigration {
+    private HabitStoreMigration() {
+    }
+
+    /**
+     * Copies the habits of one store into another, replacing what the target holds.
+     * @param source Store to read
+     * @param target Store to write
+     * @return Number of habits copied
+     * @throws IllegalStateException if the target does not read back what was written
+     */
+    public static int migrate(HabitStore source, HabitStore target) {
+        List<Habit> habits = source.loadHabits();
+        // Loading the target first makes sure its sequence only moves forward
+        target.loadHabits();
+        long sequence = Math.max(source.currentSequence(), target.currentSequence());
+        target.saveHabits(habits, sequence, source.getRolloverDay());
+        target.setRolloverDay(source.getRolloverDay());
+        List<Habit> copied = target.loadHabits();
+        if (copied.size() != habits.size()) {
+            throw new IllegalStateException("Expected " + habits.size() + " habits in the target, found " + copied.size());
+        }
+        // Stores may order habits differently, so match them up by id
+        Map<Long, Habit> byId = new HashMap<>();
+        for (Habit habit : copied) {
+            byId.put(habit.getId(), habit);
+        }
+        for (Habit expected : habits) {
+            Habit actual = byId.get(expected.getId());
+            if (actual == null || !expected.toString().equals(actual.toString())
+                    || !expected.getHistory().toString().equals(actual.getHistory().toString())) {
+                throw new IllegalStateException("Habit " + expected.getId() + " was not copied intact");
+            }
+        }
+        return habits.size();
+    }
+
+    public static void main(String[] args) {
+        if (args.length != 2) {
+            System.err.println("Usage: --migrate <from directory or JDBC URL> <to directory or JDBC URL>");
+            System.exit(2);
+        }
+        HabitStore source = open(args[0]);
+        HabitStore target = open(args[1]);
+        int status = 0;
+        try {
+            int count = migrate(source, target);
+            System.out.println("Migrated " + count + " habits from " + args[0] + " to " + args[1]);
+        } catch (RuntimeException e) {
+            System.err.println("Error migrating habits: " + e.getMessage());
+            status = 1;
+        } finally {
+            source.close();
+            target.close();
+        }
+        if (status != 0) {
+            System.exit(status);
+        }
+    }
+
+    private static HabitStore open(String location) {
+        return location.startsWith("jdbc:") ? new JdbcHabitStore(location) : new DataManager(Paths.get(location));
+    }
+}
@@ -0,0 +1,77 @@
+package com.habittracker;
+
+/**
+ * HabitTable.java
+ * The styled habit table.
+ *
+ * Every color and font is created once and shared, so painting a cell does not
+ * allocate: prepareRenderer only picks one of two cached row backgrounds. The
+ * stock renderers JTable keeps per column class are shared by every cell of
+ * that class. Paints can be timed with {@link PaintMonitor}.
+ */
+import java.awt.Color;
+import java.awt.Component;
+import java.awt.Dimension;
+import java.awt.Font;
+import java.awt.Graphics;
+import javax.swing.BorderFactory;
+import javax.swing.JTable;
+import javax.swing.table.TableCellRenderer;
+
+public final class HabitTable extends JTable {
+    private static final long serialVersionUID = 1L;
+    private static final Color EVEN_ROW = new Color(255, 255, 255);
+    private static final Color ODD_ROW = new Color(245, 250, 255);
+    private static final Color HEADER_BACKGROUND = new Color(70, 130, 180); // Steel Blue
+    private static final Color GRID = new Color(220, 220, 220);
+    private static final Color SELECTION = new Color(173, 216, 230); // Light Blue
+    private static final Font CELL_FONT = new Font("Segoe UI", Font.PLAIN, 14);
+    private static final Font HEADER_FONT = new Font("Segoe UI", Font.BOLD, 15);
+
+    private final transient PaintMonitor paintMonitor;
+
+    /**
+     * Constructor for HabitTable.
+     * @param model Model supplying the rows
+     * @param paintMonitor Monitor timing each paint, or null
+     */
+    public HabitTable(HabitTableModel model, PaintMonitor paintMonitor) {
+        super(model);
+        this.paintMonitor = paintMonitor;
+        setRowHeight(30);
+        setFont(CELL_FONT);
+        getTableHeader().setFont(HEADER_FONT);
+        getTableHeader().setBackground(HEADER_BACKGROUND);
+        getTableHeader().setForeground(Color.WHITE);
+        setShowGrid(true);
+        setGridColor(GRID);
+        setSelectionBackground(SELECTION);
+        setSelectionForeground(Color.BLACK);
+        setIntercellSpacing(new Dimension(5, 5));
+        setBorder(BorderFactory.createEmptyBorder(5, 5, 5, 5));
+    }
+
+    @Override
+    public Component prepareRenderer(TableCellRenderer renderer, int row, int column) {
+        Component c = super.prepareRenderer(renderer, row, column);
+        if (!isRowSelected(row)) {
+            // Alternating row colors
+            c.setBackground(row % 2 == 0 ? EVEN_ROW : ODD_ROW);
+        }
+        return c;
+    }
+
+    @Override
+    protected void paintComponent(Graphics g) {
+        if (paintMonitor == null) {
+            super.paintComponent(g);
+            return;
+        }
+        long token = paintMonitor.paintStarted();
+        try {
+            super.paintComponent(g);
+        } finally {
+            paintMonitor.paintFinished(token);
+        }
+    }
+}
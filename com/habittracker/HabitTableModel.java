@@ -0,0 +1,169 @@
+package com.habittracker;
+
+/**
+ * HabitTableModel.java
+ * Table model that reads directly from the habits it shows.
+ *
+ * Rows are not copied into the model; cell values are read from the habit on
+ * demand, so a single change only needs to fire an event for the affected row.
+ * The model keeps its own row order, independent of the order habits are
+ * stored in the {@link HabitRepository}, and the row of every habit by id, so
+ * finding the row a changed habit occupies does not scan the rows. Only
+ * removing a row renumbers the rows after it.
+ */
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import javax.swing.table.AbstractTableModel;
+
+public class HabitTableModel extends AbstractTableModel {
+    private static final long serialVersionUID = 1L;
+    private static final String[] COLUMN_NAMES = {"Name", "Category", "Completed Today", "Streak"};
+
+    private transient List<Habit> habits = new ArrayList<>();
+    private transient Map<Long, Integer> rows = new HashMap<>();
+
+    /**
+     * Replaces every row and repaints the whole table.
+     * @param habits Habits to show, in row order
+     */
+    public void setHabits(Collection<Habit> habits) {
+        try (HabitMetrics.Operation operation = HabitMetrics.get().start("table.refresh")) {
+            operation.items(habits.size());
+            this.habits = new ArrayList<>(habits);
+            rows = new HashMap<>(this.habits.size() * 2);
+            numberRows(0);
+            fireTableDataChanged();
+        }
+    }
+
+    /**
+     * Returns the habit shown in a row.
+     * @param row Model row index
+     * @return Habit for that row
+     */
+    public Habit getHabitAt(int row) {
+        return habits.get(row);
+    }
+
+    /**
+     * Returns the row showing a habit.
+     * @param habit Habit to look for
+     * @return Model row index, or -1 if the habit is not shown
+     */
+    public int rowOf(Habit habit) {
+        Integer row = rows.get(habit.getId());
+        return row != null && habits.get(row) == habit ? row : -1;
+    }
+
+    /**
+     * Appends a row for a habit.
+     * @param habit Habit to show
+     */
+    public void habitAdded(Habit habit) {
+        habits.add(habit);
+        int row = habits.size() - 1;
+        rows.put(habit.getId(), row);
+        fireTableRowsInserted(row, row);
+    }
+
+    /**
+     * Inserts a row for a habit.
+     * @param row Row the habit is shown at
+     * @param habit Habit to show
+     */
+    public void habitInserted(int row, Habit habit) {
+        habits.add(row, habit);
+        numberRows(row);
+        fireTableRowsInserted(row, row);
+    }
+
+    /**
+     * Appends rows for a batch of habits.
+     * @param added Habits to show
+     */
+    public void habitsAdded(Collection<Habit> added) {
+        if (added.isEmpty()) {
+            return;
+        }
+        int firstRow = habits.size();
+        habits.addAll(added);
+        numberRows(firstRow);
+        fireTableRowsInserted(firstRow, habits.size() - 1);
+    }
+
+    /**
+     * Notifies the table that the habit in a row changed.
+     * @param row Model row index
+     */
+    public void habitUpdated(int row) {
+        fireTableRowsUpdated(row, row);
+    }
+
+    /**
+     * Notifies the table that any of the habits may have changed.
+     */
+    public void allHabitsUpdated() {
+        if (!habits.isEmpty()) {
+            try (HabitMetrics.Operation operation = HabitMetrics.get().start("table.refresh")) {
+                operation.items(habits.size());
+                fireTableRowsUpdated(0, habits.size() - 1);
+            }
+        }
+    }
+
+    /**
+     * Removes the row of a habit.
+     * @param row Model row index the habit occupies
+     */
+    public void habitRemoved(int row) {
+        Habit removed = habits.remove(row);
+        rows.remove(removed.getId(), row);
+        numberRows(row);
+        fireTableRowsDeleted(row, row);
+    }
+
+    // Records the row of every habit from a row on
+    private void numberRows(int firstRow) {
+        for (int row = firstRow; row < habits.size(); row++) {
+            rows.put(habits.get(row).getId(), row);
+        }
+    }
+
+    @Override
+    public int getRowCount() {
+        return habits.size();
+    }
+
+    @Override
+    public int getColumnCount() {
+        return COLUMN_NAMES.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return COLUMN_NAMES[column];
+    }
+
+    @Override
+    public Class<?> getColumnClass(int columnIndex) {
+        if (columnIndex == 2) { // Completed Today column
+            return Boolean.class;
+        }
+        return super.getColumnClass(columnIndex);
+    }
+
+    @Override
+    public Object getValueAt(int rowIndex, int columnIndex) {
+        Habit habit = habits.get(rowIndex);
+        return switch (columnIndex) {
+            case 0 -> habit.getName();
+            case 1 -> habit.getCategory();
+            case 2 -> habit.isCompletedToday() ? Boolean.TRUE : Boolean.FALSE;
+            case 3 -> habit.getStreak();
+            default -> null;
+        };
+    }
+}
@@ -3,28 +3,71 @@ package com.habittracker;
 /**
  * HabitTrackerApp.java
  * Main application class with GUI implementation using Java Swing.
+ *
+ * At startup main starts reading the store and initializing fonts on
+ * background threads before Swing starts, the frame is shown as soon as it is
+ * built and habits fill in as they arrive, and monitoring that is only useful
+ * later (the EDT monitor) is installed after the first frame is painted.
+ * -Dhabittracker.startupTiming=true reports the startup times, see
+ * {@link StartupTimer}.
  */
 import java.awt.*;
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
 import javax.swing.*;
-import javax.swing.table.DefaultTableModel;
-import javax.swing.table.TableCellRenderer;
+import javax.swing.filechooser.FileNameExtensionFilter;
 
-public class HabitTrackerApp extends JFrame {
+public final class HabitTrackerApp extends JFrame {
     private static final long serialVersionUID = 1L;
-    private List<Habit> habits;
-    private final DefaultTableModel tableModel;
+    private static final long CLOSE_TIMEOUT_SECONDS = 5;
+    // Larger batches of external changes redraw the whole table instead of single rows
+    private static final int EXTERNAL_ROW_UPDATES = 100;
+    // Correlated habits listed for the selected habit in the analytics view
+    private static final int ANALYTICS_CORRELATIONS = 10;
+    private final transient HabitRepository repository = new HabitRepository();
+    private final HabitTableModel tableModel;
     private final JTable habitTable;
     private final JLabel statusLabel;
+    private final HabitFilterBar filterBar;
+    private final transient PersistenceService persistence;
+    private final transient RolloverEngine rolloverEngine =
+        new RolloverEngine(SwingUtilities::invokeLater, repository::all, this::habitsRolledOver);
+    private final transient CommandLog commandLog;
+    private final transient HabitAnalytics analytics = new HabitAnalytics(repository);
+    private final transient ReminderScheduler reminders = new ReminderScheduler(SwingUtilities::invokeLater, repository::get);
+    private final transient ReminderNotifier reminderNotifier;
+    private final transient List<JButton> actionButtons = new ArrayList<>();
+    private final JButton undoButton;
+    private final JButton redoButton;
+    private boolean actionsEnabled = true;
+    // Set once every chunk of the load has reached the repository
+    private boolean habitsLoaded;
+    private final transient StartupTimer startupTimer = new StartupTimer(this::closeAfterStartup);
+    private boolean framePainted;
 
     /**
      * Constructor for HabitTrackerApp.
-     * Initializes the GUI and loads existing habits.
+     * Initializes the GUI and starts loading existing habits in the background.
      */
     public HabitTrackerApp() {
-        // Initialize habits list
-        habits = DataManager.loadHabits();
+        this(new PersistenceService(HabitStore.open(Paths.get(System.getProperty("user.dir")))));
+    }
+
+    /**
+     * Constructor for HabitTrackerApp.
+     * Initializes the GUI and starts loading existing habits in the background.
+     * @param persistence Service of the habit store, which may already be preloading
+     */
+    public HabitTrackerApp(PersistenceService persistence) {
+        this.persistence = persistence;
+        this.commandLog = new CommandLog(repository, persistence);
 
         // Set up the main window
         setTitle("Habit Tracker");
@@ -32,59 +75,46 @@ public class HabitTrackerApp extends JFrame {
         setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
         setLocationRelativeTo(null);
 
-        // Add window listener to save data on close
+        // Add window listener to fold the journal into the snapshot on close
         addWindowListener(new java.awt.event.WindowAdapter() {
             @Override
             public void windowClosing(java.awt.event.WindowEvent windowEvent) {
-                DataManager.saveHabits(habits);
+                rolloverEngine.stop();
+                reminders.stop();
+                reminderNotifier.close();
+                filterBar.close();
+                // Closed during the load, the repository holds only part of the habits and
+                // nothing was changed yet, as the actions stay disabled until the load is done
+                if (habitsLoaded) {
+                    persistence.saveHabits(repository.all()).exceptionally(e -> {
+                        System.err.println("Error saving habits: " + e.getMessage());
+                        return null;
+                    });
+                }
+                if (!persistence.close(CLOSE_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                    System.err.println("Timed out saving habits on close");
+                }
             }
         });
 
         // Create main panel with BorderLayout and gradient background
-        JPanel mainPanel = new JPanel(new BorderLayout()) {
-            @Override
-            protected void paintComponent(Graphics g) {
-                super.paintComponent(g);
-                Graphics2D g2d = (Graphics2D) g;
-                g2d.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
-                int w = getWidth();
-                int h = getHeight();
-                Color color1 = new Color(240, 248, 255); // Alice Blue
-                Color color2 = new Color(230, 240, 250); // Slightly darker blue
-                GradientPaint gp = new GradientPaint(0, 0, color1, 0, h, color2);
-                g2d.setPaint(gp);
-                g2d.fillRect(0, 0, w, h);
-            }
-        };
-        mainPanel.setOpaque(false);
+        JPanel mainPanel = new GradientPanel(new BorderLayout(),
+                new Color(240, 248, 255), // Alice Blue
+                new Color(230, 240, 250)) { // Slightly darker blue
+            private static final long serialVersionUID = 1L;
 
-        // Create title label with improved shadow effect and better styling
-        JLabel titleLabel = new JLabel("My Habit Tracker", JLabel.CENTER) {
             @Override
-            protected void paintComponent(Graphics g) {
-                super.paintComponent(g);
-                Graphics2D g2d = (Graphics2D) g;
-                g2d.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
-                g2d.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
-
-                // Create a more subtle shadow with blur effect
-                Font font = getFont();
-                FontMetrics fm = g2d.getFontMetrics(font);
-                int textWidth = fm.stringWidth(getText());
-                int x = (getWidth() - textWidth) / 2;
-                int y = (getHeight() + fm.getAscent()) / 2;
-
-                // Draw multiple shadow layers for a soft effect
-                g2d.setColor(new Color(150, 150, 150, 80)); // Lighter, semi-transparent shadow
-                for (int i = 3; i > 0; i--) {
-                    g2d.drawString(getText(), x + i, y + i);
+            public void paint(Graphics g) {
+                super.paint(g);
+                if (!framePainted) {
+                    framePainted = true;
+                    firstFramePainted();
                 }
-
-                // Draw the main text
-                g2d.setColor(getForeground());
-                g2d.drawString(getText(), x, y);
             }
         };
+
+        // Create title label with improved shadow effect and better styling
+        JLabel titleLabel = new ShadowLabel("My Habit Tracker");
         titleLabel.setFont(new Font("Segoe UI", Font.BOLD, 32));
         titleLabel.setForeground(new Color(0, 102, 204)); // Nice blue color
         titleLabel.setBorder(BorderFactory.createCompoundBorder(
@@ -92,41 +122,21 @@ public class HabitTrackerApp extends JFrame {
             BorderFactory.createMatteBorder(0, 0, 1, 0, new Color(70, 130, 180, 100))));
         titleLabel.setOpaque(true);
         titleLabel.setBackground(new Color(240, 248, 255, 200)); // Semi-transparent background
-        mainPanel.add(titleLabel, BorderLayout.NORTH);
 
         // Create table for habits with better styling
-        String[] columnNames = {"Name", "Category", "Completed Today", "Streak"};
-        tableModel = new DefaultTableModel(columnNames, 0) {
-            @Override
-            public Class<?> getColumnClass(int columnIndex) {
-                if (columnIndex == 2) { // Completed Today column
-                    return Boolean.class;
-                }
-                return super.getColumnClass(columnIndex);
-            }
-        };
-        habitTable = new JTable(tableModel) {
-            @Override
-            public Component prepareRenderer(TableCellRenderer renderer, int row, int column) {
-                Component c = super.prepareRenderer(renderer, row, column);
-                if (!c.getBackground().equals(getSelectionBackground())) {
-                    // Alternating row colors
-                    c.setBackground(row % 2 == 0 ? new Color(255, 255, 255) : new Color(245, 250, 255));
-                }
-                return c;
-            }
-        };
-        habitTable.setRowHeight(30);
-        habitTable.setFont(new Font("Segoe UI", Font.PLAIN, 14));
-        habitTable.getTableHeader().setFont(new Font("Segoe UI", Font.BOLD, 15));
-        habitTable.getTableHeader().setBackground(new Color(70, 130, 180)); // Steel Blue
-        habitTable.getTableHeader().setForeground(Color.WHITE);
-        habitTable.setShowGrid(true);
-        habitTable.setGridColor(new Color(220, 220, 220));
-        habitTable.setSelectionBackground(new Color(173, 216, 230)); // Light Blue
-        habitTable.setSelectionForeground(Color.BLACK);
-        habitTable.setIntercellSpacing(new Dimension(5, 5));
-        habitTable.setBorder(BorderFactory.createEmptyBorder(5, 5, 5, 5));
+        tableModel = new HabitTableModel();
+        habitTable = new HabitTable(tableModel, PaintMonitor.ifEnabled("table"));
+
+        // Search and filter bar under the title; results replace the table rows.
+        // The index applies changes on its own thread, so the EDT never waits for a search
+        repository.setSearchIndex(new HabitSearchIndex(task -> Thread.ofVirtual().name("habit-index").start(task)));
+        filterBar = new HabitFilterBar(repository, tableModel, this::updateStatusLabel);
+        filterBar.attachSortHeader(habitTable);
+        JPanel headerPanel = new JPanel(new BorderLayout());
+        headerPanel.setOpaque(false);
+        headerPanel.add(titleLabel, BorderLayout.NORTH);
+        headerPanel.add(filterBar, BorderLayout.SOUTH);
+        mainPanel.add(headerPanel, BorderLayout.NORTH);
 
         JScrollPane scrollPane = new JScrollPane(habitTable);
         scrollPane.setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
@@ -174,74 +184,100 @@ public class HabitTrackerApp extends JFrame {
         // Create icons using Unicode characters
         String addIcon = "➕ ";
         String completeIcon = "✅ ";
+        String editIcon = "✏️ ";
         String deleteIcon = "🗑️ ";
         String saveIcon = "💾 ";
+        String importIcon = "📥 ";
+        String exportIcon = "📤 ";
+        String undoIcon = "↶ ";
+        String redoIcon = "↷ ";
+        String analyticsIcon = "📊 ";
+        String scheduleIcon = "⏰ ";
 
         // Add Habit button
         JButton addButton = styleButton.apply(new JButton(addIcon + "Add Habit"));
-        addButton.addActionListener(_ -> addHabit());
+        addButton.addActionListener(e -> addHabit());
         buttonPanel.add(addButton);
+        actionButtons.add(addButton);
 
         // Mark Complete button
         JButton completeButton = styleButton.apply(new JButton(completeIcon + "Mark Complete"));
-        completeButton.addActionListener(_ -> markComplete());
+        completeButton.addActionListener(e -> markComplete());
         buttonPanel.add(completeButton);
+        actionButtons.add(completeButton);
+
+        // Edit Habit button
+        JButton editButton = styleButton.apply(new JButton(editIcon + "Edit"));
+        editButton.addActionListener(e -> editHabit());
+        buttonPanel.add(editButton);
+        actionButtons.add(editButton);
+
+        // Schedule button
+        JButton scheduleButton = styleButton.apply(new JButton(scheduleIcon + "Schedule"));
+        scheduleButton.addActionListener(e -> scheduleHabit());
+        buttonPanel.add(scheduleButton);
+        actionButtons.add(scheduleButton);
 
         // Delete Habit button
         JButton deleteButton = styleButton.apply(new JButton(deleteIcon + "Delete Habit"));
-        deleteButton.addActionListener(_ -> deleteHabit());
+        deleteButton.addActionListener(e -> deleteHabit());
         buttonPanel.add(deleteButton);
+        actionButtons.add(deleteButton);
 
         // Save button
         JButton saveButton = styleButton.apply(new JButton(saveIcon + "Save"));
-        saveButton.addActionListener(_ -> saveHabits());
+        saveButton.addActionListener(e -> saveHabits());
         buttonPanel.add(saveButton);
-
-        // Status label with better styling and animation
-        statusLabel = new JLabel() {
-            private float alpha = 1.0f;
-            private boolean fadeIn = true;
-            private Timer fadeTimer;
-
+        actionButtons.add(saveButton);
+
+        // Import and Export buttons
+        JButton importButton = styleButton.apply(new JButton(importIcon + "Import"));
+        importButton.addActionListener(e -> importHabits());
+        buttonPanel.add(importButton);
+        actionButtons.add(importButton);
+
+        JButton exportButton = styleButton.apply(new JButton(exportIcon + "Export"));
+        exportButton.addActionListener(e -> exportHabits());
+        buttonPanel.add(exportButton);
+        actionButtons.add(exportButton);
+
+        JButton analyticsButton = styleButton.apply(new JButton(analyticsIcon + "Analytics"));
+        analyticsButton.addActionListener(e -> showAnalytics());
+        buttonPanel.add(analyticsButton);
+        actionButtons.add(analyticsButton);
+
+        // Undo and Redo buttons, also on Ctrl+Z and Ctrl+Y / Ctrl+Shift+Z
+        undoButton = styleButton.apply(new JButton(undoIcon + "Undo"));
+        undoButton.addActionListener(e -> undo());
+        buttonPanel.add(undoButton);
+        redoButton = styleButton.apply(new JButton(redoIcon + "Redo"));
+        redoButton.addActionListener(e -> redo());
+        buttonPanel.add(redoButton);
+        int shortcutMask = Toolkit.getDefaultToolkit().getMenuShortcutKeyMaskEx();
+        InputMap inputMap = getRootPane().getInputMap(JComponent.WHEN_IN_FOCUSED_WINDOW);
+        inputMap.put(KeyStroke.getKeyStroke(java.awt.event.KeyEvent.VK_Z, shortcutMask), "undo");
+        inputMap.put(KeyStroke.getKeyStroke(java.awt.event.KeyEvent.VK_Y, shortcutMask), "redo");
+        inputMap.put(KeyStroke.getKeyStroke(java.awt.event.KeyEvent.VK_Z,
+            shortcutMask | java.awt.event.InputEvent.SHIFT_DOWN_MASK), "redo");
+        getRootPane().getActionMap().put("undo", new AbstractAction() {
             @Override
-            public void addNotify() {
-                super.addNotify();
-                // Initialize the timer after the component is added to a container
-                fadeTimer = new Timer(30, _ -> {
-                    if (fadeIn) {
-                        alpha += 0.05f;
-                        if (alpha >= 1.0f) {
-                            alpha = 1.0f;
-                            fadeIn = false;
-                            fadeTimer.stop();
-                        }
-                    } else {
-                        alpha -= 0.05f;
-                        if (alpha <= 0.7f) {
-                            alpha = 0.7f;
-                            fadeIn = true;
-                        }
-                    }
-                    repaint();
-                });
+            public void actionPerformed(java.awt.event.ActionEvent e) {
+                undo();
             }
-
+        });
+        getRootPane().getActionMap().put("redo", new AbstractAction() {
             @Override
-            protected void paintComponent(Graphics g) {
-                Graphics2D g2d = (Graphics2D) g.create();
-                g2d.setComposite(AlphaComposite.getInstance(AlphaComposite.SRC_OVER, alpha));
-                super.paintComponent(g2d);
-                g2d.dispose();
+            public void actionPerformed(java.awt.event.ActionEvent e) {
+                redo();
             }
+        });
+        commandLog.addListener(this::commandApplied);
+        updateUndoButtons();
+        // Other instances may share the store, so ids come from it
+        repository.setIdSource(persistence::reserveHabitId);
 
-            @Override
-            public void setText(String text) {
-                super.setText(text);
-                if (fadeTimer != null) {
-                    fadeTimer.start();
-                }
-            }
-        };
+        // Status label with better styling and animation
+        statusLabel = new FadingLabel();
         statusLabel.setFont(new Font("Segoe UI", Font.BOLD, 14));
         statusLabel.setForeground(new Color(0, 102, 204)); // Nice blue color
         statusLabel.setBorder(BorderFactory.createCompoundBorder(
@@ -250,6 +286,10 @@ public class HabitTrackerApp extends JFrame {
         statusLabel.setOpaque(true);
         statusLabel.setBackground(new Color(240, 248, 255, 200)); // Semi-transparent background
         updateStatusLabel();
+        // Reminders follow every habit the repository holds from here on
+        reminderNotifier = new ReminderNotifier(this, statusLabel::setText);
+        reminders.addListener(reminderNotifier);
+        repository.setReminderScheduler(reminders);
         buttonPanel.add(Box.createHorizontalStrut(20)); // Add some space
         buttonPanel.add(statusLabel);
 
@@ -258,47 +298,182 @@ public class HabitTrackerApp extends JFrame {
         // Add main panel to the frame
         add(mainPanel);
 
-        // Populate the table with existing habits
-        refreshTable();
+        // Load habits off the EDT; buttons stay disabled until every chunk has arrived
+        setActionsEnabled(false);
+        persistence.loadHabits(chunk -> SwingUtilities.invokeLater(() -> {
+            repository.addAll(chunk);
+            showHabitsAdded(chunk);
+            updateStatusLabel();
+        })).whenComplete((result, error) -> SwingUtilities.invokeLater(() -> {
+            if (error != null) {
+                System.err.println("Error loading habits: " + error.getMessage());
+            }
+            habitsLoaded = error == null;
+            setActionsEnabled(true);
+            startupTimer.dataReady(repository.size());
+            // Catch up on days that passed while the app was closed
+            rolloverEngine.start(persistence.getStore().getRolloverDay());
+            persistence.watchExternalChanges(changes -> SwingUtilities.invokeLater(() -> externalChangesArrived(changes)));
+        }));
     }
 
     /**
-     * Updates the status label with total habits and completed count.
+     * Finishes startup once the window is on screen, with work the first frame does not need.
      */
-    private void updateStatusLabel() {
-        int total = habits.size();
-        int completed = 0;
-        for (Habit habit : habits) {
-            if (habit.isCompletedToday()) {
-                completed++;
+    private void firstFramePainted() {
+        startupTimer.framePainted();
+        SwingUtilities.invokeLater(EdtMonitor::install);
+    }
+
+    /**
+     * Closes the window as if the user did, once startup has been measured.
+     */
+    private void closeAfterStartup() {
+        dispatchEvent(new java.awt.event.WindowEvent(this, java.awt.event.WindowEvent.WINDOW_CLOSING));
+    }
+
+    /**
+     * Merges and shows changes another instance made to the shared store.
+     */
+    private void externalChangesArrived(ExternalChanges changes) {
+        ExternalChanges.Applied applied = persistence.applyExternalChanges(changes, repository);
+        if (applied.isEmpty()) {
+            return;
+        }
+        if (applied.rolloverDay() > 0) {
+            rolloverEngine.rolledOverElsewhere(applied.rolloverDay());
+        }
+        // The commands may refer to values the other instance has replaced
+        commandLog.clear();
+        updateUndoButtons();
+        if (filterBar.isFiltering()) {
+            List<Habit> changed = new ArrayList<>(applied.removed());
+            changed.addAll(applied.updated());
+            filterBar.habitsChanged(changed, applied.added());
+        } else if (applied.size() > EXTERNAL_ROW_UPDATES) {
+            tableModel.setHabits(repository.all());
+        } else {
+            for (Habit habit : applied.removed()) {
+                int row = tableModel.rowOf(habit);
+                if (row >= 0) {
+                    tableModel.habitRemoved(row);
+                }
+            }
+            for (Habit habit : applied.updated()) {
+                int row = tableModel.rowOf(habit);
+                if (row >= 0) {
+                    tableModel.habitUpdated(row);
+                }
             }
+            tableModel.habitsAdded(applied.added());
         }
-        statusLabel.setText("Total Habits: " + total + " | Completed Today: " + completed);
+        updateStatusLabel();
     }
 
     /**
-     * Refreshes the table with current habits data.
+     * Persists and shows the change set of a day rollover.
      */
-    private void refreshTable() {
-        tableModel.setRowCount(0);
-        for (Habit habit : habits) {
-            Object[] row = {
-                habit.getName(),
-                habit.getCategory(),
-                habit.isCompletedToday(),
-                habit.getStreak()
-            };
-            tableModel.addRow(row);
+    private void habitsRolledOver(long epochDay, List<Habit> changed) {
+        // Undoing a completion from before the rollover would restore the wrong day's state
+        commandLog.clear();
+        updateUndoButtons();
+        persistence.rolledOver(epochDay, changed);
+        persistence.compactIfNeeded(repository.all());
+        if (!changed.isEmpty()) {
+            if (filterBar.isFiltering()) {
+                filterBar.refresh();
+            } else {
+                tableModel.allHabitsUpdated();
+            }
+            updateStatusLabel();
+        }
+    }
+
+    /**
+     * Shows newly added habits, appending them or the ones the active search matches.
+     */
+    private void showHabitsAdded(List<Habit> habits) {
+        if (filterBar.isFiltering()) {
+            filterBar.habitsChanged(List.of(), habits);
+        } else {
+            tableModel.habitsAdded(habits);
+        }
+    }
+
+    /**
+     * Enables or disables the buttons that change habits.
+     */
+    private void setActionsEnabled(boolean enabled) {
+        actionsEnabled = enabled;
+        for (JButton button : actionButtons) {
+            button.setEnabled(enabled);
+        }
+        updateUndoButtons();
+    }
+
+    /**
+     * Updates the status label with total habits and completed count.
+     */
+    private void updateStatusLabel() {
+        try (HabitMetrics.Operation operation = HabitMetrics.get().start("status.update")) {
+            HabitStats stats = repository.getStats();
+            operation.items(stats.getTotal());
+            String status = "Total Habits: " + stats.getTotal() + " | Completed Today: " + stats.getCompletedToday();
+            if (filterBar.isFiltering()) {
+                status += " | Showing: " + tableModel.getRowCount();
+            }
+            statusLabel.setText(status);
         }
-        updateStatusLabel();
     }
 
     /**
      * Opens a dialog to add a new habit.
      */
     private void addHabit() {
-        JTextField nameField = new JTextField();
-        JTextField categoryField = new JTextField();
+        showHabitDialog("Add New Habit", "Add", "", "", (name, category) ->
+            commandLog.execute(new HabitCommand.Add(new Habit(name, category, false, 0))));
+    }
+
+    /**
+     * Opens a dialog to rename the selected habit or change its category.
+     */
+    private void editHabit() {
+        int selectedRow = habitTable.getSelectedRow();
+        if (selectedRow < 0) {
+            JOptionPane.showMessageDialog(this, "Please select a habit to edit.", "Error", JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+        Habit habit = tableModel.getHabitAt(selectedRow);
+        showHabitDialog("Edit Habit", "Save", habit.getName(), habit.getCategory(), (name, category) ->
+            commandLog.execute(new HabitCommand.Edit(habit, name, category)));
+    }
+
+    /**
+     * Opens a dialog to set on which days the selected habit is due and when to remind of it.
+     */
+    private void scheduleHabit() {
+        int selectedRow = habitTable.getSelectedRow();
+        if (selectedRow < 0) {
+            JOptionPane.showMessageDialog(this, "Please select a habit to schedule.", "Error", JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+        Habit habit = tableModel.getHabitAt(selectedRow);
+        new ScheduleDialog(this, habit, schedule ->
+            commandLog.execute(new HabitCommand.Reschedule(habit, schedule))).setVisible(true);
+    }
+
+    /**
+     * Shows a dialog asking for a habit name and category.
+     * @param title Dialog title
+     * @param okText Text of the confirming button
+     * @param name Initial name
+     * @param category Initial category
+     * @param onOk Receives the trimmed name and category once both are filled in
+     */
+    private void showHabitDialog(String title, String okText, String name, String category,
+            java.util.function.BiConsumer<String, String> onOk) {
+        JTextField nameField = new JTextField(name);
+        JTextField categoryField = new JTextField(category);
 
         // Better styling for input fields
         nameField.setFont(new Font("Segoe UI", Font.PLAIN, 14));
@@ -340,7 +515,7 @@ public class HabitTrackerApp extends JFrame {
         panel.add(categoryField, gbc);
 
         // Create a custom dialog with better styling
-        JDialog dialog = new JDialog(this, "Add New Habit", true);
+        JDialog dialog = new JDialog(this, title, true);
         dialog.setLayout(new BorderLayout());
         dialog.add(panel, BorderLayout.CENTER);
 
@@ -348,7 +523,7 @@ public class HabitTrackerApp extends JFrame {
         JPanel dialogButtonPanel = new JPanel(new FlowLayout());
         dialogButtonPanel.setBackground(new Color(240, 248, 255));
 
-        JButton okButton = new JButton("Add");
+        JButton okButton = new JButton(okText);
         okButton.setBackground(new Color(70, 130, 180));
         okButton.setForeground(Color.WHITE);
         okButton.setFont(new Font("Segoe UI", Font.BOLD, 14));
@@ -370,21 +545,19 @@ public class HabitTrackerApp extends JFrame {
         dialog.setLocationRelativeTo(this);
 
         // Add action listeners
-        okButton.addActionListener(_ -> {
-            String name = nameField.getText().trim();
-            String category = categoryField.getText().trim();
-
-            if (!name.isEmpty() && !category.isEmpty()) {
-                Habit newHabit = new Habit(name, category, false, 0);
-                habits.add(newHabit);
-                refreshTable();
+        okButton.addActionListener(e -> {
+            String newName = nameField.getText().trim();
+            String newCategory = categoryField.getText().trim();
+
+            if (!newName.isEmpty() && !newCategory.isEmpty()) {
+                onOk.accept(newName, newCategory);
                 dialog.dispose();
             } else {
                 JOptionPane.showMessageDialog(dialog, "Please fill in all fields.", "Error", JOptionPane.ERROR_MESSAGE);
             }
         });
 
-        cancelButton.addActionListener(_ -> dialog.dispose());
+        cancelButton.addActionListener(e -> dialog.dispose());
 
         dialog.setVisible(true);
     }
@@ -395,12 +568,8 @@ public class HabitTrackerApp extends JFrame {
     private void markComplete() {
         int selectedRow = habitTable.getSelectedRow();
         if (selectedRow >= 0) {
-            Habit habit = habits.get(selectedRow);
-            if (!habit.isCompletedToday()) {
-                habit.setCompletedToday(true);
-                habit.setStreak(habit.getStreak() + 1);
-                refreshTable();
-            } else {
+            Habit habit = tableModel.getHabitAt(selectedRow);
+            if (!commandLog.execute(new HabitCommand.Complete(habit, LocalDate.now().toEpochDay()))) {
                 JOptionPane.showMessageDialog(this, "This habit is already marked as complete today.", "Info", JOptionPane.INFORMATION_MESSAGE);
             }
         } else {
@@ -419,8 +588,7 @@ public class HabitTrackerApp extends JFrame {
                 "Confirm Delete", JOptionPane.YES_NO_OPTION);
 
             if (confirm == JOptionPane.YES_OPTION) {
-                habits.remove(selectedRow);
-                refreshTable();
+                commandLog.execute(new HabitCommand.Delete(tableModel.getHabitAt(selectedRow)));
             }
         } else {
             JOptionPane.showMessageDialog(this, "Please select a habit to delete.", "Error", JOptionPane.ERROR_MESSAGE);
@@ -428,17 +596,252 @@ public class HabitTrackerApp extends JFrame {
     }
 
     /**
-     * Saves all habits to the file.
+     * Reverts the most recent add, complete, edit or delete.
+     */
+    private void undo() {
+        if (actionsEnabled) {
+            commandLog.undo();
+        }
+    }
+
+    /**
+     * Applies the most recently undone change again.
+     */
+    private void redo() {
+        if (actionsEnabled) {
+            commandLog.redo();
+        }
+    }
+
+    /**
+     * Shows the effect of a command that was applied, undone or redone.
+     */
+    private void commandApplied(HabitCommand command, boolean undone) {
+        if (filterBar.isFiltering()) {
+            // The habit may no longer match the filter or may move in the sort order
+            switch (command) {
+                case HabitCommand.Add add when !undone -> filterBar.habitsChanged(List.of(), List.of(add.habit()));
+                case HabitCommand.Delete delete when undone -> filterBar.habitsChanged(List.of(), List.of(delete.habit()));
+                default -> filterBar.habitsChanged(List.of(command.habit()), List.of());
+            }
+        } else {
+            switch (command) {
+                case HabitCommand.Add add when !undone -> tableModel.habitAdded(add.habit());
+                case HabitCommand.Delete delete when undone -> tableModel.habitAdded(delete.habit());
+                case HabitCommand.Add add -> removeFromTable(add.habit());
+                case HabitCommand.Delete delete -> removeFromTable(delete.habit());
+                default -> {
+                    int row = tableModel.rowOf(command.habit());
+                    if (row >= 0) {
+                        tableModel.habitUpdated(row);
+                    }
+                }
+            }
+        }
+        updateStatusLabel();
+        updateUndoButtons();
+    }
+
+    private void removeFromTable(Habit habit) {
+        int row = tableModel.rowOf(habit);
+        if (row >= 0) {
+            tableModel.habitRemoved(row);
+        }
+    }
+
+    /**
+     * Enables the undo and redo buttons when there is something to undo or redo.
+     */
+    private void updateUndoButtons() {
+        HabitCommand nextUndo = commandLog.peekUndo();
+        HabitCommand nextRedo = commandLog.peekRedo();
+        undoButton.setEnabled(actionsEnabled && nextUndo != null);
+        undoButton.setToolTipText(nextUndo == null ? null : "Undo " + nextUndo.describe());
+        redoButton.setEnabled(actionsEnabled && nextRedo != null);
+        redoButton.setToolTipText(nextRedo == null ? null : "Redo " + nextRedo.describe());
+    }
+
+    /**
+     * Saves all habits to the file, folding the journal into a new snapshot.
      */
     private void saveHabits() {
-        DataManager.saveHabits(habits);
-        JOptionPane.showMessageDialog(this, "Habits saved successfully!", "Success", JOptionPane.INFORMATION_MESSAGE);
+        persistence.saveHabits(repository.all()).whenComplete((result, error) -> SwingUtilities.invokeLater(() -> {
+            if (error != null) {
+                JOptionPane.showMessageDialog(this, "Error saving habits: " + error.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+            } else {
+                JOptionPane.showMessageDialog(this, "Habits saved successfully!", "Success", JOptionPane.INFORMATION_MESSAGE);
+            }
+        }));
+    }
+
+    /**
+     * Imports habits from a CSV or JSON Lines file in the background.
+     * Habits are added and journaled a batch at a time; the importer waits for each
+     * batch to be applied on the EDT before parsing further ahead.
+     */
+    private void importHabits() {
+        JFileChooser chooser = new JFileChooser();
+        chooser.setFileFilter(new FileNameExtensionFilter("CSV or JSON Lines", "csv", "jsonl", "ndjson"));
+        if (chooser.showOpenDialog(this) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+        Path file = chooser.getSelectedFile().toPath();
+        HabitTransfer transfer = new HabitTransfer(
+            (lineNumber, line, reason) ->
+                System.err.println(file.getFileName() + ":" + lineNumber + ": skipping malformed habit (" + reason + "): " + line),
+            progress -> SwingUtilities.invokeLater(() -> statusLabel.setText(String.format(
+                "Importing: %,d habits (%.0f%%, %,.0f/s)", progress.records(), progress.fraction() * 100, progress.recordsPerSecond()))));
+        setActionsEnabled(false);
+        Thread.ofVirtual().name("habit-import").start(() -> {
+            try {
+                HabitTransfer.Progress result = transfer.importFile(file, batch -> {
+                    // Ids for the whole batch are reserved here rather than one at a time on the EDT
+                    persistence.assignHabitIds(batch);
+                    runOnEdt(() -> {
+                        repository.addAll(batch);
+                        persistence.habitsAdded(batch);
+                        showHabitsAdded(batch);
+                    });
+                });
+                SwingUtilities.invokeLater(() -> {
+                    finishTransfer();
+                    String message = String.format("Imported %,d habits (%,d rejected) in %.1f s.",
+                        result.records(), result.rejected(), result.elapsedNanos() / 1e9);
+                    if (result.incomplete() > 0) {
+                        // Older exports and hand-made files carry no schedule or history
+                        message += String.format("%n%,d of them had no schedule or completion history in the file.", result.incomplete());
+                        JOptionPane.showMessageDialog(this, message, "Imported Without History", JOptionPane.WARNING_MESSAGE);
+                    } else {
+                        JOptionPane.showMessageDialog(this, message, "Success", JOptionPane.INFORMATION_MESSAGE);
+                    }
+                });
+            } catch (IOException | RuntimeException e) {
+                SwingUtilities.invokeLater(() -> {
+                    finishTransfer();
+                    JOptionPane.showMessageDialog(this, "Error importing habits: " + e.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+                });
+            }
+        });
+    }
+
+    /**
+     * Exports every habit to a CSV or JSON Lines file in the background.
+     */
+    private void exportHabits() {
+        JFileChooser chooser = new JFileChooser();
+        chooser.setFileFilter(new FileNameExtensionFilter("CSV or JSON Lines", "csv", "jsonl", "ndjson"));
+        if (chooser.showSaveDialog(this) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+        Path file = chooser.getSelectedFile().toPath();
+        List<Habit> habits = new ArrayList<>(repository.size());
+        for (Habit habit : repository.all()) {
+            habits.add(habit.copy());
+        }
+        HabitTransfer transfer = new HabitTransfer(null, null);
+        setActionsEnabled(false);
+        Thread.ofVirtual().name("habit-export").start(() -> {
+            try {
+                HabitTransfer.Progress result = transfer.exportFile(habits, file);
+                SwingUtilities.invokeLater(() -> {
+                    finishTransfer();
+                    JOptionPane.showMessageDialog(this, String.format("Exported %,d habits in %.1f s.",
+                        result.records(), result.elapsedNanos() / 1e9), "Success", JOptionPane.INFORMATION_MESSAGE);
+                });
+            } catch (IOException | RuntimeException e) {
+                SwingUtilities.invokeLater(() -> {
+                    finishTransfer();
+                    JOptionPane.showMessageDialog(this, "Error exporting habits: " + e.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+                });
+            }
+        });
+    }
+
+    /**
+     * Shows completion trends, with the habits most correlated with the selected one.
+     * A report still current is shown from the cache; otherwise it is computed
+     * in the background from copies of the habits, like an export.
+     */
+    private void showAnalytics() {
+        long today = LocalDate.now().toEpochDay();
+        int selectedRow = habitTable.getSelectedRow();
+        long selectedId = selectedRow < 0 ? 0 : tableModel.getHabitAt(selectedRow).getId();
+        HabitAnalytics.Report cached = analytics.cachedReport(today);
+        long version = repository.version();
+        // Copies are only needed for what is not cached
+        List<Habit> habits = new ArrayList<>();
+        Habit selected = null;
+        if (cached == null || selectedId != 0) {
+            for (Habit habit : repository.all()) {
+                Habit copy = habit.copy();
+                habits.add(copy);
+                if (copy.getId() == selectedId) {
+                    selected = copy;
+                }
+            }
+        }
+        Habit correlated = selected;
+        setActionsEnabled(false);
+        statusLabel.setText("Computing analytics...");
+        Thread.ofVirtual().name("habit-analytics").start(() -> {
+            try {
+                HabitAnalytics.Report report = cached != null ? cached : HabitAnalytics.compute(habits, today);
+                List<HabitAnalytics.Correlation> correlations = correlated == null ? List.of()
+                    : HabitAnalytics.correlations(correlated, habits, today, ANALYTICS_CORRELATIONS);
+                SwingUtilities.invokeLater(() -> {
+                    analytics.cache(report, version);
+                    setActionsEnabled(true);
+                    updateStatusLabel();
+                    new AnalyticsDialog(this, report, correlated, correlations).setVisible(true);
+                });
+            } catch (RuntimeException e) {
+                SwingUtilities.invokeLater(() -> {
+                    setActionsEnabled(true);
+                    updateStatusLabel();
+                    JOptionPane.showMessageDialog(this, "Error computing analytics: " + e.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+                });
+            }
+        });
+    }
+
+    private void finishTransfer() {
+        setActionsEnabled(true);
+        persistence.compactIfNeeded(repository.all());
+        updateStatusLabel();
+    }
+
+    /**
+     * Runs a task on the EDT and waits for it, so a background producer cannot outrun the UI.
+     */
+    private static void runOnEdt(Runnable task) {
+        try {
+            SwingUtilities.invokeAndWait(task);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while updating the UI", e);
+        } catch (InvocationTargetException e) {
+            throw new IllegalStateException(e.getCause());
+        }
     }
 
     /**
      * Main method to run the application.
      */
     public static void main(String[] args) {
-        SwingUtilities.invokeLater(() -> new HabitTrackerApp().setVisible(true));
+        // Both take a while and need neither Swing nor each other, so they run while Swing starts
+        Thread.ofVirtual().name("habit-font-warmup").start(HabitTrackerApp::warmUpFonts);
+        PersistenceService persistence = new PersistenceService(HabitStore.open(Paths.get(System.getProperty("user.dir"))));
+        persistence.preload();
+        SwingUtilities.invokeLater(() -> new HabitTrackerApp(persistence).setVisible(true));
+    }
+
+    /**
+     * Initializes the font system by laying out text in the title and button
+     * fonts, which otherwise happens on the EDT while the first frame is laid out.
+     */
+    private static void warmUpFonts() {
+        java.awt.font.FontRenderContext context = new java.awt.font.FontRenderContext(null, true, true);
+        new Font("Segoe UI", Font.BOLD, 32).getStringBounds("My Habit Tracker", context);
+        new Font("Segoe UI", Font.BOLD, 14).getStringBounds("➕ Add Habit", context);
     }
 }
\ No newline at end of file
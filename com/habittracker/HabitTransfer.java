@@ -0,0 +1,537 @@
+package com.habittracker;
+
+/**
+ * HabitTransfer.java
+ * Streaming bulk import and export of habits as CSV or JSON Lines.
+ *
+ * Imports read the file once, cut it into chunks of records and parse and
+ * validate the chunks in parallel. At most a fixed number of chunks are in
+ * flight; when the limit is reached the reader waits for the oldest chunk and
+ * hands its habits to the batch consumer, so memory stays bounded and a slow
+ * consumer slows the reader down instead of letting parsed habits pile up.
+ * Batches arrive in file order and rejected records are reported in file
+ * order with their line numbers, on the calling thread.
+ *
+ * CSV files have the columns name, category, completedToday, streak, schedule
+ * and history. A header row may name them in any order and may leave out the
+ * last two, as files written before they existed do. JSON Lines files hold one
+ * object per line with the same keys. The schedule is in the text form of
+ * {@link HabitSchedule}, the history in that of {@link CompletionHistory}; both
+ * are empty when the habit has none, and a record whose schedule or history
+ * does not parse is rejected. Imported habits get new ids.
+ *
+ * Exports write every field, so an export imports again without loss. Records
+ * that lack the schedule or the history field altogether are imported without
+ * them and counted in {@link Progress#incomplete()}, so the caller can warn that
+ * the file held less than an export does.
+ *
+ * A quoted CSV field may span lines. A quote that is never closed would make
+ * the rest of the file one record, so a field must close within
+ * MAX_RECORD_LINES lines and MAX_RECORD_LENGTH characters; otherwise the line
+ * it starts on is rejected as malformed and reading goes on with the next line.
+ */
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+
+public class HabitTransfer {
+    // Records parsed together and handed to the batch consumer together
+    private static final int BATCH_SIZE = 5000;
+    private static final String[] CSV_COLUMNS = {"name", "category", "completedToday", "streak", "schedule", "history"};
+    // Columns every record must have; files written before schedules and history lack the others
+    private static final int REQUIRED_COLUMNS = 4;
+    // Limits on a CSV record whose quoted field spans lines
+    private static final int MAX_RECORD_LINES = 64;
+    private static final int MAX_RECORD_LENGTH = 64 * 1024;
+
+    /**
+     * File formats supported for import and export.
+     */
+    public enum Format {
+        CSV,
+        JSON_LINES;
+
+        /**
+         * Picks the format from a file extension: .csv, or .jsonl / .ndjson.
+         * @param file File to import or export
+         * @return The format
+         * @throws IllegalArgumentException if the extension is not recognised
+         */
+        public static Format forFile(Path file) {
+            String name = file.getFileName().toString().toLowerCase(Locale.ROOT);
+            if (name.endsWith(".csv")) {
+                return CSV;
+            }
+            if (name.endsWith(".jsonl") || name.endsWith(".ndjson")) {
+                return JSON_LINES;
+            }
+            throw new IllegalArgumentException("Unsupported file type: " + file.getFileName());
+        }
+    }
+
+    /**
+     * Progress of a transfer.
+     * @param records Habits transferred so far
+     * @param rejected Records rejected as malformed
+     * @param incomplete Habits imported from records without a schedule or history field
+     * @param bytes Bytes read or written so far
+     * @param totalBytes Size of the input file, or 0 when exporting
+     * @param elapsedNanos Time since the transfer started
+     */
+    public record Progress(long records, long rejected, long incomplete, long bytes, long totalBytes, long elapsedNanos) {
+        public double recordsPerSecond() {
+            return elapsedNanos == 0 ? 0 : records * 1e9 / elapsedNanos;
+        }
+
+        /**
+         * Returns the fraction of the input read so far, between 0 and 1, or 0 when unknown.
+         */
+        public double fraction() {
+            return totalBytes == 0 ? 0 : Math.min(1.0, (double) bytes / totalBytes);
+        }
+    }
+
+    private record Rejection(int lineNumber, String record, String reason) {
+    }
+
+    private record Chunk(List<Habit> habits, List<Rejection> rejections, int incomplete) {
+    }
+
+    // A parsed habit, and whether its record had every field an export writes
+    private record Parsed(Habit habit, boolean complete) {
+    }
+
+    private final HabitParser.ErrorHandler errorHandler;
+    private final Consumer<Progress> progressListener;
+    private final Executor parseExecutor;
+    private final int maxChunksInFlight;
+
+    /**
+     * Constructor for HabitTransfer, parsing on the common fork-join pool.
+     * @param errorHandler Receives rejected records, or null to ignore them
+     * @param progressListener Receives progress after every batch, or null
+     */
+    public HabitTransfer(HabitParser.ErrorHandler errorHandler, Consumer<Progress> progressListener) {
+        this(errorHandler, progressListener, ForkJoinPool.commonPool(), ForkJoinPool.getCommonPoolParallelism() * 2);
+    }
+
+    /**
+     * Constructor for HabitTransfer.
+     * @param errorHandler Receives rejected records, or null to ignore them
+     * @param progressListener Receives progress after every batch, or null
+     * @param parseExecutor Executor that parses chunks
+     * @param maxChunksInFlight Maximum number of chunks read but not yet consumed
+     */
+    public HabitTransfer(HabitParser.ErrorHandler errorHandler, Consumer<Progress> progressListener,
+            Executor parseExecutor, int maxChunksInFlight) {
+        this.errorHandler = errorHandler;
+        this.progressListener = progressListener;
+        this.parseExecutor = parseExecutor;
+        this.maxChunksInFlight = Math.max(1, maxChunksInFlight);
+    }
+
+    /**
+     * Imports habits from a CSV or JSON Lines file.
+     * @param file File to read; the format follows its extension
+     * @param batchConsumer Receives the imported habits in file order, one batch at a time
+     * @return Final progress of the import
+     */
+    public Progress importFile(Path file, Consumer<List<Habit>> batchConsumer) throws IOException {
+        try (HabitMetrics.Operation operation = HabitMetrics.get().start("import")) {
+            try {
+                Progress progress = importRecords(file, batchConsumer);
+                operation.items(progress.records()).bytes(progress.bytes());
+                return progress;
+            } catch (IOException | RuntimeException e) {
+                operation.failed();
+                throw e;
+            }
+        }
+    }
+
+    private Progress importRecords(Path file, Consumer<List<Habit>> batchConsumer) throws IOException {
+        Format format = Format.forFile(file);
+        long start = System.nanoTime();
+        long totalBytes = Files.size(file);
+        long[] bytesRead = new long[1];
+        long records = 0;
+        long rejected = 0;
+        long incomplete = 0;
+        ArrayDeque<CompletableFuture<Chunk>> inFlight = new ArrayDeque<>();
+        InputStream counting = new FilterInputStream(Files.newInputStream(file)) {
+            @Override
+            public int read(byte[] buffer, int offset, int length) throws IOException {
+                int read = super.read(buffer, offset, length);
+                if (read > 0) {
+                    bytesRead[0] += read;
+                }
+                return read;
+            }
+        };
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(counting, StandardCharsets.UTF_8), 1 << 16)) {
+            int[] columns = format == Format.CSV ? null : new int[0];
+            int lineNumber = 0;
+            List<String> batch = new ArrayList<>(BATCH_SIZE);
+            int[] lineNumbers = new int[BATCH_SIZE];
+            // Lines read ahead for a record that turned out to be malformed, to be read again
+            ArrayDeque<String> unread = new ArrayDeque<>();
+            String line;
+            while ((line = unread.isEmpty() ? reader.readLine() : unread.poll()) != null) {
+                lineNumber++;
+                int recordLine = lineNumber;
+                if (format == Format.CSV && hasOpenQuote(line)) {
+                    // A quoted field spans lines until its quotes balance; only each new line is scanned
+                    List<String> continued = new ArrayList<>();
+                    StringBuilder record = new StringBuilder(line);
+                    boolean open = true;
+                    while (open && continued.size() < MAX_RECORD_LINES - 1 && record.length() <= MAX_RECORD_LENGTH) {
+                        String next = unread.isEmpty() ? reader.readLine() : unread.poll();
+                        if (next == null) {
+                            break;
+                        }
+                        continued.add(next);
+                        record.append('\n').append(next);
+                        open ^= hasOpenQuote(next);
+                    }
+                    if (open) {
+                        // Not closed within the limits or before the end: only the first line is rejected, by parseCsv
+                        for (int i = continued.size() - 1; i >= 0; i--) {
+                            unread.addFirst(continued.get(i));
+                        }
+                    } else {
+                        line = record.toString();
+                        lineNumber += continued.size();
+                    }
+                }
+                if (line.isBlank()) {
+                    continue;
+                }
+                if (columns == null) {
+                    columns = csvColumns(line);
+                    if (columns != null) {
+                        continue;
+                    }
+                    columns = new int[] {0, 1, 2, 3, 4, 5};
+                }
+                lineNumbers[batch.size()] = recordLine;
+                batch.add(line);
+                if (batch.size() == BATCH_SIZE) {
+                    inFlight.add(submit(format, columns, batch, lineNumbers));
+                    batch = new ArrayList<>(BATCH_SIZE);
+                    lineNumbers = new int[BATCH_SIZE];
+                }
+                // Back-pressure: the reader waits for the oldest chunk once enough are in flight
+                while (inFlight.size() >= maxChunksInFlight) {
+                    Chunk chunk = inFlight.remove().join();
+                    records += chunk.habits().size();
+                    incomplete += chunk.incomplete();
+                    rejected += deliver(chunk, batchConsumer);
+                    report(records, rejected, incomplete, bytesRead[0], totalBytes, start);
+                }
+            }
+            if (!batch.isEmpty()) {
+                inFlight.add(submit(format, columns, batch, lineNumbers));
+            }
+            while (!inFlight.isEmpty()) {
+                Chunk chunk = inFlight.remove().join();
+                records += chunk.habits().size();
+                incomplete += chunk.incomplete();
+                rejected += deliver(chunk, batchConsumer);
+                report(records, rejected, incomplete, bytesRead[0], totalBytes, start);
+            }
+        } finally {
+            // Let chunks still parsing after a failure finish without being delivered
+            inFlight.forEach(future -> future.cancel(false));
+        }
+        return new Progress(records, rejected, incomplete, bytesRead[0], totalBytes, System.nanoTime() - start);
+    }
+
+    /**
+     * Exports habits to a CSV or JSON Lines file, replacing any existing file atomically.
+     * The habits must not change while they are exported; pass copies if they may.
+     * @param habits Habits to export
+     * @param file File to write; the format follows its extension
+     * @return Final progress of the export
+     */
+    public Progress exportFile(Collection<Habit> habits, Path file) throws IOException {
+        try (HabitMetrics.Operation operation = HabitMetrics.get().start("export")) {
+            try {
+                Progress progress = exportRecords(habits, file);
+                operation.items(progress.records()).bytes(progress.bytes());
+                HabitMetrics.get().bytesWritten(progress.bytes());
+                return progress;
+            } catch (IOException | RuntimeException e) {
+                operation.failed();
+                throw e;
+            }
+        }
+    }
+
+    private Progress exportRecords(Collection<Habit> habits, Path file) throws IOException {
+        Format format = Format.forFile(file);
+        long start = System.nanoTime();
+        long records = 0;
+        try (FileChannel channel = AtomicFile.openTemp(file)) {
+            BufferedWriter writer = new BufferedWriter(Channels.newWriter(channel, StandardCharsets.UTF_8), 1 << 16);
+            StringBuilder line = new StringBuilder(128);
+            if (format == Format.CSV) {
+                writer.write(String.join(",", CSV_COLUMNS));
+                writer.newLine();
+            }
+            for (Habit habit : habits) {
+                line.setLength(0);
+                if (format == Format.CSV) {
+                    appendCsvField(line, habit.getName());
+                    line.append(',');
+                    appendCsvField(line, habit.getCategory());
+                    line.append(',').append(habit.isCompletedToday()).append(',').append(habit.getStreak()).append(',');
+                    if (habit.getSchedule() != null) {
+                        appendCsvField(line, habit.getSchedule().toString());
+                    }
+                    line.append(',');
+                    appendCsvField(line, habit.getHistory().toString());
+                } else {
+                    Json.appendHabit(line, habit);
+                }
+                writer.append(line);
+                writer.newLine();
+                if (++records % BATCH_SIZE == 0) {
+                    report(records, 0, 0, channel.position(), 0, start);
+                }
+            }
+            writer.flush();
+            channel.force(true);
+        }
+        AtomicFile.commit(file);
+        Progress progress = new Progress(records, 0, 0, Files.size(file), 0, System.nanoTime() - start);
+        if (progressListener != null) {
+            progressListener.accept(progress);
+        }
+        return progress;
+    }
+
+    private CompletableFuture<Chunk> submit(Format format, int[] columns, List<String> batch, int[] lineNumbers) {
+        return CompletableFuture.supplyAsync(() -> parseChunk(format, columns, batch, lineNumbers), parseExecutor);
+    }
+
+    private static Chunk parseChunk(Format format, int[] columns, List<String> records, int[] lineNumbers) {
+        List<Habit> habits = new ArrayList<>(records.size());
+        List<Rejection> rejections = new ArrayList<>();
+        int incomplete = 0;
+        for (int i = 0; i < records.size(); i++) {
+            String record = records.get(i);
+            try {
+                Parsed parsed = format == Format.CSV ? parseCsv(record, columns) : parseJson(record);
+                habits.add(parsed.habit());
+                if (!parsed.complete()) {
+                    incomplete++;
+                }
+            } catch (IllegalArgumentException e) {
+                rejections.add(new Rejection(lineNumbers[i], record, e.getMessage()));
+            }
+        }
+        return new Chunk(habits, rejections, incomplete);
+    }
+
+    private int deliver(Chunk chunk, Consumer<List<Habit>> batchConsumer) {
+        HabitMetrics.get().malformedLines(chunk.rejections().size());
+        if (errorHandler != null) {
+            for (Rejection rejection : chunk.rejections()) {
+                errorHandler.malformedLine(rejection.lineNumber(), rejection.record(), rejection.reason());
+            }
+        }
+        if (!chunk.habits().isEmpty()) {
+            batchConsumer.accept(chunk.habits());
+        }
+        return chunk.rejections().size();
+    }
+
+    private void report(long records, long rejected, long incomplete, long bytes, long totalBytes, long start) {
+        if (progressListener != null) {
+            progressListener.accept(new Progress(records, rejected, incomplete, bytes, totalBytes, System.nanoTime() - start));
+        }
+    }
+
+    // Returns the column order named by a header row, or null if the line is a data row
+    private static int[] csvColumns(String line) {
+        if (hasOpenQuote(line)) {
+            return null;
+        }
+        List<String> names = splitCsv(line);
+        int[] columns = new int[CSV_COLUMNS.length];
+        for (int column = 0; column < CSV_COLUMNS.length; column++) {
+            columns[column] = -1;
+            for (int i = 0; i < names.size(); i++) {
+                if (names.get(i).trim().equalsIgnoreCase(CSV_COLUMNS[column])) {
+                    columns[column] = i;
+                }
+            }
+            if (columns[column] < 0 && column < REQUIRED_COLUMNS) {
+                if (column == 0) {
+                    return null;
+                }
+                throw new IllegalArgumentException("CSV header has no " + CSV_COLUMNS[column] + " column");
+            }
+        }
+        return columns;
+    }
+
+    private static Parsed parseCsv(String record, int[] columns) {
+        List<String> fields = splitCsv(record);
+        for (int column = 0; column < REQUIRED_COLUMNS; column++) {
+            if (columns[column] >= fields.size()) {
+                throw new IllegalArgumentException("expected at least " + REQUIRED_COLUMNS + " fields");
+            }
+        }
+        Habit habit = validate(fields.get(columns[0]), fields.get(columns[1]), fields.get(columns[2]).trim(), fields.get(columns[3]).trim());
+        String schedule = optionalField(fields, columns[4]);
+        String history = optionalField(fields, columns[5]);
+        return complete(habit, schedule, history);
+    }
+
+    // A column the header does not name, or that a row written before it existed stops short of
+    private static String optionalField(List<String> fields, int column) {
+        return column < 0 || column >= fields.size() ? null : fields.get(column).trim();
+    }
+
+    private static Parsed parseJson(String record) {
+        Map<String, Object> values = Json.parseObject(record);
+        Object completed = values.getOrDefault("completedToday", Boolean.FALSE);
+        Object streak = values.getOrDefault("streak", 0L);
+        if (!(values.get("name") instanceof String name) || !(values.get("category") instanceof String category)) {
+            throw new IllegalArgumentException("name and category must be strings");
+        }
+        Object schedule = values.get("schedule");
+        Object history = values.get("history");
+        if (schedule != null && !(schedule instanceof String) || history != null && !(history instanceof String)) {
+            throw new IllegalArgumentException("schedule and history must be strings");
+        }
+        Habit habit = validate(name, category, String.valueOf(completed), String.valueOf(streak));
+        // An export writes a habit without a schedule as null, so only a missing key loses anything
+        Parsed parsed = complete(habit, schedule == null ? "" : (String) schedule, (String) history);
+        return values.containsKey("schedule") ? parsed : new Parsed(parsed.habit(), false);
+    }
+
+    // Sets the schedule and history given as text; null means the record has no such field
+    private static Parsed complete(Habit habit, String schedule, String history) {
+        if (schedule != null) {
+            habit.setSchedule(HabitSchedule.parse(schedule));
+        }
+        if (history != null && !history.isEmpty()) {
+            try {
+                habit.setHistory(CompletionHistory.fromString(history));
+            } catch (RuntimeException e) {
+                throw new IllegalArgumentException("history is not in the form baseDay:word,word,...");
+            }
+        }
+        return new Parsed(habit, schedule != null && history != null);
+    }
+
+    private static Habit validate(String name, String category, String completed, String streak) {
+        if (name.isBlank()) {
+            throw new IllegalArgumentException("name is empty");
+        }
+        if (category.isBlank()) {
+            throw new IllegalArgumentException("category is empty");
+        }
+        boolean completedToday;
+        if (completed.equalsIgnoreCase("true")) {
+            completedToday = true;
+        } else if (completed.equalsIgnoreCase("false")) {
+            completedToday = false;
+        } else {
+            throw new IllegalArgumentException("completedToday is not true or false");
+        }
+        int streakValue;
+        try {
+            streakValue = Integer.parseInt(streak);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("streak is not a number");
+        }
+        if (streakValue < 0) {
+            throw new IllegalArgumentException("streak is negative");
+        }
+        return new Habit(name.trim(), category.trim(), completedToday, streakValue);
+    }
+
+    private static boolean hasOpenQuote(String text) {
+        int quotes = 0;
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) == '"') {
+                quotes++;
+            }
+        }
+        return quotes % 2 != 0;
+    }
+
+    private static List<String> splitCsv(String record) {
+        List<String> fields = new ArrayList<>(CSV_COLUMNS.length);
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < record.length(); i++) {
+            char c = record.charAt(i);
+            if (quoted) {
+                if (c != '"') {
+                    field.append(c);
+                } else if (i + 1 < record.length() && record.charAt(i + 1) == '"') {
+                    // A doubled quote inside a quoted field is a literal quote
+                    field.append('"');
+                    i++;
+                } else {
+                    quoted = false;
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        if (quoted) {
+            throw new IllegalArgumentException("quoted field is not closed");
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+
+    private static void appendCsvField(StringBuilder out, String value) {
+        boolean needsQuotes = false;
+        for (int i = 0; i < value.length() && !needsQuotes; i++) {
+            char c = value.charAt(i);
+            needsQuotes = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+        if (!needsQuotes) {
+            out.append(value);
+            return;
+        }
+        out.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"') {
+                out.append('"');
+            }
+            out.append(c);
+        }
+        out.append('"');
+    }
+}
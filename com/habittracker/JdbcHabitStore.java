@@ -0,0 +1,544 @@
+package com.habittracker;
+
+/**
+ * JdbcHabitStore.java
+ * {@link HabitStore} backed by an embedded SQL database such as H2 or SQLite.
+ *
+ * Habits live in one table, one row per habit, with an index on
+ * (category, streak) and one on streak, so {@link #findHabits} answers
+ * "all habits in category X with a streak of at least 30" from the index
+ * instead of loading everything. Changes are applied to their rows in place
+ * through prepared statements, queued as JDBC batches and committed together
+ * on {@link #flush()}. As every change already reached its row, a snapshot
+ * only inserts habits that have no row, deletes rows of habits it lacks and
+ * rewrites the rows whose change failed to commit, all in one transaction, so
+ * its cost follows the number of differences rather than of habits. Only
+ * portable SQL is used, and existing tables and indexes are found through the
+ * database metadata, so any JDBC driver on the class path works; the driver
+ * is found from the URL.
+ *
+ * A load or snapshot that fails throws, so a database that could not be read
+ * is never mistaken for an empty one and overwritten.
+ *
+ * Schedules are stored as their text in a nullable column, which is added to
+ * tables created before habits had schedules.
+ *
+ * The snapshot sequence and rollover day are kept in a small meta table.
+ * Changes at or below the snapshot sequence are already part of the rows and
+ * are skipped, just as the file store skips journal records a snapshot
+ * already contains.
+ */
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+public class JdbcHabitStore implements HabitStore {
+    // Rows written per JDBC batch by a snapshot
+    private static final int BATCH_SIZE = 1000;
+    private static final String COLUMNS = "id, name, category, completed_today, streak, history_base, history, schedule";
+    private static final String SEQUENCE_KEY = "sequence";
+    private static final String ROLLOVER_DAY_KEY = "rollover_day";
+
+    private final String url;
+    private Connection connection;
+    private PreparedStatement insert;
+    private PreparedStatement update;
+    private PreparedStatement delete;
+    private long sequence;
+    private long snapshotSequence;
+    private long rolloverDay;
+    private int pendingChanges;
+    private ChangeKind pendingKind;
+    // Habits in the queued batch
+    private final List<Long> pendingIds = new ArrayList<>();
+    // Ids that have a row, or null until the table was read
+    private Set<Long> rowIds;
+    // Habits whose row may be out of date because writing their change failed
+    private final Set<Long> staleIds = new HashSet<>();
+
+    private enum ChangeKind {
+        ADD, UPDATE, DELETE, META
+    }
+
+    /**
+     * Constructor for JdbcHabitStore. The database is opened on first use.
+     * @param url JDBC URL of the database, for example jdbc:h2:file:/data/habits
+     */
+    public JdbcHabitStore(String url) {
+        this.url = url;
+    }
+
+    /**
+     * Loads every habit from the table.
+     * @return Loaded habits, ordered by id
+     * @throws IllegalStateException if the database could not be read
+     */
+    @Override
+    public synchronized List<Habit> loadHabits() {
+        try (HabitMetrics.Operation operation = HabitMetrics.get().start("load")) {
+            try {
+                List<Habit> habits = select("SELECT " + COLUMNS + " FROM habits ORDER BY id");
+                operation.items(habits.size());
+                HabitMetrics.get().habitsLoaded(habits.size());
+                sequence = Math.max(sequence, snapshotSequence);
+                rowIds = new HashSet<>();
+                for (Habit habit : habits) {
+                    rowIds.add(habit.getId());
+                }
+                return habits;
+            } catch (SQLException e) {
+                operation.failed();
+                throw new IllegalStateException("Error reading habit database: " + e.getMessage(), e);
+            }
+        }
+    }
+
+    /**
+     * Makes the table hold the habits, writing only the rows that differ from them.
+     * @param habits Habits to store
+     * @param newSnapshotSequence Last change sequence reflected in the habits
+     * @param snapshotRolloverDay Rollover day reflected in the habits
+     * @throws IllegalStateException if the database could not be written; the rows are unchanged then
+     */
+    @Override
+    public synchronized void saveHabits(List<Habit> habits, long newSnapshotSequence, long snapshotRolloverDay) {
+        try (HabitMetrics.Operation operation = HabitMetrics.get().start("save").items(habits.size())) {
+            try {
+                Connection db = connection();
+                flush();
+                Set<Long> existing = rowIds != null ? rowIds : selectIds();
+                Set<Long> kept = new HashSet<>(habits.size() * 2);
+                int inserted = 0;
+                int updated = 0;
+                for (Habit habit : habits) {
+                    kept.add(habit.getId());
+                    if (!existing.contains(habit.getId())) {
+                        bindRow(insert, habit);
+                        insert.addBatch();
+                        if (++inserted % BATCH_SIZE == 0) {
+                            insert.executeBatch();
+                        }
+                    } else if (staleIds.contains(habit.getId())) {
+                        bindUpdate(habit);
+                        if (++updated % BATCH_SIZE == 0) {
+                            update.executeBatch();
+                        }
+                    }
+                }
+                int deleted = 0;
+                for (long id : existing) {
+                    if (!kept.contains(id)) {
+                        delete.setLong(1, id);
+                        delete.addBatch();
+                        if (++deleted % BATCH_SIZE == 0) {
+                            delete.executeBatch();
+                        }
+                    }
+                }
+                delete.executeBatch();
+                insert.executeBatch();
+                update.executeBatch();
+                writeMeta(SEQUENCE_KEY, newSnapshotSequence);
+                writeMeta(ROLLOVER_DAY_KEY, snapshotRolloverDay);
+                db.commit();
+                snapshotSequence = newSnapshotSequence;
+                rowIds = kept;
+                staleIds.clear();
+            } catch (SQLException e) {
+                operation.failed();
+                rollback();
+                throw new IllegalStateException("Error writing habit database: " + e.getMessage(), e);
+            }
+        }
+    }
+
+    @Override
+    public synchronized List<Habit> findHabits(String category, int minStreak) {
+        try {
+            flush();
+            return category == null
+                ? select("SELECT " + COLUMNS + " FROM habits WHERE streak >= ?", minStreak)
+                : select("SELECT " + COLUMNS + " FROM habits WHERE category = ? AND streak >= ?", category, minStreak);
+        } catch (SQLException e) {
+            System.err.println("Error querying habits: " + e.getMessage());
+            return new ArrayList<>();
+        }
+    }
+
+    @Override
+    public synchronized long nextSequence() {
+        return ++sequence;
+    }
+
+    @Override
+    public synchronized long currentSequence() {
+        return sequence;
+    }
+
+    @Override
+    public synchronized long getRolloverDay() {
+        return rolloverDay;
+    }
+
+    @Override
+    public synchronized void setRolloverDay(long epochDay) {
+        rolloverDay = epochDay;
+    }
+
+    @Override
+    public synchronized void journalAdd(long recordSequence, Habit habit) {
+        if (recordSequence > snapshotSequence) {
+            // Delete first, so adding a habit whose row already exists replaces it
+            queue(ChangeKind.ADD, habit.getId(), () -> {
+                delete.setLong(1, habit.getId());
+                delete.addBatch();
+                bindRow(insert, habit);
+                insert.addBatch();
+            });
+        }
+    }
+
+    @Override
+    public synchronized void journalUpdate(long recordSequence, Habit habit) {
+        if (recordSequence > snapshotSequence) {
+            queue(ChangeKind.UPDATE, habit.getId(), () -> bindUpdate(habit));
+        }
+    }
+
+    @Override
+    public synchronized void journalRollover(long recordSequence, long epochDay) {
+        if (recordSequence > snapshotSequence) {
+            queue(ChangeKind.META, 0, () -> writeMeta(ROLLOVER_DAY_KEY, epochDay));
+        }
+    }
+
+    @Override
+    public synchronized void journalDelete(long recordSequence, long id) {
+        if (recordSequence > snapshotSequence) {
+            queue(ChangeKind.DELETE, id, () -> {
+                delete.setLong(1, id);
+                delete.addBatch();
+            });
+        }
+    }
+
+    /**
+     * Runs the queued batches and commits them in one transaction.
+     */
+    @Override
+    public synchronized void flush() {
+        if (pendingChanges == 0 || connection == null) {
+            return;
+        }
+        try {
+            // Deletes first: an add queues a delete of the same id ahead of its insert
+            delete.executeBatch();
+            insert.executeBatch();
+            update.executeBatch();
+            connection.commit();
+            if (rowIds != null && pendingKind == ChangeKind.ADD) {
+                rowIds.addAll(pendingIds);
+            } else if (rowIds != null && pendingKind == ChangeKind.DELETE) {
+                pendingIds.forEach(rowIds::remove);
+            }
+        } catch (SQLException e) {
+            rollback();
+            // The next snapshot writes these rows again; a lost add or delete shows as a missing or extra row
+            staleIds.addAll(pendingIds);
+            System.err.println("Error writing habit changes: " + e.getMessage());
+        }
+        pendingChanges = 0;
+        pendingKind = null;
+        pendingIds.clear();
+    }
+
+    /**
+     * Commits outstanding changes; the database makes them durable on commit.
+     */
+    @Override
+    public synchronized void syncJournal() {
+        flush();
+    }
+
+    /**
+     * Changes are applied in place, so there is never a journal to fold in.
+     */
+    @Override
+    public boolean needsCompaction() {
+        return false;
+    }
+
+    @Override
+    public synchronized void close() {
+        flush();
+        if (connection != null) {
+            try {
+                connection.close();
+            } catch (SQLException e) {
+                System.err.println("Error closing habit database: " + e.getMessage());
+            }
+            connection = null;
+        }
+    }
+
+    /**
+     * Binds the parameters of one change to the prepared statements.
+     */
+    private interface Change {
+        void queue() throws SQLException;
+    }
+
+    // A META change has no habit; its id is ignored
+    private void queue(ChangeKind kind, long id, Change change) {
+        try {
+            connection();
+            // The delete, insert and update batches run one after the other, not in the
+            // order changes arrived, so only changes of one kind may share a batch
+            if (pendingKind != null && pendingKind != kind) {
+                flush();
+            }
+            change.queue();
+            pendingKind = kind;
+            pendingChanges++;
+            if (kind != ChangeKind.META) {
+                pendingIds.add(id);
+            }
+        } catch (SQLException e) {
+            if (kind != ChangeKind.META) {
+                staleIds.add(id);
+            }
+            System.err.println("Error writing habit changes: " + e.getMessage());
+        }
+    }
+
+    private Connection connection() throws SQLException {
+        if (connection != null) {
+            return connection;
+        }
+        Connection db = DriverManager.getConnection(url);
+        try {
+            db.setAutoCommit(false);
+            try (Statement statement = db.createStatement()) {
+                if (!hasTable(db, "habits")) {
+                    statement.executeUpdate("CREATE TABLE habits ("
+                        + "id BIGINT PRIMARY KEY, name VARCHAR(4096) NOT NULL, category VARCHAR(4096) NOT NULL, "
+                        + "completed_today BOOLEAN NOT NULL, streak INT NOT NULL, history_base BIGINT NOT NULL, history BLOB, "
+                        + "schedule VARCHAR(64))");
+                } else if (!hasColumn(db, "habits", "schedule")) {
+                    statement.executeUpdate("ALTER TABLE habits ADD COLUMN schedule VARCHAR(64)");
+                }
+                if (!hasIndex(db, "habits", "habits_category_streak")) {
+                    statement.executeUpdate("CREATE INDEX habits_category_streak ON habits (category, streak)");
+                }
+                if (!hasIndex(db, "habits", "habits_streak")) {
+                    statement.executeUpdate("CREATE INDEX habits_streak ON habits (streak)");
+                }
+                if (!hasTable(db, "habit_meta")) {
+                    statement.executeUpdate("CREATE TABLE habit_meta (name VARCHAR(64) PRIMARY KEY, val BIGINT NOT NULL)");
+                }
+            }
+            db.commit();
+            connection = db;
+            insert = db.prepareStatement("INSERT INTO habits (" + COLUMNS + ") VALUES (?, ?, ?, ?, ?, ?, ?, ?)");
+            update = db.prepareStatement("UPDATE habits SET name = ?, category = ?, completed_today = ?, streak = ?, "
+                + "history_base = ?, history = ?, schedule = ? WHERE id = ?");
+            delete = db.prepareStatement("DELETE FROM habits WHERE id = ?");
+            snapshotSequence = readMeta(SEQUENCE_KEY);
+            rolloverDay = Math.max(rolloverDay, readMeta(ROLLOVER_DAY_KEY));
+            sequence = Math.max(sequence, snapshotSequence);
+            return db;
+        } catch (SQLException e) {
+            connection = null;
+            db.close();
+            throw e;
+        }
+    }
+
+    private List<Habit> select(String sql, Object... parameters) throws SQLException {
+        Connection db = connection();
+        List<Habit> habits = new ArrayList<>();
+        try (PreparedStatement query = db.prepareStatement(sql)) {
+            for (int i = 0; i < parameters.length; i++) {
+                query.setObject(i + 1, parameters[i]);
+            }
+            try (ResultSet rows = query.executeQuery()) {
+                while (rows.next()) {
+                    Habit habit = new Habit(rows.getString(2), rows.getString(3), rows.getBoolean(4), rows.getInt(5));
+                    habit.setId(rows.getLong(1));
+                    habit.setHistory(history(rows.getLong(6), rows.getBytes(7)));
+                    habit.setSchedule(schedule(rows.getString(8)));
+                    habits.add(habit);
+                }
+            }
+        }
+        db.commit();
+        return habits;
+    }
+
+    private Set<Long> selectIds() throws SQLException {
+        Set<Long> ids = new HashSet<>();
+        try (Statement query = connection.createStatement(); ResultSet rows = query.executeQuery("SELECT id FROM habits")) {
+            while (rows.next()) {
+                ids.add(rows.getLong(1));
+            }
+        }
+        return ids;
+    }
+
+    private void bindUpdate(Habit habit) throws SQLException {
+        update.setString(1, habit.getName());
+        update.setString(2, habit.getCategory());
+        update.setBoolean(3, habit.isCompletedToday());
+        update.setInt(4, habit.getStreak());
+        update.setLong(5, habit.getHistory().getTrimmedBaseDay());
+        update.setBytes(6, historyBytes(habit));
+        update.setString(7, scheduleText(habit));
+        update.setLong(8, habit.getId());
+        update.addBatch();
+    }
+
+    private static void bindRow(PreparedStatement statement, Habit habit) throws SQLException {
+        statement.setLong(1, habit.getId());
+        statement.setString(2, habit.getName());
+        statement.setString(3, habit.getCategory());
+        statement.setBoolean(4, habit.isCompletedToday());
+        statement.setInt(5, habit.getStreak());
+        statement.setLong(6, habit.getHistory().getTrimmedBaseDay());
+        statement.setBytes(7, historyBytes(habit));
+        statement.setString(8, scheduleText(habit));
+    }
+
+    private static String scheduleText(Habit habit) {
+        return habit.getSchedule() == null ? null : habit.getSchedule().toString();
+    }
+
+    private static HabitSchedule schedule(String text) {
+        if (text == null) {
+            return null;
+        }
+        try {
+            return HabitSchedule.parse(text);
+        } catch (IllegalArgumentException e) {
+            System.err.println("Error reading habit schedule: " + e.getMessage());
+            return null;
+        }
+    }
+
+    // Databases differ in the case they report names in, so both are tried
+    private static boolean hasTable(Connection db, String table) throws SQLException {
+        DatabaseMetaData metaData = db.getMetaData();
+        for (String name : new String[] {table, table.toUpperCase(Locale.ROOT)}) {
+            try (ResultSet tables = metaData.getTables(null, null, name, new String[] {"TABLE"})) {
+                if (tables.next()) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static boolean hasIndex(Connection db, String table, String index) throws SQLException {
+        DatabaseMetaData metaData = db.getMetaData();
+        for (String name : new String[] {table, table.toUpperCase(Locale.ROOT)}) {
+            try (ResultSet indexes = metaData.getIndexInfo(null, null, name, false, true)) {
+                while (indexes.next()) {
+                    if (index.equalsIgnoreCase(indexes.getString("INDEX_NAME"))) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    private static boolean hasColumn(Connection db, String table, String column) throws SQLException {
+        DatabaseMetaData metaData = db.getMetaData();
+        for (String name : new String[] {column, column.toUpperCase(Locale.ROOT)}) {
+            String tableName = name.equals(column) ? table : table.toUpperCase(Locale.ROOT);
+            try (ResultSet columns = metaData.getColumns(null, null, tableName, name)) {
+                if (columns.next()) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static byte[] historyBytes(Habit habit) {
+        long[] words = habit.getHistory().toWords();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(words.length * Long.BYTES);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            for (long word : words) {
+                out.writeLong(word);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static CompletionHistory history(long baseDay, byte[] bytes) {
+        if (bytes == null || bytes.length == 0) {
+            return new CompletionHistory();
+        }
+        long[] words = new long[bytes.length / Long.BYTES];
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes))) {
+            for (int i = 0; i < words.length; i++) {
+                words[i] = in.readLong();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return CompletionHistory.fromWords(baseDay, words);
+    }
+
+    private long readMeta(String name) throws SQLException {
+        try (PreparedStatement query = connection.prepareStatement("SELECT val FROM habit_meta WHERE name = ?")) {
+            query.setString(1, name);
+            try (ResultSet rows = query.executeQuery()) {
+                return rows.next() ? rows.getLong(1) : 0;
+            }
+        }
+    }
+
+    private void writeMeta(String name, long value) throws SQLException {
+        try (PreparedStatement change = connection.prepareStatement("UPDATE habit_meta SET val = ? WHERE name = ?")) {
+            change.setLong(1, value);
+            change.setString(2, name);
+            if (change.executeUpdate() > 0) {
+                return;
+            }
+        }
+        try (PreparedStatement add = connection.prepareStatement("INSERT INTO habit_meta (name, val) VALUES (?, ?)")) {
+            add.setString(1, name);
+            add.setLong(2, value);
+            add.executeUpdate();
+        }
+    }
+
+    private void rollback() {
+        if (connection == null) {
+            return;
+        }
+        try {
+            connection.rollback();
+        } catch (SQLException e) {
+            System.err.println("Error rolling back habit changes: " + e.getMessage());
+        }
+    }
+}
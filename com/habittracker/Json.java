@@ -0,0 +1,320 @@
+package com.habittracker;
+
+/**
+ * Json.java
+ * Minimal JSON encoding and decoding for habits.
+ *
+ * Only what the HTTP API needs: writing habits, analytics, reminders and strings, and reading flat
+ * objects whose values are strings, numbers, booleans or null. Nested objects
+ * and arrays are rejected rather than silently skipped.
+ */
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+public class Json {
+    private Json() {
+    }
+
+    /**
+     * Appends a habit as a JSON object. The history is in the form of
+     * {@link CompletionHistory#toString()}, empty for a habit never completed.
+     * @param out Buffer to append to
+     * @param habit Habit to write
+     */
+    public static void appendHabit(StringBuilder out, Habit habit) {
+        out.append("{\"id\":").append(habit.getId());
+        out.append(",\"name\":");
+        appendString(out, habit.getName());
+        out.append(",\"category\":");
+        appendString(out, habit.getCategory());
+        out.append(",\"completedToday\":").append(habit.isCompletedToday());
+        out.append(",\"streak\":").append(habit.getStreak());
+        out.append(",\"schedule\":");
+        if (habit.getSchedule() == null) {
+            out.append("null");
+        } else {
+            appendString(out, habit.getSchedule().toString());
+        }
+        out.append(",\"history\":");
+        appendString(out, habit.getHistory().toString());
+        out.append('}');
+    }
+
+    /**
+     * Appends an analytics report as a JSON object. Rates are keyed by window
+     * length in days, streak counts by bucket label and weekday rates by day name.
+     * @param out Buffer to append to
+     * @param report Report to write
+     */
+    public static void appendReport(StringBuilder out, HabitAnalytics.Report report) {
+        out.append("{\"today\":\"").append(LocalDate.ofEpochDay(report.today())).append('"');
+        out.append(",\"habits\":").append(report.habits());
+        out.append(",\"rates\":");
+        appendRates(out, report.rates());
+        out.append(",\"categories\":[");
+        for (int i = 0; i < report.categories().size(); i++) {
+            HabitAnalytics.CategoryRates category = report.categories().get(i);
+            out.append(i == 0 ? "{\"category\":" : ",{\"category\":");
+            appendString(out, category.category());
+            out.append(",\"habits\":").append(category.habits());
+            out.append(",\"rates\":");
+            appendRates(out, category.rates());
+            out.append('}');
+        }
+        out.append("],\"currentStreaks\":");
+        appendStreaks(out, report.currentStreaks());
+        out.append(",\"longestStreaks\":");
+        appendStreaks(out, report.longestStreaks());
+        out.append(",\"weekdayRates\":{");
+        for (int day = 0; day < 7; day++) {
+            out.append(day == 0 ? "\"" : ",\"").append(DayOfWeek.of(day + 1)).append("\":");
+            appendRate(out, report.weekdayRates()[day]);
+        }
+        out.append("},\"bestWeekday\":\"").append(report.bestWeekday());
+        out.append("\",\"worstWeekday\":\"").append(report.worstWeekday()).append("\"}");
+    }
+
+    /**
+     * Appends correlated habits as a JSON array of {"habit": ..., "coefficient": ...} objects.
+     * @param out Buffer to append to
+     * @param correlations Correlations to write
+     */
+    public static void appendCorrelations(StringBuilder out, List<HabitAnalytics.Correlation> correlations) {
+        out.append('[');
+        for (int i = 0; i < correlations.size(); i++) {
+            out.append(i == 0 ? "{\"habit\":" : ",{\"habit\":");
+            appendHabit(out, correlations.get(i).habit());
+            out.append(",\"coefficient\":");
+            appendRate(out, correlations.get(i).coefficient());
+            out.append('}');
+        }
+        out.append(']');
+    }
+
+    /**
+     * Appends reminders as a JSON array of {"habit": ..., "time": ...} objects,
+     * with the time in ISO-8601 form including the offset.
+     * @param out Buffer to append to
+     * @param reminders Reminders to write
+     */
+    public static void appendReminders(StringBuilder out, Collection<ReminderScheduler.Reminder> reminders) {
+        out.append('[');
+        boolean first = true;
+        for (ReminderScheduler.Reminder reminder : reminders) {
+            out.append(first ? "{\"habit\":" : ",{\"habit\":");
+            appendHabit(out, reminder.habit());
+            out.append(",\"time\":\"").append(reminder.time().toOffsetDateTime()).append("\"}");
+            first = false;
+        }
+        out.append(']');
+    }
+
+    private static void appendRates(StringBuilder out, double[] rates) {
+        out.append('{');
+        for (int i = 0; i < rates.length; i++) {
+            out.append(i == 0 ? "\"" : ",\"").append(HabitAnalytics.WINDOWS[i]).append("\":");
+            appendRate(out, rates[i]);
+        }
+        out.append('}');
+    }
+
+    private static void appendStreaks(StringBuilder out, int[] counts) {
+        out.append('{');
+        for (int i = 0; i < counts.length; i++) {
+            out.append(i == 0 ? "\"" : ",\"").append(HabitAnalytics.streakBucketLabel(i)).append("\":").append(counts[i]);
+        }
+        out.append('}');
+    }
+
+    private static void appendRate(StringBuilder out, double rate) {
+        // Four decimals are plenty for percentages and keep the output short
+        out.append(Math.round(rate * 10_000) / 10_000.0);
+    }
+
+    /**
+     * Appends a string as a quoted JSON string.
+     * @param out Buffer to append to
+     * @param value String to write
+     */
+    public static void appendString(StringBuilder out, String value) {
+        out.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"' -> out.append("\\\"");
+                case '\\' -> out.append("\\\\");
+                case '\n' -> out.append("\\n");
+                case '\r' -> out.append("\\r");
+                case '\t' -> out.append("\\t");
+                default -> {
+                    if (c < 0x20) {
+                        out.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        out.append(c);
+                    }
+                }
+            }
+        }
+        out.append('"');
+    }
+
+    /**
+     * Parses a flat JSON object.
+     * @param text JSON text
+     * @return Values by key: String, Long, Double, Boolean or null
+     * @throws IllegalArgumentException if the text is not a flat JSON object
+     */
+    public static Map<String, Object> parseObject(CharSequence text) {
+        Parser parser = new Parser(text);
+        Map<String, Object> values = parser.parseObject();
+        parser.skipWhitespace();
+        if (parser.position < text.length()) {
+            throw parser.error("unexpected trailing characters");
+        }
+        return values;
+    }
+
+    private static final class Parser {
+        private final CharSequence text;
+        private int position;
+
+        Parser(CharSequence text) {
+            this.text = text;
+        }
+
+        Map<String, Object> parseObject() {
+            Map<String, Object> values = new LinkedHashMap<>();
+            expect('{');
+            skipWhitespace();
+            if (peek() == '}') {
+                position++;
+                return values;
+            }
+            while (true) {
+                skipWhitespace();
+                String key = parseString();
+                skipWhitespace();
+                expect(':');
+                skipWhitespace();
+                values.put(key, parseValue());
+                skipWhitespace();
+                char c = next();
+                if (c == '}') {
+                    return values;
+                }
+                if (c != ',') {
+                    throw error("expected ',' or '}'");
+                }
+            }
+        }
+
+        private Object parseValue() {
+            char c = peek();
+            return switch (c) {
+                case '"' -> parseString();
+                case 't' -> literal("true", Boolean.TRUE);
+                case 'f' -> literal("false", Boolean.FALSE);
+                case 'n' -> literal("null", null);
+                case '{', '[' -> throw error("nested values are not supported");
+                default -> parseNumber();
+            };
+        }
+
+        private Object literal(String word, Object value) {
+            for (int i = 0; i < word.length(); i++) {
+                if (next() != word.charAt(i)) {
+                    throw error("expected " + word);
+                }
+            }
+            return value;
+        }
+
+        private Object parseNumber() {
+            int start = position;
+            boolean decimal = false;
+            while (position < text.length()) {
+                char c = text.charAt(position);
+                if (c == '.' || c == 'e' || c == 'E') {
+                    decimal = true;
+                } else if (!(c == '-' || c == '+' || (c >= '0' && c <= '9'))) {
+                    break;
+                }
+                position++;
+            }
+            String number = text.subSequence(start, position).toString();
+            try {
+                return decimal ? (Object) Double.parseDouble(number) : (Object) Long.parseLong(number);
+            } catch (NumberFormatException e) {
+                throw error("invalid number '" + number + "'");
+            }
+        }
+
+        private String parseString() {
+            expect('"');
+            StringBuilder value = new StringBuilder();
+            while (true) {
+                char c = next();
+                if (c == '"') {
+                    return value.toString();
+                }
+                if (c != '\\') {
+                    value.append(c);
+                    continue;
+                }
+                char escaped = next();
+                switch (escaped) {
+                    case 'b' -> value.append('\b');
+                    case 'f' -> value.append('\f');
+                    case 'n' -> value.append('\n');
+                    case 'r' -> value.append('\r');
+                    case 't' -> value.append('\t');
+                    case 'u' -> {
+                        int code = 0;
+                        for (int i = 0; i < 4; i++) {
+                            int digit = Character.digit(next(), 16);
+                            if (digit < 0) {
+                                throw error("invalid unicode escape");
+                            }
+                            code = code << 4 | digit;
+                        }
+                        value.append((char) code);
+                    }
+                    default -> value.append(escaped);
+                }
+            }
+        }
+
+        void skipWhitespace() {
+            while (position < text.length() && Character.isWhitespace(text.charAt(position))) {
+                position++;
+            }
+        }
+
+        private void expect(char expected) {
+            if (next() != expected) {
+                throw error("expected '" + expected + "'");
+            }
+        }
+
+        private char peek() {
+            if (position >= text.length()) {
+                throw error("unexpected end of input");
+            }
+            return text.charAt(position);
+        }
+
+        private char next() {
+            char c = peek();
+            position++;
+            return c;
+        }
+
+        IllegalArgumentException error(String message) {
+            return new IllegalArgumentException("Invalid JSON at offset " + position + ": " + message);
+        }
+    }
+}
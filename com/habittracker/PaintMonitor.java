@@ -0,0 +1,91 @@
+package com.habittracker;
+
+/**
+ * PaintMonitor.java
+ * Measures how often a component paints, how long each paint takes and how
+ * much the painting thread allocates while doing it.
+ *
+ * Enabled with -Dhabittracker.paintMonitor=true. Once a second, and only while
+ * paints are happening, one line is printed to System.err:
+ *   table: 58 paints/s, avg 1.42 ms, max 3.10 ms, 0.4 KB allocated/paint
+ * No timer runs, so an idle app pays nothing for the monitor.
+ */
+import java.lang.management.ManagementFactory;
+
+public class PaintMonitor {
+    private static final long REPORT_INTERVAL_NANOS = 1_000_000_000L;
+
+    private final String name;
+    private final com.sun.management.ThreadMXBean threads;
+    private long windowStart;
+    private int paints;
+    private long totalNanos;
+    private long maxNanos;
+    private long allocatedBytes;
+    private long paintStartBytes;
+
+    /**
+     * Constructor for PaintMonitor.
+     * @param name Name printed with each report
+     */
+    public PaintMonitor(String name) {
+        this.name = name;
+        com.sun.management.ThreadMXBean bean = null;
+        if (ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean sunBean
+                && sunBean.isThreadAllocatedMemorySupported()) {
+            sunBean.setThreadAllocatedMemoryEnabled(true);
+            bean = sunBean;
+        }
+        this.threads = bean;
+    }
+
+    /**
+     * Creates a monitor if monitoring was enabled on the command line.
+     * @param name Name printed with each report
+     * @return The monitor, or null if monitoring is off
+     */
+    public static PaintMonitor ifEnabled(String name) {
+        return Boolean.getBoolean("habittracker.paintMonitor") ? new PaintMonitor(name) : null;
+    }
+
+    /**
+     * Marks the start of a paint. Must be called on the painting thread.
+     * @return Token to pass to {@link #paintFinished(long)}
+     */
+    public long paintStarted() {
+        paintStartBytes = threads == null ? 0 : threads.getCurrentThreadAllocatedBytes();
+        return System.nanoTime();
+    }
+
+    /**
+     * Marks the end of a paint and prints a report when a second has passed.
+     * @param token Value returned by {@link #paintStarted()}
+     */
+    public void paintFinished(long token) {
+        long now = System.nanoTime();
+        long elapsed = now - token;
+        if (threads != null) {
+            allocatedBytes += threads.getCurrentThreadAllocatedBytes() - paintStartBytes;
+        }
+        if (paints == 0) {
+            windowStart = token;
+        }
+        paints++;
+        totalNanos += elapsed;
+        maxNanos = Math.max(maxNanos, elapsed);
+        if (now - windowStart >= REPORT_INTERVAL_NANOS) {
+            System.err.println(report(now - windowStart));
+            paints = 0;
+            totalNanos = 0;
+            maxNanos = 0;
+            allocatedBytes = 0;
+        }
+    }
+
+    private String report(long windowNanos) {
+        String allocation = threads == null ? "allocation not measured"
+            : String.format("%.1f KB allocated/paint", allocatedBytes / 1024.0 / paints);
+        return String.format("%s: %.0f paints/s, avg %.2f ms, max %.2f ms, %s", name, paints * 1e9 / windowNanos,
+            totalNanos / 1e6 / paints, maxNanos / 1e6, allocation);
+    }
+}
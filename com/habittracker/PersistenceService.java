@@ -0,0 +1,457 @@
+package com.habittracker;
+
+/**
+ * PersistenceService.java
+ * Runs all I/O of one {@link HabitStore} on a single background writer thread.
+ *
+ * Callers record changes from the Event Dispatch Thread and get a
+ * CompletableFuture back immediately. Journal sequence numbers are reserved at
+ * submission time, so a snapshot always knows exactly which journal records it
+ * already contains, even when the writer is running behind. Bursts of snapshot
+ * saves are coalesced: only the newest snapshot of a burst is written, after
+ * every change it contains.
+ *
+ * New habits get ids from blocks the store reserves on the writer. The next
+ * block is reserved once half of the current one is used, so taking an id
+ * never waits for the store, which may have to lock files shared with other
+ * processes.
+ *
+ * When the store is shared with other processes, their changes are picked up
+ * whenever the store's change file is modified and handed to the thread that
+ * owns the habits as {@link ExternalChanges}.
+ *
+ * The writer is a virtual thread, so a server can keep one service per user
+ * store without tying up a platform thread for each.
+ */
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+public class PersistenceService {
+    // Number of habits handed to the load consumer at a time
+    private static final int LOAD_CHUNK_SIZE = 2000;
+    // Habit ids reserved from the store at a time
+    private static final int ID_BLOCK_SIZE = 1024;
+
+    private final HabitStore store;
+    private final ExecutorService writer =
+        Executors.newSingleThreadExecutor(Thread.ofVirtual().name("habit-persistence").factory());
+
+    // Changes submitted but not yet written; a burst of changes is flushed once at its end
+    private final AtomicInteger queuedWrites = new AtomicInteger();
+    // Number of changes per habit id that are submitted but not yet written
+    private final Map<Long, Integer> unwrittenChanges = new ConcurrentHashMap<>();
+    private volatile Closeable watch;
+
+    // Guarded by this
+    private List<Habit> pendingSnapshot;
+    private long pendingSnapshotSequence;
+    private long pendingSnapshotRolloverDay;
+    private CompletableFuture<Void> pendingSave;
+    private long snapshotRequests;
+    private CompletableFuture<List<Habit>> preloaded;
+    private long nextHabitId;
+    private long habitIdLimit;
+    private CompletableFuture<Long> nextIdBlock;
+    private boolean storeHandsOutIds = true;
+    private boolean loaded;
+
+    /**
+     * Constructor for PersistenceService.
+     * @param store Store that every change is written to
+     */
+    public PersistenceService(HabitStore store) {
+        this.store = store;
+    }
+
+    public HabitStore getStore() {
+        return store;
+    }
+
+    /**
+     * Starts reading the store in the background ahead of {@link #loadHabits},
+     * so the read overlaps with whatever the caller does first, such as
+     * building the UI. The next call to loadHabits hands over what was read.
+     */
+    public synchronized void preload() {
+        if (preloaded == null) {
+            preloaded = CompletableFuture.supplyAsync(store::loadHabits, writer);
+        }
+    }
+
+    /**
+     * Loads habits in the background and hands them over in chunks.
+     * @param chunkConsumer Called on the writer thread with consecutive chunks of habits
+     * @return Future completed with the total number of habits once every chunk was delivered
+     */
+    public CompletableFuture<Integer> loadHabits(Consumer<List<Habit>> chunkConsumer) {
+        CompletableFuture<List<Habit>> loading;
+        synchronized (this) {
+            loading = preloaded != null ? preloaded : CompletableFuture.supplyAsync(store::loadHabits, writer);
+            preloaded = null;
+        }
+        return loading.thenApplyAsync(habits -> {
+            for (int from = 0; from < habits.size(); from += LOAD_CHUNK_SIZE) {
+                int to = Math.min(from + LOAD_CHUNK_SIZE, habits.size());
+                chunkConsumer.accept(new ArrayList<>(habits.subList(from, to)));
+            }
+            synchronized (this) {
+                loaded = true;
+                reserveIdBlock();
+            }
+            return habits.size();
+        }, writer);
+    }
+
+    /**
+     * Records that a habit was added.
+     * @param habit Habit that was added, with its id assigned
+     * @return Future completed once the record was written
+     */
+    public CompletableFuture<Void> habitAdded(Habit habit) {
+        long recordSequence = store.nextSequence();
+        Habit copy = habit.copy();
+        return write(copy.getId(), () -> store.journalAdd(recordSequence, copy));
+    }
+
+    /**
+     * Records that a batch of habits was added, forcing the whole batch to disk together.
+     * @param habits Habits that were added, with their ids assigned
+     * @return Future completed once every record was written
+     */
+    public CompletableFuture<Void> habitsAdded(List<Habit> habits) {
+        long[] sequences = new long[habits.size()];
+        List<Habit> copies = new ArrayList<>(habits.size());
+        for (int i = 0; i < habits.size(); i++) {
+            sequences[i] = store.nextSequence();
+            copies.add(habits.get(i).copy());
+            changing(copies.get(i).getId());
+        }
+        return write(() -> {
+            try {
+                for (int i = 0; i < copies.size(); i++) {
+                    store.journalAdd(sequences[i], copies.get(i));
+                }
+                store.syncJournal();
+            } finally {
+                for (Habit copy : copies) {
+                    written(copy.getId());
+                }
+            }
+        });
+    }
+
+    /**
+     * Records that a habit changed.
+     * @param habit Habit with its new values
+     * @return Future completed once the record was written
+     */
+    public CompletableFuture<Void> habitUpdated(Habit habit) {
+        long recordSequence = store.nextSequence();
+        Habit copy = habit.copy();
+        return write(copy.getId(), () -> store.journalUpdate(recordSequence, copy));
+    }
+
+    /**
+     * Records that a habit was removed.
+     * @param id Id of the removed habit
+     * @return Future completed once the record was written
+     */
+    public CompletableFuture<Void> habitRemoved(long id) {
+        long recordSequence = store.nextSequence();
+        return write(id, () -> store.journalDelete(recordSequence, id));
+    }
+
+    /**
+     * Records a day rollover as one batch: an update record for every changed habit
+     * followed by the rollover record, all forced to disk together.
+     * @param epochDay Day the habits were rolled over to
+     * @param changed Habits whose completion state or streak changed
+     * @return Future completed once the batch was written
+     */
+    public CompletableFuture<Void> rolledOver(long epochDay, List<Habit> changed) {
+        long[] sequences = new long[changed.size()];
+        List<Habit> copies = new ArrayList<>(changed.size());
+        for (int i = 0; i < changed.size(); i++) {
+            sequences[i] = store.nextSequence();
+            copies.add(changed.get(i).copy());
+            changing(copies.get(i).getId());
+        }
+        long rolloverSequence = store.nextSequence();
+        store.setRolloverDay(epochDay);
+        return write(() -> {
+            try {
+                for (int i = 0; i < copies.size(); i++) {
+                    store.journalUpdate(sequences[i], copies.get(i));
+                }
+                store.journalRollover(rolloverSequence, epochDay);
+                store.syncJournal();
+            } finally {
+                for (Habit copy : copies) {
+                    written(copy.getId());
+                }
+            }
+        });
+    }
+
+    /**
+     * Finds habits in the store rather than in memory, using its indexes if it has any.
+     * @param category Category to match, or null for every category
+     * @param minStreak Smallest streak to include
+     * @return Future completed with the matching habits
+     */
+    public CompletableFuture<List<Habit>> findHabits(String category, int minStreak) {
+        return CompletableFuture.supplyAsync(() -> store.findHabits(category, minStreak), writer);
+    }
+
+    /**
+     * Saves a full snapshot of the habits, coalescing with any save that has not started yet.
+     * Must be called from the thread that mutates the habits. Until {@link #loadHabits}
+     * has handed over every habit, the habits are only part of what is stored and
+     * would replace the rest, so the save fails instead.
+     * @param habits Current habits
+     * @return Future completed once a snapshot at least this recent was written
+     */
+    public synchronized CompletableFuture<Void> saveHabits(Collection<Habit> habits) {
+        if (!loaded) {
+            return CompletableFuture.failedFuture(new IllegalStateException("Habits are not loaded yet"));
+        }
+        List<Habit> snapshot = new ArrayList<>(habits.size());
+        for (Habit habit : habits) {
+            snapshot.add(habit.copy());
+        }
+        pendingSnapshot = snapshot;
+        pendingSnapshotSequence = store.currentSequence();
+        pendingSnapshotRolloverDay = store.getRolloverDay();
+        if (pendingSave == null) {
+            pendingSave = new CompletableFuture<>();
+        }
+        // Queued behind every change the snapshot contains; earlier requests of the burst find they were superseded
+        long request = ++snapshotRequests;
+        writer.execute(() -> writePendingSnapshot(request));
+        return pendingSave;
+    }
+
+    /**
+     * Saves a snapshot if the journal has grown large enough to be compacted.
+     * Must be called from the thread that mutates the habits.
+     * @param habits Current habits
+     */
+    public void compactIfNeeded(Collection<Habit> habits) {
+        if (store.needsCompaction()) {
+            saveHabits(habits);
+        }
+    }
+
+    /**
+     * Starts handing over the changes other processes make to the store, if it is shared.
+     * @param changesConsumer Called on the writer thread with each batch of changes;
+     *                        the batch is applied with {@link #applyExternalChanges}
+     */
+    public void watchExternalChanges(Consumer<ExternalChanges> changesConsumer) {
+        Path changeFile = store.changeFile();
+        if (changeFile == null) {
+            return;
+        }
+        Runnable check = () -> {
+            try {
+                writer.execute(() -> {
+                    ExternalChanges changes = store.readExternalChanges();
+                    if (changes != null) {
+                        changesConsumer.accept(changes);
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                // Closing
+            }
+        };
+        try {
+            watch = StoreWatcher.shared().watch(changeFile, check);
+        } catch (IOException e) {
+            System.err.println("Error watching " + changeFile + ": " + e.getMessage());
+        }
+        // Pick up whatever changed between loading and watching
+        check.run();
+    }
+
+    /**
+     * Applies changes made by other processes to the habits, skipping habits with
+     * changes of this process still waiting to be written, which supersede them.
+     * Must be called from the thread that mutates the habits.
+     * @param changes Changes handed over by {@link #watchExternalChanges}
+     * @param repository Habits to update
+     * @return What changed in the repository
+     */
+    public ExternalChanges.Applied applyExternalChanges(ExternalChanges changes, HabitRepository repository) {
+        // Reserved first, so that snapshots from now on are known to contain the changes
+        long sequence = store.nextSequence();
+        return changes.applyTo(repository, unwrittenChanges::containsKey, sequence);
+    }
+
+    /**
+     * Takes the id of a new habit from the block reserved from the store.
+     * Only waits for the writer if no block was reserved yet, which loading the
+     * habits does, or if habits were added faster than blocks were reserved.
+     * @return New id, or 0 if the store leaves numbering to the caller
+     */
+    public long reserveHabitId() {
+        while (true) {
+            CompletableFuture<Long> reserving;
+            synchronized (this) {
+                if (nextHabitId == habitIdLimit && nextIdBlock != null && nextIdBlock.isDone()) {
+                    long first = nextIdBlock.join();
+                    nextIdBlock = null;
+                    storeHandsOutIds = first != 0;
+                    nextHabitId = first;
+                    habitIdLimit = first == 0 ? 0 : first + ID_BLOCK_SIZE;
+                }
+                if (nextHabitId < habitIdLimit) {
+                    if (habitIdLimit - nextHabitId <= ID_BLOCK_SIZE / 2) {
+                        reserveIdBlock();
+                    }
+                    return nextHabitId++;
+                }
+                reserveIdBlock();
+                if (!storeHandsOutIds) {
+                    // Asked again in the background in case the store could not reserve a block before
+                    return 0;
+                }
+                reserving = nextIdBlock;
+            }
+            reserving.join();
+        }
+    }
+
+    /**
+     * Gives every habit without an id a new one, reserved from the store for the
+     * whole batch so a large import does not use up the block kept for single
+     * adds. Waits for the writer, so must not be called on the EDT.
+     * @param habits Habits about to be added
+     */
+    public void assignHabitIds(List<Habit> habits) {
+        int count = 0;
+        for (Habit habit : habits) {
+            if (habit.getId() == 0) {
+                count++;
+            }
+        }
+        if (count == 0) {
+            return;
+        }
+        int needed = count;
+        long id = CompletableFuture.supplyAsync(() -> store.reserveHabitIds(needed), writer).join();
+        if (id == 0) {
+            return;
+        }
+        for (Habit habit : habits) {
+            if (habit.getId() == 0) {
+                habit.setId(id++);
+            }
+        }
+    }
+
+    /**
+     * Flushes outstanding work and stops the writer thread, waiting at most the given time.
+     * @param timeout Maximum time to wait
+     * @param unit Unit of the timeout
+     * @return true if everything was written before the timeout
+     */
+    public boolean close(long timeout, TimeUnit unit) {
+        Closeable currentWatch = watch;
+        if (currentWatch != null) {
+            try {
+                currentWatch.close();
+            } catch (IOException e) {
+                System.err.println("Error closing store watch: " + e.getMessage());
+            }
+        }
+        writer.execute(store::close);
+        writer.shutdown();
+        try {
+            return writer.awaitTermination(timeout, unit);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    // Must hold the lock; reserves the next block of ids on the writer unless that is under way already
+    private void reserveIdBlock() {
+        if (nextIdBlock == null) {
+            nextIdBlock = CompletableFuture.supplyAsync(() -> store.reserveHabitIds(ID_BLOCK_SIZE), writer)
+                .exceptionally(e -> {
+                    System.err.println("Error reserving habit ids: " + e.getMessage());
+                    return 0L;
+                });
+        }
+    }
+
+    // Runs a change on the writer and flushes the store once no further change is queued behind it
+    private CompletableFuture<Void> write(long id, Runnable change) {
+        changing(id);
+        return write(() -> {
+            try {
+                change.run();
+            } finally {
+                written(id);
+            }
+        });
+    }
+
+    private void changing(long id) {
+        unwrittenChanges.merge(id, 1, Integer::sum);
+    }
+
+    private void written(long id) {
+        unwrittenChanges.computeIfPresent(id, (key, count) -> count == 1 ? null : count - 1);
+    }
+
+    private CompletableFuture<Void> write(Runnable change) {
+        queuedWrites.incrementAndGet();
+        return CompletableFuture.runAsync(() -> {
+            try {
+                change.run();
+            } finally {
+                if (queuedWrites.decrementAndGet() == 0) {
+                    store.flush();
+                }
+            }
+        }, writer);
+    }
+
+    private void writePendingSnapshot(long request) {
+        List<Habit> snapshot;
+        long snapshotSequence;
+        long snapshotRolloverDay;
+        CompletableFuture<Void> future;
+        synchronized (this) {
+            if (request != snapshotRequests) {
+                return;
+            }
+            future = pendingSave;
+            snapshot = pendingSnapshot;
+            snapshotSequence = pendingSnapshotSequence;
+            snapshotRolloverDay = pendingSnapshotRolloverDay;
+            pendingSnapshot = null;
+            pendingSave = null;
+        }
+        try {
+            store.saveHabits(snapshot, snapshotSequence, snapshotRolloverDay);
+            future.complete(null);
+        } catch (RuntimeException e) {
+            future.completeExceptionally(e);
+        }
+    }
+}
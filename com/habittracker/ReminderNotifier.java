@@ -0,0 +1,119 @@
+package com.habittracker;
+
+/**
+ * ReminderNotifier.java
+ * Shows reminders from a {@link ReminderScheduler} to the desktop user.
+ *
+ * Where the desktop has a system tray, a tray icon is added on the first
+ * reminder and each batch of reminders pops up as one tray notification;
+ * clicking the icon or the notification brings the window back. The status
+ * label shows the batch as well, which is all there is without a tray.
+ */
+import java.awt.AWTException;
+import java.awt.Color;
+import java.awt.Frame;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.SystemTray;
+import java.awt.TrayIcon;
+import java.awt.image.BufferedImage;
+import java.util.List;
+import java.util.function.Consumer;
+
+public class ReminderNotifier implements ReminderScheduler.Listener {
+    // Habit names listed in one notification before the rest are counted
+    private static final int NAMES_SHOWN = 3;
+    private static final int ICON_SIZE = 16;
+
+    private final Frame owner;
+    private final Consumer<String> status;
+    private TrayIcon trayIcon;
+    private boolean trayFailed;
+
+    /**
+     * Constructor for ReminderNotifier.
+     * @param owner Window to bring back when a notification is clicked
+     * @param status Shows a line of text in the window's status label
+     */
+    public ReminderNotifier(Frame owner, Consumer<String> status) {
+        this.owner = owner;
+        this.status = status;
+    }
+
+    @Override
+    public void remindersDue(List<ReminderScheduler.Reminder> reminders) {
+        String text = describe(reminders);
+        status.accept("Reminder: " + text);
+        TrayIcon icon = trayIcon();
+        if (icon != null) {
+            icon.displayMessage(reminders.size() == 1 ? "Habit reminder" : "Habit reminders", text, TrayIcon.MessageType.INFO);
+        }
+    }
+
+    /**
+     * Removes the tray icon, if one was added.
+     */
+    public void close() {
+        if (trayIcon != null) {
+            SystemTray.getSystemTray().remove(trayIcon);
+            trayIcon = null;
+        }
+    }
+
+    /**
+     * Describes a batch of reminders, such as "Read, Run and 4 more are due".
+     * @param reminders Reminders that came due together
+     * @return One line of text
+     */
+    static String describe(List<ReminderScheduler.Reminder> reminders) {
+        StringBuilder text = new StringBuilder();
+        int shown = reminders.size() == NAMES_SHOWN + 1 ? reminders.size() : Math.min(NAMES_SHOWN, reminders.size());
+        for (int i = 0; i < shown; i++) {
+            if (i > 0) {
+                text.append(i == reminders.size() - 1 ? " and " : ", ");
+            }
+            text.append(reminders.get(i).habit().getName());
+        }
+        if (shown < reminders.size()) {
+            text.append(" and ").append(reminders.size() - shown).append(" more");
+        }
+        return text.append(reminders.size() == 1 ? " is due" : " are due").toString();
+    }
+
+    // Added on first use, so apps that never remind pay nothing for the tray at startup
+    private TrayIcon trayIcon() {
+        if (trayIcon != null || trayFailed) {
+            return trayIcon;
+        }
+        if (!SystemTray.isSupported()) {
+            trayFailed = true;
+            return null;
+        }
+        TrayIcon icon = new TrayIcon(iconImage(), owner.getTitle());
+        icon.setImageAutoSize(true);
+        icon.addActionListener(e -> {
+            owner.setState(Frame.NORMAL);
+            owner.toFront();
+        });
+        try {
+            SystemTray.getSystemTray().add(icon);
+            trayIcon = icon;
+        } catch (AWTException e) {
+            trayFailed = true;
+            System.err.println("Error adding tray icon: " + e.getMessage());
+        }
+        return trayIcon;
+    }
+
+    private static BufferedImage iconImage() {
+        BufferedImage image = new BufferedImage(ICON_SIZE, ICON_SIZE, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = image.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        g.setColor(new Color(70, 130, 180));
+        g.fillOval(1, 1, ICON_SIZE - 2, ICON_SIZE - 2);
+        g.setColor(Color.WHITE);
+        g.fillOval(ICON_SIZE / 2 - 2, ICON_SIZE / 2 - 2, 4, 4);
+        g.dispose();
+        return image;
+    }
+}
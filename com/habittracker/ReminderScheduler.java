@@ -0,0 +1,335 @@
+package com.habittracker;
+
+/**
+ * ReminderScheduler.java
+ * Reminds of habits at the time their {@link HabitSchedule} names.
+ *
+ * All reminders of a set of habits wait in one priority queue ordered by when
+ * they are next due, and only the earliest of them has a task on the timer,
+ * so a hundred thousand scheduled habits cost memory but no threads and no
+ * timer tasks of their own. When the task runs it takes every reminder that
+ * has come due off the queue, puts each back with its next time and arms the
+ * timer for the new earliest one. Rescheduling or deleting a habit replaces or
+ * drops its queue entry; outdated entries are skipped when they reach the head
+ * and the queue is rebuilt once they make up most of it.
+ *
+ * The timer never sleeps longer than a minute. The timer counts elapsed time,
+ * not wall-clock time, so this is what lets reminders catch up after the
+ * computer slept or its clock was changed; reminders missed by more than an
+ * hour are dropped rather than shown late. Times are computed in the current
+ * time zone and recomputed when it changes, and DST transitions are handled
+ * like {@link RolloverEngine} handles them.
+ *
+ * Reminders that come due together are handed to the thread that owns the
+ * habits in one batch. There the habits are looked up again and only those
+ * still due (not done today, or a times-per-week habit not yet done often
+ * enough this week) reach the listeners, so listeners see current habits and
+ * may change them. The desktop app shows them in the system tray; headless
+ * users such as the server subscribe with {@link #addListener}.
+ *
+ * Like rollover engines, many schedulers can share one timer thread.
+ */
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongFunction;
+
+public class ReminderScheduler {
+    private static final long MAX_SLEEP_MILLIS = TimeUnit.MINUTES.toMillis(1);
+    private static final long LATE_LIMIT_MILLIS = TimeUnit.HOURS.toMillis(1);
+    // Queues smaller than this are never rebuilt to drop outdated entries
+    private static final int MIN_COMPACT_SIZE = 1024;
+    // Distinct schedules whose next reminder is remembered
+    private static final int MAX_NEXT_TIMES = 1024;
+
+    /**
+     * A habit that is due, and the time it was due at.
+     */
+    public record Reminder(Habit habit, ZonedDateTime time) {
+    }
+
+    /**
+     * Receives reminders that came due, on the thread that owns the habits.
+     */
+    public interface Listener {
+        void remindersDue(List<Reminder> reminders);
+    }
+
+    /**
+     * When a habit is next due; the entry is outdated once its habit maps to another one.
+     */
+    private record Entry(long habitId, HabitSchedule schedule, long dueMillis) {
+    }
+
+    /**
+     * The next reminder of a schedule, which stays the same from one instant until it is reached.
+     */
+    private record NextTime(long fromMillis, long nextMillis) {
+    }
+
+    private final Executor habitExecutor;
+    private final LongFunction<Habit> habits;
+    private final ScheduledExecutorService timer;
+    private final boolean ownsTimer;
+    private final Clock clock;
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+    private final PriorityQueue<Entry> queue = new PriorityQueue<>(Comparator.comparingLong(Entry::dueMillis));
+    private final Map<Long, Entry> entries = new HashMap<>();
+    // Habits sharing a schedule are due at the same time, which is computed once
+    private final Map<HabitSchedule, NextTime> nextTimes = new HashMap<>();
+    private ZoneId zone = ZoneId.systemDefault();
+    private ScheduledFuture<?> wakeUp;
+    private long wakeUpMillis;
+    private boolean stopped;
+
+    /**
+     * Constructor for ReminderScheduler.
+     * @param habitExecutor Executor running on the thread that owns the habits
+     * @param habits Looks up a habit by id; only called on habitExecutor
+     */
+    public ReminderScheduler(Executor habitExecutor, LongFunction<Habit> habits) {
+        this(habitExecutor, habits, newTimer(), true, Clock.systemUTC());
+    }
+
+    /**
+     * Constructor for a ReminderScheduler that waits on a shared timer.
+     * @param habitExecutor Executor running on the thread that owns the habits
+     * @param habits Looks up a habit by id; only called on habitExecutor
+     * @param timer Timer shared with other schedulers; {@link #stop()} leaves it running
+     * @param clock Clock telling the current instant, normally the system clock
+     */
+    public ReminderScheduler(Executor habitExecutor, LongFunction<Habit> habits, ScheduledExecutorService timer, Clock clock) {
+        this(habitExecutor, habits, timer, false, clock);
+    }
+
+    private ReminderScheduler(Executor habitExecutor, LongFunction<Habit> habits, ScheduledExecutorService timer,
+            boolean ownsTimer, Clock clock) {
+        this.habitExecutor = habitExecutor;
+        this.habits = habits;
+        this.timer = timer;
+        this.ownsTimer = ownsTimer;
+        this.clock = clock;
+    }
+
+    /**
+     * Creates a timer for reminders, backed by one daemon thread.
+     * @return New timer
+     */
+    public static ScheduledExecutorService newTimer() {
+        return Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "habit-reminders");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Schedules the next reminder of a habit from its current schedule, or
+     * unschedules it if it has no reminder. Must run on the thread that owns the habit.
+     * @param habit Habit that was added or rescheduled
+     */
+    public void update(Habit habit) {
+        HabitSchedule schedule = habit.getSchedule();
+        synchronized (this) {
+            Entry current = entries.get(habit.getId());
+            if (current != null && current.schedule().equals(schedule)) {
+                return;
+            }
+            long now = clock.millis();
+            put(habit.getId(), schedule, next(schedule, now));
+            arm(now);
+        }
+    }
+
+    /**
+     * Schedules a batch of habits, as {@link #update} does for each.
+     * Must run on the thread that owns the habits.
+     * @param batch Habits to schedule
+     */
+    public synchronized void updateAll(Collection<Habit> batch) {
+        long now = clock.millis();
+        for (Habit habit : batch) {
+            put(habit.getId(), habit.getSchedule(), next(habit.getSchedule(), now));
+        }
+        arm(now);
+    }
+
+    /**
+     * Stops reminding of a habit.
+     * @param habitId Id of the habit that was deleted
+     */
+    public synchronized void remove(long habitId) {
+        entries.remove(habitId);
+    }
+
+    /**
+     * Returns how many habits have a reminder scheduled.
+     * @return Number of scheduled habits
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Stops reminding, shutting the timer down if this scheduler created it.
+     */
+    public synchronized void stop() {
+        stopped = true;
+        cancelWakeUp();
+        entries.clear();
+        queue.clear();
+        if (ownsTimer) {
+            timer.shutdownNow();
+        }
+    }
+
+    // Must hold the lock; a due time below 0 means the habit has no reminder
+    private void put(long habitId, HabitSchedule schedule, long dueMillis) {
+        if (dueMillis < 0) {
+            entries.remove(habitId);
+            return;
+        }
+        Entry entry = new Entry(habitId, schedule, dueMillis);
+        entries.put(habitId, entry);
+        queue.add(entry);
+        if (queue.size() >= MIN_COMPACT_SIZE && queue.size() > 2 * entries.size()) {
+            queue.clear();
+            queue.addAll(entries.values());
+        }
+    }
+
+    // Must hold the lock; returns -1 if the schedule has no reminder
+    private long next(HabitSchedule schedule, long nowMillis) {
+        if (schedule == null || schedule.reminder() == null) {
+            return -1;
+        }
+        NextTime cached = nextTimes.get(schedule);
+        if (cached != null && cached.fromMillis() <= nowMillis && nowMillis < cached.nextMillis()) {
+            return cached.nextMillis();
+        }
+        ZonedDateTime next = schedule.nextReminder(Instant.ofEpochMilli(nowMillis).atZone(zone));
+        long nextMillis = next == null ? -1 : next.toInstant().toEpochMilli();
+        if (nextTimes.size() >= MAX_NEXT_TIMES) {
+            nextTimes.clear();
+        }
+        nextTimes.put(schedule, new NextTime(nowMillis, nextMillis));
+        return nextMillis;
+    }
+
+    // Must hold the lock; sets the timer for the earliest entry unless it already wakes up before
+    private void arm(long now) {
+        while (!queue.isEmpty() && entries.get(queue.peek().habitId()) != queue.peek()) {
+            queue.poll();
+        }
+        if (queue.isEmpty()) {
+            cancelWakeUp();
+            return;
+        }
+        long target = Math.min(queue.peek().dueMillis(), now + MAX_SLEEP_MILLIS);
+        if (stopped || wakeUp != null && wakeUpMillis <= target) {
+            return;
+        }
+        cancelWakeUp();
+        wakeUpMillis = target;
+        wakeUp = timer.schedule(this::wakeUp, Math.max(0, target - now), TimeUnit.MILLISECONDS);
+    }
+
+    private void cancelWakeUp() {
+        if (wakeUp != null) {
+            wakeUp.cancel(false);
+            wakeUp = null;
+        }
+    }
+
+    /**
+     * Returns when the timer wakes up next.
+     * @return Clock millis the timer is set for, or -1 if nothing is scheduled
+     */
+    synchronized long nextWakeUpMillis() {
+        return wakeUp == null ? -1 : wakeUpMillis;
+    }
+
+    /**
+     * Hands out the reminders that have come due and sets the timer again, as
+     * each timer wake-up does.
+     */
+    void wakeUp() {
+        List<Entry> due = new ArrayList<>();
+        synchronized (this) {
+            // Not only the timer calls this, so a wake-up may still be pending
+            cancelWakeUp();
+            if (stopped) {
+                return;
+            }
+            long now = clock.millis();
+            if (!zone.equals(ZoneId.systemDefault())) {
+                zone = ZoneId.systemDefault();
+                nextTimes.clear();
+                for (Entry entry : new ArrayList<>(entries.values())) {
+                    put(entry.habitId(), entry.schedule(), next(entry.schedule(), now));
+                }
+            }
+            while (!queue.isEmpty() && queue.peek().dueMillis() <= now) {
+                Entry entry = queue.poll();
+                if (entries.get(entry.habitId()) != entry) {
+                    continue;
+                }
+                if (now - entry.dueMillis() <= LATE_LIMIT_MILLIS) {
+                    due.add(entry);
+                }
+                put(entry.habitId(), entry.schedule(), next(entry.schedule(), now));
+            }
+            arm(now);
+        }
+        if (!due.isEmpty()) {
+            habitExecutor.execute(() -> deliver(due));
+        }
+    }
+
+    /**
+     * Hands the reminders that are still due to the listeners. Runs on the thread that owns the habits.
+     */
+    private void deliver(List<Entry> due) {
+        ZoneId deliveryZone = ZoneId.systemDefault();
+        List<Reminder> reminders = new ArrayList<>();
+        for (Entry entry : due) {
+            Habit habit = habits.apply(entry.habitId());
+            ZonedDateTime time = Instant.ofEpochMilli(entry.dueMillis()).atZone(deliveryZone);
+            // The habit may have been deleted, rescheduled or done since the reminder came due
+            if (habit != null && entry.schedule().equals(habit.getSchedule())
+                    && entry.schedule().isDue(habit, time.toLocalDate().toEpochDay())) {
+                reminders.add(new Reminder(habit, time));
+            }
+        }
+        if (reminders.isEmpty()) {
+            return;
+        }
+        List<Reminder> batch = Collections.unmodifiableList(reminders);
+        for (Listener listener : listeners) {
+            listener.remindersDue(batch);
+        }
+    }
+}
@@ -0,0 +1,282 @@
+package com.habittracker;
+
+/**
+ * RolloverEngine.java
+ * Moves every habit on to a new day at local midnight.
+ *
+ * When a day ends, completedToday is cleared on every habit and the streak of a
+ * habit is reset if a day that ended was one its schedule asks for and the
+ * habit was not done on it. Every day counts for a habit without a schedule;
+ * see {@link HabitSchedule#breaksStreak} for the others. Days missed while the
+ * app was not running count the same, from the habit's history. All habits are processed in one batch: new values are computed in
+ * parallel chunks for large stores and then applied together on the thread that
+ * owns the habits, which hands the resulting change set to a single callback.
+ *
+ * The next run is always computed from the current local date and time zone, so
+ * DST transitions, time zone changes and clock adjustments only shift the next
+ * midnight rather than causing skipped or repeated rollovers. The timer counts
+ * elapsed time, not wall-clock time, so it never sleeps longer than an hour:
+ * each wake-up rolls over if the date has changed and recomputes midnight, which
+ * catches up within the hour after the computer slept, the clock was set or the
+ * time zone changed.
+ *
+ * Many engines can share one timer thread, as the server does with one engine
+ * per user store. The dates come from a {@link Clock}, normally the system
+ * clock in the current default time zone.
+ */
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+
+public class RolloverEngine {
+    // Stores at least this large compute their changes in parallel
+    private static final int PARALLEL_THRESHOLD = 10_000;
+    private static final int CHUNK_SIZE = 4096;
+    // Small margin so the timer never fires just before midnight
+    private static final long MIDNIGHT_MARGIN_MILLIS = 500;
+    private static final long MAX_SLEEP_MILLIS = TimeUnit.HOURS.toMillis(1);
+
+    /**
+     * Receives the change set of a rollover, on the thread that owns the habits.
+     */
+    public interface Listener {
+        void rolledOver(long epochDay, List<Habit> changed);
+    }
+
+    /**
+     * New values for one habit.
+     */
+    private record Change(Habit habit, int streak) {
+    }
+
+    /**
+     * The system clock in the default time zone of the moment, which may change while running.
+     */
+    private static final class SystemZoneClock extends Clock {
+        @Override
+        public ZoneId getZone() {
+            return ZoneId.systemDefault();
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return Clock.system(zone);
+        }
+
+        @Override
+        public Instant instant() {
+            return Instant.now();
+        }
+    }
+
+    private final Executor habitExecutor;
+    private final Supplier<Collection<Habit>> habits;
+    private final Listener listener;
+    private final ScheduledExecutorService timer;
+    private final boolean ownsTimer;
+    private final Clock clock;
+    private volatile ScheduledFuture<?> nextRun;
+    private volatile boolean stopped;
+    private long lastDay;
+
+    /**
+     * Constructor for RolloverEngine.
+     * @param habitExecutor Executor running on the thread that owns the habits
+     * @param habits Supplies the current habits; only called on habitExecutor
+     * @param listener Receives each change set; only called on habitExecutor
+     */
+    public RolloverEngine(Executor habitExecutor, Supplier<Collection<Habit>> habits, Listener listener) {
+        this(habitExecutor, habits, listener, newTimer(), true, new SystemZoneClock());
+    }
+
+    /**
+     * Constructor for a RolloverEngine that schedules its runs on a shared timer.
+     * @param habitExecutor Executor running on the thread that owns the habits
+     * @param habits Supplies the current habits; only called on habitExecutor
+     * @param listener Receives each change set; only called on habitExecutor
+     * @param timer Timer shared with other engines; {@link #stop()} leaves it running
+     */
+    public RolloverEngine(Executor habitExecutor, Supplier<Collection<Habit>> habits, Listener listener,
+            ScheduledExecutorService timer) {
+        this(habitExecutor, habits, listener, timer, false, new SystemZoneClock());
+    }
+
+    /**
+     * Constructor for a RolloverEngine that schedules its runs on a shared timer.
+     * @param habitExecutor Executor running on the thread that owns the habits
+     * @param habits Supplies the current habits; only called on habitExecutor
+     * @param listener Receives each change set; only called on habitExecutor
+     * @param timer Timer shared with other engines; {@link #stop()} leaves it running
+     * @param clock Clock telling the current instant and time zone
+     */
+    public RolloverEngine(Executor habitExecutor, Supplier<Collection<Habit>> habits, Listener listener,
+            ScheduledExecutorService timer, Clock clock) {
+        this(habitExecutor, habits, listener, timer, false, clock);
+    }
+
+    private RolloverEngine(Executor habitExecutor, Supplier<Collection<Habit>> habits, Listener listener,
+            ScheduledExecutorService timer, boolean ownsTimer, Clock clock) {
+        this.habitExecutor = habitExecutor;
+        this.habits = habits;
+        this.listener = listener;
+        this.timer = timer;
+        this.ownsTimer = ownsTimer;
+        this.clock = clock;
+    }
+
+    /**
+     * Creates a timer for scheduling rollovers, backed by one daemon thread.
+     * @return New timer
+     */
+    public static ScheduledExecutorService newTimer() {
+        return Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "habit-rollover");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Catches up on any days missed since the last rollover and schedules the next one.
+     * @param lastRolloverDay Day the habits were last rolled over to, or 0 if unknown
+     */
+    public void start(long lastRolloverDay) {
+        habitExecutor.execute(() -> {
+            lastDay = lastRolloverDay;
+            rollover();
+        });
+        scheduleNext();
+    }
+
+    /**
+     * Stops scheduling rollovers, shutting the timer down if this engine created it.
+     */
+    public void stop() {
+        stopped = true;
+        ScheduledFuture<?> run = nextRun;
+        if (run != null) {
+            run.cancel(false);
+        }
+        if (ownsTimer) {
+            timer.shutdownNow();
+        }
+    }
+
+    /**
+     * Records a rollover another process sharing the store already made, so it
+     * is not made a second time. Must run on the thread that owns the habits.
+     * @param epochDay Day the other process rolled the habits over to
+     */
+    public void rolledOverElsewhere(long epochDay) {
+        lastDay = Math.max(lastDay, epochDay);
+    }
+
+    /**
+     * Rolls the habits over on the thread that owns them if the date has
+     * changed, as each timer wake-up does.
+     */
+    void checkDate() {
+        habitExecutor.execute(this::rollover);
+    }
+
+    /**
+     * Rolls the habits over to today if the date has changed. Must run on the
+     * thread that owns the habits.
+     */
+    private void rollover() {
+        long today = LocalDate.now(clock).toEpochDay();
+        if (lastDay == 0) {
+            // Stores written before rollovers existed start counting from today
+            lastDay = today;
+            listener.rolledOver(today, List.of());
+            return;
+        }
+        if (today <= lastDay) {
+            return;
+        }
+        List<Habit> changed = apply(computeChanges(new ArrayList<>(habits.get()), lastDay, today));
+        lastDay = today;
+        listener.rolledOver(today, changed);
+    }
+
+    /**
+     * Computes the new streak of every habit that changes when moving from one day to another.
+     * Only reads the habits, so chunks may be processed in parallel.
+     */
+    private static List<Change> computeChanges(List<Habit> habits, long fromDay, long toDay) {
+        int chunks = (habits.size() + CHUNK_SIZE - 1) / CHUNK_SIZE;
+        IntStream chunkIndexes = IntStream.range(0, chunks);
+        if (habits.size() >= PARALLEL_THRESHOLD) {
+            chunkIndexes = chunkIndexes.parallel();
+        }
+        return chunkIndexes.mapToObj(chunk -> {
+            List<Change> changes = new ArrayList<>();
+            int end = Math.min(habits.size(), (chunk + 1) * CHUNK_SIZE);
+            for (int i = chunk * CHUNK_SIZE; i < end; i++) {
+                Habit habit = habits.get(i);
+                int streak = keepsStreak(habit, fromDay, toDay) ? habit.getStreak() : 0;
+                if (habit.isCompletedToday() || streak != habit.getStreak()) {
+                    changes.add(new Change(habit, streak));
+                }
+            }
+            return changes;
+        }).flatMap(List::stream).toList();
+    }
+
+    // A streak survives the days that ended unless one of them was scheduled and not done
+    private static boolean keepsStreak(Habit habit, long fromDay, long toDay) {
+        HabitSchedule schedule = habit.getSchedule();
+        for (long day = fromDay; day < toDay; day++) {
+            boolean done = day == fromDay && habit.isCompletedToday() || habit.getHistory().isCompleted(day);
+            if (!done && (schedule == null || schedule.breaksStreak(habit, day))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static List<Habit> apply(List<Change> changes) {
+        List<Habit> changed = new ArrayList<>(changes.size());
+        for (Change change : changes) {
+            change.habit().setCompletedToday(false);
+            change.habit().setStreak(change.streak());
+            changed.add(change.habit());
+        }
+        return changed;
+    }
+
+    private void scheduleNext() {
+        if (stopped || timer.isShutdown()) {
+            return;
+        }
+        // rollover does nothing when woken before midnight, and the next delay comes from the zone current then
+        nextRun = timer.schedule(() -> {
+            checkDate();
+            scheduleNext();
+        }, nextDelayMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Returns how long the timer sleeps before checking the date again.
+     * @return Time until just after the next local midnight, at most an hour
+     */
+    long nextDelayMillis() {
+        ZonedDateTime now = ZonedDateTime.now(clock);
+        // atStartOfDay picks the first valid instant when midnight falls in a DST gap
+        ZonedDateTime nextMidnight = now.toLocalDate().plusDays(1).atStartOfDay(now.getZone());
+        return Math.min(Duration.between(now, nextMidnight).toMillis() + MIDNIGHT_MARGIN_MILLIS, MAX_SLEEP_MILLIS);
+    }
+}
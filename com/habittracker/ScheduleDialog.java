@@ -0,0 +1,193 @@
+package com.habittracker;
+
+/**
+ * ScheduleDialog.java
+ * Lets the user pick a habit's {@link HabitSchedule}: none, every day, fixed
+ * days of the week or a number of times per week, and optionally the time of
+ * day to be reminded at.
+ */
+import java.awt.BorderLayout;
+import java.awt.Color;
+import java.awt.FlowLayout;
+import java.awt.Font;
+import java.awt.Frame;
+import java.awt.GridBagConstraints;
+import java.awt.GridBagLayout;
+import java.awt.Insets;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.format.TextStyle;
+import java.util.Date;
+import java.util.Locale;
+import java.util.function.Consumer;
+import javax.swing.BorderFactory;
+import javax.swing.JButton;
+import javax.swing.JCheckBox;
+import javax.swing.JComboBox;
+import javax.swing.JDialog;
+import javax.swing.JLabel;
+import javax.swing.JOptionPane;
+import javax.swing.JPanel;
+import javax.swing.JSpinner;
+import javax.swing.SpinnerDateModel;
+import javax.swing.SpinnerNumberModel;
+
+public final class ScheduleDialog extends JDialog {
+    private static final long serialVersionUID = 1L;
+    private static final Color BACKGROUND = new Color(240, 248, 255);
+    private static final String[] KINDS = {"No schedule", "Every day", "On these days", "Times per week"};
+    private static final int NONE = 0;
+    private static final int DAILY = 1;
+    private static final int WEEKDAYS = 2;
+    private static final int TIMES_PER_WEEK = 3;
+    private static final LocalTime DEFAULT_REMINDER = LocalTime.of(9, 0);
+
+    private final JComboBox<String> kind = new JComboBox<>(KINDS);
+    private final JCheckBox[] days = new JCheckBox[DayOfWeek.values().length];
+    private final JSpinner times = new JSpinner(new SpinnerNumberModel(3, 1, 7, 1));
+    private final JCheckBox remind = new JCheckBox("Remind me at");
+    private final JSpinner reminderTime = new JSpinner(new SpinnerDateModel());
+
+    /**
+     * Constructor for ScheduleDialog.
+     * @param owner Window the dialog belongs to
+     * @param habit Habit to schedule
+     * @param onSave Receives the chosen schedule, or null for none, when the user saves
+     */
+    public ScheduleDialog(Frame owner, Habit habit, Consumer<HabitSchedule> onSave) {
+        super(owner, "Schedule " + habit.getName(), true);
+        setLayout(new BorderLayout());
+
+        JPanel panel = new JPanel(new GridBagLayout());
+        panel.setBackground(BACKGROUND);
+        panel.setBorder(BorderFactory.createEmptyBorder(10, 10, 5, 10));
+        GridBagConstraints gbc = new GridBagConstraints();
+        gbc.insets = new Insets(5, 5, 5, 5);
+        gbc.fill = GridBagConstraints.HORIZONTAL;
+        gbc.gridx = 0;
+        gbc.gridy = 0;
+        gbc.gridwidth = 2;
+        kind.setFont(new Font("Segoe UI", Font.PLAIN, 14));
+        panel.add(kind, gbc);
+
+        JPanel dayPanel = new JPanel(new FlowLayout(FlowLayout.LEFT, 2, 0));
+        dayPanel.setBackground(BACKGROUND);
+        for (DayOfWeek day : DayOfWeek.values()) {
+            JCheckBox box = new JCheckBox(day.getDisplayName(TextStyle.SHORT, Locale.getDefault()));
+            box.setBackground(BACKGROUND);
+            days[day.ordinal()] = box;
+            dayPanel.add(box);
+        }
+        gbc.gridy = 1;
+        panel.add(dayPanel, gbc);
+
+        gbc.gridy = 2;
+        gbc.gridwidth = 1;
+        JLabel timesLabel = new JLabel("Times per week:");
+        timesLabel.setFont(new Font("Segoe UI", Font.BOLD, 14));
+        panel.add(timesLabel, gbc);
+        gbc.gridx = 1;
+        panel.add(times, gbc);
+
+        gbc.gridx = 0;
+        gbc.gridy = 3;
+        remind.setFont(new Font("Segoe UI", Font.BOLD, 14));
+        remind.setBackground(BACKGROUND);
+        panel.add(remind, gbc);
+        gbc.gridx = 1;
+        reminderTime.setEditor(new JSpinner.DateEditor(reminderTime, "HH:mm"));
+        panel.add(reminderTime, gbc);
+        add(panel, BorderLayout.CENTER);
+
+        showSchedule(habit.getSchedule());
+        kind.addActionListener(e -> updateEnabled());
+        remind.addActionListener(e -> updateEnabled());
+
+        JButton saveButton = styledButton("Save");
+        saveButton.addActionListener(e -> {
+            if (kind.getSelectedIndex() == WEEKDAYS && selectedDays() == 0) {
+                JOptionPane.showMessageDialog(this, "Please pick at least one day.", "Error", JOptionPane.ERROR_MESSAGE);
+                return;
+            }
+            onSave.accept(selectedSchedule());
+            dispose();
+        });
+        JButton cancelButton = styledButton("Cancel");
+        cancelButton.addActionListener(e -> dispose());
+        JPanel buttonPanel = new JPanel(new FlowLayout());
+        buttonPanel.setBackground(BACKGROUND);
+        buttonPanel.add(saveButton);
+        buttonPanel.add(cancelButton);
+        add(buttonPanel, BorderLayout.SOUTH);
+
+        getContentPane().setBackground(BACKGROUND);
+        pack();
+        setLocationRelativeTo(owner);
+    }
+
+    private void showSchedule(HabitSchedule schedule) {
+        LocalTime reminder = schedule == null ? null : schedule.reminder();
+        switch (schedule) {
+            case null -> kind.setSelectedIndex(NONE);
+            case HabitSchedule.Daily daily -> kind.setSelectedIndex(DAILY);
+            case HabitSchedule.Weekdays weekdays -> {
+                kind.setSelectedIndex(WEEKDAYS);
+                for (DayOfWeek day : DayOfWeek.values()) {
+                    days[day.ordinal()].setSelected(weekdays.includes(day));
+                }
+            }
+            case HabitSchedule.TimesPerWeek perWeek -> {
+                kind.setSelectedIndex(TIMES_PER_WEEK);
+                times.setValue(perWeek.times());
+            }
+        }
+        remind.setSelected(reminder != null);
+        LocalTime shown = reminder != null ? reminder : DEFAULT_REMINDER;
+        reminderTime.setValue(Date.from(shown.atDate(LocalDate.now()).atZone(ZoneId.systemDefault()).toInstant()));
+        updateEnabled();
+    }
+
+    private void updateEnabled() {
+        int selected = kind.getSelectedIndex();
+        for (JCheckBox day : days) {
+            day.setEnabled(selected == WEEKDAYS);
+        }
+        times.setEnabled(selected == TIMES_PER_WEEK);
+        remind.setEnabled(selected != NONE);
+        reminderTime.setEnabled(selected != NONE && remind.isSelected());
+    }
+
+    private int selectedDays() {
+        int mask = 0;
+        for (DayOfWeek day : DayOfWeek.values()) {
+            if (days[day.ordinal()].isSelected()) {
+                mask |= HabitSchedule.Weekdays.bit(day);
+            }
+        }
+        return mask;
+    }
+
+    private HabitSchedule selectedSchedule() {
+        LocalTime reminder = remind.isSelected()
+            ? ((Date) reminderTime.getValue()).toInstant().atZone(ZoneId.systemDefault()).toLocalTime()
+            : null;
+        return switch (kind.getSelectedIndex()) {
+            case DAILY -> new HabitSchedule.Daily(reminder);
+            case WEEKDAYS -> new HabitSchedule.Weekdays(selectedDays(), reminder);
+            case TIMES_PER_WEEK -> new HabitSchedule.TimesPerWeek((Integer) times.getValue(), reminder);
+            default -> null;
+        };
+    }
+
+    private static JButton styledButton(String text) {
+        JButton button = new JButton(text);
+        button.setBackground(new Color(70, 130, 180));
+        button.setForeground(Color.WHITE);
+        button.setFont(new Font("Segoe UI", Font.BOLD, 14));
+        button.setFocusPainted(false);
+        button.setBorder(BorderFactory.createEmptyBorder(8, 15, 8, 15));
+        return button;
+    }
+}
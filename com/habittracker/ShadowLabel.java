@@ -0,0 +1,89 @@
+package com.habittracker;
+
+/**
+ * ShadowLabel.java
+ * Centered label text with a soft drop shadow.
+ *
+ * The shadow takes several text draws, so text and shadow are rendered once
+ * into a translucent image at the screen's scale and repainted from there. The
+ * image is rebuilt only when the size, scale, text, font or color changes.
+ */
+import java.awt.AlphaComposite;
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.util.Objects;
+import javax.swing.JLabel;
+
+public class ShadowLabel extends JLabel {
+    private static final long serialVersionUID = 1L;
+    private static final Color SHADOW = new Color(150, 150, 150, 80); // Lighter, semi-transparent shadow
+    private static final int SHADOW_LAYERS = 3;
+
+    private transient BufferedImage cache;
+    private double cacheScale;
+    private String cacheText;
+    private Font cacheFont;
+    private Color cacheForeground;
+
+    /**
+     * Constructor for ShadowLabel.
+     * @param text Text of the label
+     */
+    public ShadowLabel(String text) {
+        super(text, JLabel.CENTER);
+    }
+
+    @Override
+    protected void paintComponent(Graphics g) {
+        int w = getWidth();
+        int h = getHeight();
+        if (isOpaque()) {
+            g.setColor(getBackground());
+            g.fillRect(0, 0, w, h);
+        }
+        if (w <= 0 || h <= 0 || getText() == null) {
+            return;
+        }
+        double scale = ((Graphics2D) g).getTransform().getScaleX();
+        if (cache == null || cache.getWidth() != (int) Math.ceil(w * scale) || cache.getHeight() != (int) Math.ceil(h * scale)
+                || cacheScale != scale || !Objects.equals(cacheText, getText()) || cacheFont != getFont()
+                || cacheForeground != getForeground()) {
+            render(w, h, scale);
+        }
+        g.drawImage(cache, 0, 0, w, h, null);
+    }
+
+    private void render(int w, int h, double scale) {
+        cache = new BufferedImage((int) Math.ceil(w * scale), (int) Math.ceil(h * scale), BufferedImage.TYPE_INT_ARGB);
+        cacheScale = scale;
+        cacheText = getText();
+        cacheFont = getFont();
+        cacheForeground = getForeground();
+
+        Graphics2D g2d = cache.createGraphics();
+        g2d.scale(scale, scale);
+        g2d.setComposite(AlphaComposite.SrcOver);
+        g2d.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+        g2d.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+        g2d.setFont(cacheFont);
+        FontMetrics fm = g2d.getFontMetrics();
+        int x = (w - fm.stringWidth(cacheText)) / 2;
+        int y = (h + fm.getAscent()) / 2;
+
+        // Draw multiple shadow layers for a soft effect
+        g2d.setColor(SHADOW);
+        for (int i = SHADOW_LAYERS; i > 0; i--) {
+            g2d.drawString(cacheText, x + i, y + i);
+        }
+
+        // Draw the main text
+        g2d.setColor(cacheForeground);
+        g2d.drawString(cacheText, x, y);
+        g2d.dispose();
+    }
+}
@@ -0,0 +1,86 @@
+package com.habittracker;
+
+/**
+ * StartupTimer.java
+ * Measures how long the app takes from process launch to its first painted
+ * frame and to having every habit loaded.
+ *
+ * Enabled with -Dhabittracker.startupTiming=true, which prints one line to
+ * System.err once both have happened, in the form:
+ *   startup: frame painted <ms> ms, data ready <ms> ms, <n> habits, archive <path or none>
+ * Launch is the process start time reported by the operating system, so JVM
+ * startup and class loading are included. With -Dhabittracker.exitAfterStartup=true
+ * the app also closes itself right after, which lets a script or the
+ * measureStartup build task launch it repeatedly.
+ */
+import java.lang.management.ManagementFactory;
+import java.time.Instant;
+
+public final class StartupTimer {
+    private static final String ARCHIVE_OPTION = "-XX:SharedArchiveFile=";
+
+    private final boolean report = Boolean.getBoolean("habittracker.startupTiming");
+    private final boolean exit = Boolean.getBoolean("habittracker.exitAfterStartup");
+    private final Runnable onExit;
+    private long framePaintedMillis;
+    private long dataReadyMillis;
+    private int habits;
+    private boolean finished;
+
+    /**
+     * Constructor for StartupTimer.
+     * @param onExit Closes the app; run once startup finished if -Dhabittracker.exitAfterStartup=true
+     */
+    public StartupTimer(Runnable onExit) {
+        this.onExit = onExit;
+    }
+
+    /**
+     * Records that the first frame was painted. Later calls are ignored.
+     */
+    public void framePainted() {
+        if (framePaintedMillis == 0) {
+            framePaintedMillis = System.currentTimeMillis();
+            finishIfReady();
+        }
+    }
+
+    /**
+     * Records that every habit was loaded. Later calls are ignored.
+     * @param habits Number of habits loaded
+     */
+    public void dataReady(int habits) {
+        if (dataReadyMillis == 0) {
+            dataReadyMillis = System.currentTimeMillis();
+            this.habits = habits;
+            finishIfReady();
+        }
+    }
+
+    private void finishIfReady() {
+        if (finished || framePaintedMillis == 0 || dataReadyMillis == 0) {
+            return;
+        }
+        finished = true;
+        if (report) {
+            long launchMillis = ProcessHandle.current().info().startInstant()
+                .map(Instant::toEpochMilli)
+                .orElse(ManagementFactory.getRuntimeMXBean().getStartTime());
+            System.err.printf("startup: frame painted %d ms, data ready %d ms, %d habits, archive %s%n",
+                framePaintedMillis - launchMillis, dataReadyMillis - launchMillis, habits, archive());
+        }
+        if (exit) {
+            onExit.run();
+        }
+    }
+
+    private static String archive() {
+        // Only read once startup is over, as the runtime MXBean takes a while to start
+        for (String argument : ManagementFactory.getRuntimeMXBean().getInputArguments()) {
+            if (argument.startsWith(ARCHIVE_OPTION)) {
+                return argument.substring(ARCHIVE_OPTION.length());
+            }
+        }
+        return "none";
+    }
+}
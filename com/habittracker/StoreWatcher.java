@@ -0,0 +1,118 @@
+package com.habittracker;
+
+/**
+ * StoreWatcher.java
+ * Reports changes to store files made by other processes.
+ *
+ * All watched files share one WatchService and one daemon thread, so a server
+ * watching many user stores does not need a thread per store. Events are
+ * collected for a short moment before the callbacks run, so a burst of writes
+ * is reported once. Callbacks also run for this process's own writes; they are
+ * expected to be cheap and to look for actual changes themselves.
+ */
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+public final class StoreWatcher {
+    // Time to let a burst of events arrive before reporting it
+    private static final long SETTLE_MILLIS = 50;
+    private static StoreWatcher shared;
+
+    /**
+     * One watched file and what to run when it changes.
+     */
+    private record Watch(Path fileName, Runnable onChange) {
+    }
+
+    private final WatchService watchService;
+    private final Map<WatchKey, List<Watch>> watches = new ConcurrentHashMap<>();
+
+    private StoreWatcher() throws IOException {
+        watchService = FileSystems.getDefault().newWatchService();
+        Thread thread = new Thread(this::run, "habit-store-watcher");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Returns the watcher shared by the whole process, starting it on first use.
+     * @return Shared watcher
+     * @throws IOException if the file system cannot be watched
+     */
+    public static synchronized StoreWatcher shared() throws IOException {
+        if (shared == null) {
+            shared = new StoreWatcher();
+        }
+        return shared;
+    }
+
+    /**
+     * Starts watching a file.
+     * @param file File to watch; it need not exist yet, but its directory must
+     * @param onChange Run on the watcher thread after the file was created, modified or deleted
+     * @return Closing it stops the watch
+     * @throws IOException if the directory cannot be watched
+     */
+    public Closeable watch(Path file, Runnable onChange) throws IOException {
+        Path directory = file.toAbsolutePath().getParent();
+        WatchKey key = directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+            StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+        Watch watch = new Watch(file.getFileName(), onChange);
+        watches.computeIfAbsent(key, k -> new CopyOnWriteArrayList<>()).add(watch);
+        return () -> watches.computeIfPresent(key, (k, list) -> {
+            list.remove(watch);
+            if (list.isEmpty()) {
+                key.cancel();
+                return null;
+            }
+            return list;
+        });
+    }
+
+    private void run() {
+        while (true) {
+            try {
+                WatchKey first = watchService.take();
+                Thread.sleep(SETTLE_MILLIS);
+                Set<Runnable> changed = new LinkedHashSet<>();
+                for (WatchKey key = first; key != null; key = watchService.poll()) {
+                    collect(key, changed);
+                }
+                for (Runnable onChange : changed) {
+                    try {
+                        onChange.run();
+                    } catch (RuntimeException e) {
+                        System.err.println("Error handling store change: " + e.getMessage());
+                    }
+                }
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    private void collect(WatchKey key, Set<Runnable> changed) {
+        List<Watch> keyWatches = watches.getOrDefault(key, List.of());
+        for (WatchEvent<?> event : key.pollEvents()) {
+            for (Watch watch : keyWatches) {
+                // Lost events could have been about any file
+                if (event.kind() == StandardWatchEventKinds.OVERFLOW || watch.fileName().equals(event.context())) {
+                    changed.add(watch.onChange());
+                }
+            }
+        }
+        key.reset();
+    }
+}
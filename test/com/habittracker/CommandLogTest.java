@@ -0,0 +1,126 @@
+package com.habittracker;
+
+/**
+ * CommandLogTest.java
+ * Runs commands through a {@link CommandLog} backed by a file store and checks
+ * undo and redo: a new command discards what could be redone, undoing an edit
+ * or a reschedule brings back the values from before it, and every step is
+ * journaled, so a fresh load sees the same habits.
+ */
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Path;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class CommandLogTest {
+    private static final long DAY = 20_000;
+
+    @TempDir
+    Path directory;
+
+    private final HabitRepository repository = new HabitRepository();
+    private final List<String> applied = new ArrayList<>();
+    private PersistenceService persistence;
+    private CommandLog log;
+
+    @BeforeEach
+    void open() {
+        persistence = new PersistenceService(new DataManager(directory));
+        persistence.loadHabits(repository::addAll).join();
+        log = new CommandLog(repository, persistence);
+        log.addListener((command, undone) -> applied.add((undone ? "undo " : "") + command.describe()));
+    }
+
+    @Test
+    void newCommandDiscardsTheRedoHistory() {
+        Habit habit = new Habit("Read", "Learning", false, 0);
+        log.execute(new HabitCommand.Add(habit));
+        HabitCommand complete = new HabitCommand.Complete(habit, DAY);
+        log.execute(complete);
+        assertSame(complete, log.undo());
+        assertTrue(log.canRedo());
+
+        log.execute(new HabitCommand.Edit(habit, "Read daily", "Learning"));
+
+        assertFalse(log.canRedo());
+        assertNull(log.redo());
+        assertFalse(habit.isCompletedToday());
+        assertEquals(0, habit.getStreak());
+        assertEquals(2, log.undoDepth());
+        assertEquals(List.of("Add Read", "Complete Read", "undo Complete Read", "Edit Read"), applied);
+    }
+
+    @Test
+    void undoingAnEditRestoresNameAndCategory() {
+        Habit habit = new Habit("Read", "Learning", false, 0);
+        log.execute(new HabitCommand.Add(habit));
+        log.execute(new HabitCommand.Edit(habit, "Run", "Health"));
+        log.execute(new HabitCommand.Edit(habit, "Run 5k", "Sport"));
+
+        log.undo();
+        assertEquals("Run", habit.getName());
+        assertEquals("Health", habit.getCategory());
+        log.undo();
+        assertEquals("Read", habit.getName());
+        assertEquals("Learning", habit.getCategory());
+        assertSame(habit, repository.findByName("Read").iterator().next());
+        assertTrue(repository.findByName("Run").isEmpty());
+
+        log.redo();
+        assertEquals("Run", habit.getName());
+        assertEquals("Health", habit.getCategory());
+        Habit loaded = reload().get(0);
+        assertEquals("Run", loaded.getName());
+        assertEquals("Health", loaded.getCategory());
+    }
+
+    @Test
+    void undoingARescheduleRestoresThePreviousSchedule() {
+        Habit habit = new Habit("Run", "Health", false, 0);
+        HabitSchedule threeTimes = new HabitSchedule.TimesPerWeek(3, LocalTime.of(19, 0));
+        log.execute(new HabitCommand.Add(habit));
+        log.execute(new HabitCommand.Reschedule(habit, threeTimes));
+        log.execute(new HabitCommand.Reschedule(habit, new HabitSchedule.Daily(LocalTime.of(7, 30))));
+
+        log.undo();
+        assertEquals(threeTimes, habit.getSchedule());
+        log.undo();
+        assertNull(habit.getSchedule());
+        assertNull(reload().get(0).getSchedule());
+    }
+
+    @Test
+    void undoingADeleteBringsBackTheHabitWithItsIdAndHistory() {
+        Habit habit = new Habit("Read", "Learning", false, 0);
+        log.execute(new HabitCommand.Add(habit));
+        log.execute(new HabitCommand.Complete(habit, DAY));
+        long id = habit.getId();
+        log.execute(new HabitCommand.Delete(habit));
+        assertNull(repository.get(id));
+
+        log.undo();
+
+        assertSame(habit, repository.get(id));
+        assertTrue(habit.getHistory().isCompleted(DAY));
+        List<Habit> loaded = reload();
+        assertEquals(id, loaded.get(0).getId());
+        assertTrue(loaded.get(0).getHistory().isCompleted(DAY));
+        assertEquals(1, loaded.get(0).getStreak());
+    }
+
+    // Closes the service and loads the directory again, as the next start would
+    private List<Habit> reload() {
+        assertTrue(persistence.close(10, TimeUnit.SECONDS));
+        return new DataManager(directory).loadHabits();
+    }
+}
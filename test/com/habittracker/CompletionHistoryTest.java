@@ -0,0 +1,131 @@
+package com.habittracker;
+
+/**
+ * CompletionHistoryTest.java
+ * Checks the bit arithmetic of the completion history where it is easiest to
+ * get wrong: days on either side of a 64-day word boundary, days before the
+ * epoch, which give a negative base day, and ranges that start in the middle
+ * of a word. Results are compared with a plain set of days.
+ */
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Random;
+import java.util.TreeSet;
+import org.junit.jupiter.api.Test;
+
+class CompletionHistoryTest {
+    @Test
+    void daysOnEitherSideOfAWordBoundary() {
+        CompletionHistory history = new CompletionHistory();
+        history.set(63, true);
+        history.set(64, true);
+
+        assertTrue(history.isCompleted(63));
+        assertTrue(history.isCompleted(64));
+        assertFalse(history.isCompleted(62));
+        assertFalse(history.isCompleted(65));
+        assertEquals(2, history.streakEndingOn(64));
+        assertEquals(1, history.streakEndingOn(63));
+        assertEquals(0, history.streakEndingOn(65));
+        assertEquals(2, history.countCompleted(63, 64));
+        assertEquals(1, history.countCompleted(64, 127));
+        assertEquals(2, history.longestStreak());
+
+        history.set(64, false);
+        assertFalse(history.isCompleted(64));
+        assertEquals(0, history.streakEndingOn(64));
+        assertEquals(1, history.streakEndingOn(63));
+    }
+
+    @Test
+    void streakRunningThroughWholeWords() {
+        CompletionHistory history = new CompletionHistory();
+        for (long day = 10; day <= 200; day++) {
+            history.set(day, true);
+        }
+
+        assertEquals(191, history.streakEndingOn(200));
+        assertEquals(118, history.streakEndingOn(127));
+        assertEquals(119, history.streakEndingOn(128));
+        assertEquals(54, history.streakEndingOn(63));
+        assertEquals(191, history.longestStreak());
+    }
+
+    @Test
+    void daysBeforeTheEpoch() {
+        CompletionHistory history = new CompletionHistory();
+        for (long day = -66; day <= 1; day++) {
+            history.set(day, true);
+        }
+        history.set(-130, true);
+
+        assertEquals(-192, history.getBaseDay());
+        assertTrue(history.isCompleted(-64));
+        assertTrue(history.isCompleted(-65));
+        assertFalse(history.isCompleted(-67));
+        assertEquals(68, history.streakEndingOn(1));
+        assertEquals(2, history.streakEndingOn(-65));
+        assertEquals(1, history.streakEndingOn(-130));
+        assertEquals(69, history.countCompleted(-200, 1));
+        assertEquals(3, history.countCompleted(-65, -63));
+        assertEquals(68, history.longestStreak());
+
+        CompletionHistory copy = CompletionHistory.fromString(history.toString());
+        for (long day = -200; day <= 10; day++) {
+            assertEquals(history.isCompleted(day), copy.isCompleted(day), "day " + day);
+        }
+    }
+
+    @Test
+    void wordsFromUnalignedStartsMatchTheDays() {
+        Random random = new Random(7);
+        CompletionHistory history = new CompletionHistory();
+        TreeSet<Long> days = new TreeSet<>();
+        for (int i = 0; i < 300; i++) {
+            long day = random.nextInt(600) - 300;
+            history.set(day, true);
+            days.add(day);
+        }
+
+        for (long from : new long[] {-301, -257, -64, -63, -1, 0, 1, 37, 63, 64, 65, 250}) {
+            for (int length : new int[] {1, 63, 64, 65, 130, 700}) {
+                long[] expected = new long[(length + 63) / 64];
+                for (long day : days.subSet(from, true, from + length - 1, true)) {
+                    int bit = (int) (day - from);
+                    expected[bit / 64] |= 1L << bit;
+                }
+                assertArrayEquals(expected, history.wordsFrom(from, length), "from " + from + " for " + length);
+                assertEquals(days.subSet(from, true, from + length - 1, true).size(),
+                    history.countCompleted(from, from + length - 1), "count from " + from + " for " + length);
+            }
+        }
+    }
+
+    @Test
+    void streaksMatchTheDays() {
+        Random random = new Random(11);
+        CompletionHistory history = new CompletionHistory();
+        TreeSet<Long> days = new TreeSet<>();
+        // Long runs with gaps, crossing zero and many word boundaries
+        for (long day = -500; day < 500; day++) {
+            if (random.nextInt(40) != 0) {
+                history.set(day, true);
+                days.add(day);
+            }
+        }
+
+        int longest = 0;
+        for (long day = -520; day < 520; day++) {
+            int run = 0;
+            while (days.contains(day - run)) {
+                run++;
+            }
+            assertEquals(run, history.streakEndingOn(day), "day " + day);
+            longest = Math.max(longest, run);
+        }
+        assertEquals(longest, history.longestStreak());
+    }
+}
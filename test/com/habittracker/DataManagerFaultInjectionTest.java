@@ -0,0 +1,254 @@
+package com.habittracker;
+
+/**
+ * DataManagerFaultInjectionTest.java
+ * Damages the files of a habit store the way a crash or a bad disk would and
+ * checks that loading recovers every change that reached the disk intact.
+ *
+ * Each test builds a store through DataManager itself, closes it, damages one
+ * file directly and loads the directory with a fresh instance, as the next
+ * start of the app would. Crashes are simulated by putting files back in the
+ * state a crash at that point would leave them in.
+ */
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class DataManagerFaultInjectionTest {
+    @TempDir
+    Path directory;
+
+    @Test
+    void tornJournalTailIsCutOff() throws IOException {
+        DataManager store = open();
+        save(store, habit(1, "Read"));
+        journal(store, habit(2, "Run"), habit(3, "Write"));
+        store.close();
+        long intactLength = Files.size(journal()) - lastLineLength(journal());
+        truncate(journal(), Files.size(journal()) - 5);
+
+        assertEquals(List.of("Read", "Run"), names(open().loadHabits()));
+        assertEquals(intactLength, Files.size(journal()));
+        assertFalse(Files.exists(directory.resolve("habits.journal.corrupt")));
+    }
+
+    @Test
+    void recordWithBadChecksumEndsTheJournal() throws IOException {
+        DataManager store = open();
+        save(store, habit(1, "Read"));
+        journal(store, habit(2, "Run"), habit(3, "Write"));
+        store.close();
+        byte[] bytes = Files.readAllBytes(journal());
+        // The last character of the first record's habit line, which its checksum covers
+        int firstLineEnd = indexOf(bytes, (byte) '\n');
+        bytes[firstLineEnd - 1] ^= 1;
+        Files.write(journal(), bytes);
+
+        assertEquals(List.of("Read"), names(open().loadHabits()));
+        assertEquals(0, Files.size(journal()));
+        assertTrue(Files.exists(directory.resolve("habits.journal.corrupt")));
+    }
+
+    @Test
+    void tornRecordInTheMiddleEndsTheJournalAndLaterAppendsSurvive() throws IOException {
+        DataManager store = open();
+        save(store, habit(1, "Read"));
+        journal(store, habit(2, "Run"), habit(3, "Write"), habit(4, "Swim"));
+        store.close();
+        byte[] bytes = Files.readAllBytes(journal());
+        // The second record lost its end, and the third was written after it
+        int secondStart = indexOf(bytes, (byte) '\n') + 1;
+        int secondEnd = secondStart + indexOf(Arrays.copyOfRange(bytes, secondStart, bytes.length), (byte) '\n');
+        byte[] torn = new byte[bytes.length - 8];
+        System.arraycopy(bytes, 0, torn, 0, secondEnd - 8);
+        System.arraycopy(bytes, secondEnd, torn, secondEnd - 8, bytes.length - secondEnd);
+        Files.write(journal(), torn);
+
+        store = open();
+        assertEquals(List.of("Read", "Run"), names(store.loadHabits()));
+        assertEquals(secondStart, Files.size(journal()));
+        assertTrue(Files.exists(directory.resolve("habits.journal.corrupt")));
+        journal(store, habit(5, "Cook"));
+        store.close();
+
+        assertEquals(List.of("Read", "Run", "Cook"), names(open().loadHabits()));
+    }
+
+    @Test
+    void crashDuringJournalRotationKeepsEveryRecordOnce() throws IOException {
+        DataManager store = open();
+        Habit read = habit(1, "Read");
+        Habit run = habit(2, "Run");
+        journal(store, read, run);
+        save(store, read, run);
+        journal(store, habit(3, "Write"));
+        store.journalDelete(store.nextSequence(), 2);
+        store.flush();
+        store.close();
+        byte[] journalBeforeSave = Files.readAllBytes(journal());
+        store = open();
+        List<Habit> habits = store.loadHabits();
+        store.saveHabits(habits);
+        store.close();
+        // The save wrote its snapshot, then crashed copying the journal to
+        // habits.journal.old, before the journal was emptied
+        Files.write(journal(), journalBeforeSave);
+        Files.write(directory.resolve("habits.journal.old"), Arrays.copyOf(journalBeforeSave, journalBeforeSave.length / 2));
+
+        // The snapshot already holds the records still in the journal, which are skipped by sequence
+        store = open();
+        assertEquals(List.of("Read", "Write"), names(store.loadHabits()));
+        journal(store, habit(4, "Swim"));
+        store.close();
+        assertEquals(List.of("Read", "Write", "Swim"), names(open().loadHabits()));
+
+        // Without the new snapshot, the backup, the torn habits.journal.old and the journal still add up
+        Path snapshot = directory.resolve("habits.dat");
+        byte[] bytes = Files.readAllBytes(snapshot);
+        bytes[bytes.length / 2] ^= 0x10;
+        Files.write(snapshot, bytes);
+        assertEquals(List.of("Read", "Write", "Swim"), names(open().loadHabits()));
+    }
+
+    @Test
+    void truncatedSnapshotFallsBackToBackupAndBothJournals() throws IOException {
+        writeTwoGenerations();
+        Path snapshot = directory.resolve("habits.dat");
+        truncate(snapshot, Files.size(snapshot) / 2);
+
+        assertEquals(List.of("Read", "Run", "Write", "Swim"), names(open().loadHabits()));
+    }
+
+    @Test
+    void bitFlippedSnapshotFallsBackToBackupAndBothJournals() throws IOException {
+        writeTwoGenerations();
+        Path snapshot = directory.resolve("habits.dat");
+        byte[] bytes = Files.readAllBytes(snapshot);
+        bytes[bytes.length / 2] ^= 0x10;
+        Files.write(snapshot, bytes);
+
+        assertEquals(List.of("Read", "Run", "Write", "Swim"), names(open().loadHabits()));
+    }
+
+    @Test
+    void partlyWrittenTempFileIsIgnored() throws IOException {
+        writeTwoGenerations();
+        Path snapshot = directory.resolve("habits.dat");
+        byte[] bytes = Files.readAllBytes(snapshot);
+        // The next save crashed while writing its temporary file
+        Files.write(AtomicFile.tempFile(snapshot), Arrays.copyOf(bytes, bytes.length / 2));
+
+        assertEquals(List.of("Read", "Run", "Write", "Swim"), names(open().loadHabits()));
+    }
+
+    @Test
+    void crashBetweenTempWriteAndRenameKeepsTheNewSnapshot() throws IOException {
+        writeTwoGenerations();
+        Path snapshot = directory.resolve("habits.dat");
+        // The last save wrote its temporary file and moved the old snapshot to
+        // habits.dat.prev, but crashed before renaming the temporary file
+        Files.move(snapshot, AtomicFile.tempFile(snapshot));
+
+        assertEquals(List.of("Read", "Run", "Write", "Swim"), names(open().loadHabits()));
+        assertTrue(Files.exists(snapshot));
+    }
+
+    @Test
+    void failedSaveIsReportedAndKeepsTheStore() throws IOException {
+        writeTwoGenerations();
+        // A directory where the temporary file goes makes writing the snapshot fail
+        Path snapshot = directory.resolve("habits.dat");
+        Files.createDirectories(AtomicFile.tempFile(snapshot).resolve("blocked"));
+        DataManager store = open();
+        List<Habit> habits = store.loadHabits();
+
+        assertThrows(UncheckedIOException.class, () -> store.saveHabits(habits.subList(0, 1)));
+        store.close();
+        assertEquals(List.of("Read", "Run", "Write", "Swim"), names(open().loadHabits()));
+    }
+
+    /**
+     * Leaves the store with a backup snapshot of Read and Run, a snapshot that
+     * adds Write (which habits.journal.old records), and Swim in habits.journal.
+     */
+    private void writeTwoGenerations() throws IOException {
+        DataManager store = open();
+        Habit read = habit(1, "Read");
+        Habit run = habit(2, "Run");
+        Habit write = habit(3, "Write");
+        journal(store, read, run);
+        save(store, read, run);
+        journal(store, write);
+        save(store, read, run, write);
+        journal(store, habit(4, "Swim"));
+        store.close();
+        assertTrue(Files.exists(directory.resolve("habits.dat.prev")));
+        assertTrue(Files.size(directory.resolve("habits.journal.old")) > 0);
+    }
+
+    private DataManager open() {
+        return new DataManager(directory);
+    }
+
+    private Path journal() {
+        return directory.resolve("habits.journal");
+    }
+
+    private static void save(DataManager store, Habit... habits) {
+        store.saveHabits(new ArrayList<>(List.of(habits)));
+    }
+
+    private static void journal(DataManager store, Habit... habits) {
+        for (Habit habit : habits) {
+            store.journalAdd(store.nextSequence(), habit);
+        }
+        store.flush();
+    }
+
+    private static Habit habit(long id, String name) {
+        Habit habit = new Habit(name, "Health", false, 0);
+        habit.setId(id);
+        return habit;
+    }
+
+    private static List<String> names(List<Habit> habits) {
+        return habits.stream().map(Habit::getName).toList();
+    }
+
+    private static void truncate(Path file, long size) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.truncate(size);
+        }
+    }
+
+    private static long lastLineLength(Path file) throws IOException {
+        byte[] bytes = Files.readAllBytes(file);
+        int start = bytes.length - 1;
+        while (start > 0 && bytes[start - 1] != '\n') {
+            start--;
+        }
+        return bytes.length - start;
+    }
+
+    private static int indexOf(byte[] bytes, byte value) {
+        for (int i = 0; i < bytes.length; i++) {
+            if (bytes[i] == value) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
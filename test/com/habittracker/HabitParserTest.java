@@ -0,0 +1,102 @@
+package com.habittracker;
+
+/**
+ * HabitParserTest.java
+ * Checks the habit line format: escaped pipes, backslashes and line breaks
+ * read back as written, lines from before escaping keep their backslashes,
+ * negative and out-of-range streaks are rejected, and every habit in a
+ * category shares one category String.
+ */
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class HabitParserTest {
+    private final List<String> errors = new ArrayList<>();
+    private final HabitParser parser = new HabitParser((lineNumber, line, reason) -> errors.add(lineNumber + ": " + reason));
+
+    @Test
+    void escapedPipesAndBackslashesReadBackAsWritten() {
+        for (String name : new String[] {"A|B", "C:\\tmp\\", "\\|", "two\nlines\r", "|", "\\\\"}) {
+            Habit habit = new Habit(name, "Work|Home\\", true, 4);
+            habit.setSchedule(new HabitSchedule.TimesPerWeek(3, LocalTime.of(19, 0)));
+
+            Habit parsed = parser.parse(habit.toString(), 1);
+
+            assertEquals(name, parsed.getName());
+            assertEquals("Work|Home\\", parsed.getCategory());
+            assertTrue(parsed.isCompletedToday());
+            assertEquals(4, parsed.getStreak());
+            assertEquals(habit.getSchedule(), parsed.getSchedule());
+        }
+        assertEquals("A\\|B|C\\\\", HabitParser.escape("A|B") + "|" + HabitParser.escape("C\\"));
+        assertTrue(errors.isEmpty());
+    }
+
+    @Test
+    void legacyBackslashesAreKept() {
+        // Written before escaping existed: the backslashes are part of the text
+        assertEquals("Read\\Write", parser.parse("Read\\Write|Learning|false|2", 1).getName());
+        assertEquals("C:\\Users\\me", parser.parse("Files|C:\\Users\\me|false|0", 2).getCategory());
+
+        // A name ending in a backslash only has four fields if the backslash is plain text
+        Habit trailing = parser.parse("Backup D:\\|Chores|true|7", 3);
+        assertEquals("Backup D:\\", trailing.getName());
+        assertEquals("Chores", trailing.getCategory());
+        assertEquals(7, trailing.getStreak());
+        assertTrue(errors.isEmpty());
+    }
+
+    @Test
+    void unescapedParserNeverTreatsABackslashAsAnEscape() {
+        HabitParser legacy = new HabitParser(null, false);
+
+        Habit habit = legacy.parse("C:\\notes\\\\|a\\|false|1", 1);
+
+        assertEquals("C:\\notes\\\\", habit.getName());
+        assertEquals("a\\", habit.getCategory());
+        assertNull(legacy.parse("C:\\notes|Files|false|1|daily|extra", 2));
+    }
+
+    @Test
+    void negativeAndOutOfRangeStreaksAreRejected() {
+        List<Habit> habits = new ArrayList<>();
+
+        int lines = parser.parseAll("Read|Learning|false|-1\n"
+            + "Run|Health|false|2147483648\n"
+            + "Swim|Health|false|\n"
+            + "Walk|Health|false|3x\n"
+            + "Yoga|Health|false|2147483647\n", 1, habits::add);
+
+        assertEquals(5, lines);
+        assertEquals(List.of("1: streak is negative", "2: streak is out of range", "3: missing streak",
+            "4: streak is not a number"), errors);
+        assertEquals(1, habits.size());
+        assertEquals(Integer.MAX_VALUE, habits.get(0).getStreak());
+    }
+
+    @Test
+    void habitsInACategoryShareOneCategoryString() {
+        List<Habit> habits = new ArrayList<>();
+        StringBuilder text = new StringBuilder();
+        // Enough categories to make the intern table grow
+        for (int i = 0; i < 500; i++) {
+            text.append("Habit ").append(i).append("|Category ").append(i % 100).append("|false|0\r\n");
+        }
+
+        parser.parseAll(text, 1, habits::add);
+
+        assertEquals(500, habits.size());
+        for (int i = 100; i < 500; i++) {
+            assertEquals("Category " + i % 100, habits.get(i).getCategory());
+            assertSame(habits.get(i % 100).getCategory(), habits.get(i).getCategory());
+        }
+        assertTrue(errors.isEmpty());
+    }
+}
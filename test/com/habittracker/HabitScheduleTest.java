@@ -0,0 +1,69 @@
+package com.habittracker;
+
+/**
+ * HabitScheduleTest.java
+ * Parses schedule text and writes it back: the text a schedule writes parses
+ * to the same schedule, typed text is read regardless of case and with day
+ * names shortened, and text that is not a schedule is rejected.
+ */
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.time.DayOfWeek;
+import java.time.LocalTime;
+import org.junit.jupiter.api.Test;
+
+class HabitScheduleTest {
+    @Test
+    void writtenTextParsesBackToTheSameSchedule() {
+        HabitSchedule weekdays = HabitSchedule.parse("weekdays MON,FRI 08:00");
+        assertEquals(new HabitSchedule.Weekdays(
+            HabitSchedule.Weekdays.bit(DayOfWeek.MONDAY) | HabitSchedule.Weekdays.bit(DayOfWeek.FRIDAY), LocalTime.of(8, 0)), weekdays);
+        assertEquals("weekdays MON,FRI 08:00", weekdays.toString());
+
+        HabitSchedule timesPerWeek = HabitSchedule.parse("3/week 19:00");
+        assertEquals(new HabitSchedule.TimesPerWeek(3, LocalTime.of(19, 0)), timesPerWeek);
+        assertEquals("3/week 19:00", timesPerWeek.toString());
+
+        assertEquals("daily", HabitSchedule.parse("daily").toString());
+        assertEquals("daily 07:30", HabitSchedule.parse("daily 07:30").toString());
+    }
+
+    @Test
+    void everyScheduleRoundTrips() {
+        LocalTime[] reminders = {null, LocalTime.MIDNIGHT, LocalTime.of(23, 59)};
+        for (LocalTime reminder : reminders) {
+            assertRoundTrips(new HabitSchedule.Daily(reminder));
+            for (int days = 1; days < 1 << 7; days++) {
+                assertRoundTrips(new HabitSchedule.Weekdays(days, reminder));
+            }
+            for (int times = 1; times <= 7; times++) {
+                assertRoundTrips(new HabitSchedule.TimesPerWeek(times, reminder));
+            }
+        }
+    }
+
+    @Test
+    void typedTextIsReadInAnyCase() {
+        assertEquals(HabitSchedule.parse("weekdays MON,WED,FRI 07:00"), HabitSchedule.parse("  Weekdays mo,we,fr   07:00 "));
+        assertEquals(HabitSchedule.parse("3/week 19:00"), HabitSchedule.parse("3/WEEK 19:00"));
+        // Reminders are kept to the minute
+        assertEquals(new HabitSchedule.Daily(LocalTime.of(8, 30)), HabitSchedule.parse("daily 08:30:59"));
+        assertNull(HabitSchedule.parse("   "));
+    }
+
+    @Test
+    void textThatIsNotAScheduleIsRejected() {
+        for (String text : new String[] {"fortnightly", "daily 08:00 extra", "daily 25:00", "weekdays",
+                "weekdays m 08:00", "weekdays MON,XYZ", "0/week", "8/week 19:00", "x/week"}) {
+            assertThrows(IllegalArgumentException.class, () -> HabitSchedule.parse(text), text);
+        }
+    }
+
+    private static void assertRoundTrips(HabitSchedule schedule) {
+        HabitSchedule parsed = HabitSchedule.parse(schedule.toString());
+        assertEquals(schedule, parsed, schedule.toString());
+        assertEquals(schedule.toString(), parsed.toString());
+    }
+}
@@ -0,0 +1,84 @@
+package com.habittracker;
+
+/**
+ * HabitSearchIndexTest.java
+ * Checks that changes to the search index are queued for its writer instead
+ * of taking the lock on the changing thread, that queries see every queued
+ * change, and that a query tests a single habit the way a search does.
+ */
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import org.junit.jupiter.api.Test;
+
+class HabitSearchIndexTest {
+    @Test
+    void queriesSeeChangesTheWriterHasNotAppliedYet() throws InterruptedException {
+        Queue<Runnable> writerTasks = new ArrayDeque<>();
+        HabitSearchIndex index = new HabitSearchIndex(writerTasks::add);
+        Habit read = habit(1, "Read a book", "Learning");
+        Habit run = habit(2, "Run", "Health");
+        index.add(read);
+        index.add(run);
+        read.setName("Read a paper");
+        index.update(read);
+        index.remove(run);
+
+        // The changes share one writer task, which has not run
+        assertEquals(1, writerTasks.size());
+        HabitSearchIndex.Query query = new HabitSearchIndex.Query("paper", null, null, null, true);
+        assertEquals(List.of(read), index.search(query));
+        assertEquals(1, index.size());
+
+        writerTasks.poll().run();
+        assertEquals(List.of(read), index.search(query));
+        assertTrue(index.search(new HabitSearchIndex.Query("book", null, null, null, true)).isEmpty());
+    }
+
+    @Test
+    void removedAndAddedAgainIsFoundOnce() throws InterruptedException {
+        Queue<Runnable> writerTasks = new ArrayDeque<>();
+        HabitSearchIndex index = new HabitSearchIndex(writerTasks::add);
+        Habit read = habit(1, "Read", "Learning");
+        index.add(read);
+        writerTasks.poll().run();
+
+        index.remove(read);
+        index.add(read);
+        writerTasks.poll().run();
+
+        assertEquals(List.of(read), index.search(new HabitSearchIndex.Query("rea", null, null, null, true)));
+    }
+
+    @Test
+    void singleHabitMatchesAndSortsLikeASearch() throws InterruptedException {
+        HabitSearchIndex index = new HabitSearchIndex();
+        List<Habit> habits = new ArrayList<>();
+        for (int i = 1; i <= 20; i++) {
+            Habit habit = habit(i, "Habit " + i, i % 2 == 0 ? "Health" : "Learning");
+            habit.setStreak(i * 7 % 11);
+            habit.setCompletedToday(i % 3 == 0);
+            habits.add(habit);
+            index.add(habit);
+        }
+        HabitSearchIndex.Query query = new HabitSearchIndex.Query("abit 1", "Health", null, HabitSearchIndex.SortKey.STREAK, false);
+
+        List<Habit> found = index.search(query);
+        List<Habit> matching = new ArrayList<>(habits.stream().filter(query::matches).toList());
+        matching.sort(query.order());
+        assertEquals(found, matching);
+        assertFalse(query.matches(habits.get(0)));
+        assertEquals(null, HabitSearchIndex.Query.ALL.order());
+    }
+
+    private static Habit habit(long id, String name, String category) {
+        Habit habit = new Habit(name, category, false, 0);
+        habit.setId(id);
+        return habit;
+    }
+}
@@ -0,0 +1,57 @@
+package com.habittracker;
+
+/**
+ * HabitTableModelTest.java
+ * Checks that the table model finds the row of a habit after rows were
+ * added, removed and replaced.
+ */
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class HabitTableModelTest {
+    @Test
+    void rowsFollowAddsAndRemoves() {
+        List<Habit> habits = habits(5);
+        HabitTableModel model = new HabitTableModel();
+        model.setHabits(habits.subList(0, 3));
+        model.habitsAdded(habits.subList(3, 4));
+        model.habitAdded(habits.get(4));
+
+        model.habitRemoved(model.rowOf(habits.get(1)));
+
+        assertEquals(0, model.rowOf(habits.get(0)));
+        assertEquals(-1, model.rowOf(habits.get(1)));
+        assertEquals(1, model.rowOf(habits.get(2)));
+        assertEquals(2, model.rowOf(habits.get(3)));
+        assertEquals(3, model.rowOf(habits.get(4)));
+        for (int row = 0; row < model.getRowCount(); row++) {
+            assertEquals(row, model.rowOf(model.getHabitAt(row)));
+        }
+    }
+
+    @Test
+    void habitWithTheSameIdButNotShownHasNoRow() {
+        List<Habit> habits = habits(2);
+        HabitTableModel model = new HabitTableModel();
+        model.setHabits(habits);
+
+        assertEquals(-1, model.rowOf(habits.get(0).copy()));
+
+        model.setHabits(habits.subList(1, 2));
+        assertEquals(-1, model.rowOf(habits.get(0)));
+        assertEquals(0, model.rowOf(habits.get(1)));
+    }
+
+    private static List<Habit> habits(int count) {
+        List<Habit> habits = new ArrayList<>();
+        for (int i = 1; i <= count; i++) {
+            Habit habit = new Habit("Habit " + i, "Health", false, 0);
+            habit.setId(i);
+            habits.add(habit);
+        }
+        return habits;
+    }
+}
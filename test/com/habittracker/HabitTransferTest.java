@@ -0,0 +1,113 @@
+package com.habittracker;
+
+/**
+ * HabitTransferTest.java
+ * Exports habits with schedules and completion history, imports them again
+ * and checks nothing was lost; files without those fields import with a
+ * count of incomplete records, and fields that do not parse are rejected.
+ */
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.DayOfWeek;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class HabitTransferTest {
+    @TempDir
+    Path directory;
+
+    @Test
+    void csvExportImportsWithoutLoss() throws IOException {
+        roundTrip(directory.resolve("habits.csv"));
+    }
+
+    @Test
+    void jsonLinesExportImportsWithoutLoss() throws IOException {
+        roundTrip(directory.resolve("habits.jsonl"));
+    }
+
+    @Test
+    void filesWithoutScheduleOrHistoryAreCountedAsIncomplete() throws IOException {
+        Path csv = directory.resolve("old.csv");
+        Files.writeString(csv, "name,category,completedToday,streak\nRead,Learning,true,3\n");
+        Path json = directory.resolve("old.jsonl");
+        Files.writeString(json, "{\"name\":\"Read\",\"category\":\"Learning\",\"schedule\":null}\n"
+            + "{\"name\":\"Run\",\"category\":\"Health\",\"schedule\":\"daily\",\"history\":\"\"}\n");
+
+        List<Habit> imported = new ArrayList<>();
+        HabitTransfer.Progress progress = new HabitTransfer(null, null).importFile(csv, imported::addAll);
+        assertEquals(1, progress.records());
+        assertEquals(1, progress.incomplete());
+        assertEquals(3, imported.get(0).getStreak());
+        assertNull(imported.get(0).getSchedule());
+
+        progress = new HabitTransfer(null, null).importFile(json, imported::addAll);
+        assertEquals(2, progress.records());
+        assertEquals(1, progress.incomplete());
+        assertEquals(new HabitSchedule.Daily(null), imported.get(2).getSchedule());
+    }
+
+    @Test
+    void unreadableScheduleOrHistoryRejectsTheRecord() throws IOException {
+        Path csv = directory.resolve("bad.csv");
+        Files.writeString(csv, "name,category,completedToday,streak,schedule,history\n"
+            + "Read,Learning,false,0,fortnightly,\n"
+            + "Run,Health,false,0,daily,not history\n"
+            + "Swim,Health,false,0,daily,\n");
+        List<Integer> rejectedLines = new ArrayList<>();
+        List<Habit> imported = new ArrayList<>();
+
+        HabitTransfer.Progress progress = new HabitTransfer((lineNumber, line, reason) -> rejectedLines.add(lineNumber), null)
+            .importFile(csv, imported::addAll);
+
+        assertEquals(List.of(2, 3), rejectedLines);
+        assertEquals(2, progress.rejected());
+        assertEquals(List.of("Swim"), imported.stream().map(Habit::getName).toList());
+    }
+
+    private void roundTrip(Path file) throws IOException {
+        List<Habit> habits = List.of(
+            habit("Read, then write", "Learning", new HabitSchedule.Weekdays(
+                HabitSchedule.Weekdays.bit(DayOfWeek.MONDAY) | HabitSchedule.Weekdays.bit(DayOfWeek.FRIDAY),
+                LocalTime.of(8, 0)), 20_000, 20_070),
+            habit("Run", "Health", new HabitSchedule.TimesPerWeek(3, LocalTime.of(19, 0)), 19_990, 19_993),
+            habit("Swim", "Health", null, 0, -1));
+        new HabitTransfer(null, null).exportFile(habits, file);
+
+        List<Habit> imported = new ArrayList<>();
+        HabitTransfer.Progress progress = new HabitTransfer(null, null).importFile(file, imported::addAll);
+
+        assertEquals(3, progress.records());
+        assertEquals(0, progress.rejected());
+        assertEquals(0, progress.incomplete());
+        for (int i = 0; i < habits.size(); i++) {
+            Habit expected = habits.get(i);
+            Habit actual = imported.get(i);
+            assertEquals(expected.getName(), actual.getName());
+            assertEquals(expected.getCategory(), actual.getCategory());
+            assertEquals(expected.isCompletedToday(), actual.isCompletedToday());
+            assertEquals(expected.getStreak(), actual.getStreak());
+            assertEquals(expected.getSchedule(), actual.getSchedule());
+            assertEquals(expected.getHistory().toString(), actual.getHistory().toString());
+        }
+    }
+
+    // Completed every day from the first to the last, none if the last comes first
+    private static Habit habit(String name, String category, HabitSchedule schedule, long firstDay, long lastDay) {
+        Habit habit = new Habit(name, category, true, (int) Math.max(0, lastDay - firstDay + 1));
+        habit.setSchedule(schedule);
+        CompletionHistory history = new CompletionHistory();
+        for (long day = firstDay; day <= lastDay; day++) {
+            history.set(day, true);
+        }
+        habit.setHistory(history);
+        return habit;
+    }
+}
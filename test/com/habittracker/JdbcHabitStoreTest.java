@@ -0,0 +1,153 @@
+package com.habittracker;
+
+/**
+ * JdbcHabitStoreTest.java
+ * Checks the JDBC store against an embedded H2 database: snapshots write only
+ * the rows that differ, a database that cannot be read is never taken for an
+ * empty one, and the schema is found again on reopening.
+ */
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class JdbcHabitStoreTest {
+    @TempDir
+    Path directory;
+
+    @Test
+    void snapshotKeepsChangesAndWritesHabitsWithoutRows() {
+        JdbcHabitStore store = open();
+        store.loadHabits();
+        Habit read = habit(1, "Read");
+        Habit run = habit(2, "Run");
+        store.journalAdd(store.nextSequence(), read);
+        store.journalAdd(store.nextSequence(), run);
+        store.journalAdd(store.nextSequence(), habit(3, "Write"));
+        store.flush();
+        run.setStreak(4);
+        store.journalUpdate(store.nextSequence(), run);
+        store.journalDelete(store.nextSequence(), 3);
+        store.flush();
+
+        // Swim never went through the journal, so the snapshot is what stores it
+        store.saveHabits(List.of(read, run, habit(4, "Swim")), store.currentSequence(), 0);
+        store.close();
+
+        List<Habit> loaded = open().loadHabits();
+        assertEquals(List.of("Read", "Run", "Swim"), loaded.stream().map(Habit::getName).toList());
+        assertEquals(4, loaded.get(1).getStreak());
+    }
+
+    @Test
+    void snapshotOfAStoreNeverLoadedInsertsEveryHabit() {
+        JdbcHabitStore store = open();
+        store.saveHabits(List.of(habit(1, "Read"), habit(2, "Run")), 0, 0);
+        store.close();
+
+        assertEquals(2, open().loadHabits().size());
+    }
+
+    @Test
+    void snapshotDeletesRowsOfHabitsItLacks() {
+        JdbcHabitStore store = open();
+        store.saveHabits(List.of(habit(1, "Read"), habit(2, "Run")), 0, 0);
+        store.close();
+        store = open();
+        List<Habit> habits = store.loadHabits();
+
+        store.saveHabits(habits.subList(1, 2), 0, 0);
+        store.close();
+
+        assertEquals(List.of("Run"), open().loadHabits().stream().map(Habit::getName).toList());
+    }
+
+    @Test
+    void changeThatFailedToCommitIsWrittenByTheNextSnapshot() {
+        JdbcHabitStore store = open();
+        store.loadHabits();
+        Habit read = habit(1, "Read");
+        store.journalAdd(store.nextSequence(), read);
+        store.flush();
+        // Longer than the name column, so the update is rolled back
+        read.setName("x".repeat(5000));
+        store.journalUpdate(store.nextSequence(), read);
+        store.flush();
+
+        read.setName("Read daily");
+        store.saveHabits(List.of(read), store.currentSequence(), 0);
+        store.close();
+
+        assertEquals("Read daily", open().loadHabits().get(0).getName());
+    }
+
+    @Test
+    void unreadableDatabaseIsNeverOverwritten() throws SQLException {
+        try (Connection db = DriverManager.getConnection(url()); Statement statement = db.createStatement()) {
+            // A table of the same name that the store cannot read its habits from
+            statement.executeUpdate("CREATE TABLE habits (id BIGINT PRIMARY KEY, title VARCHAR(64))");
+            statement.executeUpdate("INSERT INTO habits (id, title) VALUES (1, 'Read')");
+        }
+        JdbcHabitStore store = open();
+        assertThrows(IllegalStateException.class, store::loadHabits);
+
+        PersistenceService service = new PersistenceService(open());
+        assertThrows(CompletionException.class, () -> service.loadHabits(chunk -> { }).join());
+        assertThrows(CompletionException.class, () -> service.saveHabits(List.of()).join());
+        assertTrue(service.close(10, TimeUnit.SECONDS));
+        store.close();
+
+        try (Connection db = DriverManager.getConnection(url()); Statement statement = db.createStatement();
+                ResultSet rows = statement.executeQuery("SELECT COUNT(*) FROM habits")) {
+            rows.next();
+            assertEquals(1, rows.getInt(1));
+        }
+    }
+
+    @Test
+    void reopeningFindsTheExistingSchema() throws SQLException {
+        JdbcHabitStore store = open();
+        store.saveHabits(List.of(habit(1, "Read")), 0, 0);
+        store.close();
+        store = open();
+        store.loadHabits();
+        store.close();
+
+        try (Connection db = DriverManager.getConnection(url());
+                ResultSet indexes = db.getMetaData().getIndexInfo(null, null, "HABITS", false, true)) {
+            int streakIndexes = 0;
+            while (indexes.next()) {
+                String name = indexes.getString("INDEX_NAME");
+                if (name.equalsIgnoreCase("habits_streak") && indexes.getInt("ORDINAL_POSITION") == 1) {
+                    streakIndexes++;
+                }
+            }
+            assertEquals(1, streakIndexes);
+        }
+    }
+
+    private JdbcHabitStore open() {
+        return new JdbcHabitStore(url());
+    }
+
+    private String url() {
+        return "jdbc:h2:file:" + directory.resolve("habits").toAbsolutePath();
+    }
+
+    private static Habit habit(long id, String name) {
+        Habit habit = new Habit(name, "Health", false, 0);
+        habit.setId(id);
+        return habit;
+    }
+}
@@ -0,0 +1,89 @@
+package com.habittracker;
+
+/**
+ * PersistenceServiceTest.java
+ * Closes a {@link PersistenceService} the way the app does while habits are
+ * still loading and checks that no habit is lost.
+ *
+ * The store holds more habits than one load chunk, and the test holds the
+ * writer inside the first chunk, so the close-time save sees only part of
+ * the habits, as a window closed during a long load does.
+ */
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class PersistenceServiceTest {
+    private static final int HABITS = 5000;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void closingDuringALoadKeepsEveryHabit() throws InterruptedException {
+        writeHabits();
+        PersistenceService service = new PersistenceService(new DataManager(directory));
+        List<Habit> received = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch firstChunk = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<Integer> loading = service.loadHabits(chunk -> {
+            received.addAll(chunk);
+            firstChunk.countDown();
+            await(release);
+        });
+        assertTrue(firstChunk.await(10, TimeUnit.SECONDS));
+
+        CompletableFuture<Void> save = service.saveHabits(new ArrayList<>(received));
+        release.countDown();
+        assertEquals(HABITS, loading.join());
+        assertTrue(service.close(10, TimeUnit.SECONDS));
+
+        CompletionException failure = assertThrows(CompletionException.class, save::join);
+        assertTrue(failure.getCause() instanceof IllegalStateException);
+        assertEquals(HABITS, new DataManager(directory).loadHabits().size());
+    }
+
+    @Test
+    void saveAfterTheLoadReplacesTheSnapshot() {
+        writeHabits();
+        PersistenceService service = new PersistenceService(new DataManager(directory));
+        List<Habit> received = new ArrayList<>();
+        service.loadHabits(received::addAll).join();
+
+        service.saveHabits(received.subList(0, 10)).join();
+        assertTrue(service.close(10, TimeUnit.SECONDS));
+
+        assertEquals(10, new DataManager(directory).loadHabits().size());
+    }
+
+    private void writeHabits() {
+        List<Habit> habits = new ArrayList<>();
+        for (int i = 1; i <= HABITS; i++) {
+            Habit habit = new Habit("Habit " + i, "Health", false, 0);
+            habit.setId(i);
+            habits.add(habit);
+        }
+        DataManager store = new DataManager(directory);
+        store.saveHabits(habits);
+        store.close();
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
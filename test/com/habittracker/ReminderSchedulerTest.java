@@ -0,0 +1,210 @@
+package com.habittracker;
+
+/**
+ * ReminderSchedulerTest.java
+ * Runs a reminder scheduler through whole weeks on a clock the test sets and
+ * checks which reminders come when: only on the days a schedule includes,
+ * not for habits already done, and not at all when the computer slept through
+ * the time by more than an hour. The timer is played by setting the clock to
+ * each time the scheduler asks to be woken at, as elapsed time would.
+ *
+ * The last test schedules a hundred thousand habits and plays a whole day,
+ * checking that they share a single timer task, that the timer wakes up no
+ * more than once a minute between reminders and that those idle wake-ups do
+ * no work per habit.
+ */
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.DayOfWeek;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+class ReminderSchedulerTest {
+    // A Monday
+    private static final LocalDate MONDAY = LocalDate.of(2026, 10, 12);
+    private static final int MINUTES_PER_DAY = 24 * 60;
+
+    // The scheduler computes times in the system time zone, so the clock uses it too
+    private final RolloverEngineTest.SettableClock clock = new RolloverEngineTest.SettableClock(ZoneId.systemDefault());
+    private final ScheduledThreadPoolExecutor timer = new ScheduledThreadPoolExecutor(1);
+    private final Map<Long, Habit> habits = new HashMap<>();
+    private final List<String> reminded = new ArrayList<>();
+    private int lookups;
+    private final ReminderScheduler scheduler = new ReminderScheduler(Runnable::run, id -> {
+        lookups++;
+        return habits.get(id);
+    }, timer, clock);
+
+    ReminderSchedulerTest() {
+        // The test wakes the scheduler itself, which cancels the task it replaces
+        timer.setRemoveOnCancelPolicy(true);
+        scheduler.addListener(reminders -> {
+            for (ReminderScheduler.Reminder reminder : reminders) {
+                reminded.add(reminder.habit().getName() + " " + reminder.time().toLocalDateTime());
+            }
+        });
+    }
+
+    @AfterEach
+    void stopTimer() {
+        scheduler.stop();
+        timer.shutdownNow();
+    }
+
+    @Test
+    void remindsOnScheduledDaysAtTheirTime() {
+        clock.set(MONDAY.atTime(6, 0));
+        scheduler.update(habit("Read", "weekdays MON,FRI 08:00"));
+        scheduler.update(habit("Stretch", "daily 07:30"));
+        scheduler.update(habit("Journal", "daily"));
+
+        runUntil(MONDAY.plusDays(7).atStartOfDay());
+
+        List<String> expected = new ArrayList<>();
+        for (int day = 0; day < 7; day++) {
+            expected.add("Stretch " + MONDAY.plusDays(day).atTime(7, 30));
+            if (day == 0 || day == 4) {
+                expected.add("Read " + MONDAY.plusDays(day).atTime(8, 0));
+            }
+        }
+        assertEquals(expected, reminded);
+        assertEquals(2, scheduler.size());
+    }
+
+    @Test
+    void habitsDoneAlreadyAreNotReminded() {
+        clock.set(MONDAY.atTime(6, 0));
+        Habit run = habit("Run", "3/week 19:00");
+        Habit read = habit("Read", "daily 21:00");
+        scheduler.updateAll(List.of(run, read));
+
+        // Run on Monday and Wednesday before the reminder, on Thursday after it
+        for (int day = 0; day < 7; day++) {
+            LocalDate date = MONDAY.plusDays(day);
+            runUntil(date.atTime(12, 0));
+            if (day == 0 || day == 2) {
+                run.getHistory().set(date.toEpochDay(), true);
+            }
+            if (day == 1) {
+                read.getHistory().set(date.toEpochDay(), true);
+            }
+            runUntil(date.atTime(20, 0));
+            if (day == 3) {
+                run.getHistory().set(date.toEpochDay(), true);
+            }
+        }
+        runUntil(MONDAY.plusDays(7).atTime(20, 0));
+
+        List<String> runReminders = reminded.stream().filter(line -> line.startsWith("Run")).toList();
+        assertEquals(List.of("Run " + MONDAY.plusDays(1).atTime(19, 0), "Run " + MONDAY.plusDays(3).atTime(19, 0),
+            "Run " + MONDAY.plusDays(7).atTime(19, 0)), runReminders);
+        assertEquals(6, reminded.stream().filter(line -> line.startsWith("Read")).count());
+        assertTrue(reminded.stream().noneMatch(line -> line.equals("Read " + MONDAY.plusDays(1).atTime(21, 0))));
+    }
+
+    @Test
+    void remindersMissedByMoreThanAnHourAreDropped() {
+        clock.set(MONDAY.atTime(6, 0));
+        scheduler.update(habit("Stretch", "daily 07:30"));
+        scheduler.update(habit("Read", "daily 08:00"));
+
+        // Asleep from 7:00 to 8:45: Read is 45 minutes late, Stretch an hour and a quarter
+        runUntil(MONDAY.atTime(7, 0));
+        clock.set(MONDAY.atTime(8, 45));
+        scheduler.wakeUp();
+        assertEquals(List.of("Read " + MONDAY.atTime(8, 0)), reminded);
+
+        // Both are back the next day
+        runUntil(MONDAY.plusDays(1).atTime(9, 0));
+        assertEquals(List.of("Read " + MONDAY.atTime(8, 0), "Stretch " + MONDAY.plusDays(1).atTime(7, 30),
+            "Read " + MONDAY.plusDays(1).atTime(8, 0)), reminded);
+    }
+
+    @Test
+    void rescheduledAndDeletedHabitsMoveOrLeaveTheQueue() {
+        clock.set(MONDAY.atTime(6, 0));
+        Habit read = habit("Read", "daily 08:00");
+        Habit run = habit("Run", "daily 09:00");
+        scheduler.updateAll(List.of(read, run));
+
+        read.setSchedule(HabitSchedule.parse("daily 10:00"));
+        scheduler.update(read);
+        habits.remove(run.getId());
+        scheduler.remove(run.getId());
+        runUntil(MONDAY.atTime(12, 0));
+
+        assertEquals(List.of("Read " + MONDAY.atTime(10, 0)), reminded);
+        assertEquals(1, scheduler.size());
+    }
+
+    @Test
+    void hundredThousandHabitsShareOneTimerTaskAndIdleCheaply() {
+        int habitCount = 100_000;
+        clock.set(MONDAY.atStartOfDay());
+        List<Habit> batch = new ArrayList<>();
+        int expected = 0;
+        for (int i = 0; i < habitCount; i++) {
+            // Spread over every quarter hour from 00:15, with every kind of schedule
+            LocalTime reminder = LocalTime.MIDNIGHT.plusMinutes(15L * (1 + i % (24 * 4 - 1)));
+            HabitSchedule schedule = switch (i % 3) {
+                case 0 -> new HabitSchedule.Daily(reminder);
+                case 1 -> new HabitSchedule.Weekdays(HabitSchedule.Weekdays.bit(DayOfWeek.TUESDAY), reminder);
+                default -> new HabitSchedule.TimesPerWeek(3, reminder);
+            };
+            Habit habit = new Habit("Habit " + i, "Health", false, 0);
+            habit.setId(i + 1);
+            habit.setSchedule(schedule);
+            habits.put(habit.getId(), habit);
+            batch.add(habit);
+            if (schedule.includes(MONDAY)) {
+                expected++;
+            }
+        }
+        scheduler.updateAll(batch);
+        assertEquals(habitCount, scheduler.size());
+        assertEquals(1, timer.getQueue().size());
+
+        int wakeUps = runUntil(MONDAY.plusDays(1).atStartOfDay());
+
+        assertEquals(expected, reminded.size());
+        // Looking up the habits that are due is all the work done per habit
+        assertEquals(expected, lookups);
+        // One wake-up a minute, except where a reminder comes between two of them
+        assertTrue(wakeUps <= MINUTES_PER_DAY + 24 * 4, "woke up " + wakeUps + " times");
+        assertEquals(1, timer.getQueue().size());
+    }
+
+    private Habit habit(String name, String schedule) {
+        Habit habit = new Habit(name, "Health", false, 0);
+        habit.setId(habits.size() + 1);
+        habit.setSchedule(HabitSchedule.parse(schedule));
+        habits.put(habit.getId(), habit);
+        return habit;
+    }
+
+    // Wakes the scheduler at every time it asks for up to a time, then sets the clock to it
+    private int runUntil(LocalDateTime end) {
+        long endMillis = end.atZone(clock.getZone()).toInstant().toEpochMilli();
+        int wakeUps = 0;
+        for (long next = scheduler.nextWakeUpMillis(); next >= 0 && next <= endMillis; next = scheduler.nextWakeUpMillis()) {
+            assertTrue(next - clock.millis() <= TimeUnit.MINUTES.toMillis(1), "sleeps longer than a minute");
+            clock.set(Instant.ofEpochMilli(next));
+            scheduler.wakeUp();
+            wakeUps++;
+        }
+        clock.set(end);
+        return wakeUps;
+    }
+}
@@ -0,0 +1,249 @@
+package com.habittracker;
+
+/**
+ * RolloverEngineTest.java
+ * Rolls habits over day by day on a clock the test sets and checks which
+ * streaks survive: days a schedule leaves out never break a streak, and a
+ * times-per-week habit keeps it as long as the week can still make up the times.
+ *
+ * The DST tests use America/Sao_Paulo in 2018/19, where the clocks changed at
+ * midnight itself: on 4 November 2018 midnight was skipped, and on 17 February
+ * 2019 the last hour of the 16th was repeated. The timer is played by setting
+ * the clock forward by each delay the engine asks for, as elapsed time would.
+ */
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Clock;
+import java.time.DayOfWeek;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+class RolloverEngineTest {
+    // A Monday
+    private static final LocalDate MONDAY = LocalDate.of(2026, 10, 12);
+    private static final ZoneId ZONE = ZoneId.of("Europe/Berlin");
+    private static final ZoneId SAO_PAULO = ZoneId.of("America/Sao_Paulo");
+
+    private final ScheduledExecutorService timer = RolloverEngine.newTimer();
+    private final SettableClock clock = new SettableClock(ZONE);
+    private final List<Habit> habits = new ArrayList<>();
+    private final List<Long> rollovers = new ArrayList<>();
+    private final RolloverEngine engine =
+        new RolloverEngine(Runnable::run, () -> habits, (epochDay, changed) -> rollovers.add(epochDay), timer, clock);
+
+    @AfterEach
+    void stopTimer() {
+        engine.stop();
+        timer.shutdownNow();
+    }
+
+    @Test
+    void weekdayHabitKeepsItsStreakOverDaysOffSchedule() {
+        Habit habit = habit(new HabitSchedule.Weekdays(HabitSchedule.Weekdays.bit(DayOfWeek.MONDAY)
+            | HabitSchedule.Weekdays.bit(DayOfWeek.FRIDAY), null));
+        Habit daily = habit(null);
+        setDate(MONDAY.plusDays(4));
+        engine.start(MONDAY.plusDays(4).toEpochDay());
+        habit.complete(MONDAY.plusDays(4).toEpochDay());
+        daily.complete(MONDAY.plusDays(4).toEpochDay());
+
+        // Friday to Saturday, then over the weekend
+        rollTo(MONDAY.plusDays(5));
+        rollTo(MONDAY.plusDays(7));
+        assertEquals(1, habit.getStreak());
+        assertEquals(0, daily.getStreak());
+
+        habit.complete(MONDAY.plusDays(7).toEpochDay());
+        rollTo(MONDAY.plusDays(8));
+        assertEquals(2, habit.getStreak());
+
+        // Tuesday to Thursday are off schedule, the next Friday is missed
+        rollTo(MONDAY.plusDays(11));
+        assertEquals(2, habit.getStreak());
+        rollTo(MONDAY.plusDays(12));
+        assertEquals(0, habit.getStreak());
+    }
+
+    @Test
+    void weekdayHabitKeepsItsStreakWhenTheAppWasClosedOverTheWeekend() {
+        Habit habit = habit(new HabitSchedule.Weekdays(0b0011111, null));
+        setDate(MONDAY.plusDays(4));
+        engine.start(MONDAY.plusDays(4).toEpochDay());
+        habit.complete(MONDAY.plusDays(4).toEpochDay());
+
+        // Started again on Monday, with the whole weekend to catch up on at once
+        RolloverEngine reopened =
+            new RolloverEngine(Runnable::run, () -> habits, (epochDay, changed) -> rollovers.add(epochDay), timer, clock);
+        setDate(MONDAY.plusDays(7));
+        reopened.start(MONDAY.plusDays(4).toEpochDay());
+        reopened.stop();
+
+        assertEquals(1, habit.getStreak());
+        assertFalse(habit.isCompletedToday());
+    }
+
+    @Test
+    void timesPerWeekHabitKeepsItsStreakWhileTheWeekCanStillMakeUpTheTimes() {
+        Habit habit = habit(new HabitSchedule.TimesPerWeek(3, LocalTime.of(19, 0)));
+        setDate(MONDAY);
+        engine.start(MONDAY.toEpochDay());
+        for (int day = 0; day < 3; day++) {
+            habit.complete(MONDAY.plusDays(day).toEpochDay());
+            rollTo(MONDAY.plusDays(day + 1));
+        }
+        // Three times done by Wednesday, so the rest of the week may be skipped
+        rollTo(MONDAY.plusDays(7));
+        assertEquals(3, habit.getStreak());
+
+        habit.complete(MONDAY.plusDays(7).toEpochDay());
+        // Once, then Tuesday to Friday skipped: Saturday and Sunday can still make three
+        rollTo(MONDAY.plusDays(12));
+        assertEquals(4, habit.getStreak());
+        // Not on Saturday either, which leaves only Sunday for two more
+        rollTo(MONDAY.plusDays(13));
+        assertEquals(0, habit.getStreak());
+    }
+
+    @Test
+    void midnightSkippedBySpringForwardRollsOverOnce() {
+        SettableClock saoPaulo = new SettableClock(SAO_PAULO);
+        RolloverEngine local = new RolloverEngine(Runnable::run, () -> habits, (epochDay, changed) -> rollovers.add(epochDay), timer, saoPaulo);
+        Habit habit = habit(null);
+        saoPaulo.set(LocalDateTime.of(2018, 11, 3, 23, 30));
+        local.start(LocalDate.of(2018, 11, 3).toEpochDay());
+        habit.complete(LocalDate.of(2018, 11, 3).toEpochDay());
+
+        // The day ends at 01:00, half an hour on
+        assertEquals(Duration.ofMinutes(30).plusMillis(500).toMillis(), local.nextDelayMillis());
+        wakeUp(local, saoPaulo);
+        assertEquals(LocalDateTime.of(2018, 11, 4, 1, 0, 0, 500_000_000), LocalDateTime.ofInstant(saoPaulo.instant(), SAO_PAULO));
+        assertEquals(List.of(LocalDate.of(2018, 11, 4).toEpochDay()), rollovers);
+        assertEquals(1, habit.getStreak());
+
+        wakeUp(local, saoPaulo);
+        assertEquals(1, rollovers.size());
+        local.stop();
+    }
+
+    @Test
+    void hourRepeatedByFallBackRollsOverOnce() {
+        SettableClock saoPaulo = new SettableClock(SAO_PAULO);
+        RolloverEngine local = new RolloverEngine(Runnable::run, () -> habits, (epochDay, changed) -> rollovers.add(epochDay), timer, saoPaulo);
+        Habit habit = habit(null);
+        saoPaulo.set(LocalDateTime.of(2019, 2, 16, 22, 30));
+        local.start(LocalDate.of(2019, 2, 16).toEpochDay());
+        habit.complete(LocalDate.of(2019, 2, 16).toEpochDay());
+
+        // Midnight is two and a half hours away, so the timer wakes up twice before it
+        wakeUp(local, saoPaulo);
+        wakeUp(local, saoPaulo);
+        assertEquals(LocalDate.of(2019, 2, 16), LocalDate.ofInstant(saoPaulo.instant(), SAO_PAULO));
+        assertTrue(rollovers.isEmpty());
+        assertTrue(habit.isCompletedToday());
+
+        wakeUp(local, saoPaulo);
+        assertEquals(LocalDateTime.of(2019, 2, 17, 0, 0, 0, 500_000_000), LocalDateTime.ofInstant(saoPaulo.instant(), SAO_PAULO));
+        assertEquals(List.of(LocalDate.of(2019, 2, 17).toEpochDay()), rollovers);
+        assertEquals(1, habit.getStreak());
+        assertFalse(habit.isCompletedToday());
+        local.stop();
+    }
+
+    @Test
+    void clockSetBackNeitherRollsOverNorRepeatsADay() {
+        Habit habit = habit(null);
+        setDate(MONDAY);
+        engine.start(MONDAY.toEpochDay());
+        habit.complete(MONDAY.toEpochDay());
+        rollTo(MONDAY.plusDays(1));
+        habit.complete(MONDAY.plusDays(1).toEpochDay());
+
+        // Set back to Monday: nothing happens, and Tuesday's completion stays
+        setDate(MONDAY);
+        engine.checkDate();
+        assertEquals(1, rollovers.size());
+        assertTrue(habit.isCompletedToday());
+        assertEquals(2, habit.getStreak());
+        assertTrue(engine.nextDelayMillis() <= Duration.ofHours(1).toMillis());
+
+        // Back to Tuesday, already rolled over to, then on to Wednesday once
+        setDate(MONDAY.plusDays(1));
+        engine.checkDate();
+        assertEquals(1, rollovers.size());
+        rollTo(MONDAY.plusDays(2));
+        assertEquals(2, rollovers.size());
+        assertEquals(2, habit.getStreak());
+    }
+
+    // Moves the clock on by the delay the engine sleeps for, as its timer would, and wakes it
+    private static void wakeUp(RolloverEngine engine, SettableClock clock) {
+        clock.set(clock.instant().plusMillis(engine.nextDelayMillis()));
+        engine.checkDate();
+    }
+
+    private Habit habit(HabitSchedule schedule) {
+        Habit habit = new Habit("Habit " + (habits.size() + 1), "Health", false, 0);
+        habit.setId(habits.size() + 1);
+        habit.setSchedule(schedule);
+        habits.add(habit);
+        return habit;
+    }
+
+    private void setDate(LocalDate date) {
+        clock.set(LocalDateTime.of(date, LocalTime.of(0, 0, 1)));
+    }
+
+    private void rollTo(LocalDate date) {
+        setDate(date);
+        engine.checkDate();
+        assertEquals(date.toEpochDay(), rollovers.get(rollovers.size() - 1));
+    }
+
+    /**
+     * Clock whose time the test sets, in a fixed zone.
+     */
+    static final class SettableClock extends Clock {
+        private final ZoneId zone;
+        private Instant instant = Instant.EPOCH;
+
+        SettableClock(ZoneId zone) {
+            this.zone = zone;
+        }
+
+        void set(LocalDateTime localTime) {
+            instant = localTime.atZone(zone).toInstant();
+        }
+
+        void set(Instant instant) {
+            this.instant = instant;
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return zone;
+        }
+
+        @Override
+        public Clock withZone(ZoneId newZone) {
+            SettableClock clock = new SettableClock(newZone);
+            clock.instant = instant;
+            return clock;
+        }
+
+        @Override
+        public Instant instant() {
+            return instant;
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package com.habittracker;
+
+/**
+ * SharedDirectoryTest.java
+ * Opens two stores on the same directory, as two running instances of the
+ * app would, adds habits from both at the same time and checks that every
+ * habit gets its own id, and that edits each side makes to the other's
+ * habits survive a snapshot one of them saves in between.
+ *
+ * One side adds habits one by one from its reserved id block, the other
+ * imports them in batches, so both kinds of reservation meet in habits.lock.
+ */
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class SharedDirectoryTest {
+    // More than one id block on each side
+    private static final int HABITS = 2500;
+    private static final int BATCH = 100;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void concurrentAddsGetDistinctIdsAndBothSidesEditsSurvive() throws Exception {
+        PersistenceService first = new PersistenceService(new DataManager(directory));
+        PersistenceService second = new PersistenceService(new DataManager(directory));
+        HabitRepository firstHabits = new HabitRepository();
+        HabitRepository secondHabits = new HabitRepository();
+        first.loadHabits(firstHabits::addAll).join();
+        second.loadHabits(secondHabits::addAll).join();
+
+        CountDownLatch start = new CountDownLatch(1);
+        CompletableFuture<List<Habit>> firstAdds = CompletableFuture.supplyAsync(() -> {
+            await(start);
+            List<Habit> added = new ArrayList<>();
+            List<CompletableFuture<Void>> writes = new ArrayList<>();
+            for (int i = 0; i < HABITS; i++) {
+                Habit habit = new Habit("First " + i, "Health", false, 0);
+                habit.setId(first.reserveHabitId());
+                added.add(habit);
+                writes.add(first.habitAdded(habit));
+            }
+            writes.forEach(CompletableFuture::join);
+            return added;
+        });
+        CompletableFuture<List<Habit>> secondAdds = CompletableFuture.supplyAsync(() -> {
+            await(start);
+            List<Habit> added = new ArrayList<>();
+            for (int i = 0; i < HABITS; i += BATCH) {
+                List<Habit> batch = new ArrayList<>();
+                for (int j = i; j < i + BATCH; j++) {
+                    batch.add(new Habit("Second " + j, "Learning", false, 0));
+                }
+                second.assignHabitIds(batch);
+                second.habitsAdded(batch).join();
+                added.addAll(batch);
+            }
+            return added;
+        });
+        start.countDown();
+        List<Habit> all = new ArrayList<>(firstAdds.get(30, TimeUnit.SECONDS));
+        all.addAll(secondAdds.get(30, TimeUnit.SECONDS));
+
+        Set<Long> ids = new HashSet<>();
+        for (Habit habit : all) {
+            assertNotEquals(0, habit.getId(), habit.getName());
+            assertTrue(ids.add(habit.getId()), "id " + habit.getId() + " handed out twice");
+        }
+        firstHabits.addAll(firstAdds.join());
+        secondHabits.addAll(secondAdds.join());
+
+        // Each side picks up the other's habits and edits one of them
+        applyExternalChanges(first, firstHabits);
+        applyExternalChanges(second, secondHabits);
+        assertEquals(2 * HABITS, firstHabits.size());
+        assertEquals(2 * HABITS, secondHabits.size());
+        long firstsHabit = firstAdds.join().get(7).getId();
+        long secondsHabit = secondAdds.join().get(11).getId();
+        firstHabits.get(secondsHabit).setName("Edited by first");
+        first.habitUpdated(firstHabits.get(secondsHabit)).join();
+        secondHabits.get(firstsHabit).setName("Edited by second");
+        second.habitUpdated(secondHabits.get(firstsHabit)).join();
+
+        // The first saves a snapshot without having seen the second's edit, which must not drop it
+        first.saveHabits(firstHabits.all()).join();
+        Habit later = secondHabits.get(secondAdds.join().get(12).getId());
+        later.setStreak(5);
+        second.habitUpdated(later).join();
+        assertTrue(first.close(10, TimeUnit.SECONDS));
+        assertTrue(second.close(10, TimeUnit.SECONDS));
+
+        Map<Long, Habit> loaded = new HashMap<>();
+        for (Habit habit : new DataManager(directory).loadHabits()) {
+            assertEquals(null, loaded.put(habit.getId(), habit), "id " + habit.getId() + " loaded twice");
+        }
+        assertEquals(ids, loaded.keySet());
+        assertEquals("Edited by second", loaded.get(firstsHabit).getName());
+        assertEquals("Edited by first", loaded.get(secondsHabit).getName());
+        assertEquals(5, loaded.get(later.getId()).getStreak());
+    }
+
+    // What the store watcher does when the journal changes, without waiting for it
+    private static void applyExternalChanges(PersistenceService service, HabitRepository repository) {
+        ExternalChanges changes = service.getStore().readExternalChanges();
+        if (changes != null) {
+            service.applyExternalChanges(changes, repository);
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}